@@ -0,0 +1,224 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import static java.nio.charset.StandardCharsets.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+import javax.annotation.*;
+
+import org.slf4j.*;
+
+/**
+ * Decrypts batches of megolm messages encrypted with many different sessions, typically the events of a room
+ * backfill.<br>
+ * The messages are grouped by session: an {@link OlmInboundGroupSession} is not thread safe, so the messages of
+ * one session are decrypted serially with a single {@link OlmInboundGroupSession#decryptMessages(byte[][])} call,
+ * while the groups are decrypted in parallel on a {@link ForkJoinPool}. The outcome of every message is returned
+ * in the order of the batch.<br>
+ * The sessions must not be used by other threads while a batch is being decrypted.
+ */
+public class MegolmBatchDecryptor
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(MegolmBatchDecryptor.class);
+	
+	private final ForkJoinPool mPool;
+	
+	/**
+	 * Decrypt on the common fork-join pool.
+	 */
+	public MegolmBatchDecryptor()
+	{
+		this(ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * @param aPool the pool running the groups of messages
+	 */
+	public MegolmBatchDecryptor(@Nonnull ForkJoinPool aPool)
+	{
+		mPool = aPool;
+	}
+	
+	/**
+	 * Decrypt a batch of messages.<br>
+	 * A message which can not be decrypted does not abort the batch: see {@link OlmBatchDecryptResult#getError(int)}.
+	 * A message whose session is not returned by {@code aSessions} fails with {@link OlmError#UNKNOWN_SESSION}.
+	 *
+	 * @param aSessionIds    the session identifier of each message
+	 * @param aEncryptedMsgs the messages to be decrypted
+	 * @param aSessions      returns the session matching an identifier, or null if it is not known.
+	 *                       It is called once per distinct identifier, from the calling thread.
+	 * @return the outcome of every message, in the order of the batch
+	 * @throws OlmException if the two lists do not have the same size
+	 */
+	@Nonnull
+	public OlmBatchDecryptResult decryptMessages(@Nonnull List<String> aSessionIds, @Nonnull List<String> aEncryptedMsgs,
+	                                             @Nonnull Function<String, OlmInboundGroupSession> aSessions)
+			throws OlmException
+	{
+		int size = aSessionIds.size();
+		if (size != aEncryptedMsgs.size())
+		{
+			LOGGER.error("## decryptMessages(): {} session identifiers for {} messages", size, aEncryptedMsgs.size());
+			throw new OlmException(OlmException.EXCEPTION_CODE_INBOUND_GROUP_SESSION_DECRYPT_SESSION,
+					"the session identifiers and the messages do not match");
+		}
+		
+		OlmBatchDecryptResult result = new OlmBatchDecryptResult(size);
+		result.reset(size, true);
+		
+		// several identifiers may resolve to the same session: group by session instance
+		Map<String, OlmInboundGroupSession> sessionsById = new HashMap<>();
+		Map<OlmInboundGroupSession, Group> groups = new IdentityHashMap<>();
+		int i = 0;
+		
+		for (String sessionId : aSessionIds)
+		{
+			OlmInboundGroupSession session;
+			if (sessionsById.containsKey(sessionId))
+			{
+				session = sessionsById.get(sessionId);
+			}
+			else
+			{
+				session = (null == sessionId) ? null : aSessions.apply(sessionId);
+				sessionsById.put(sessionId, session);
+			}
+			
+			if (null == session)
+			{
+				result.setError(i, OlmError.UNKNOWN_SESSION);
+			}
+			else
+			{
+				groups.computeIfAbsent(session, Group::new).add(i);
+			}
+			i++;
+		}
+		
+		// random access from the tasks, whatever the list implementation
+		String[] encryptedMsgs = aEncryptedMsgs.toArray(new String[size]);
+		List<GroupTask> tasks = new ArrayList<>(groups.size());
+		for (Group group : groups.values())
+		{
+			tasks.add(new GroupTask(group, encryptedMsgs, result));
+		}
+		
+		if (1 == tasks.size())
+		{
+			// nothing to run in parallel
+			tasks.get(0).compute();
+		}
+		else if (!tasks.isEmpty())
+		{
+			// from a task of another pool, still run on the pool chosen by the caller
+			if (ForkJoinTask.getPool() == mPool)
+			{
+				ForkJoinTask.invokeAll(tasks);
+			}
+			else
+			{
+				mPool.invoke(new RecursiveAction()
+				{
+					@Override
+					protected void compute()
+					{
+						invokeAll(tasks);
+					}
+				});
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Messages of one session, as indexes in the batch.
+	 */
+	private static class Group
+	{
+		final OlmInboundGroupSession mSession;
+		int[] mIndexes = new int[4];
+		int mSize;
+		
+		Group(OlmInboundGroupSession aSession)
+		{
+			mSession = aSession;
+		}
+		
+		void add(int aIndex)
+		{
+			if (mSize == mIndexes.length)
+			{
+				mIndexes = Arrays.copyOf(mIndexes, mSize * 2);
+			}
+			mIndexes[mSize++] = aIndex;
+		}
+	}
+	
+	/**
+	 * Decrypts the messages of one session and scatters their outcome into the result of the batch.<br>
+	 * Each task writes distinct indexes of the result; joining the tasks publishes them to the caller.
+	 */
+	private static class GroupTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = -8479553260331599543L;
+		
+		private final Group mGroup;
+		private final String[] mEncryptedMsgs;
+		private final OlmBatchDecryptResult mResult;
+		
+		GroupTask(Group aGroup, String[] aEncryptedMsgs, OlmBatchDecryptResult aResult)
+		{
+			mGroup = aGroup;
+			mEncryptedMsgs = aEncryptedMsgs;
+			mResult = aResult;
+		}
+		
+		@Override
+		protected void compute()
+		{
+			byte[][] encryptedMsgs = new byte[mGroup.mSize][];
+			for (int i = 0; i < mGroup.mSize; i++)
+			{
+				String encryptedMsg = mEncryptedMsgs[mGroup.mIndexes[i]];
+				encryptedMsgs[i] = (null == encryptedMsg) ? null : encryptedMsg.getBytes(UTF_8);
+			}
+			
+			try
+			{
+				OlmBatchDecryptResult groupResult = mGroup.mSession.decryptMessages(encryptedMsgs);
+				for (int i = 0; i < mGroup.mSize; i++)
+				{
+					mResult.copy(mGroup.mIndexes[i], groupResult, i);
+				}
+			}
+			catch (OlmException e)
+			{
+				// the session itself is unusable (e.g. released): only its own messages fail
+				LOGGER.error("## decryptMessages(): group of {} messages failed {}", mGroup.mSize, e.getMessage());
+				for (int i = 0; i < mGroup.mSize; i++)
+				{
+					mResult.setError(mGroup.mIndexes[i], e.getError());
+				}
+			}
+		}
+	}
+}
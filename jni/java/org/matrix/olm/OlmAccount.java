@@ -21,6 +21,7 @@ import static javax.annotation.meta.When.MAYBE;
 import static org.matrix.olm.OlmException.*;
 
 import java.io.*;
+import java.lang.ref.*;
 import java.util.*;
 
 import javax.annotation.*;
@@ -120,12 +121,18 @@ public class OlmAccount extends CommonSerializeUtils implements Serializable
 	 */
 	private transient long mNativeId;
 	
+	/**
+	 * Registration of {@link #mNativeId} with the cleaner.
+	 */
+	private transient OlmNativeTracker.Handle mNativeHandle;
+	
 	public OlmAccount()
 			throws OlmException
 	{
 		try
 		{
 			mNativeId = createNewAccountJni();
+			mNativeHandle = OlmNativeTracker.track(this, mNativeId, OlmAccount::releaseAccountJni);
 		}
 		catch (Exception e)
 		{
@@ -140,7 +147,7 @@ public class OlmAccount extends CommonSerializeUtils implements Serializable
 	 *
 	 * @return the initialized OlmAccount* instance or throw an exception if fails
 	 **/
-	private native long createNewAccountJni();
+	private static native long createNewAccountJni();
 	
 	/**
 	 * Getter on the account ID.
@@ -154,15 +161,16 @@ public class OlmAccount extends CommonSerializeUtils implements Serializable
 	
 	/**
 	 * Release native account and invalid its JAVA reference counter part.<br>
-	 * Public API for {@link #releaseAccountJni()}.
+	 * Public API for {@link #releaseAccountJni(long)}.
 	 */
 	public void releaseAccount()
 	{
 		if (0 != mNativeId)
 		{
-			releaseAccountJni();
+			mNativeHandle.release();
 		}
 		mNativeId = 0;
+		mNativeHandle = null;
 	}
 	
 	/**
@@ -170,8 +178,9 @@ public class OlmAccount extends CommonSerializeUtils implements Serializable
 	 * This method must ALWAYS be called when this JAVA instance
 	 * is destroyed (ie. garbage collected) to prevent memory leak in native side.
 	 * See {@link #createNewAccountJni()}.
+	 * @param aNativeId native account instance identifier
 	 */
-	private native void releaseAccountJni();
+	private static native void releaseAccountJni(long aNativeId);
 	
 	/**
 	 * Return true the object resources have been released.<br>
@@ -185,7 +194,7 @@ public class OlmAccount extends CommonSerializeUtils implements Serializable
 	
 	/**
 	 * Return the identity keys (identity and fingerprint keys).<br>
-	 * Public API for {@link #identityKeysJni()}.
+	 * Public API for {@link #identityKeysJni(long)}.
 	 *
 	 * @return identity keys
 	 * @throws OlmException the failure reason
@@ -200,7 +209,7 @@ public class OlmAccount extends CommonSerializeUtils implements Serializable
 	
 	/**
 	 * Return the identity keys (identity and fingerprint keys) in a json object.<br>
-	 * Public API for {@link #identityKeysJni()}.<br>
+	 * Public API for {@link #identityKeysJni(long)}.<br>
 	 * Ex:<tt>
 	 * {
 	 * "curve25519":"Vam++zZPMqDQM6ANKpO/uAl5ViJSHxV9hd+b0/fwRAg",
@@ -218,13 +227,17 @@ public class OlmAccount extends CommonSerializeUtils implements Serializable
 		
 		try
 		{
-			identityKeysBuffer = identityKeysJni();
+			identityKeysBuffer = identityKeysJni(mNativeId);
 		}
 		catch (Exception e)
 		{
 			LOGGER.error("## identityKeys(): Failure - " + e.getMessage());
 			throw new OlmException(EXCEPTION_CODE_ACCOUNT_IDENTITY_KEYS, e.getMessage());
 		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
 		
 		if (null != identityKeysBuffer)
 		{
@@ -242,9 +255,10 @@ public class OlmAccount extends CommonSerializeUtils implements Serializable
 	 * Keys are Base64 encoded.
 	 * These keys must be published on the server.
 	 *
+	 * @param aNativeId native account instance identifier
 	 * @return the identity keys or throw an exception if it fails
 	 */
-	private native byte[] identityKeysJni();
+	private static native byte[] identityKeysJni(long aNativeId);
 	
 	/**
 	 * Return the largest number of "one time keys" this account can store.
@@ -253,15 +267,23 @@ public class OlmAccount extends CommonSerializeUtils implements Serializable
 	 */
 	public long maxOneTimeKeys()
 	{
-		return maxOneTimeKeysJni();
+		try
+		{
+			return maxOneTimeKeysJni(mNativeId);
+		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
 	}
 	
 	/**
 	 * Return the largest number of "one time keys" this account can store.
 	 *
+	 * @param aNativeId native account instance identifier
 	 * @return the max number of "one time keys", -1 otherwise
 	 */
-	private native long maxOneTimeKeysJni();
+	private static native long maxOneTimeKeysJni(long aNativeId);
 	
 	/**
 	 * Generate a number of new one time keys.<br> If total number of keys stored
@@ -276,12 +298,16 @@ public class OlmAccount extends CommonSerializeUtils implements Serializable
 	{
 		try
 		{
-			generateOneTimeKeysJni(aNumberOfKeys);
+			generateOneTimeKeysJni(mNativeId, aNumberOfKeys);
 		}
 		catch (Exception e)
 		{
 			throw new OlmException(EXCEPTION_CODE_ACCOUNT_GENERATE_ONE_TIME_KEYS, e.getMessage());
 		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
 	}
 	
 	/**
@@ -289,9 +315,10 @@ public class OlmAccount extends CommonSerializeUtils implements Serializable
 	 * by this account exceeds {@link #maxOneTimeKeys()}, the old keys are discarded.
 	 * An exception is thrown if the operation fails.<br>
 	 *
+	 * @param aNativeId native account instance identifier
 	 * @param aNumberOfKeys number of keys to generate
 	 */
-	private native void generateOneTimeKeysJni(int aNumberOfKeys);
+	private static native void generateOneTimeKeysJni(long aNativeId, int aNumberOfKeys);
 	
 	/**
 	 * Return the "one time keys" in a dictionary.<br>
@@ -304,7 +331,7 @@ public class OlmAccount extends CommonSerializeUtils implements Serializable
 	 * "AAAAAw":"qxNxxFHzevFntaaPdT0fhhO7tc7pco4+xB/5VRG81hA",
 	 * }
 	 * }</tt><br>
-	 * Public API for {@link #oneTimeKeysJni()}.<br>
+	 * Public API for {@link #oneTimeKeysJni(long)}.<br>
 	 * Note: these keys are to be published on the server.
 	 *
 	 * @return one time keys in string dictionary.
@@ -318,12 +345,16 @@ public class OlmAccount extends CommonSerializeUtils implements Serializable
 		
 		try
 		{
-			oneTimeKeysBuffer = oneTimeKeysJni();
+			oneTimeKeysBuffer = oneTimeKeysJni(mNativeId);
 		}
 		catch (Exception e)
 		{
 			throw new OlmException(EXCEPTION_CODE_ACCOUNT_ONE_TIME_KEYS, e.getMessage());
 		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
 		
 		if (null != oneTimeKeysBuffer)
 		{
@@ -342,9 +373,10 @@ public class OlmAccount extends CommonSerializeUtils implements Serializable
 	 * <tt>curve25519</tt>, which is itself an object mapping key id to
 	 * base64-encoded Curve25519 key.<br>
 	 *
+	 * @param aNativeId native account instance identifier
 	 * @return byte array containing the one time keys or throw an exception if it fails
 	 */
-	private native byte[] oneTimeKeysJni();
+	private static native byte[] oneTimeKeysJni(long aNativeId);
 	
 	/**
 	 * Remove the "one time keys" that the session used from the account.
@@ -357,21 +389,27 @@ public class OlmAccount extends CommonSerializeUtils implements Serializable
 	{
 		try
 		{
-			removeOneTimeKeysJni(aSession.getOlmSessionId());
+			removeOneTimeKeysJni(mNativeId, aSession.getOlmSessionId());
 		}
 		catch (Exception e)
 		{
 			throw new OlmException(OlmException.EXCEPTION_CODE_ACCOUNT_REMOVE_ONE_TIME_KEYS, e.getMessage());
 		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+			Reference.reachabilityFence(aSession);
+		}
 	}
 	
 	/**
 	 * Remove the "one time keys" that the session used from the account.
 	 * An exception is thrown if the operation fails.
 	 *
+	 * @param aNativeId native account instance identifier
 	 * @param aNativeOlmSessionId native session instance identifier
 	 */
-	private native void removeOneTimeKeysJni(long aNativeOlmSessionId);
+	private static native void removeOneTimeKeysJni(long aNativeId, long aNativeOlmSessionId);
 	
 	/**
 	 * Marks the current set of "one time keys" as being published.
@@ -383,19 +421,24 @@ public class OlmAccount extends CommonSerializeUtils implements Serializable
 	{
 		try
 		{
-			markOneTimeKeysAsPublishedJni();
+			markOneTimeKeysAsPublishedJni(mNativeId);
 		}
 		catch (Exception e)
 		{
 			throw new OlmException(OlmException.EXCEPTION_CODE_ACCOUNT_MARK_ONE_KEYS_AS_PUBLISHED, e.getMessage());
 		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
 	}
 	
 	/**
 	 * Marks the current set of "one time keys" as being published.
 	 * An exception is thrown if the operation fails.
+	 * @param aNativeId native account instance identifier
 	 */
-	private native void markOneTimeKeysAsPublishedJni();
+	private static native void markOneTimeKeysAsPublishedJni(long aNativeId);
 	
 	/**
 	 * Sign a message with the ed25519 fingerprint key for this account.<br>
@@ -415,12 +458,16 @@ public class OlmAccount extends CommonSerializeUtils implements Serializable
 		{
 			byte[] utf8String = aMessage.getBytes(UTF_8);
 			
-			signedMessage = signMessageJni(utf8String);
+			signedMessage = signMessageJni(mNativeId, utf8String);
 		}
 		catch (Exception e)
 		{
 			throw new OlmException(EXCEPTION_CODE_ACCOUNT_SIGN_MESSAGE, e.getMessage());
 		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
 		
 		if (signedMessage == null)
 			throw new OlmException(EXCEPTION_CODE_ACCOUNT_SIGN_MESSAGE, "signMessageJni()=null");
@@ -432,10 +479,11 @@ public class OlmAccount extends CommonSerializeUtils implements Serializable
 	 * Sign a message with the ed25519 fingerprint key for this account.<br>
 	 * The signed message is returned by the method.
 	 *
+	 * @param aNativeId native account instance identifier
 	 * @param aMessage message to sign
 	 * @return the signed message
 	 */
-	private native byte[] signMessageJni(byte[] aMessage);
+	private static native byte[] signMessageJni(long aNativeId, byte[] aMessage);
 	
 	//==============================================================================================================
 	// Serialization management
@@ -484,13 +532,17 @@ public class OlmAccount extends CommonSerializeUtils implements Serializable
 		aErrorMsg.setLength(0);
 		try
 		{
-			pickleRetValue = serializeJni(aKey);
+			pickleRetValue = serializeJni(mNativeId, aKey);
 		}
 		catch (Exception e)
 		{
 			LOGGER.error("## serialize() failed " + e.getMessage());
 			aErrorMsg.append(e.getMessage());
 		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
 		
 		return pickleRetValue;
 	}
@@ -498,10 +550,11 @@ public class OlmAccount extends CommonSerializeUtils implements Serializable
 	/**
 	 * Serialize and encrypt account instance.<br>
 	 *
+	 * @param aNativeId native account instance identifier
 	 * @param aKeyBuffer key used to encrypt the serialized account data
 	 * @return the serialised account as bytes buffer.
 	 **/
-	private native byte[] serializeJni(byte[] aKeyBuffer);
+	private static native byte[] serializeJni(long aNativeId, byte[] aKeyBuffer);
 	
 	/**
 	 * Loads an account from a pickled bytes buffer.<br>
@@ -520,6 +573,7 @@ public class OlmAccount extends CommonSerializeUtils implements Serializable
 		try
 		{
 			mNativeId = deserializeJni(aSerializedData, aKey);
+			mNativeHandle = OlmNativeTracker.track(this, mNativeId, OlmAccount::releaseAccountJni);
 		}
 		catch (Exception e)
 		{
@@ -541,5 +595,5 @@ public class OlmAccount extends CommonSerializeUtils implements Serializable
 	 * @param aKeyBuffer            the key used to encrypt the serialized account data
 	 * @return the deserialized account
 	 **/
-	private native long deserializeJni(byte[] aSerializedDataBuffer, byte[] aKeyBuffer);
+	private static native long deserializeJni(byte[] aSerializedDataBuffer, byte[] aKeyBuffer);
 }
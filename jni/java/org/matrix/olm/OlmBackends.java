@@ -0,0 +1,37 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import javax.annotation.*;
+
+/**
+ * Selection of the binding used for the megolm hot paths.<br>
+ * This version only knows the JNI entry points. On JDK 22 and later it is replaced by the version from
+ * {@code META-INF/versions/22}, which binds libolm through the Foreign Function &amp; Memory API.
+ */
+final class OlmBackends
+{
+	/**
+	 * Backend of the megolm hot paths, null to use the JNI entry points.
+	 */
+	@Nullable
+	static final OlmGroupBackend GROUP = null;
+	
+	private OlmBackends()
+	{
+	}
+}
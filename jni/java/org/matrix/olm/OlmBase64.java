@@ -0,0 +1,260 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import static java.nio.charset.StandardCharsets.*;
+
+import java.util.*;
+
+import javax.annotation.*;
+
+/**
+ * Unpadded standard base64, the encoding used by libolm for keys and messages.<br>
+ * The codec is table driven and works on whole groups: 3 bytes to 4 characters per step when encoding, 4 lookups
+ * checked at once per step when decoding. It converts between the binary messages of the {@code *Binary} methods
+ * and the base64 messages exchanged with other clients.
+ */
+public final class OlmBase64
+{
+	private static final byte[] ENCODE = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(US_ASCII);
+	
+	// value of each character, -1 for the characters outside the alphabet
+	private static final int[] DECODE = new int[256];
+	
+	static
+	{
+		Arrays.fill(DECODE, -1);
+		for (int i = 0; i < ENCODE.length; i++)
+		{
+			DECODE[ENCODE[i]] = i;
+		}
+	}
+	
+	private OlmBase64()
+	{
+	}
+	
+	/**
+	 * @param aLength length of the binary data
+	 * @return length of the unpadded base64 encoding
+	 */
+	public static int encodedLength(int aLength)
+	{
+		return (aLength / 3) * 4 + ((aLength % 3) * 4 + 2) / 3;
+	}
+	
+	/**
+	 * @param aLength length of the unpadded base64 encoding
+	 * @return length of the binary data, -1 if no encoding has this length
+	 */
+	public static int decodedLength(int aLength)
+	{
+		return (1 == (aLength & 3)) ? -1 : (aLength / 4) * 3 + ((aLength & 3) * 3) / 4;
+	}
+	
+	/**
+	 * @param aData the binary data
+	 * @return the unpadded base64 encoding
+	 */
+	@Nonnull
+	public static String encodeToString(@Nonnull byte[] aData)
+	{
+		return new String(encode(aData, 0, aData.length), US_ASCII);
+	}
+	
+	/**
+	 * @param aData   the array holding the binary data
+	 * @param aOffset offset of the data in the array
+	 * @param aLength length of the data
+	 * @return the unpadded base64 encoding, as ASCII bytes
+	 */
+	@Nonnull
+	public static byte[] encode(@Nonnull byte[] aData, int aOffset, int aLength)
+	{
+		byte[] encoded = new byte[encodedLength(aLength)];
+		encode(aData, aOffset, aLength, encoded, 0);
+		return encoded;
+	}
+	
+	/**
+	 * Encode into a caller provided array.
+	 *
+	 * @param aData          the array holding the binary data
+	 * @param aOffset        offset of the data in the array
+	 * @param aLength        length of the data
+	 * @param aEncoded       array receiving the encoding, {@link #encodedLength(int)} bytes
+	 * @param aEncodedOffset offset of the encoding in aEncoded
+	 * @return the length of the encoding
+	 */
+	public static int encode(@Nonnull byte[] aData, int aOffset, int aLength, @Nonnull byte[] aEncoded, int aEncodedOffset)
+	{
+		checkRange(aData, aOffset, aLength);
+		int encodedLength = encodedLength(aLength);
+		checkRange(aEncoded, aEncodedOffset, encodedLength);
+		
+		int in = aOffset;
+		int out = aEncodedOffset;
+		int end = aOffset + (aLength / 3) * 3;
+		
+		while (in < end)
+		{
+			int bits = ((aData[in] & 0xFF) << 16) | ((aData[in + 1] & 0xFF) << 8) | (aData[in + 2] & 0xFF);
+			aEncoded[out] = ENCODE[bits >>> 18];
+			aEncoded[out + 1] = ENCODE[(bits >>> 12) & 0x3F];
+			aEncoded[out + 2] = ENCODE[(bits >>> 6) & 0x3F];
+			aEncoded[out + 3] = ENCODE[bits & 0x3F];
+			in += 3;
+			out += 4;
+		}
+		
+		int remaining = aOffset + aLength - in;
+		if (remaining > 0)
+		{
+			int bits = (aData[in] & 0xFF) << 16;
+			if (2 == remaining)
+			{
+				bits |= (aData[in + 1] & 0xFF) << 8;
+			}
+			aEncoded[out++] = ENCODE[bits >>> 18];
+			aEncoded[out++] = ENCODE[(bits >>> 12) & 0x3F];
+			if (2 == remaining)
+			{
+				aEncoded[out++] = ENCODE[(bits >>> 6) & 0x3F];
+			}
+		}
+		
+		return encodedLength;
+	}
+	
+	/**
+	 * @param aEncoded the unpadded base64 encoding
+	 * @return the binary data
+	 * @throws IllegalArgumentException if the input is not unpadded base64
+	 */
+	@Nonnull
+	public static byte[] decode(@Nonnull String aEncoded)
+	{
+		byte[] encoded = aEncoded.getBytes(US_ASCII);
+		return decode(encoded, 0, encoded.length);
+	}
+	
+	/**
+	 * @param aEncoded the array holding the ASCII encoding
+	 * @param aOffset  offset of the encoding in the array
+	 * @param aLength  length of the encoding
+	 * @return the binary data
+	 * @throws IllegalArgumentException if the input is not unpadded base64
+	 */
+	@Nonnull
+	public static byte[] decode(@Nonnull byte[] aEncoded, int aOffset, int aLength)
+	{
+		int decodedLength = decodedLength(aLength);
+		if (decodedLength < 0)
+		{
+			throw new IllegalArgumentException("invalid base64 length " + aLength);
+		}
+		
+		byte[] decoded = new byte[decodedLength];
+		decode(aEncoded, aOffset, aLength, decoded, 0);
+		return decoded;
+	}
+	
+	/**
+	 * Decode into a caller provided array.
+	 *
+	 * @param aEncoded       the array holding the ASCII encoding
+	 * @param aOffset        offset of the encoding in the array
+	 * @param aLength        length of the encoding
+	 * @param aDecoded       array receiving the binary data, {@link #decodedLength(int)} bytes
+	 * @param aDecodedOffset offset of the data in aDecoded
+	 * @return the length of the binary data
+	 * @throws IllegalArgumentException if the input is not unpadded base64
+	 */
+	public static int decode(@Nonnull byte[] aEncoded, int aOffset, int aLength, @Nonnull byte[] aDecoded, int aDecodedOffset)
+	{
+		checkRange(aEncoded, aOffset, aLength);
+		int decodedLength = decodedLength(aLength);
+		if (decodedLength < 0)
+		{
+			throw new IllegalArgumentException("invalid base64 length " + aLength);
+		}
+		checkRange(aDecoded, aDecodedOffset, decodedLength);
+		
+		int in = aOffset;
+		int out = aDecodedOffset;
+		int end = aOffset + (aLength & ~3);
+		
+		while (in < end)
+		{
+			int c0 = DECODE[aEncoded[in] & 0xFF];
+			int c1 = DECODE[aEncoded[in + 1] & 0xFF];
+			int c2 = DECODE[aEncoded[in + 2] & 0xFF];
+			int c3 = DECODE[aEncoded[in + 3] & 0xFF];
+			
+			// a single test for the 4 characters: any -1 sets the sign bit
+			if ((c0 | c1 | c2 | c3) < 0)
+			{
+				throw new IllegalArgumentException("invalid base64 character at " + (in - aOffset));
+			}
+			
+			int bits = (c0 << 18) | (c1 << 12) | (c2 << 6) | c3;
+			aDecoded[out] = (byte) (bits >>> 16);
+			aDecoded[out + 1] = (byte) (bits >>> 8);
+			aDecoded[out + 2] = (byte) bits;
+			in += 4;
+			out += 3;
+		}
+		
+		int remaining = aOffset + aLength - in;
+		if (remaining > 0)
+		{
+			int c0 = DECODE[aEncoded[in] & 0xFF];
+			int c1 = DECODE[aEncoded[in + 1] & 0xFF];
+			int c2 = (3 == remaining) ? DECODE[aEncoded[in + 2] & 0xFF] : 0;
+			
+			if ((c0 | c1 | c2) < 0)
+			{
+				throw new IllegalArgumentException("invalid base64 character at " + (in - aOffset));
+			}
+			
+			int bits = (c0 << 18) | (c1 << 12) | (c2 << 6);
+			aDecoded[out++] = (byte) (bits >>> 16);
+			if (3 == remaining)
+			{
+				aDecoded[out++] = (byte) (bits >>> 8);
+			}
+		}
+		
+		return decodedLength;
+	}
+	
+	/**
+	 * @return the value of a base64 character, -1 if it is not one
+	 */
+	static int value(byte aChar)
+	{
+		return DECODE[aChar & 0xFF];
+	}
+	
+	private static void checkRange(@Nonnull byte[] aArray, int aOffset, int aLength)
+	{
+		if ((aOffset < 0) || (aLength < 0) || (aOffset > aArray.length - aLength))
+		{
+			throw new IndexOutOfBoundsException("range " + aOffset + "+" + aLength + " of " + aArray.length);
+		}
+	}
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import static java.nio.charset.StandardCharsets.*;
+
+import java.util.*;
+
+import javax.annotation.*;
+
+/**
+ * Outcome of a batch decryption, see {@link OlmInboundGroupSession#decryptMessages(List)}.<br>
+ * Every message of the batch has its own {@link OlmError}: a message which can not be decrypted does not abort
+ * the batch. Depending on the variant, the decrypted messages are returned as separate arrays
+ * ({@link #getPlaintext(int)}) or as ranges of the caller provided output ({@link #getOffset(int)},
+ * {@link #getLength(int)}).<br>
+ * A result may be reused for any number of batches, from one thread at a time: its arrays only grow.
+ */
+public class OlmBatchDecryptResult
+{
+	private int mSize;
+	
+	int[] mStatus;
+	long[] mMessageIndexes;
+	int[] mOffsets;
+	int[] mLengths;
+	@Nullable
+	byte[][] mPlaintexts;
+	
+	/**
+	 * @param aCapacity number of messages the result can hold without growing
+	 */
+	public OlmBatchDecryptResult(int aCapacity)
+	{
+		mStatus = new int[aCapacity];
+		mMessageIndexes = new long[aCapacity];
+		mOffsets = new int[aCapacity];
+		mLengths = new int[aCapacity];
+	}
+	
+	/**
+	 * Prepare the result for a batch.
+	 *
+	 * @param aSize            number of messages of the batch
+	 * @param aWithPlaintexts  true if the decrypted messages are returned as separate arrays
+	 */
+	void reset(int aSize, boolean aWithPlaintexts)
+	{
+		if (mStatus.length < aSize)
+		{
+			mStatus = new int[aSize];
+			mMessageIndexes = new long[aSize];
+			mOffsets = new int[aSize];
+			mLengths = new int[aSize];
+		}
+		
+		if (aWithPlaintexts)
+		{
+			if ((null == mPlaintexts) || (mPlaintexts.length < aSize))
+			{
+				mPlaintexts = new byte[aSize][];
+			}
+		}
+		else
+		{
+			mPlaintexts = null;
+		}
+		
+		mSize = aSize;
+	}
+	
+	/**
+	 * Fill the ranges of the decrypted messages returned as separate arrays.
+	 */
+	void setPlaintextRanges()
+	{
+		for (int i = 0; i < mSize; i++)
+		{
+			mOffsets[i] = 0;
+			mLengths[i] = (null == mPlaintexts[i]) ? 0 : mPlaintexts[i].length;
+		}
+	}
+	
+	/**
+	 * Copy the outcome of a message of another batch, see {@link MegolmBatchDecryptor}.<br>
+	 * Both results must hold separate arrays.
+	 *
+	 * @param aIndex     index of the message in this batch
+	 * @param aFrom      the other batch
+	 * @param aFromIndex index of the message in the other batch
+	 */
+	void copy(int aIndex, @Nonnull OlmBatchDecryptResult aFrom, int aFromIndex)
+	{
+		mStatus[aIndex] = aFrom.mStatus[aFromIndex];
+		mMessageIndexes[aIndex] = aFrom.mMessageIndexes[aFromIndex];
+		mOffsets[aIndex] = 0;
+		mLengths[aIndex] = aFrom.mLengths[aFromIndex];
+		mPlaintexts[aIndex] = aFrom.mPlaintexts[aFromIndex];
+	}
+	
+	/**
+	 * Record a message which could not be decrypted.
+	 *
+	 * @param aIndex index of the message in the batch
+	 * @param aError the failure reason
+	 */
+	void setError(int aIndex, @Nonnull OlmError aError)
+	{
+		mStatus[aIndex] = aError.ordinal();
+		mMessageIndexes[aIndex] = 0;
+		mOffsets[aIndex] = 0;
+		mLengths[aIndex] = 0;
+		if (null != mPlaintexts)
+		{
+			mPlaintexts[aIndex] = null;
+		}
+	}
+	
+	/**
+	 * @return number of messages of the batch
+	 */
+	public int size()
+	{
+		return mSize;
+	}
+	
+	/**
+	 * @param aIndex index of the message in the batch
+	 * @return the outcome of the message
+	 */
+	@Nonnull
+	public OlmError getError(int aIndex)
+	{
+		return OlmError.fromStatus(mStatus[checkIndex(aIndex)]);
+	}
+	
+	/**
+	 * @param aIndex index of the message in the batch
+	 * @return true if the message was decrypted
+	 */
+	public boolean isSuccess(int aIndex)
+	{
+		return OlmError.SUCCESS.ordinal() == mStatus[checkIndex(aIndex)];
+	}
+	
+	/**
+	 * @return number of messages which could not be decrypted
+	 */
+	public int getFailureCount()
+	{
+		int failures = 0;
+		for (int i = 0; i < mSize; i++)
+		{
+			if (OlmError.SUCCESS.ordinal() != mStatus[i])
+			{
+				failures++;
+			}
+		}
+		return failures;
+	}
+	
+	/**
+	 * @param aIndex index of the message in the batch
+	 * @return the megolm message index of the message, 0 if it could not be decrypted
+	 */
+	public long getMessageIndex(int aIndex)
+	{
+		return mMessageIndexes[checkIndex(aIndex)];
+	}
+	
+	/**
+	 * @param aIndex index of the message in the batch
+	 * @return offset of the decrypted message in the output of the batch, 0 for the separate arrays variants
+	 */
+	public int getOffset(int aIndex)
+	{
+		return mOffsets[checkIndex(aIndex)];
+	}
+	
+	/**
+	 * @param aIndex index of the message in the batch
+	 * @return length of the decrypted message, 0 if it could not be decrypted
+	 */
+	public int getLength(int aIndex)
+	{
+		return mLengths[checkIndex(aIndex)];
+	}
+	
+	/**
+	 * @param aIndex index of the message in the batch
+	 * @return the UTF-8 encoded decrypted message, null if it could not be decrypted or if the batch was
+	 * decrypted into a caller provided output
+	 */
+	@Nullable
+	public byte[] getPlaintext(int aIndex)
+	{
+		return (null == mPlaintexts) ? null : mPlaintexts[checkIndex(aIndex)];
+	}
+	
+	/**
+	 * @param aIndex index of the message in the batch
+	 * @return the decrypted message, null if it could not be decrypted or if the batch was decrypted into a
+	 * caller provided output
+	 */
+	@Nullable
+	public String getMessage(int aIndex)
+	{
+		byte[] plaintext = getPlaintext(aIndex);
+		return (null == plaintext) ? null : new String(plaintext, UTF_8);
+	}
+	
+	private int checkIndex(int aIndex)
+	{
+		if ((aIndex < 0) || (aIndex >= mSize))
+		{
+			throw new IndexOutOfBoundsException("index " + aIndex + ", size " + mSize);
+		}
+		return aIndex;
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import static java.nio.charset.StandardCharsets.*;
+
+import java.util.*;
+
+import javax.annotation.*;
+
+/**
+ * Outcome of a batch encryption, see {@link OlmOutboundGroupSession#encryptMessages(List)}.<br>
+ * The messages of a batch are encrypted in order, so they have consecutive message indexes starting from
+ * {@link #getFirstMessageIndex()}. The UTF-8 encoded encrypted messages are packed one after the other in a single
+ * array.<br>
+ * A batch stopped by a failure holds the messages encrypted before it, see {@link #isComplete()}.
+ */
+public class OlmBatchEncryptResult
+{
+	private final byte[] mEncryptedMsgs;
+	private final int[] mEnds;
+	private final int mSize;
+	private final int mBatchSize;
+	private final long mFirstMessageIndex;
+	
+	/**
+	 * @param aEncryptedMsgs     the packed encrypted messages
+	 * @param aEnds              the offset following each encrypted message
+	 * @param aSize              number of encrypted messages
+	 * @param aBatchSize         number of messages of the batch
+	 * @param aFirstMessageIndex the message index of the first message
+	 */
+	OlmBatchEncryptResult(@Nonnull byte[] aEncryptedMsgs, @Nonnull int[] aEnds, int aSize, int aBatchSize, long aFirstMessageIndex)
+	{
+		mEncryptedMsgs = aEncryptedMsgs;
+		mEnds = aEnds;
+		mSize = aSize;
+		mBatchSize = aBatchSize;
+		mFirstMessageIndex = aFirstMessageIndex;
+	}
+	
+	/**
+	 * @return number of encrypted messages, the first ones of the batch
+	 */
+	public int size()
+	{
+		return mSize;
+	}
+	
+	/**
+	 * Tells if every message of the batch was encrypted.<br>
+	 * Otherwise the batch was stopped by a failure at message {@link #size()}, and the messages from there on are
+	 * not encrypted. The encrypted ones have spent their message indexes: they should be sent.
+	 *
+	 * @return true if the whole batch was encrypted
+	 */
+	public boolean isComplete()
+	{
+		return mSize == mBatchSize;
+	}
+	
+	/**
+	 * @return the megolm message index of the first message of the batch
+	 */
+	public long getFirstMessageIndex()
+	{
+		return mFirstMessageIndex;
+	}
+	
+	/**
+	 * @param aIndex index of the message in the batch
+	 * @return the megolm message index of the message
+	 */
+	public long getMessageIndex(int aIndex)
+	{
+		// megolm message indexes are 32 bits counters
+		return (mFirstMessageIndex + checkIndex(aIndex)) & 0xFFFFFFFFL;
+	}
+	
+	/**
+	 * @return the array holding the packed encrypted messages, see {@link #getOffset(int)} and {@link #getLength(int)}
+	 */
+	@Nonnull
+	public byte[] getEncryptedMessages()
+	{
+		return mEncryptedMsgs;
+	}
+	
+	/**
+	 * @param aIndex index of the message in the batch
+	 * @return offset of the encrypted message in {@link #getEncryptedMessages()}
+	 */
+	public int getOffset(int aIndex)
+	{
+		return (0 == checkIndex(aIndex)) ? 0 : mEnds[aIndex - 1];
+	}
+	
+	/**
+	 * @param aIndex index of the message in the batch
+	 * @return length of the encrypted message
+	 */
+	public int getLength(int aIndex)
+	{
+		return mEnds[checkIndex(aIndex)] - getOffset(aIndex);
+	}
+	
+	/**
+	 * @param aIndex index of the message in the batch
+	 * @return the UTF-8 encoded encrypted message
+	 */
+	@Nonnull
+	public byte[] getEncryptedMessageBytes(int aIndex)
+	{
+		int offset = getOffset(aIndex);
+		return Arrays.copyOfRange(mEncryptedMsgs, offset, mEnds[aIndex]);
+	}
+	
+	/**
+	 * @param aIndex index of the message in the batch
+	 * @return the encrypted message
+	 */
+	@Nonnull
+	public String getEncryptedMessage(int aIndex)
+	{
+		int offset = getOffset(aIndex);
+		return new String(mEncryptedMsgs, offset, mEnds[aIndex] - offset, UTF_8);
+	}
+	
+	private int checkIndex(int aIndex)
+	{
+		if ((aIndex < 0) || (aIndex >= mSize))
+		{
+			throw new IndexOutOfBoundsException("index " + aIndex + ", size " + mSize);
+		}
+		return aIndex;
+	}
+}
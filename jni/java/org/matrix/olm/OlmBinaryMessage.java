@@ -0,0 +1,65 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Olm message in binary form, that is without the base64 encoding of {@link OlmMessage}.
+ */
+public class OlmBinaryMessage
+{
+	/** The encrypted message. **/
+	@Nonnull
+	private final byte[] mCipherText;
+	
+	/** Either {@link OlmMessage#MESSAGE_TYPE_MESSAGE} or {@link OlmMessage#MESSAGE_TYPE_PRE_KEY}. **/
+	private final int mType;
+	
+	/** Initialise this OlmBinaryMessage. */
+	public OlmBinaryMessage(@Nonnull byte[] cipherText, int type)
+	{
+		mCipherText = cipherText;
+		mType = type;
+	}
+	
+	/** Initialise this OlmBinaryMessage from the base64 form of the message. */
+	public OlmBinaryMessage(@Nonnull OlmMessage message)
+	{
+		this(OlmBase64.decode(message.getCipherText()), message.getType());
+	}
+	
+	/** Get the encrypted message. */
+	@Nonnull
+	public byte[] getCipherText()
+	{
+		return mCipherText;
+	}
+	
+	/** Get the message type. Either {@link OlmMessage#MESSAGE_TYPE_MESSAGE} or {@link OlmMessage#MESSAGE_TYPE_PRE_KEY}. */
+	public int getType()
+	{
+		return mType;
+	}
+	
+	/** Get the base64 form of the message. */
+	@Nonnull
+	public OlmMessage toOlmMessage()
+	{
+		return new OlmMessage(OlmBase64.encodeToString(mCipherText), mType);
+	}
+}
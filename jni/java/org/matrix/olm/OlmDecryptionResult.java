@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+/**
+ * Reusable holder for the outcome of the status variants of the decrypt methods.<br>
+ * A holder may be passed to any number of calls, from one thread at a time: every call overwrites its content.
+ * See {@link OlmInboundGroupSession#tryDecryptMessage(byte[], int, int, byte[], int, OlmDecryptionResult)} and
+ * {@link OlmSession#tryDecryptMessage(OlmMessage, byte[], int, OlmDecryptionResult)}.
+ */
+public class OlmDecryptionResult
+{
+	/** Filled by the native layer: decrypted length, message index. */
+	final long[] mNativeResult = new long[2];
+	
+	private OlmError mError = OlmError.UNKNOWN;
+	
+	/**
+	 * Store the outcome of a call.
+	 *
+	 * @param aStatus the status code returned by the native layer
+	 * @return the matching error
+	 */
+	OlmError setStatus(int aStatus)
+	{
+		mError = OlmError.fromStatus(aStatus);
+		if (OlmError.SUCCESS != mError)
+		{
+			mNativeResult[0] = 0;
+			mNativeResult[1] = 0;
+		}
+		return mError;
+	}
+	
+	/**
+	 * @return the outcome of the last call
+	 */
+	public OlmError getError()
+	{
+		return mError;
+	}
+	
+	/**
+	 * @return true if the last call succeeded
+	 */
+	public boolean isSuccess()
+	{
+		return OlmError.SUCCESS == mError;
+	}
+	
+	/**
+	 * @return the length of the decrypted message, 0 if the last call failed
+	 */
+	public int getLength()
+	{
+		return (int) mNativeResult[0];
+	}
+	
+	/**
+	 * @return the message index of the decrypted group message, 0 if the last call failed or decrypted an olm message
+	 */
+	public long getMessageIndex()
+	{
+		return mNativeResult[1];
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import java.security.*;
+
+import javax.annotation.*;
+
+/**
+ * {@link OlmEntropySource} producing a reproducible stream of bytes from a seed.<br>
+ * Intended for benchmarks and reproducible test runs: the keys generated with this source are
+ * predictable, it must NEVER be used to create real accounts or sessions.<br>
+ * Every thread seeds its own native pool, so the output of the library is only reproducible when the
+ * operations are run from a single thread.
+ */
+public class OlmDeterministicEntropySource implements OlmEntropySource
+{
+	/** the seed */
+	private final long mSeed;
+	
+	/** number of blocks served so far */
+	private long mCounter;
+	
+	private final MessageDigest mDigest;
+	
+	/**
+	 * Constructor.
+	 *
+	 * @param aSeed the seed of the stream
+	 */
+	public OlmDeterministicEntropySource(long aSeed)
+	{
+		mSeed = aSeed;
+		try
+		{
+			mDigest = MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			// every java platform is required to implement SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * Fill the buffer with SHA-256(seed || counter) blocks.
+	 *
+	 * @param aBuffer the buffer to be filled
+	 */
+	@Override
+	public synchronized void nextBytes(@Nonnull byte[] aBuffer)
+	{
+		int offset = 0;
+		
+		while (offset < aBuffer.length)
+		{
+			updateLong(mSeed);
+			updateLong(mCounter++);
+			byte[] block = mDigest.digest();
+			
+			int length = Math.min(block.length, aBuffer.length - offset);
+			System.arraycopy(block, 0, aBuffer, offset, length);
+			offset += length;
+		}
+	}
+	
+	private void updateLong(long aValue)
+	{
+		for (int i = 56; i >= 0; i -= 8)
+		{
+			mDigest.update((byte) (aValue >>> i));
+		}
+	}
+}
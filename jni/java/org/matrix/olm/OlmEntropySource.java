@@ -0,0 +1,36 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import javax.annotation.*;
+
+/**
+ * Source of the seed material of the native random pools.<br>
+ * The native layer keeps one pool per thread and only calls {@link #nextBytes(byte[])} when a pool is
+ * seeded or reseeded, so an implementation may be slow but must be thread safe.<br>
+ * See {@link OlmManager#setEntropySource(OlmEntropySource)}.
+ */
+public interface OlmEntropySource
+{
+	/**
+	 * Fill the buffer with random bytes.<br>
+	 * The buffer is wiped by the caller after use.
+	 *
+	 * @param aBuffer the buffer to be filled
+	 */
+	void nextBytes(@Nonnull byte[] aBuffer);
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import java.util.*;
+
+import javax.annotation.*;
+
+/**
+ * Typed failure reasons of the Olm SDK.<br>
+ * The first values match the libolm error codes, the last ones are raised by the SDK itself.
+ * The status variants of the decrypt methods return these values instead of throwing an {@link OlmException}.
+ */
+public enum OlmError
+{
+	/** The operation succeeded. */
+	SUCCESS,
+	/** Not enough entropy was supplied. */
+	NOT_ENOUGH_RANDOM,
+	/** The supplied output buffer is too small. */
+	OUTPUT_BUFFER_TOO_SMALL,
+	/** The message version is unsupported. */
+	BAD_MESSAGE_VERSION,
+	/** The message could not be decoded. */
+	BAD_MESSAGE_FORMAT,
+	/** The message could not be verified. */
+	BAD_MESSAGE_MAC,
+	/** The message references an unknown key id. */
+	BAD_MESSAGE_KEY_ID,
+	/** The input base64 is invalid. */
+	INVALID_BASE64,
+	/** The supplied account key is invalid. */
+	BAD_ACCOUNT_KEY,
+	/** The pickled object is too new. */
+	UNKNOWN_PICKLE_VERSION,
+	/** The pickled object could not be decoded. */
+	CORRUPTED_PICKLE,
+	/** The session key is invalid. */
+	BAD_SESSION_KEY,
+	/** The message references a message index before the first index known to the session. */
+	UNKNOWN_MESSAGE_INDEX,
+	/** The account pickle was written by a version of libolm with a broken key encoding. */
+	BAD_LEGACY_ACCOUNT_PICKLE,
+	/** The signature could not be verified. */
+	BAD_SIGNATURE,
+	/** The supplied input is too small. */
+	INPUT_BUFFER_TOO_SMALL,
+	/** A parameter is invalid (null, out of range ...). */
+	INVALID_ARGUMENT,
+	/** A native allocation failed. */
+	OUT_OF_MEMORY,
+	/** The message references a session which is not known to the caller. */
+	UNKNOWN_SESSION,
+	/** The failure reason is not known. */
+	UNKNOWN;
+	
+	private static final OlmError[] VALUES = values();
+	
+	private static final Map<String, OlmError> BY_NAME = new HashMap<>();
+	
+	static
+	{
+		for (OlmError error : VALUES)
+		{
+			BY_NAME.put(error.name(), error);
+		}
+		// the name used by libolm for INPUT_BUFFER_TOO_SMALL
+		BY_NAME.put("OLM_INPUT_BUFFER_TOO_SMALL", INPUT_BUFFER_TOO_SMALL);
+	}
+	
+	/**
+	 * Map a status code returned by the native layer.
+	 *
+	 * @param aStatus the status code
+	 * @return the matching error, {@link #UNKNOWN} if the code is out of range
+	 */
+	@Nonnull
+	static OlmError fromStatus(int aStatus)
+	{
+		return ((aStatus >= 0) && (aStatus < VALUES.length)) ? VALUES[aStatus] : UNKNOWN;
+	}
+	
+	/**
+	 * Map an error message, as returned by the {@code olm_*_last_error} functions of libolm.
+	 *
+	 * @param aMessage the error message
+	 * @return the matching error, {@link #UNKNOWN} if the message is not a libolm error
+	 */
+	@Nonnull
+	public static OlmError fromMessage(@Nullable String aMessage)
+	{
+		OlmError error = (null == aMessage) ? null : BY_NAME.get(aMessage);
+		return (null == error) ? UNKNOWN : error;
+	}
+}
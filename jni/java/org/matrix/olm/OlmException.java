@@ -81,11 +81,65 @@ public class OlmException extends IOException
 	/** Human readable message description **/
 	private final String mMessage;
 	
+	/** Typed failure reason, parsed from the message **/
+	private final OlmError mError;
+	
+	/**
+	 * Set once the constructor has run: the stack trace is captured explicitly from the constructor,
+	 * see {@link #fillInStackTrace()}.
+	 */
+	private final boolean mConstructed;
+	
+	/**
+	 * Capture the stack trace of the expected crypto failures too, see {@link #isExpectedFailure(int)}.<br>
+	 * Enabled with the system property {@code org.matrix.olm.exceptionStackTraces}.
+	 */
+	private static final boolean FULL_STACK_TRACES = Boolean.getBoolean("org.matrix.olm.exceptionStackTraces");
+	
 	public OlmException(int aExceptionCode, String aExceptionMessage)
 	{
 		super();
 		mCode = aExceptionCode;
 		mMessage = aExceptionMessage;
+		mError = OlmError.fromMessage(aExceptionMessage);
+		mConstructed = true;
+		
+		if (FULL_STACK_TRACES || !isExpectedFailure(aExceptionCode))
+		{
+			super.fillInStackTrace();
+		}
+	}
+	
+	/**
+	 * Tell whether failures with this code are expected with untrusted input (bad MACs, unknown sessions ...).<br>
+	 * Those are raised at the rate of the incoming traffic, so their stack trace is not captured.
+	 *
+	 * @param aExceptionCode the exception code
+	 * @return true if the failure is an expected crypto failure
+	 */
+	public static boolean isExpectedFailure(int aExceptionCode)
+	{
+		switch (aExceptionCode)
+		{
+			case EXCEPTION_CODE_INBOUND_GROUP_SESSION_DECRYPT_SESSION:
+			case EXCEPTION_CODE_SESSION_INIT_INBOUND_SESSION:
+			case EXCEPTION_CODE_SESSION_INIT_INBOUND_SESSION_FROM:
+			case EXCEPTION_CODE_SESSION_DECRYPT_MESSAGE:
+			case EXCEPTION_CODE_UTILITY_VERIFY_SIGNATURE:
+			case EXCEPTION_CODE_PK_DECRYPTION_DECRYPT:
+				return true;
+			default:
+				return false;
+		}
+	}
+	
+	/**
+	 * The stack trace is captured by the constructor only when it is worth it, see {@link #isExpectedFailure(int)}.
+	 */
+	@Override
+	public synchronized Throwable fillInStackTrace()
+	{
+		return mConstructed ? super.fillInStackTrace() : this;
 	}
 	
 	public int getExceptionCode()
@@ -93,6 +147,14 @@ public class OlmException extends IOException
 		return mCode;
 	}
 	
+	/**
+	 * @return the typed failure reason, {@link OlmError#UNKNOWN} if the failure does not come from libolm
+	 */
+	public OlmError getError()
+	{
+		return mError;
+	}
+	
 	@Override
 	public String getMessage()
 	{
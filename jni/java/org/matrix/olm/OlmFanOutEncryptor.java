@@ -0,0 +1,216 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import static java.nio.charset.StandardCharsets.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import javax.annotation.*;
+
+import org.slf4j.*;
+
+/**
+ * Encrypts one payload, typically a room key, for many recipients over their Olm sessions.<br>
+ * The payload is encoded once and the sessions encrypt it in parallel on a {@link ForkJoinPool}. An
+ * {@link OlmSession} is not thread safe: each encryption holds the lock of its session, so a session listed for
+ * several recipients, or used by concurrent fan-outs, encrypts one message at a time. Other code using the same
+ * sessions concurrently must synchronize on them too.
+ */
+public class OlmFanOutEncryptor
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(OlmFanOutEncryptor.class);
+	
+	/**
+	 * Number of sessions below which a task encrypts serially rather than splitting.
+	 */
+	private static final int SPLIT_THRESHOLD = 16;
+	
+	private final ForkJoinPool mPool;
+	
+	private final AtomicLong mFanOuts = new AtomicLong();
+	private final AtomicLong mMessages = new AtomicLong();
+	private final AtomicLong mFailures = new AtomicLong();
+	private final AtomicLong mNanos = new AtomicLong();
+	
+	/**
+	 * Encrypt on the common fork-join pool.
+	 */
+	public OlmFanOutEncryptor()
+	{
+		this(ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * @param aPool the pool running the encryptions
+	 */
+	public OlmFanOutEncryptor(@Nonnull ForkJoinPool aPool)
+	{
+		mPool = aPool;
+	}
+	
+	/**
+	 * Encrypt a payload for every recipient.
+	 *
+	 * @param aPayload  the payload, typically a serialized room key event
+	 * @param aSessions the Olm session of every recipient
+	 * @param <K>       the type of the keys identifying the recipients
+	 * @return the encrypted payload of every recipient, and the failures
+	 */
+	@Nonnull
+	public <K> OlmFanOutResult<K> encrypt(@Nonnull String aPayload, @Nonnull Map<K, OlmSession> aSessions)
+	{
+		return encrypt(aPayload.getBytes(UTF_8), aSessions);
+	}
+	
+	/**
+	 * Encrypt a UTF-8 encoded payload for every recipient.
+	 *
+	 * @param aPayload  the UTF-8 encoded payload, only read
+	 * @param aSessions the Olm session of every recipient
+	 * @param <K>       the type of the keys identifying the recipients
+	 * @return the encrypted payload of every recipient, and the failures
+	 */
+	@Nonnull
+	public <K> OlmFanOutResult<K> encrypt(@Nonnull byte[] aPayload, @Nonnull Map<K, OlmSession> aSessions)
+	{
+		long start = System.nanoTime();
+		int size = aSessions.size();
+		
+		// random access from the tasks, whatever the map implementation
+		List<K> recipients = new ArrayList<>(size);
+		OlmSession[] sessions = new OlmSession[size];
+		for (Map.Entry<K, OlmSession> entry : aSessions.entrySet())
+		{
+			sessions[recipients.size()] = entry.getValue();
+			recipients.add(entry.getKey());
+		}
+		
+		OlmMessage[] messages = new OlmMessage[size];
+		OlmException[] failures = new OlmException[size];
+		FanOutTask task = new FanOutTask(aPayload, sessions, messages, failures, 0, size);
+		
+		if (size <= SPLIT_THRESHOLD)
+		{
+			// nothing to run in parallel
+			task.compute();
+		}
+		else if (ForkJoinTask.getPool() == mPool)
+		{
+			task.invoke();
+		}
+		else
+		{
+			// from a task of another pool, still run on the pool chosen by the caller
+			mPool.invoke(task);
+		}
+		
+		Map<K, OlmMessage> messagesByRecipient = new LinkedHashMap<>(size * 4 / 3 + 1);
+		Map<K, OlmException> failuresByRecipient = new LinkedHashMap<>();
+		for (int i = 0; i < size; i++)
+		{
+			if (null != messages[i])
+			{
+				messagesByRecipient.put(recipients.get(i), messages[i]);
+			}
+			else
+			{
+				failuresByRecipient.put(recipients.get(i), failures[i]);
+			}
+		}
+		
+		long nanos = System.nanoTime() - start;
+		mFanOuts.incrementAndGet();
+		mMessages.addAndGet(messagesByRecipient.size());
+		mFailures.addAndGet(failuresByRecipient.size());
+		mNanos.addAndGet(nanos);
+		
+		return new OlmFanOutResult<>(messagesByRecipient, failuresByRecipient, nanos);
+	}
+	
+	/**
+	 * @return a snapshot of the counters
+	 */
+	@Nonnull
+	public OlmFanOutStats getStats()
+	{
+		return new OlmFanOutStats(mFanOuts.get(), mMessages.get(), mFailures.get(), mNanos.get());
+	}
+	
+	/**
+	 * Encrypts the payload for a range of sessions, splitting it in halves while it is large.<br>
+	 * Each task writes distinct indexes of the outputs; joining the tasks publishes them to the caller.
+	 */
+	private static class FanOutTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 5311469875311177094L;
+		
+		private final byte[] mPayload;
+		private final OlmSession[] mSessions;
+		private final OlmMessage[] mMessages;
+		private final OlmException[] mFailures;
+		private final int mFrom;
+		private final int mTo;
+		
+		FanOutTask(byte[] aPayload, OlmSession[] aSessions, OlmMessage[] aMessages, OlmException[] aFailures, int aFrom, int aTo)
+		{
+			mPayload = aPayload;
+			mSessions = aSessions;
+			mMessages = aMessages;
+			mFailures = aFailures;
+			mFrom = aFrom;
+			mTo = aTo;
+		}
+		
+		@Override
+		protected void compute()
+		{
+			if (mTo - mFrom > SPLIT_THRESHOLD)
+			{
+				int middle = (mFrom + mTo) >>> 1;
+				invokeAll(new FanOutTask(mPayload, mSessions, mMessages, mFailures, mFrom, middle),
+						new FanOutTask(mPayload, mSessions, mMessages, mFailures, middle, mTo));
+				return;
+			}
+			
+			for (int i = mFrom; i < mTo; i++)
+			{
+				OlmSession session = mSessions[i];
+				try
+				{
+					if (null == session)
+					{
+						throw new OlmException(OlmException.EXCEPTION_CODE_SESSION_ENCRYPT_MESSAGE, "no session");
+					}
+					
+					synchronized (session)
+					{
+						mMessages[i] = session.encryptMessage(mPayload);
+					}
+				}
+				catch (OlmException e)
+				{
+					// only this recipient fails
+					LOGGER.error("## encrypt(): failed {}", e.getMessage());
+					mFailures[i] = e;
+				}
+			}
+		}
+	}
+}
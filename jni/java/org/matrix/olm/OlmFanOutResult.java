@@ -0,0 +1,68 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import java.util.*;
+
+import javax.annotation.*;
+
+/**
+ * Outcome of a fan-out, see {@link OlmFanOutEncryptor#encrypt(String, Map)}.<br>
+ * A session which fails to encrypt the payload does not abort the fan-out: its failure is returned instead of a
+ * message.
+ *
+ * @param <K> the type of the keys identifying the recipients, typically devices
+ */
+public class OlmFanOutResult<K>
+{
+	private final Map<K, OlmMessage> mMessages;
+	private final Map<K, OlmException> mFailures;
+	private final long mNanos;
+	
+	OlmFanOutResult(@Nonnull Map<K, OlmMessage> aMessages, @Nonnull Map<K, OlmException> aFailures, long aNanos)
+	{
+		mMessages = Collections.unmodifiableMap(aMessages);
+		mFailures = Collections.unmodifiableMap(aFailures);
+		mNanos = aNanos;
+	}
+	
+	/**
+	 * @return the encrypted payload of every recipient whose session succeeded, in the order of the recipients
+	 */
+	@Nonnull
+	public Map<K, OlmMessage> getMessages()
+	{
+		return mMessages;
+	}
+	
+	/**
+	 * @return the failure of every recipient whose session failed
+	 */
+	@Nonnull
+	public Map<K, OlmException> getFailures()
+	{
+		return mFailures;
+	}
+	
+	/**
+	 * @return wall clock time of the fan-out, in nanoseconds
+	 */
+	public long getNanos()
+	{
+		return mNanos;
+	}
+}
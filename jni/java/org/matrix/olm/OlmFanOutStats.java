@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+/**
+ * Counters of an {@link OlmFanOutEncryptor}.
+ */
+public class OlmFanOutStats
+{
+	private final long mFanOuts;
+	private final long mMessages;
+	private final long mFailures;
+	private final long mNanos;
+	
+	OlmFanOutStats(long aFanOuts, long aMessages, long aFailures, long aNanos)
+	{
+		mFanOuts = aFanOuts;
+		mMessages = aMessages;
+		mFailures = aFailures;
+		mNanos = aNanos;
+	}
+	
+	/**
+	 * @return number of payloads fanned out
+	 */
+	public long getFanOuts()
+	{
+		return mFanOuts;
+	}
+	
+	/**
+	 * @return number of messages encrypted
+	 */
+	public long getMessages()
+	{
+		return mMessages;
+	}
+	
+	/**
+	 * @return number of sessions which failed to encrypt a payload
+	 */
+	public long getFailures()
+	{
+		return mFailures;
+	}
+	
+	/**
+	 * @return total wall clock time of the fan-outs, in nanoseconds
+	 */
+	public long getNanos()
+	{
+		return mNanos;
+	}
+	
+	/**
+	 * @return mean wall clock time of a fan-out, in nanoseconds
+	 */
+	public long getMeanFanOutNanos()
+	{
+		return (0 == mFanOuts) ? 0 : mNanos / mFanOuts;
+	}
+	
+	/**
+	 * @return number of messages encrypted per second of fan-out, 0 if there was no fan-out
+	 */
+	public double getMessagesPerSecond()
+	{
+		return (0 == mNanos) ? 0 : mMessages * 1e9 / mNanos;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "{fanOuts=" + mFanOuts + ", messages=" + mMessages + ", failures=" + mFailures
+				+ ", meanFanOutNanos=" + getMeanFanOutNanos() + ", messagesPerSecond=" + getMessagesPerSecond() + "}";
+	}
+}
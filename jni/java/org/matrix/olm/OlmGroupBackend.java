@@ -0,0 +1,100 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import java.nio.*;
+
+/**
+ * Alternative binding of the megolm hot paths to libolm.<br>
+ * The sessions are still created, pickled and released through JNI: a backend only works on the native session
+ * instances, so the two bindings can be mixed freely. All the methods report failures of the operation as the
+ * ordinal of an {@link OlmError} instead of throwing; a failure of the backend itself, e.g. a linkage error, is
+ * thrown as an unchecked exception or error.
+ * See {@link OlmBackends#GROUP}.
+ */
+interface OlmGroupBackend
+{
+	/**
+	 * @return the name of the backend, for logging
+	 */
+	String name();
+	
+	/**
+	 * Decrypt a slice of an array into another array. The encrypted message is left untouched.
+	 *
+	 * @param aSessionId       native inbound group session instance identifier
+	 * @param aEncryptedMsg    the encrypted message
+	 * @param aOffset          offset of the message in aEncryptedMsg
+	 * @param aLength          length of the message
+	 * @param aDecryptedMsg    array receiving the decrypted message
+	 * @param aDecryptedOffset offset of the output in aDecryptedMsg
+	 * @param aResult          on success, receives the decrypted length and the message index
+	 * @return the ordinal of the {@link OlmError}
+	 */
+	int decrypt(long aSessionId, byte[] aEncryptedMsg, int aOffset, int aLength, byte[] aDecryptedMsg, int aDecryptedOffset, long[] aResult);
+	
+	/**
+	 * Decrypt the remaining bytes of a direct buffer into another direct buffer, decoding the encrypted message in place.
+	 * The buffer positions are not modified.
+	 *
+	 * @param aSessionId    native inbound group session instance identifier
+	 * @param aEncryptedMsg direct buffer holding the encrypted message
+	 * @param aDecryptedMsg direct buffer receiving the decrypted message
+	 * @param aResult       on success, receives the decrypted length and the message index
+	 * @return the ordinal of the {@link OlmError}
+	 */
+	int decrypt(long aSessionId, ByteBuffer aEncryptedMsg, ByteBuffer aDecryptedMsg, long[] aResult);
+	
+	/**
+	 * Encrypt a slice of an array into another array.
+	 *
+	 * @param aSessionId       native outbound group session instance identifier
+	 * @param aClearMsg        the message to be encrypted
+	 * @param aOffset          offset of the message in aClearMsg
+	 * @param aLength          length of the message
+	 * @param aEncryptedMsg    array receiving the encrypted message, see {@link #encryptedMessageLength(long, int)}
+	 * @param aEncryptedOffset offset of the output in aEncryptedMsg
+	 * @param aResult          on success, receives the encrypted length
+	 * @return the ordinal of the {@link OlmError}
+	 */
+	int encrypt(long aSessionId, byte[] aClearMsg, int aOffset, int aLength, byte[] aEncryptedMsg, int aEncryptedOffset, long[] aResult);
+	
+	/**
+	 * Encrypt the remaining bytes of a direct buffer into another direct buffer.
+	 * The buffer positions are not modified.
+	 *
+	 * @param aSessionId    native outbound group session instance identifier
+	 * @param aClearMsg     direct buffer holding the message to be encrypted
+	 * @param aEncryptedMsg direct buffer receiving the encrypted message
+	 * @param aResult       on success, receives the encrypted length
+	 * @return the ordinal of the {@link OlmError}
+	 */
+	int encrypt(long aSessionId, ByteBuffer aClearMsg, ByteBuffer aEncryptedMsg, long[] aResult);
+	
+	/**
+	 * @param aSessionId      native outbound group session instance identifier
+	 * @param aClearMsgLength length of the message to be encrypted
+	 * @return the length of the encrypted message
+	 */
+	int encryptedMessageLength(long aSessionId, int aClearMsgLength);
+	
+	/**
+	 * @param aSessionId native outbound group session instance identifier
+	 * @return the index of the next message
+	 */
+	int messageIndex(long aSessionId);
+}
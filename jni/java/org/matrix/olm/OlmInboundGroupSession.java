@@ -20,6 +20,9 @@ import static java.nio.charset.StandardCharsets.*;
 import static org.matrix.olm.OlmException.*;
 
 import java.io.*;
+import java.lang.ref.*;
+import java.nio.*;
+import java.util.*;
 import javax.annotation.*;
 
 import org.slf4j.*;
@@ -42,32 +45,67 @@ public class OlmInboundGroupSession extends CommonSerializeUtils implements Seri
 	private transient long mNativeId;
 	
 	/**
-	 * Result in {@link #decryptMessage(String)}
+	 * Registration of {@link #mNativeId} with the cleaner.
 	 */
-	public static class DecryptMessageResult
+	private transient OlmNativeTracker.Handle mNativeHandle;
+	
+	/**
+	 * Ratchet checkpoints, null unless enabled.
+	 */
+	@Nullable
+	private transient OlmRatchetCheckpoints mCheckpoints;
+	
+	/**
+	 * Session identifier, cached on the first call of {@link #sessionIdentifier()}.
+	 */
+	@Nullable
+	private transient volatile String mSessionIdentifier;
+	
+	/**
+	 * First known index, cached on the first call of {@link #getFirstKnownIndex()}; {@link #UNKNOWN_INDEX} until then.
+	 */
+	private transient volatile long mFirstKnownIndex;
+	
+	/**
+	 * True once the session is known to be verified. A session never goes back to unverified, so only a true value
+	 * is cached.
+	 */
+	private transient volatile boolean mVerified;
+	
+	/**
+	 * Value of {@link #mFirstKnownIndex} when it was not retrieved yet.
+	 */
+	private static final long UNKNOWN_INDEX = -1;
+	
+	/**
+	 * Result in {@link #decryptMessage(String)}.<br>
+	 * The decrypted message is kept as bytes and only decoded by {@link #getDecryptedMessage()}.
+	 */
+	public static class DecryptMessageResult extends OlmPlaintext
 	{
-		/** decrypt message **/
-		@Nonnull
-		private final String mDecryptedMessage;
-		
 		/** decrypt index **/
 		private final long mIndex;
 		
 		public DecryptMessageResult(@Nonnull byte[] decryptedMessage, long index)
 		{
-			this(new String(decryptedMessage, UTF_8), index);
+			super(decryptedMessage);
+			mIndex = index;
 		}
 		
 		public DecryptMessageResult(@Nonnull String decryptedMessage, long index)
 		{
-			mDecryptedMessage = decryptedMessage;
+			super(decryptedMessage);
 			mIndex = index;
 		}
 		
+		/**
+		 * @return the decrypted message, decoded on the first call
+		 * @throws IllegalStateException if the result was wiped
+		 */
 		@Nonnull
 		public String getDecryptedMessage()
 		{
-			return mDecryptedMessage;
+			return getString();
 		}
 		
 		public long getIndex()
@@ -112,6 +150,8 @@ public class OlmInboundGroupSession extends CommonSerializeUtils implements Seri
 			try
 			{
 				mNativeId = createNewSessionJni(aSessionKey.getBytes(UTF_8), isImported);
+				mNativeHandle = OlmNativeTracker.track(this, mNativeId, OlmInboundGroupSession::releaseSessionJni);
+				clearMetadata();
 			}
 			catch (Exception e)
 			{
@@ -129,7 +169,7 @@ public class OlmInboundGroupSession extends CommonSerializeUtils implements Seri
 	 * @param isImported        true when the session key has been retrieved from a backup
 	 * @return the initialized OlmInboundGroupSession* instance or throw an exception it fails.
 	 **/
-	private native long createNewSessionJni(byte[] aSessionKeyBuffer, boolean isImported);
+	private static native long createNewSessionJni(byte[] aSessionKeyBuffer, boolean isImported);
 	
 	/**
 	 * Create an OlmInboundGroupSession from its exported session data.
@@ -146,15 +186,32 @@ public class OlmInboundGroupSession extends CommonSerializeUtils implements Seri
 	
 	/**
 	 * Release native session and invalid its JAVA reference counter part.<br>
-	 * Public API for {@link #releaseSessionJni()}.
+	 * Public API for {@link #releaseSessionJni(long)}.
 	 */
 	public void releaseSession()
 	{
+		if (null != mCheckpoints)
+		{
+			mCheckpoints.release();
+			mCheckpoints = null;
+		}
 		if (0 != mNativeId)
 		{
-			releaseSessionJni();
+			mNativeHandle.release();
 		}
 		mNativeId = 0;
+		mNativeHandle = null;
+		clearMetadata();
+	}
+	
+	/**
+	 * Forget the cached metadata, which belongs to the native instance.
+	 */
+	private void clearMetadata()
+	{
+		mSessionIdentifier = null;
+		mFirstKnownIndex = UNKNOWN_INDEX;
+		mVerified = false;
 	}
 	
 	/**
@@ -162,8 +219,9 @@ public class OlmInboundGroupSession extends CommonSerializeUtils implements Seri
 	 * This method must ALWAYS be called when this JAVA instance
 	 * is destroyed (ie. garbage collected) to prevent memory leak in native side.
 	 * See {@link #createNewSessionJni(byte[], boolean)}.
+	 * @param aNativeId native session instance identifier
 	 */
-	private native void releaseSessionJni();
+	private static native void releaseSessionJni(long aNativeId);
 	
 	/**
 	 * Return true the object resources have been released.<br>
@@ -176,7 +234,8 @@ public class OlmInboundGroupSession extends CommonSerializeUtils implements Seri
 	}
 	
 	/**
-	 * Retrieve the base64-encoded identifier for this inbound group session.
+	 * Retrieve the base64-encoded identifier for this inbound group session.<br>
+	 * The identifier never changes, so it is only retrieved from the native session once.
 	 *
 	 * @return the session ID
 	 * @throws OlmException the failure reason
@@ -185,27 +244,41 @@ public class OlmInboundGroupSession extends CommonSerializeUtils implements Seri
 	public String sessionIdentifier()
 			throws OlmException
 	{
+		String identifier = mSessionIdentifier;
+		if (null != identifier)
+		{
+			return identifier;
+		}
+		
 		try
 		{
-			return new String(sessionIdentifierJni(), UTF_8);
+			identifier = new String(sessionIdentifierJni(mNativeId), UTF_8);
+			mSessionIdentifier = identifier;
+			return identifier;
 		}
 		catch (Exception e)
 		{
 			LOGGER.error("## sessionIdentifier() failed " + e.getMessage());
 			throw new OlmException(EXCEPTION_CODE_INBOUND_GROUP_SESSION_IDENTIFIER, e.getMessage());
 		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
 	}
 	
 	/**
 	 * Get a base64-encoded identifier for this inbound group session.
 	 * An exception is thrown if the operation fails.
 	 *
+	 * @param aNativeId native session instance identifier
 	 * @return the base64-encoded identifier
 	 */
-	private native byte[] sessionIdentifierJni();
+	private static native byte[] sessionIdentifierJni(long aNativeId);
 	
 	/**
-	 * Provides the first known index.
+	 * Provides the first known index.<br>
+	 * The index is fixed when the native session is created or deserialized, so it is only retrieved once.
 	 *
 	 * @return the first known index.
 	 * @throws OlmException the failure reason
@@ -213,17 +286,26 @@ public class OlmInboundGroupSession extends CommonSerializeUtils implements Seri
 	public long getFirstKnownIndex()
 			throws OlmException
 	{
-		long index = 0;
+		long index = mFirstKnownIndex;
+		if (UNKNOWN_INDEX != index)
+		{
+			return index;
+		}
 		
 		try
 		{
-			index = firstKnownIndexJni();
+			index = firstKnownIndexJni(mNativeId);
+			mFirstKnownIndex = index;
 		}
 		catch (Exception e)
 		{
 			LOGGER.error("## getFirstKnownIndex() failed " + e.getMessage());
 			throw new OlmException(EXCEPTION_CODE_INBOUND_GROUP_SESSION_FIRST_KNOWN_INDEX, e.getMessage());
 		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
 		
 		return index;
 	}
@@ -232,12 +314,18 @@ public class OlmInboundGroupSession extends CommonSerializeUtils implements Seri
 	 * Provides the first known index.
 	 * An exception is thrown if the operation fails.
 	 *
+	 * @param aNativeId native session instance identifier
 	 * @return the first known index.
 	 */
-	private native long firstKnownIndexJni();
+	private static native long firstKnownIndexJni(long aNativeId);
 	
 	/**
-	 * Tells if the session is verified.
+	 * Tells if the session is verified.<br>
+	 * An imported session becomes verified once a message was decrypted at its first known index; from then on
+	 * the answer is cached.<br>
+	 * When that message was decrypted through a ratchet checkpoint, see {@link #enableRatchetCheckpoints(int, long)},
+	 * only this object knows the session is verified: the flag is not serialized, and a session restored from a
+	 * pickle is unverified again until it decrypts a message at its first known index.
 	 *
 	 * @return true if the session is verified
 	 * @throws OlmException the failure reason
@@ -245,27 +333,46 @@ public class OlmInboundGroupSession extends CommonSerializeUtils implements Seri
 	public boolean isVerified()
 			throws OlmException
 	{
-		boolean isVerified;
+		boolean isVerified = mVerified;
+		if (isVerified)
+		{
+			return true;
+		}
 		
 		try
 		{
-			isVerified = isVerifiedJni();
+			isVerified = isVerifiedJni(mNativeId);
+			mVerified = isVerified;
 		}
 		catch (Exception e)
 		{
 			LOGGER.error("## isVerified() failed " + e.getMessage());
 			throw new OlmException(EXCEPTION_CODE_INBOUND_GROUP_SESSION_IS_VERIFIED, e.getMessage());
 		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
 		
 		return isVerified;
 	}
 	
+	/**
+	 * Mark the session as verified on the java side, when it is restored from a pickle taken from a session
+	 * known to be verified, see {@link OlmInboundGroupSessionStore}.
+	 */
+	void markVerified()
+	{
+		mVerified = true;
+	}
+	
 	/**
 	 * Tells if the session is verified.
 	 *
+	 * @param aNativeId native session instance identifier
 	 * @return true if the session is verified
 	 */
-	private native boolean isVerifiedJni();
+	private static native boolean isVerifiedJni(long aNativeId);
 	
 	/**
 	 * Export the session from a message index as String.
@@ -282,7 +389,7 @@ public class OlmInboundGroupSession extends CommonSerializeUtils implements Seri
 		
 		try
 		{
-			bytesBuffer = exportJni(messageIndex);
+			bytesBuffer = exportJni(mNativeId, messageIndex);
 			if (bytesBuffer == null)
 				throw new Exception("exportJni()=null");
 		}
@@ -291,6 +398,10 @@ public class OlmInboundGroupSession extends CommonSerializeUtils implements Seri
 			LOGGER.error("## export() failed " + e.getMessage());
 			throw new OlmException(EXCEPTION_CODE_INBOUND_GROUP_SESSION_EXPORT, e.getMessage());
 		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
 		
 		return new String(bytesBuffer, UTF_8);
 	}
@@ -299,10 +410,95 @@ public class OlmInboundGroupSession extends CommonSerializeUtils implements Seri
 	 * Exports the session as byte array from a message index
 	 * An exception is thrown if the operation fails.
 	 *
+	 * @param aNativeId native session instance identifier
 	 * @param messageIndex key used to encrypt the serialized session data
 	 * @return the session saved as bytes array
 	 */
-	private native byte[] exportJni(long messageIndex);
+	private static native byte[] exportJni(long aNativeId, long messageIndex);
+	
+	/**
+	 * Keep intermediate ratchet states of the session, so that decrypting old messages in random order (scrollback,
+	 * search) does not advance the ratchet from the first known index every time.<br>
+	 * A checkpoint is taken every 2^aIntervalBits message indexes, when a message of that interval is first
+	 * decrypted. Once the memory budget is reached, the least recently used checkpoint is wiped and released.
+	 * The checkpoints apply to the single message decrypt methods, not to the batch ones. They are not
+	 * serialized. Enabling again replaces the existing checkpoints.<br>
+	 * A session verified by a decryption through a checkpoint is verified on the java side only, see
+	 * {@link #isVerified()}: the flag does not survive pickling.
+	 *
+	 * @param aIntervalBits log2 of the interval between two checkpoints, between 1 and 31
+	 * @param aMemoryBudget native memory the checkpoints may use, at least one checkpoint is kept
+	 * @throws OlmException the failure reason
+	 */
+	public void enableRatchetCheckpoints(int aIntervalBits, long aMemoryBudget)
+			throws OlmException
+	{
+		if ((aIntervalBits < 1) || (aIntervalBits > 31))
+		{
+			LOGGER.error("## enableRatchetCheckpoints(): invalid interval {}", aIntervalBits);
+			throw new OlmException(EXCEPTION_CODE_INBOUND_GROUP_SESSION_DECRYPT_SESSION, "invalid checkpoint interval");
+		}
+		
+		long checkpointSize = OlmManager.getSlabStatsJni(OlmSlabStats.SlabType.INBOUND_GROUP_SESSION.ordinal())[0];
+		int maxCheckpoints = (int) Math.max(1, Math.min(Integer.MAX_VALUE, aMemoryBudget / Math.max(1, checkpointSize)));
+		long firstKnownIndex = getFirstKnownIndex();
+		
+		disableRatchetCheckpoints();
+		mCheckpoints = new OlmRatchetCheckpoints(aIntervalBits, maxCheckpoints, checkpointSize, firstKnownIndex,
+				OlmInboundGroupSession::createCheckpointJni, OlmInboundGroupSession::releaseSessionJni);
+	}
+	
+	/**
+	 * Wipe and release the ratchet checkpoints, see {@link #enableRatchetCheckpoints(int, long)}.
+	 */
+	public void disableRatchetCheckpoints()
+	{
+		if (null != mCheckpoints)
+		{
+			mCheckpoints.release();
+			mCheckpoints = null;
+		}
+	}
+	
+	/**
+	 * @return the counters of the ratchet checkpoints, null if they are not enabled
+	 */
+	@Nullable
+	public OlmRatchetCheckpointStats getRatchetCheckpointStats()
+	{
+		return (null == mCheckpoints) ? null : mCheckpoints.getStats();
+	}
+	
+	/**
+	 * Select the native session to decrypt a message with: the closest ratchet checkpoint if enabled.
+	 */
+	private long selectRatchet(@Nonnull byte[] aEncryptedMsg, int aOffset, int aLength)
+	{
+		return ((null == mCheckpoints) || (0 == mNativeId)) ? mNativeId : mCheckpoints.select(mNativeId, aEncryptedMsg, aOffset, aLength);
+	}
+	
+	/**
+	 * Record a successful decryption with a native session returned by {@link #selectRatchet(byte[], int, int)}.
+	 * libolm marks the session it decrypted with as verified: through a checkpoint, that is the checkpoint
+	 * and not the main session, so the flag is kept on the java side. It is not part of the pickle.
+	 */
+	private void onDecrypted(long aNativeId)
+	{
+		if (aNativeId != mNativeId)
+		{
+			mVerified = true;
+		}
+	}
+	
+	/**
+	 * Create a native session whose initial ratchet is the ratchet of this session at a message index.
+	 * An exception is thrown if the operation fails.
+	 *
+	 * @param aNativeId     native session instance identifier
+	 * @param aMessageIndex index of the checkpoint
+	 * @return the checkpoint native session, to be released with {@link #releaseSessionJni(long)}
+	 */
+	private static native long createCheckpointJni(long aNativeId, long aMessageIndex);
 	
 	/**
 	 * Decrypt the message passed in parameter.<br>
@@ -315,18 +511,41 @@ public class OlmInboundGroupSession extends CommonSerializeUtils implements Seri
 	@Nullable
 	public DecryptMessageResult decryptMessage(@Nonnull String aEncryptedMsg)
 			throws OlmException
+	{
+		byte[] encryptedMsg = aEncryptedMsg.getBytes(UTF_8);
+		return decryptMessage(encryptedMsg, 0, encryptedMsg.length);
+	}
+	
+	/**
+	 * Decrypt the UTF-8 encoded message held in a slice of a byte array.
+	 *
+	 * @param aEncryptedMsg the array holding the message to be decrypted
+	 * @param aOffset       offset of the message in the array
+	 * @param aLength       length of the message
+	 * @return the decrypted message information
+	 * @throws OlmException the failure reason
+	 */
+	@Nullable
+	public DecryptMessageResult decryptMessage(@Nonnull byte[] aEncryptedMsg, int aOffset, int aLength)
+			throws OlmException
 	{
 		DecryptMessageResult decryptMessageResult;
 		
 		try
 		{
-			decryptMessageResult = decryptMessageJni(aEncryptedMsg.getBytes(UTF_8));
+			long nativeId = selectRatchet(aEncryptedMsg, aOffset, aLength);
+			decryptMessageResult = decryptMessageJni(nativeId, aEncryptedMsg, aOffset, aLength);
+			onDecrypted(nativeId);
 		}
 		catch (Exception e)
 		{
-			LOGGER.error("## decryptMessage() failed " + e.getMessage());
+			LOGGER.error("## decryptMessage() failed {}", e.getMessage());
 			throw new OlmException(EXCEPTION_CODE_INBOUND_GROUP_SESSION_DECRYPT_SESSION, e.getMessage());
 		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
 		
 		return decryptMessageResult;
 	}
@@ -335,15 +554,527 @@ public class OlmInboundGroupSession extends CommonSerializeUtils implements Seri
 	 * Decrypt a message.
 	 * An exception is thrown if the operation fails.
 	 *
+	 * @param aNativeId native session instance identifier
 	 * @param aEncryptedMsg         the encrypted message
+	 * @param aOffset offset of the message in aEncryptedMsg
+	 * @param aLength length of the message
 	 * @return the decrypted message
 	 */
-	private native DecryptMessageResult decryptMessageJni(byte[] aEncryptedMsg);
+	private static native DecryptMessageResult decryptMessageJni(long aNativeId, byte[] aEncryptedMsg, int aOffset, int aLength);
+	
+	/**
+	 * Decrypt a message in the binary form returned by {@link OlmOutboundGroupSession#encryptMessageBinary(byte[], int, int)},
+	 * that is the raw megolm message without its base64 encoding.<br>
+	 * The ratchet checkpoints are not used for binary messages.
+	 *
+	 * @param aEncryptedMsg the array holding the binary message to be decrypted
+	 * @param aOffset       offset of the message in the array
+	 * @param aLength       length of the message
+	 * @return the decrypted message information
+	 * @throws OlmException the failure reason
+	 */
+	@Nonnull
+	public DecryptMessageResult decryptMessageBinary(@Nonnull byte[] aEncryptedMsg, int aOffset, int aLength)
+			throws OlmException
+	{
+		try
+		{
+			return decryptMessageBinaryJni(mNativeId, aEncryptedMsg, aOffset, aLength);
+		}
+		catch (Exception e)
+		{
+			LOGGER.error("## decryptMessageBinary() failed {}", e.getMessage());
+			throw new OlmException(EXCEPTION_CODE_INBOUND_GROUP_SESSION_DECRYPT_SESSION, e.getMessage());
+		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
+	}
+	
+	/**
+	 * Decrypt a binary message.
+	 * An exception is thrown if the operation fails.
+	 *
+	 * @param aNativeId native session instance identifier
+	 * @param aEncryptedMsg the binary encrypted message
+	 * @param aOffset offset of the message in aEncryptedMsg
+	 * @param aLength length of the message
+	 * @return the decrypted message
+	 */
+	private static native DecryptMessageResult decryptMessageBinaryJni(long aNativeId, byte[] aEncryptedMsg, int aOffset, int aLength);
+	
+	/**
+	 * Decrypt the UTF-8 encoded message held in a slice of a byte array, writing the decrypted message into a
+	 * caller provided array. No intermediate java array is allocated.
+	 *
+	 * @param aEncryptedMsg    the array holding the message to be decrypted
+	 * @param aOffset          offset of the message in the array
+	 * @param aLength          length of the message
+	 * @param aDecryptedMsg    array receiving the decrypted message
+	 * @param aDecryptedOffset offset of the output in the array
+	 * @param aMessageIndex    if not null, receives the message index in its first element
+	 * @return the length of the decrypted message
+	 * @throws OlmException the failure reason, also thrown if the output array is too small
+	 */
+	public int decryptMessage(@Nonnull byte[] aEncryptedMsg, int aOffset, int aLength,
+	                          @Nonnull byte[] aDecryptedMsg, int aDecryptedOffset, @Nullable long[] aMessageIndex)
+			throws OlmException
+	{
+		OlmGroupBackend backend = OlmBackends.GROUP;
+		
+		try
+		{
+			long nativeId = selectRatchet(aEncryptedMsg, aOffset, aLength);
+			
+			if (null != backend)
+			{
+				long[] result = new long[2];
+				OlmError error = OlmError.fromStatus(backend.decrypt(nativeId, aEncryptedMsg, aOffset, aLength, aDecryptedMsg, aDecryptedOffset, result));
+				
+				if (OlmError.SUCCESS != error)
+				{
+					throw new Exception(error.name());
+				}
+				if ((null != aMessageIndex) && (aMessageIndex.length > 0))
+				{
+					aMessageIndex[0] = result[1];
+				}
+				onDecrypted(nativeId);
+				return (int) result[0];
+			}
+			
+			int length = decryptMessageIntoJni(nativeId, aEncryptedMsg, aOffset, aLength, aDecryptedMsg, aDecryptedOffset, aMessageIndex);
+			onDecrypted(nativeId);
+			return length;
+		}
+		catch (Exception e)
+		{
+			LOGGER.error("## decryptMessage() failed {}", e.getMessage());
+			throw new OlmException(EXCEPTION_CODE_INBOUND_GROUP_SESSION_DECRYPT_SESSION, e.getMessage());
+		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
+	}
+	
+	/**
+	 * Decrypt a message into a caller provided array.
+	 * An exception is thrown if the operation fails.
+	 *
+	 * @param aNativeId        native session instance identifier
+	 * @param aEncryptedMsg    the encrypted message
+	 * @param aOffset          offset of the message in aEncryptedMsg
+	 * @param aLength          length of the message
+	 * @param aDecryptedMsg    array receiving the decrypted message
+	 * @param aDecryptedOffset offset of the output in aDecryptedMsg
+	 * @param aMessageIndex    if not null, receives the message index in its first element
+	 * @return the length of the decrypted message
+	 */
+	private static native int decryptMessageIntoJni(long aNativeId, byte[] aEncryptedMsg, int aOffset, int aLength,
+	                                                byte[] aDecryptedMsg, int aDecryptedOffset, long[] aMessageIndex);
+	
+	/**
+	 * Status variant of {@link #decryptMessage(byte[], int, int, byte[], int, long[])}: failures are returned as an
+	 * {@link OlmError} instead of being thrown, so that rejecting a message allocates nothing.
+	 *
+	 * @param aEncryptedMsg    the array holding the message to be decrypted
+	 * @param aOffset          offset of the message in the array
+	 * @param aLength          length of the message
+	 * @param aDecryptedMsg    array receiving the decrypted message
+	 * @param aDecryptedOffset offset of the output in the array
+	 * @param aResult          receives the outcome, the decrypted length and the message index
+	 * @return the outcome, {@link OlmError#SUCCESS} if the message was decrypted
+	 */
+	@Nonnull
+	public OlmError tryDecryptMessage(@Nonnull byte[] aEncryptedMsg, int aOffset, int aLength,
+	                                  @Nonnull byte[] aDecryptedMsg, int aDecryptedOffset, @Nonnull OlmDecryptionResult aResult)
+	{
+		OlmGroupBackend backend = OlmBackends.GROUP;
+		
+		try
+		{
+			long nativeId = selectRatchet(aEncryptedMsg, aOffset, aLength);
+			
+			OlmError error;
+			
+			if (null != backend)
+			{
+				error = aResult.setStatus(backend.decrypt(nativeId, aEncryptedMsg, aOffset, aLength, aDecryptedMsg, aDecryptedOffset, aResult.mNativeResult));
+			}
+			else
+			{
+				error = aResult.setStatus(decryptMessageStatusJni(nativeId, aEncryptedMsg, aOffset, aLength, aDecryptedMsg, aDecryptedOffset, aResult.mNativeResult));
+			}
+			
+			if (OlmError.SUCCESS == error)
+			{
+				onDecrypted(nativeId);
+			}
+			return error;
+		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
+	}
+	
+	/**
+	 * Decrypt a message into a caller provided array, returning the outcome as a status code.
+	 * No exception is thrown.
+	 *
+	 * @param aNativeId        native session instance identifier
+	 * @param aEncryptedMsg    the encrypted message
+	 * @param aOffset          offset of the message in aEncryptedMsg
+	 * @param aLength          length of the message
+	 * @param aDecryptedMsg    array receiving the decrypted message
+	 * @param aDecryptedOffset offset of the output in aDecryptedMsg
+	 * @param aResult          on success, receives the decrypted length and the message index
+	 * @return the ordinal of the {@link OlmError}
+	 */
+	private static native int decryptMessageStatusJni(long aNativeId, byte[] aEncryptedMsg, int aOffset, int aLength,
+	                                                  byte[] aDecryptedMsg, int aDecryptedOffset, long[] aResult);
+	
+	/**
+	 * Decrypt a message from a direct buffer into another direct buffer, without any copy through the java heap.<br>
+	 * The encrypted message is read between the position and the limit of {@code aEncryptedMsg}, the decrypted
+	 * message is written at the position of {@code aDecryptedMsg}. On success the position of {@code aEncryptedMsg}
+	 * is moved to its limit and the position of {@code aDecryptedMsg} is advanced by the length of the decrypted message.<br>
+	 * Warning: the encrypted message is decoded in place, so the content of {@code aEncryptedMsg} between its
+	 * position and limit is destroyed, even if the decryption fails.
+	 *
+	 * @param aEncryptedMsg direct buffer holding the UTF-8 encoded message to be decrypted
+	 * @param aDecryptedMsg direct buffer receiving the decrypted message
+	 * @return the message index
+	 * @throws OlmException the failure reason, also thrown if a buffer is not direct or is read-only
+	 */
+	public long decryptMessage(@Nonnull ByteBuffer aEncryptedMsg, @Nonnull ByteBuffer aDecryptedMsg)
+			throws OlmException
+	{
+		if (!aEncryptedMsg.isDirect() || !aDecryptedMsg.isDirect() || aEncryptedMsg.isReadOnly() || aDecryptedMsg.isReadOnly())
+		{
+			LOGGER.error("## decryptMessage(): writable direct buffers are required");
+			throw new OlmException(EXCEPTION_CODE_INBOUND_GROUP_SESSION_DECRYPT_SESSION, "writable direct buffers are required");
+		}
+		
+		OlmGroupBackend backend = OlmBackends.GROUP;
+		long result;
+		
+		try
+		{
+			long nativeId = (null == mCheckpoints) ? mNativeId : mCheckpoints.select(mNativeId, aEncryptedMsg);
+			
+			if (null != backend)
+			{
+				long[] backendResult = new long[2];
+				OlmError error = OlmError.fromStatus(backend.decrypt(nativeId, aEncryptedMsg, aDecryptedMsg, backendResult));
+				
+				if (OlmError.SUCCESS != error)
+				{
+					throw new Exception(error.name());
+				}
+				result = (backendResult[1] << 32) | backendResult[0];
+			}
+			else
+			{
+				result = decryptMessageBufferJni(nativeId,
+						aEncryptedMsg, aEncryptedMsg.position(), aEncryptedMsg.remaining(),
+						aDecryptedMsg, aDecryptedMsg.position(), aDecryptedMsg.remaining());
+			}
+			onDecrypted(nativeId);
+		}
+		catch (Exception e)
+		{
+			LOGGER.error("## decryptMessage() failed {}", e.getMessage());
+			throw new OlmException(EXCEPTION_CODE_INBOUND_GROUP_SESSION_DECRYPT_SESSION, e.getMessage());
+		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
+		
+		aEncryptedMsg.position(aEncryptedMsg.limit());
+		aDecryptedMsg.position(aDecryptedMsg.position() + (int) result);
+		return result >>> 32;
+	}
+	
+	/**
+	 * Decrypt a message held in a direct buffer into another direct buffer.
+	 * An exception is thrown if the operation fails.
+	 *
+	 * @param aNativeId        native session instance identifier
+	 * @param aEncryptedMsg    direct buffer holding the encrypted message
+	 * @param aEncryptedOffset offset of the message in aEncryptedMsg
+	 * @param aEncryptedLength length of the message
+	 * @param aDecryptedMsg    direct buffer receiving the decrypted message
+	 * @param aDecryptedOffset offset of the output in aDecryptedMsg
+	 * @param aDecryptedLength space available for the output
+	 * @return the message index in the upper 32 bits, the decrypted length in the lower 32 bits
+	 */
+	private static native long decryptMessageBufferJni(long aNativeId, ByteBuffer aEncryptedMsg, int aEncryptedOffset, int aEncryptedLength,
+	                                                   ByteBuffer aDecryptedMsg, int aDecryptedOffset, int aDecryptedLength);
+	
+	/**
+	 * Decrypt a batch of messages in a single native call.<br>
+	 * A message which can not be decrypted does not abort the batch: see {@link OlmBatchDecryptResult#getError(int)}.
+	 *
+	 * @param aEncryptedMsgs the messages to be decrypted
+	 * @return the outcome of every message, with the decrypted messages as separate arrays
+	 * @throws OlmException if the batch itself is invalid
+	 */
+	@Nonnull
+	public OlmBatchDecryptResult decryptMessages(@Nonnull List<String> aEncryptedMsgs)
+			throws OlmException
+	{
+		byte[][] encryptedMsgs = new byte[aEncryptedMsgs.size()][];
+		int i = 0;
+		for (String encryptedMsg : aEncryptedMsgs)
+		{
+			encryptedMsgs[i++] = (null == encryptedMsg) ? null : encryptedMsg.getBytes(UTF_8);
+		}
+		return decryptMessages(encryptedMsgs);
+	}
+	
+	/**
+	 * Decrypt a batch of UTF-8 encoded messages in a single native call.<br>
+	 * A message which can not be decrypted does not abort the batch: see {@link OlmBatchDecryptResult#getError(int)}.
+	 *
+	 * @param aEncryptedMsgs the messages to be decrypted
+	 * @return the outcome of every message, with the decrypted messages as separate arrays
+	 * @throws OlmException if the batch itself is invalid
+	 */
+	@Nonnull
+	public OlmBatchDecryptResult decryptMessages(@Nonnull byte[][] aEncryptedMsgs)
+			throws OlmException
+	{
+		OlmBatchDecryptResult result = new OlmBatchDecryptResult(aEncryptedMsgs.length);
+		result.reset(aEncryptedMsgs.length, true);
+		
+		try
+		{
+			decryptMessagesJni(mNativeId, aEncryptedMsgs, aEncryptedMsgs.length, result.mPlaintexts, result.mStatus, result.mMessageIndexes);
+		}
+		catch (Exception e)
+		{
+			LOGGER.error("## decryptMessages() failed {}", e.getMessage());
+			throw new OlmException(EXCEPTION_CODE_INBOUND_GROUP_SESSION_DECRYPT_SESSION, e.getMessage());
+		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
+		
+		result.setPlaintextRanges();
+		return result;
+	}
+	
+	/**
+	 * Decrypt a batch of messages held in separate arrays.
+	 * An exception is thrown if the batch parameters are invalid.
+	 *
+	 * @param aNativeId       native session instance identifier
+	 * @param aEncryptedMsgs  the encrypted messages
+	 * @param aCount          number of messages to decrypt
+	 * @param aDecryptedMsgs  receives the decrypted messages, null for the failed ones
+	 * @param aStatus         receives the ordinal of the {@link OlmError} of each message
+	 * @param aMessageIndexes receives the message index of each message
+	 */
+	private static native void decryptMessagesJni(long aNativeId, byte[][] aEncryptedMsgs, int aCount, byte[][] aDecryptedMsgs,
+	                                              int[] aStatus, long[] aMessageIndexes);
+	
+	/**
+	 * Decrypt a batch of UTF-8 encoded messages packed in one array, in a single native call.<br>
+	 * The decrypted messages are written one after the other from {@code aDecryptedOffset}: an output of 3/4 of the
+	 * total length of the encrypted messages is always large enough. A message which can not be decrypted does not
+	 * abort the batch: see {@link OlmBatchDecryptResult#getError(int)}.
+	 *
+	 * @param aEncryptedMsgs   the array holding the messages to be decrypted
+	 * @param aOffsets         offset of each message in aEncryptedMsgs
+	 * @param aLengths         length of each message
+	 * @param aCount           number of messages to decrypt
+	 * @param aDecryptedMsgs   array receiving the decrypted messages
+	 * @param aDecryptedOffset offset of the first decrypted message in aDecryptedMsgs
+	 * @param aResult          receives the outcome and the range of each decrypted message in aDecryptedMsgs
+	 * @return the offset following the last decrypted message
+	 * @throws OlmException if the batch itself is invalid
+	 */
+	public int decryptMessages(@Nonnull byte[] aEncryptedMsgs, @Nonnull int[] aOffsets, @Nonnull int[] aLengths, int aCount,
+	                           @Nonnull byte[] aDecryptedMsgs, int aDecryptedOffset, @Nonnull OlmBatchDecryptResult aResult)
+			throws OlmException
+	{
+		aResult.reset(aCount, false);
+		
+		try
+		{
+			return decryptMessagesPackedJni(mNativeId, aEncryptedMsgs, aOffsets, aLengths, aCount, aDecryptedMsgs, aDecryptedOffset,
+					aResult.mOffsets, aResult.mLengths, aResult.mStatus, aResult.mMessageIndexes);
+		}
+		catch (Exception e)
+		{
+			LOGGER.error("## decryptMessages() failed {}", e.getMessage());
+			throw new OlmException(EXCEPTION_CODE_INBOUND_GROUP_SESSION_DECRYPT_SESSION, e.getMessage());
+		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
+	}
+	
+	/**
+	 * Decrypt a batch of messages packed in one array, into another array.
+	 * An exception is thrown if the batch parameters are invalid.
+	 *
+	 * @param aNativeId         native session instance identifier
+	 * @param aEncryptedMsgs    the encrypted messages
+	 * @param aOffsets          offset of each message in aEncryptedMsgs
+	 * @param aLengths          length of each message
+	 * @param aCount            number of messages to decrypt
+	 * @param aDecryptedMsgs    array receiving the decrypted messages
+	 * @param aDecryptedOffset  offset of the first decrypted message in aDecryptedMsgs
+	 * @param aDecryptedOffsets receives the offset of each decrypted message
+	 * @param aDecryptedLengths receives the length of each decrypted message
+	 * @param aStatus           receives the ordinal of the {@link OlmError} of each message
+	 * @param aMessageIndexes   receives the message index of each message
+	 * @return the offset following the last decrypted message
+	 */
+	private static native int decryptMessagesPackedJni(long aNativeId, byte[] aEncryptedMsgs, int[] aOffsets, int[] aLengths, int aCount,
+	                                                   byte[] aDecryptedMsgs, int aDecryptedOffset, int[] aDecryptedOffsets, int[] aDecryptedLengths,
+	                                                   int[] aStatus, long[] aMessageIndexes);
+	
+	/**
+	 * Decrypt a batch of UTF-8 encoded messages packed in one direct buffer, in a single native call and without any
+	 * copy through the java heap.<br>
+	 * The offsets of the messages are absolute indexes in {@code aEncryptedMsgs}, whose position and limit are ignored.
+	 * The decrypted messages are written one after the other from the position of {@code aDecryptedMsgs}, which is
+	 * advanced past the last one. A message which can not be decrypted does not abort the batch: see
+	 * {@link OlmBatchDecryptResult#getError(int)}.<br>
+	 * Warning: the messages are decoded in place, so the content of {@code aEncryptedMsgs} is destroyed. libolm checks
+	 * the output space against the decoded message: leave 3/4 of the total length of the encrypted messages.
+	 *
+	 * @param aEncryptedMsgs direct buffer holding the messages to be decrypted
+	 * @param aOffsets       offset of each message in aEncryptedMsgs
+	 * @param aLengths       length of each message
+	 * @param aCount         number of messages to decrypt
+	 * @param aDecryptedMsgs direct buffer receiving the decrypted messages
+	 * @param aResult        receives the outcome and the range of each decrypted message in aDecryptedMsgs
+	 * @throws OlmException if the batch itself is invalid, also thrown if a buffer is not direct or is read-only
+	 */
+	public void decryptMessages(@Nonnull ByteBuffer aEncryptedMsgs, @Nonnull int[] aOffsets, @Nonnull int[] aLengths, int aCount,
+	                            @Nonnull ByteBuffer aDecryptedMsgs, @Nonnull OlmBatchDecryptResult aResult)
+			throws OlmException
+	{
+		if (!aEncryptedMsgs.isDirect() || !aDecryptedMsgs.isDirect() || aEncryptedMsgs.isReadOnly() || aDecryptedMsgs.isReadOnly())
+		{
+			LOGGER.error("## decryptMessages(): writable direct buffers are required");
+			throw new OlmException(EXCEPTION_CODE_INBOUND_GROUP_SESSION_DECRYPT_SESSION, "writable direct buffers are required");
+		}
+		
+		aResult.reset(aCount, false);
+		int end;
+		
+		try
+		{
+			end = decryptMessagesBufferJni(mNativeId, aEncryptedMsgs, aOffsets, aLengths, aCount,
+					aDecryptedMsgs, aDecryptedMsgs.position(), aDecryptedMsgs.remaining(),
+					aResult.mOffsets, aResult.mLengths, aResult.mStatus, aResult.mMessageIndexes);
+		}
+		catch (Exception e)
+		{
+			LOGGER.error("## decryptMessages() failed {}", e.getMessage());
+			throw new OlmException(EXCEPTION_CODE_INBOUND_GROUP_SESSION_DECRYPT_SESSION, e.getMessage());
+		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
+		
+		aDecryptedMsgs.position(end);
+	}
+	
+	/**
+	 * Decrypt a batch of messages packed in one direct buffer, into another direct buffer.
+	 * An exception is thrown if the batch parameters are invalid.
+	 *
+	 * @param aNativeId         native session instance identifier
+	 * @param aEncryptedMsgs    direct buffer holding the encrypted messages
+	 * @param aOffsets          offset of each message in aEncryptedMsgs
+	 * @param aLengths          length of each message
+	 * @param aCount            number of messages to decrypt
+	 * @param aDecryptedMsgs    direct buffer receiving the decrypted messages
+	 * @param aDecryptedOffset  offset of the first decrypted message in aDecryptedMsgs
+	 * @param aDecryptedLength  space available from aDecryptedOffset
+	 * @param aDecryptedOffsets receives the offset of each decrypted message
+	 * @param aDecryptedLengths receives the length of each decrypted message
+	 * @param aStatus           receives the ordinal of the {@link OlmError} of each message
+	 * @param aMessageIndexes   receives the message index of each message
+	 * @return the offset following the last decrypted message
+	 */
+	private static native int decryptMessagesBufferJni(long aNativeId, ByteBuffer aEncryptedMsgs, int[] aOffsets, int[] aLengths, int aCount,
+	                                                   ByteBuffer aDecryptedMsgs, int aDecryptedOffset, int aDecryptedLength,
+	                                                   int[] aDecryptedOffsets, int[] aDecryptedLengths, int[] aStatus, long[] aMessageIndexes);
 	
 	//==============================================================================================================
 	// Serialization management
 	//==============================================================================================================
 	
+	/**
+	 * Constructor used by {@link #unpickle(byte[], byte[])}.
+	 */
+	private OlmInboundGroupSession()
+	{
+	}
+	
+	/**
+	 * Pickle the session with a key, without going through java serialization.
+	 *
+	 * @param aKey encryption key
+	 * @return the pickled session
+	 * @throws OlmException the failure reason
+	 */
+	@Nonnull
+	byte[] pickle(@Nonnull byte[] aKey)
+			throws OlmException
+	{
+		StringBuffer errorMsg = new StringBuffer();
+		byte[] pickle = serialize(aKey, errorMsg);
+		
+		if (null == pickle)
+		{
+			throw new OlmException(EXCEPTION_CODE_ACCOUNT_SERIALIZATION, errorMsg.toString());
+		}
+		return pickle;
+	}
+	
+	/**
+	 * Create a session from a pickle returned by {@link #pickle(byte[])}.
+	 *
+	 * @param aPickle the pickled session
+	 * @param aKey    the key used to pickle the session
+	 * @return the session
+	 * @throws OlmException the failure reason
+	 */
+	@Nonnull
+	static OlmInboundGroupSession unpickle(@Nonnull byte[] aPickle, @Nonnull byte[] aKey)
+			throws OlmException
+	{
+		OlmInboundGroupSession session = new OlmInboundGroupSession();
+		
+		try
+		{
+			session.deserialize(aPickle, aKey);
+		}
+		catch (OlmException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
+		{
+			throw new OlmException(EXCEPTION_CODE_ACCOUNT_DESERIALIZATION, e.getMessage());
+		}
+		return session;
+	}
+	
 	/**
 	 * Kick off the serialization mechanism.
 	 *
@@ -388,13 +1119,17 @@ public class OlmInboundGroupSession extends CommonSerializeUtils implements Seri
 		aErrorMsg.setLength(0);
 		try
 		{
-			pickleRetValue = serializeJni(aKey);
+			pickleRetValue = serializeJni(mNativeId, aKey);
 		}
 		catch (Exception e)
 		{
 			LOGGER.error("## serialize() failed " + e.getMessage());
 			aErrorMsg.append(e.getMessage());
 		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
 		
 		return pickleRetValue;
 	}
@@ -402,10 +1137,11 @@ public class OlmInboundGroupSession extends CommonSerializeUtils implements Seri
 	/**
 	 * JNI counter part of {@link #serialize(byte[], StringBuffer)}.
 	 *
+	 * @param aNativeId native session instance identifier
 	 * @param aKey encryption key
 	 * @return the serialized session
 	 */
-	private native byte[] serializeJni(byte[] aKey);
+	private static native byte[] serializeJni(long aNativeId, byte[] aKey);
 	
 	/**
 	 * Loads an account from a pickled base64 string.<br>
@@ -423,6 +1159,8 @@ public class OlmInboundGroupSession extends CommonSerializeUtils implements Seri
 		try
 		{
 			mNativeId = deserializeJni(aSerializedData, aKey);
+			mNativeHandle = OlmNativeTracker.track(this, mNativeId, OlmInboundGroupSession::releaseSessionJni);
+			clearMetadata();
 		}
 		catch (Exception e)
 		{
@@ -445,5 +1183,5 @@ public class OlmInboundGroupSession extends CommonSerializeUtils implements Seri
 	 * @param aKey            the key used to encrypt the serialized account data
 	 * @return the deserialized session
 	 **/
-	private native long deserializeJni(byte[] aSerializedData, byte[] aKey);
+	private static native long deserializeJni(byte[] aSerializedData, byte[] aKey);
 }
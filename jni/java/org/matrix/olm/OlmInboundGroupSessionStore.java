@@ -0,0 +1,430 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import java.nio.*;
+import java.util.*;
+
+import javax.annotation.*;
+
+import org.slf4j.*;
+
+/**
+ * Store of inbound group sessions keyed by room, sender curve25519 key and session identifier, with a bounded
+ * number of live native sessions.<br>
+ * The most recently used sessions are kept as native objects, up to the native memory budget. The others are
+ * pickled with a random key of the store and released, then unpickled on demand. The pickles are kept on the java
+ * heap, or in direct buffers, and are wiped once unpickled or discarded.<br>
+ * Only the pickle and the verified flag survive an eviction: the ratchet checkpoints of an evicted session, see
+ * {@link OlmInboundGroupSession#enableRatchetCheckpoints(int, long)}, are released with it, and have to be enabled
+ * again on the unpickled session.<br>
+ * The store owns its sessions: they are used through {@link #apply(String, String, String, SessionFunction)}, which
+ * keeps the session live and reserved to the calling thread while the function runs. The store is thread safe.
+ */
+public class OlmInboundGroupSessionStore
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(OlmInboundGroupSessionStore.class);
+	
+	/**
+	 * Work on a session of the store.
+	 *
+	 * @param <R> the result type
+	 */
+	public interface SessionFunction<R>
+	{
+		/**
+		 * @param aSession the session, only valid until the function returns
+		 * @return the result
+		 * @throws OlmException the failure reason
+		 */
+		R apply(@Nonnull OlmInboundGroupSession aSession)
+				throws OlmException;
+	}
+	
+	/**
+	 * A session, live or pickled.
+	 */
+	private static final class Entry
+	{
+		@Nullable
+		OlmInboundGroupSession mSession;
+		@Nullable
+		byte[] mPickle;
+		@Nullable
+		ByteBuffer mOffHeapPickle;
+		// the verified flag of the session when it was pickled, which may be known on the java side only
+		boolean mVerified;
+		int mPins;
+		boolean mRemoved;
+		
+		int pickleLength()
+		{
+			return (null != mPickle) ? mPickle.length : (null != mOffHeapPickle) ? mOffHeapPickle.capacity() : 0;
+		}
+	}
+	
+	private final byte[] mPickleKey = OlmUtility.getRandomKey();
+	private final boolean mOffHeap;
+	private final long mSessionSize;
+	private final int mMaxLiveSessions;
+	
+	private final Map<String, Entry> mEntries = new HashMap<>();
+	// live entries, least recently used first
+	private final LinkedHashMap<String, Entry> mLive = new LinkedHashMap<>(16, 0.75f, true);
+	
+	private long mHits;
+	private long mRehydrations;
+	private long mRehydrationNanos;
+	private long mEvictions;
+	private long mPickledBytes;
+	
+	/**
+	 * @param aNativeMemoryBudget native memory the live sessions may use, at least one session is kept live
+	 * @param aOffHeap            true to keep the pickles in direct buffers rather than on the java heap
+	 */
+	public OlmInboundGroupSessionStore(long aNativeMemoryBudget, boolean aOffHeap)
+	{
+		mOffHeap = aOffHeap;
+		mSessionSize = OlmManager.getSlabStatsJni(OlmSlabStats.SlabType.INBOUND_GROUP_SESSION.ordinal())[0];
+		mMaxLiveSessions = (int) Math.max(1, Math.min(Integer.MAX_VALUE, aNativeMemoryBudget / Math.max(1, mSessionSize)));
+	}
+	
+	private static String key(@Nonnull String aRoomId, @Nonnull String aSenderKey, @Nonnull String aSessionId)
+	{
+		// none of the identifiers contains a NUL character
+		return aRoomId + '\0' + aSenderKey + '\0' + aSessionId;
+	}
+	
+	/**
+	 * Add a session to the store, which takes ownership of it.<br>
+	 * A session already stored under the same key is replaced and released.
+	 *
+	 * @param aRoomId    the room of the session
+	 * @param aSenderKey the curve25519 key of the sender
+	 * @param aSession   the session
+	 * @throws OlmException if the session identifier can not be read
+	 */
+	public void put(@Nonnull String aRoomId, @Nonnull String aSenderKey, @Nonnull OlmInboundGroupSession aSession)
+			throws OlmException
+	{
+		String key = key(aRoomId, aSenderKey, aSession.sessionIdentifier());
+		Entry entry = new Entry();
+		entry.mSession = aSession;
+		
+		synchronized (this)
+		{
+			Entry previous = mEntries.put(key, entry);
+			if (null != previous)
+			{
+				mLive.remove(key);
+				discard(previous);
+			}
+			mLive.put(key, entry);
+			evict();
+		}
+	}
+	
+	/**
+	 * Remove a session from the store and release it.
+	 *
+	 * @param aRoomId    the room of the session
+	 * @param aSenderKey the curve25519 key of the sender
+	 * @param aSessionId the session identifier
+	 * @return true if the session was stored
+	 */
+	public synchronized boolean remove(@Nonnull String aRoomId, @Nonnull String aSenderKey, @Nonnull String aSessionId)
+	{
+		String key = key(aRoomId, aSenderKey, aSessionId);
+		Entry entry = mEntries.remove(key);
+		
+		if (null == entry)
+		{
+			return false;
+		}
+		mLive.remove(key);
+		discard(entry);
+		return true;
+	}
+	
+	/**
+	 * @param aRoomId    the room of the session
+	 * @param aSenderKey the curve25519 key of the sender
+	 * @param aSessionId the session identifier
+	 * @return true if the session is stored, live or pickled
+	 */
+	public synchronized boolean contains(@Nonnull String aRoomId, @Nonnull String aSenderKey, @Nonnull String aSessionId)
+	{
+		return mEntries.containsKey(key(aRoomId, aSenderKey, aSessionId));
+	}
+	
+	/**
+	 * @return number of stored sessions, live or pickled
+	 */
+	public synchronized int size()
+	{
+		return mEntries.size();
+	}
+	
+	/**
+	 * Run a function on a session, unpickling the session if it is not live.<br>
+	 * The session can not be evicted while the function runs, and the calls on the same session are serialized.
+	 * The unpickling runs without the store lock, so it only delays the calls on the same session.
+	 *
+	 * @param aRoomId    the room of the session
+	 * @param aSenderKey the curve25519 key of the sender
+	 * @param aSessionId the session identifier
+	 * @param aFunction  the function
+	 * @param <R>        the result type
+	 * @return the result of the function, null if the session is not stored
+	 * @throws OlmException the failure of the function, or of the unpickling
+	 */
+	@Nullable
+	public <R> R apply(@Nonnull String aRoomId, @Nonnull String aSenderKey, @Nonnull String aSessionId,
+	                   @Nonnull SessionFunction<R> aFunction)
+			throws OlmException
+	{
+		String key = key(aRoomId, aSenderKey, aSessionId);
+		Entry entry;
+		
+		synchronized (this)
+		{
+			entry = mEntries.get(key);
+			if (null == entry)
+			{
+				return null;
+			}
+			
+			if (null != entry.mSession)
+			{
+				mHits++;
+				mLive.get(key);
+			}
+			// a pinned entry is neither evicted nor wiped
+			entry.mPins++;
+		}
+		
+		try
+		{
+			synchronized (entry)
+			{
+				// another call may have unpickled the session while this one was waiting
+				if (null == entry.mSession)
+				{
+					rehydrate(key, entry);
+				}
+				return aFunction.apply(entry.mSession);
+			}
+		}
+		finally
+		{
+			synchronized (this)
+			{
+				entry.mPins--;
+				if (entry.mRemoved)
+				{
+					discard(entry);
+				}
+				else
+				{
+					evict();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Decrypt a message with a stored session.
+	 *
+	 * @param aRoomId       the room of the session
+	 * @param aSenderKey    the curve25519 key of the sender
+	 * @param aSessionId    the session identifier
+	 * @param aEncryptedMsg the message to be decrypted
+	 * @return the decrypted message information, null if the session is not stored
+	 * @throws OlmException the failure reason
+	 */
+	@Nullable
+	public OlmInboundGroupSession.DecryptMessageResult decryptMessage(@Nonnull String aRoomId, @Nonnull String aSenderKey,
+	                                                                  @Nonnull String aSessionId, @Nonnull String aEncryptedMsg)
+			throws OlmException
+	{
+		return apply(aRoomId, aSenderKey, aSessionId, session -> session.decryptMessage(aEncryptedMsg));
+	}
+	
+	/**
+	 * Release every session and empty the store.
+	 */
+	public synchronized void clear()
+	{
+		for (Entry entry : mEntries.values())
+		{
+			discard(entry);
+		}
+		mEntries.clear();
+		mLive.clear();
+	}
+	
+	/**
+	 * @return a snapshot of the counters
+	 */
+	@Nonnull
+	public synchronized OlmSessionStoreStats getStats()
+	{
+		return new OlmSessionStoreStats(mHits, mRehydrations, mRehydrationNanos, mEvictions,
+				mLive.size(), mEntries.size() - mLive.size(), mLive.size() * mSessionSize, mPickledBytes);
+	}
+	
+	/**
+	 * Unpickle a session, then publish it under the store lock. Called with the entry lock held and the entry pinned,
+	 * so that its pickle can not change meanwhile.
+	 */
+	private void rehydrate(@Nonnull String aKey, @Nonnull Entry aEntry)
+			throws OlmException
+	{
+		long start = System.nanoTime();
+		byte[] pickle = aEntry.mPickle;
+		OlmInboundGroupSession session;
+		
+		if (null != pickle)
+		{
+			session = OlmInboundGroupSession.unpickle(pickle, mPickleKey);
+		}
+		else
+		{
+			pickle = new byte[aEntry.mOffHeapPickle.capacity()];
+			aEntry.mOffHeapPickle.duplicate().get(pickle);
+			try
+			{
+				session = OlmInboundGroupSession.unpickle(pickle, mPickleKey);
+			}
+			finally
+			{
+				Arrays.fill(pickle, (byte) 0);
+			}
+		}
+		
+		if (aEntry.mVerified)
+		{
+			session.markVerified();
+		}
+		
+		synchronized (this)
+		{
+			aEntry.mSession = session;
+			wipePickle(aEntry);
+			// a removed entry is discarded once unpinned, it is not live anymore
+			if (!aEntry.mRemoved)
+			{
+				mLive.put(aKey, aEntry);
+			}
+			mRehydrations++;
+			mRehydrationNanos += System.nanoTime() - start;
+		}
+	}
+	
+	/**
+	 * Wipe and drop the pickle of an entry. Called with the store lock held.
+	 */
+	private void wipePickle(@Nonnull Entry aEntry)
+	{
+		mPickledBytes -= aEntry.pickleLength();
+		
+		if (null != aEntry.mPickle)
+		{
+			Arrays.fill(aEntry.mPickle, (byte) 0);
+			aEntry.mPickle = null;
+		}
+		if (null != aEntry.mOffHeapPickle)
+		{
+			ByteBuffer buffer = aEntry.mOffHeapPickle;
+			buffer.clear();
+			while (buffer.hasRemaining())
+			{
+				buffer.put((byte) 0);
+			}
+			aEntry.mOffHeapPickle = null;
+		}
+	}
+	
+	/**
+	 * Pickle and release the least recently used sessions beyond the budget. Called with the store lock held.
+	 */
+	private void evict()
+	{
+		Iterator<Entry> iterator = mLive.values().iterator();
+		int live = mLive.size();
+		
+		while ((live > mMaxLiveSessions) && iterator.hasNext())
+		{
+			Entry entry = iterator.next();
+			
+			// a pinned session is in use, it is evicted once released
+			if (0 != entry.mPins)
+			{
+				continue;
+			}
+			
+			byte[] pickle;
+			try
+			{
+				entry.mVerified = entry.mSession.isVerified();
+				pickle = entry.mSession.pickle(mPickleKey);
+			}
+			catch (OlmException e)
+			{
+				LOGGER.error("## evict(): pickle failed {}", e.getMessage());
+				continue;
+			}
+			
+			if (mOffHeap)
+			{
+				entry.mOffHeapPickle = ByteBuffer.allocateDirect(pickle.length);
+				entry.mOffHeapPickle.put(pickle);
+				entry.mOffHeapPickle.clear();
+				Arrays.fill(pickle, (byte) 0);
+			}
+			else
+			{
+				entry.mPickle = pickle;
+			}
+			
+			mPickledBytes += pickle.length;
+			entry.mSession.releaseSession();
+			entry.mSession = null;
+			iterator.remove();
+			live--;
+			mEvictions++;
+		}
+	}
+	
+	/**
+	 * Release a session removed from the store, as soon as it is not in use. Called with the store lock held.
+	 */
+	private void discard(@Nonnull Entry aEntry)
+	{
+		aEntry.mRemoved = true;
+		
+		if (0 == aEntry.mPins)
+		{
+			if (null != aEntry.mSession)
+			{
+				aEntry.mSession.releaseSession();
+				aEntry.mSession = null;
+			}
+			wipePickle(aEntry);
+		}
+	}
+}
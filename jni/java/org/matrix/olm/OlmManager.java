@@ -17,6 +17,9 @@
 package org.matrix.olm;
 
 import java.io.*;
+import java.util.*;
+
+import javax.annotation.*;
 
 import msrd0.jni.jni_multilib.JniLoader;
 
@@ -30,6 +33,12 @@ public class OlmManager
 {
 	private static final Logger LOGGER = LoggerFactory.getLogger(OlmManager.class.getName());
 	
+	/** entropy source of the native random pools, null for the operating system */
+	private static OlmEntropySource sEntropySource;
+	
+	/** true once the native library has been loaded */
+	private static boolean sLibraryLoaded;
+	
 	/**
 	 * Constructor.
 	 */
@@ -38,6 +47,15 @@ public class OlmManager
 		try
 		{
 			JniLoader.loadLibrary("olm");
+			
+			synchronized (OlmManager.class)
+			{
+				sLibraryLoaded = true;
+				if (null != sEntropySource)
+				{
+					setEntropySourceJni(sEntropySource);
+				}
+			}
 		}
 		catch (IOException e)
 		{
@@ -45,6 +63,25 @@ public class OlmManager
 		}
 	}
 	
+	/**
+	 * Set the source used to seed the native random pools.<br>
+	 * By default the pools are seeded from the operating system ({@code getrandom} or
+	 * {@code /dev/urandom}, {@code rand_s} on Windows). The source can be set before the native
+	 * library is loaded; once it is, every pool is reseeded before serving more bytes.
+	 *
+	 * @param aSource the entropy source, null to restore the default
+	 */
+	public static synchronized void setEntropySource(@Nullable OlmEntropySource aSource)
+	{
+		sEntropySource = aSource;
+		if (sLibraryLoaded)
+		{
+			setEntropySourceJni(aSource);
+		}
+	}
+	
+	private static native void setEntropySourceJni(OlmEntropySource aSource);
+	
 	/**
 	 * Provide the native OLM lib version.
 	 *
@@ -56,5 +93,31 @@ public class OlmManager
 	}
 	
 	private native String getOlmLibVersionJni();
+	
+	/**
+	 * Read the counters of the native slab holding a type of struct.
+	 *
+	 * @param aType the struct type
+	 * @return the counters
+	 */
+	@Nonnull
+	public OlmSlabStats getSlabStats(@Nonnull OlmSlabStats.SlabType aType)
+	{
+		return new OlmSlabStats(aType, getSlabStatsJni(aType.ordinal()));
+	}
+	
+	static native long[] getSlabStatsJni(int aSlabType);
+	
+	/**
+	 * Read the release counters of the native instances, by class.<br>
+	 * Instances counted as cleaner releases were garbage collected without having been released.
+	 *
+	 * @return the counters of every class which created a native instance
+	 */
+	@Nonnull
+	public static Map<Class<?>, OlmReleaseStats> getReleaseStats()
+	{
+		return OlmNativeTracker.getStats();
+	}
 }
 
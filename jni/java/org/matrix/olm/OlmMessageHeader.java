@@ -0,0 +1,589 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import static java.nio.charset.StandardCharsets.*;
+
+import javax.annotation.*;
+
+/**
+ * Header of an encrypted megolm or Olm message, parsed in java without decrypting it.<br>
+ * It gives the version and the message index of a message, and the ranges of its parts in the decoded message,
+ * so that a message can be routed to its session, or rejected (index before the first known index of the
+ * session, replay...) before crossing into JNI.<br>
+ * The ranges are offsets in {@link #getDecodedMessage()}, the base64-decoded message.
+ */
+public final class OlmMessageHeader
+{
+	/**
+	 * The kinds of message.
+	 */
+	public enum Kind
+	{
+		/** megolm message, see {@link OlmInboundGroupSession} */
+		GROUP,
+		/** Olm pre-key message, see {@link OlmMessage#MESSAGE_TYPE_PRE_KEY} */
+		PRE_KEY,
+		/** Olm normal message, see {@link OlmMessage#MESSAGE_TYPE_MESSAGE} */
+		MESSAGE
+	}
+	
+	/** the message version supported by libolm **/
+	public static final int SUPPORTED_VERSION = 3;
+	
+	private static final int MAC_LENGTH = 8;
+	private static final int SIGNATURE_LENGTH = 64;
+	
+	private static final int WIRE_VARINT = 0;
+	private static final int WIRE_LENGTH_DELIMITED = 2;
+	
+	// megolm message fields
+	private static final int GROUP_INDEX_TAG = 0x08;
+	private static final int GROUP_CIPHERTEXT_TAG = 0x12;
+	// Olm message fields
+	private static final int RATCHET_KEY_TAG = 0x0A;
+	private static final int CHAIN_INDEX_TAG = 0x10;
+	private static final int CIPHERTEXT_TAG = 0x22;
+	// Olm pre-key message fields
+	private static final int ONE_TIME_KEY_TAG = 0x0A;
+	private static final int BASE_KEY_TAG = 0x12;
+	private static final int IDENTITY_KEY_TAG = 0x1A;
+	private static final int INNER_MESSAGE_TAG = 0x22;
+	
+	// base64 characters covering the version, the index tag and a 5 bytes varint of a megolm message
+	private static final int GROUP_INDEX_CHARS = 12;
+	
+	@Nonnull
+	private final Kind mKind;
+	@Nonnull
+	private final byte[] mDecoded;
+	private int mVersion;
+	private long mMessageIndex = -1;
+	private int mCiphertextOffset = -1;
+	private int mCiphertextLength;
+	private int mMacOffset = -1;
+	private int mSignatureOffset = -1;
+	private int mRatchetKeyOffset = -1;
+	private int mOneTimeKeyOffset = -1;
+	private int mOneTimeKeyLength;
+	private int mBaseKeyOffset = -1;
+	private int mBaseKeyLength;
+	private int mIdentityKeyOffset = -1;
+	private int mIdentityKeyLength;
+	
+	private OlmMessageHeader(@Nonnull Kind aKind, @Nonnull byte[] aDecoded)
+	{
+		mKind = aKind;
+		mDecoded = aDecoded;
+	}
+	
+	/**
+	 * Parse a megolm message.
+	 *
+	 * @param aEncryptedMsg the base64 encoded message
+	 * @return the header, null if the message is malformed
+	 */
+	@Nullable
+	public static OlmMessageHeader parseGroupMessage(@Nonnull String aEncryptedMsg)
+	{
+		byte[] encryptedMsg = aEncryptedMsg.getBytes(UTF_8);
+		return parseGroupMessage(encryptedMsg, 0, encryptedMsg.length);
+	}
+	
+	/**
+	 * Parse a megolm message held in a slice of a byte array.
+	 *
+	 * @param aEncryptedMsg the array holding the UTF-8 encoded message
+	 * @param aOffset       offset of the message in the array
+	 * @param aLength       length of the message
+	 * @return the header, null if the message is malformed
+	 */
+	@Nullable
+	public static OlmMessageHeader parseGroupMessage(@Nonnull byte[] aEncryptedMsg, int aOffset, int aLength)
+	{
+		byte[] decoded = decode(aEncryptedMsg, aOffset, aLength);
+		if ((null == decoded) || (decoded.length < 1 + MAC_LENGTH + SIGNATURE_LENGTH))
+		{
+			return null;
+		}
+		
+		OlmMessageHeader header = new OlmMessageHeader(Kind.GROUP, decoded);
+		header.mVersion = decoded[0] & 0xFF;
+		header.mSignatureOffset = decoded.length - SIGNATURE_LENGTH;
+		header.mMacOffset = header.mSignatureOffset - MAC_LENGTH;
+		return header.parseFields(1, header.mMacOffset) ? header : null;
+	}
+	
+	/**
+	 * Parse an Olm message.
+	 *
+	 * @param aEncryptedMsg the message
+	 * @return the header, null if the message is malformed
+	 */
+	@Nullable
+	public static OlmMessageHeader parseMessage(@Nonnull OlmMessage aEncryptedMsg)
+	{
+		byte[] encryptedMsg = aEncryptedMsg.getCipherText().getBytes(UTF_8);
+		return parseMessage(aEncryptedMsg.getType(), encryptedMsg, 0, encryptedMsg.length);
+	}
+	
+	/**
+	 * Parse an Olm message held in a slice of a byte array.
+	 *
+	 * @param aType         {@link OlmMessage#MESSAGE_TYPE_PRE_KEY} or {@link OlmMessage#MESSAGE_TYPE_MESSAGE}
+	 * @param aEncryptedMsg the array holding the UTF-8 encoded message
+	 * @param aOffset       offset of the message in the array
+	 * @param aLength       length of the message
+	 * @return the header, null if the message is malformed
+	 */
+	@Nullable
+	public static OlmMessageHeader parseMessage(int aType, @Nonnull byte[] aEncryptedMsg, int aOffset, int aLength)
+	{
+		byte[] decoded = decode(aEncryptedMsg, aOffset, aLength);
+		if ((null == decoded) || (decoded.length < 1))
+		{
+			return null;
+		}
+		
+		OlmMessageHeader header;
+		
+		if (OlmMessage.MESSAGE_TYPE_PRE_KEY == aType)
+		{
+			header = new OlmMessageHeader(Kind.PRE_KEY, decoded);
+			header.mVersion = decoded[0] & 0xFF;
+			// the pre-key fields hold the inner message, which is then parsed in place
+			if (!header.parseFields(1, decoded.length))
+			{
+				return null;
+			}
+		}
+		else if (OlmMessage.MESSAGE_TYPE_MESSAGE == aType)
+		{
+			header = new OlmMessageHeader(Kind.MESSAGE, decoded);
+			if (!header.parseInnerMessage(0, decoded.length))
+			{
+				return null;
+			}
+		}
+		else
+		{
+			return null;
+		}
+		
+		return header;
+	}
+	
+	/**
+	 * Read the message index of a megolm message from its first characters, without decoding the whole message.
+	 *
+	 * @param aEncryptedMsg the array holding the UTF-8 encoded message
+	 * @param aOffset       offset of the message in the array
+	 * @param aLength       length of the message
+	 * @return the message index, -1 if the message does not start with a supported megolm header
+	 */
+	public static long peekGroupMessageIndex(@Nonnull byte[] aEncryptedMsg, int aOffset, int aLength)
+	{
+		int chars = Math.min(aLength, GROUP_INDEX_CHARS);
+		int bits = 0;
+		int buffer = 0;
+		int position = 0;
+		int shift = 0;
+		long index = 0;
+		
+		for (int i = 0; i < chars; i++)
+		{
+			int value = OlmBase64.value(aEncryptedMsg[aOffset + i]);
+			if (value < 0)
+			{
+				return -1;
+			}
+			
+			buffer = ((buffer << 6) | value) & 0x3FFF;
+			bits += 6;
+			
+			if (bits >= 8)
+			{
+				bits -= 8;
+				int b = (buffer >> bits) & 0xFF;
+				
+				switch (position++)
+				{
+					case 0:
+						if (SUPPORTED_VERSION != b)
+						{
+							return -1;
+						}
+						break;
+					case 1:
+						if (GROUP_INDEX_TAG != b)
+						{
+							return -1;
+						}
+						break;
+					default:
+						index |= (long) (b & 0x7F) << shift;
+						if (0 == (b & 0x80))
+						{
+							return (index <= 0xFFFFFFFFL) ? index : -1;
+						}
+						shift += 7;
+				}
+			}
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Parse the fields of a megolm or pre-key message between two offsets of the decoded message.
+	 *
+	 * @return false if the fields are malformed
+	 */
+	private boolean parseFields(int aStart, int aEnd)
+	{
+		int position = aStart;
+		
+		while (position < aEnd)
+		{
+			long key = readVarint(position, aEnd);
+			if (key < 0)
+			{
+				return false;
+			}
+			position += varintLength(position);
+			int tag = (int) key;
+			
+			if (WIRE_VARINT == (tag & 7))
+			{
+				long value = readVarint(position, aEnd);
+				if (value < 0)
+				{
+					return false;
+				}
+				if ((Kind.GROUP == mKind) && (GROUP_INDEX_TAG == tag))
+				{
+					mMessageIndex = value;
+				}
+				position += varintLength(position);
+			}
+			else if (WIRE_LENGTH_DELIMITED == (tag & 7))
+			{
+				long length = readVarint(position, aEnd);
+				if (length < 0)
+				{
+					return false;
+				}
+				position += varintLength(position);
+				if (length > aEnd - position)
+				{
+					return false;
+				}
+				
+				if (Kind.GROUP == mKind)
+				{
+					if (GROUP_CIPHERTEXT_TAG == tag)
+					{
+						mCiphertextOffset = position;
+						mCiphertextLength = (int) length;
+					}
+				}
+				else
+				{
+					switch (tag)
+					{
+						case ONE_TIME_KEY_TAG:
+							mOneTimeKeyOffset = position;
+							mOneTimeKeyLength = (int) length;
+							break;
+						case BASE_KEY_TAG:
+							mBaseKeyOffset = position;
+							mBaseKeyLength = (int) length;
+							break;
+						case IDENTITY_KEY_TAG:
+							mIdentityKeyOffset = position;
+							mIdentityKeyLength = (int) length;
+							break;
+						case INNER_MESSAGE_TAG:
+							if (!parseInnerMessage(position, position + (int) length))
+							{
+								return false;
+							}
+							break;
+						default:
+							break;
+					}
+				}
+				position += (int) length;
+			}
+			else
+			{
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Parse an Olm normal message between two offsets of the decoded message: the version, the fields and the MAC.
+	 *
+	 * @return false if the message is malformed
+	 */
+	private boolean parseInnerMessage(int aStart, int aEnd)
+	{
+		if (aEnd - aStart < 1 + MAC_LENGTH)
+		{
+			return false;
+		}
+		
+		int version = mDecoded[aStart] & 0xFF;
+		if (Kind.MESSAGE == mKind)
+		{
+			mVersion = version;
+		}
+		mMacOffset = aEnd - MAC_LENGTH;
+		
+		int position = aStart + 1;
+		while (position < mMacOffset)
+		{
+			long key = readVarint(position, mMacOffset);
+			if (key < 0)
+			{
+				return false;
+			}
+			position += varintLength(position);
+			int tag = (int) key;
+			
+			if (WIRE_VARINT == (tag & 7))
+			{
+				long value = readVarint(position, mMacOffset);
+				if (value < 0)
+				{
+					return false;
+				}
+				if (CHAIN_INDEX_TAG == tag)
+				{
+					mMessageIndex = value;
+				}
+				position += varintLength(position);
+			}
+			else if (WIRE_LENGTH_DELIMITED == (tag & 7))
+			{
+				long length = readVarint(position, mMacOffset);
+				if (length < 0)
+				{
+					return false;
+				}
+				position += varintLength(position);
+				if (length > mMacOffset - position)
+				{
+					return false;
+				}
+				if (RATCHET_KEY_TAG == tag)
+				{
+					mRatchetKeyOffset = position;
+				}
+				else if (CIPHERTEXT_TAG == tag)
+				{
+					mCiphertextOffset = position;
+					mCiphertextLength = (int) length;
+				}
+				position += (int) length;
+			}
+			else
+			{
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * @return the unsigned 32 bits varint at a position, -1 if it is truncated or too large
+	 */
+	private long readVarint(int aPosition, int aEnd)
+	{
+		long value = 0;
+		for (int shift = 0; (shift <= 28) && (aPosition < aEnd); shift += 7)
+		{
+			int b = mDecoded[aPosition++] & 0xFF;
+			value |= (long) (b & 0x7F) << shift;
+			if (0 == (b & 0x80))
+			{
+				return (value <= 0xFFFFFFFFL) ? value : -1;
+			}
+		}
+		return -1;
+	}
+	
+	private int varintLength(int aPosition)
+	{
+		int length = 1;
+		while (0 != (mDecoded[aPosition++] & 0x80))
+		{
+			length++;
+		}
+		return length;
+	}
+	
+	/**
+	 * Decode unpadded base64, as produced by libolm.
+	 *
+	 * @return the decoded bytes, null if the input is not base64
+	 */
+	@Nullable
+	private static byte[] decode(@Nonnull byte[] aEncoded, int aOffset, int aLength)
+	{
+		if ((aOffset < 0) || (aLength < 0) || (aOffset > aEncoded.length - aLength))
+		{
+			return null;
+		}
+		
+		try
+		{
+			return OlmBase64.decode(aEncoded, aOffset, aLength);
+		}
+		catch (IllegalArgumentException e)
+		{
+			return null;
+		}
+	}
+	
+	/**
+	 * @return the kind of message
+	 */
+	@Nonnull
+	public Kind getKind()
+	{
+		return mKind;
+	}
+	
+	/**
+	 * @return the message version, see {@link #SUPPORTED_VERSION}. For a pre-key message, the version of the
+	 * pre-key message itself.
+	 */
+	public int getVersion()
+	{
+		return mVersion;
+	}
+	
+	/**
+	 * @return true if the version is supported by libolm
+	 */
+	public boolean isSupportedVersion()
+	{
+		return SUPPORTED_VERSION == mVersion;
+	}
+	
+	/**
+	 * @return the megolm message index, or the chain index of an Olm message; -1 if the message has none
+	 */
+	public long getMessageIndex()
+	{
+		return mMessageIndex;
+	}
+	
+	/**
+	 * @return the base64-decoded message. This is the array of the header, not a copy.
+	 */
+	@Nonnull
+	public byte[] getDecodedMessage()
+	{
+		return mDecoded;
+	}
+	
+	/**
+	 * @return offset of the ciphertext in the decoded message, -1 if the message has none
+	 */
+	public int getCiphertextOffset()
+	{
+		return mCiphertextOffset;
+	}
+	
+	/**
+	 * @return length of the ciphertext
+	 */
+	public int getCiphertextLength()
+	{
+		return mCiphertextLength;
+	}
+	
+	/**
+	 * @return offset of the MAC in the decoded message, of the inner message for a pre-key message; -1 if the
+	 * message has none. The MAC is 8 bytes long.
+	 */
+	public int getMacOffset()
+	{
+		return mMacOffset;
+	}
+	
+	/**
+	 * @return offset of the ed25519 signature of a megolm message in the decoded message, -1 for an Olm message.
+	 * The signature is 64 bytes long.
+	 */
+	public int getSignatureOffset()
+	{
+		return mSignatureOffset;
+	}
+	
+	/**
+	 * @return offset of the ratchet key of an Olm message in the decoded message, -1 if the message has none
+	 */
+	public int getRatchetKeyOffset()
+	{
+		return mRatchetKeyOffset;
+	}
+	
+	/**
+	 * @return the base64 curve25519 identity key of the sender of a pre-key message, null otherwise
+	 */
+	@Nullable
+	public String getIdentityKey()
+	{
+		return encodeKey(mIdentityKeyOffset, mIdentityKeyLength);
+	}
+	
+	/**
+	 * @return the base64 curve25519 base key of a pre-key message, null otherwise
+	 */
+	@Nullable
+	public String getBaseKey()
+	{
+		return encodeKey(mBaseKeyOffset, mBaseKeyLength);
+	}
+	
+	/**
+	 * @return the base64 curve25519 one time key used by a pre-key message, null otherwise
+	 */
+	@Nullable
+	public String getOneTimeKey()
+	{
+		return encodeKey(mOneTimeKeyOffset, mOneTimeKeyLength);
+	}
+	
+	@Nullable
+	private String encodeKey(int aOffset, int aLength)
+	{
+		if (aOffset < 0)
+		{
+			return null;
+		}
+		byte[] encoded = OlmBase64.encode(mDecoded, aOffset, aLength);
+		return new String(encoded, US_ASCII);
+	}
+}
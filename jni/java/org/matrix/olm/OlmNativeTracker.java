@@ -0,0 +1,157 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import java.lang.ref.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+import javax.annotation.*;
+
+import org.slf4j.*;
+
+/**
+ * Registers the native instances with a {@link Cleaner}, so that the native memory of an object which is garbage
+ * collected without having been released is reclaimed anyway.<br>
+ * Releasing explicitly stays the fast path: it runs the release immediately and unregisters the object.
+ * Set the system property {@code org.matrix.olm.trackAllocations} to {@code true} to log the allocation site of the
+ * objects reclaimed by the cleaner.
+ */
+final class OlmNativeTracker
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(OlmNativeTracker.class);
+	
+	private static final Cleaner CLEANER = Cleaner.create();
+	
+	private static final boolean TRACK_ALLOCATIONS = Boolean.getBoolean("org.matrix.olm.trackAllocations");
+	
+	private static final ConcurrentMap<Class<?>, Counters> COUNTERS = new ConcurrentHashMap<>();
+	
+	private OlmNativeTracker()
+	{
+	}
+	
+	/**
+	 * Counters of one class.
+	 */
+	private static final class Counters
+	{
+		final AtomicLong mTracked = new AtomicLong();
+		final AtomicLong mExplicit = new AtomicLong();
+		final AtomicLong mCleaned = new AtomicLong();
+	}
+	
+	/**
+	 * Release action run by the cleaner. It must not reference the tracked object.
+	 */
+	private static final class Releaser implements Runnable
+	{
+		private final long mNativeId;
+		private final LongConsumer mRelease;
+		private final Class<?> mClass;
+		private final Counters mCounters;
+		@Nullable
+		private final Throwable mAllocationSite;
+		private volatile boolean mExplicit;
+		
+		Releaser(long aNativeId, @Nonnull LongConsumer aRelease, @Nonnull Class<?> aClass, @Nonnull Counters aCounters)
+		{
+			mNativeId = aNativeId;
+			mRelease = aRelease;
+			mClass = aClass;
+			mCounters = aCounters;
+			mAllocationSite = TRACK_ALLOCATIONS ? new Throwable("allocation site") : null;
+		}
+		
+		@Override
+		public void run()
+		{
+			mRelease.accept(mNativeId);
+			
+			if (mExplicit)
+			{
+				mCounters.mExplicit.incrementAndGet();
+			}
+			else
+			{
+				mCounters.mCleaned.incrementAndGet();
+				if (null != mAllocationSite)
+				{
+					LOGGER.warn("## run(): " + mClass.getSimpleName() + " was not released", mAllocationSite);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Handle of a tracked native instance.
+	 */
+	static final class Handle
+	{
+		private final Releaser mReleaser;
+		private final Cleaner.Cleanable mCleanable;
+		
+		private Handle(@Nonnull Object aOwner, @Nonnull Releaser aReleaser)
+		{
+			mReleaser = aReleaser;
+			mCleanable = CLEANER.register(aOwner, aReleaser);
+		}
+		
+		/**
+		 * Release the native instance now. Subsequent calls have no effect.
+		 */
+		void release()
+		{
+			mReleaser.mExplicit = true;
+			mCleanable.clean();
+		}
+	}
+	
+	/**
+	 * Register a native instance.
+	 *
+	 * @param aOwner    the java object owning the native instance
+	 * @param aNativeId the native instance
+	 * @param aRelease  the release function, typically the static release native of the owner class
+	 * @return the handle to release the instance explicitly
+	 */
+	@Nonnull
+	static Handle track(@Nonnull Object aOwner, long aNativeId, @Nonnull LongConsumer aRelease)
+	{
+		Class<?> ownerClass = aOwner.getClass();
+		Counters counters = COUNTERS.computeIfAbsent(ownerClass, c -> new Counters());
+		counters.mTracked.incrementAndGet();
+		return new Handle(aOwner, new Releaser(aNativeId, aRelease, ownerClass, counters));
+	}
+	
+	/**
+	 * @return a snapshot of the counters of every class that registered a native instance
+	 */
+	@Nonnull
+	static Map<Class<?>, OlmReleaseStats> getStats()
+	{
+		Map<Class<?>, OlmReleaseStats> stats = new HashMap<>();
+		for (Map.Entry<Class<?>, Counters> entry : COUNTERS.entrySet())
+		{
+			Counters counters = entry.getValue();
+			stats.put(entry.getKey(), new OlmReleaseStats(counters.mTracked.get(), counters.mExplicit.get(), counters.mCleaned.get()));
+		}
+		return stats;
+	}
+}
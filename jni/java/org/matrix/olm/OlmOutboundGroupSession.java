@@ -16,7 +16,12 @@
  */
 package org.matrix.olm;
 
+import static java.nio.charset.StandardCharsets.*;
+
 import java.io.*;
+import java.lang.ref.*;
+import java.nio.*;
+import java.util.*;
 
 import javax.annotation.*;
 
@@ -34,12 +39,29 @@ public class OlmOutboundGroupSession extends CommonSerializeUtils implements Ser
 	private static final long serialVersionUID = -3133097431283604416L;
 	private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(OlmOutboundGroupSession.class);
 	
+	/**
+	 * Maximum growth of an encrypted message when the message index grows: the index is a varint of 1 to 5 bytes,
+	 * and 4 more bytes take at most 6 more base64 characters.
+	 */
+	private static final int MESSAGE_INDEX_MAX_GROWTH = 6;
+	
 	/**
 	 * Session Id returned by JNI.<br>
 	 * This value uniquely identifies the native outbound group session instance.
 	 */
 	private transient long mNativeId;
 	
+	/**
+	 * Registration of {@link #mNativeId} with the cleaner.
+	 */
+	private transient OlmNativeTracker.Handle mNativeHandle;
+	
+	/**
+	 * Session identifier, cached on the first call of {@link #sessionIdentifier()}.
+	 */
+	@Nullable
+	private transient volatile String mSessionIdentifier;
+	
 	/**
 	 * Constructor.<br>
 	 * Create and save a new session native instance ID and
@@ -53,6 +75,7 @@ public class OlmOutboundGroupSession extends CommonSerializeUtils implements Ser
 		try
 		{
 			mNativeId = createNewSessionJni();
+			mNativeHandle = OlmNativeTracker.track(this, mNativeId, OlmOutboundGroupSession::releaseSessionJni);
 		}
 		catch (Exception e)
 		{
@@ -67,19 +90,21 @@ public class OlmOutboundGroupSession extends CommonSerializeUtils implements Ser
 	 *
 	 * @return native session instance identifier (see {@link #mNativeId})
 	 */
-	private native long createNewSessionJni();
+	private static native long createNewSessionJni();
 	
 	/**
 	 * Release native session and invalid its JAVA reference counter part.<br>
-	 * Public API for {@link #releaseSessionJni()}.
+	 * Public API for {@link #releaseSessionJni(long)}.
 	 */
 	public void releaseSession()
 	{
 		if (0 != mNativeId)
 		{
-			releaseSessionJni();
+			mNativeHandle.release();
 		}
 		mNativeId = 0;
+		mNativeHandle = null;
+		mSessionIdentifier = null;
 	}
 	
 	/**
@@ -87,8 +112,9 @@ public class OlmOutboundGroupSession extends CommonSerializeUtils implements Ser
 	 * This method must ALWAYS be called when this JAVA instance
 	 * is destroyed (ie. garbage collected) to prevent memory leak in native side.
 	 * See {@link #createNewSessionJni()}.
+	 * @param aNativeId native session instance identifier
 	 */
-	private native void releaseSessionJni();
+	private static native void releaseSessionJni(long aNativeId);
 	
 	/**
 	 * Return true the object resources have been released.<br>
@@ -101,7 +127,8 @@ public class OlmOutboundGroupSession extends CommonSerializeUtils implements Ser
 	}
 	
 	/**
-	 * Get a base64-encoded identifier for this session.
+	 * Get a base64-encoded identifier for this session.<br>
+	 * The identifier never changes, so it is only retrieved from the native session once.
 	 *
 	 * @return session identifier
 	 * @throws OlmException the failure reason
@@ -110,24 +137,37 @@ public class OlmOutboundGroupSession extends CommonSerializeUtils implements Ser
 	public String sessionIdentifier()
 			throws OlmException
 	{
+		String identifier = mSessionIdentifier;
+		if (null != identifier)
+		{
+			return identifier;
+		}
+		
 		try
 		{
-			return new String(sessionIdentifierJni(), "UTF-8");
+			identifier = new String(sessionIdentifierJni(mNativeId), "UTF-8");
+			mSessionIdentifier = identifier;
+			return identifier;
 		}
 		catch (Exception e)
 		{
 			LOGGER.error("## sessionIdentifier() failed " + e.getMessage());
 			throw new OlmException(OlmException.EXCEPTION_CODE_OUTBOUND_GROUP_SESSION_IDENTIFIER, e.getMessage());
 		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
 	}
 	
 	/**
 	 * Return the session identifier.
 	 * An exception is thrown if the operation fails.
 	 *
+	 * @param aNativeId native session instance identifier
 	 * @return the session identifier
 	 */
-	private native byte[] sessionIdentifierJni();
+	private static native byte[] sessionIdentifierJni(long aNativeId);
 	
 	/**
 	 * Get the current message index for this session.<br>
@@ -138,7 +178,16 @@ public class OlmOutboundGroupSession extends CommonSerializeUtils implements Ser
 	 */
 	public int messageIndex()
 	{
-		return messageIndexJni();
+		OlmGroupBackend backend = OlmBackends.GROUP;
+		
+		try
+		{
+			return (null != backend) ? backend.messageIndex(mNativeId) : messageIndexJni(mNativeId);
+		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
 	}
 	
 	/**
@@ -147,9 +196,10 @@ public class OlmOutboundGroupSession extends CommonSerializeUtils implements Ser
 	 * method returns the index for the next message.
 	 * An exception is thrown if the operation fails.
 	 *
+	 * @param aNativeId native session instance identifier
 	 * @return current session index
 	 */
-	private native int messageIndexJni();
+	private static native int messageIndexJni(long aNativeId);
 	
 	/**
 	 * Get the base64-encoded current ratchet key for this session.<br>
@@ -165,22 +215,27 @@ public class OlmOutboundGroupSession extends CommonSerializeUtils implements Ser
 	{
 		try
 		{
-			return new String(sessionKeyJni(), "UTF-8");
+			return new String(sessionKeyJni(mNativeId), "UTF-8");
 		}
 		catch (Exception e)
 		{
 			LOGGER.error("## sessionKey() failed " + e.getMessage());
 			throw new OlmException(OlmException.EXCEPTION_CODE_OUTBOUND_GROUP_SESSION_KEY, e.getMessage());
 		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
 	}
 	
 	/**
 	 * Return the session key.
 	 * An exception is thrown if the operation fails.
 	 *
+	 * @param aNativeId native session instance identifier
 	 * @return the session key
 	 */
-	private native byte[] sessionKeyJni();
+	private static native byte[] sessionKeyJni(long aNativeId);
 	
 	/**
 	 * Encrypt some plain-text message.<br>
@@ -200,7 +255,8 @@ public class OlmOutboundGroupSession extends CommonSerializeUtils implements Ser
 		{
 			try
 			{
-				byte[] encryptedBuffer = encryptMessageJni(aClearMsg.getBytes("UTF-8"));
+				byte[] clearMsg = aClearMsg.getBytes("UTF-8");
+				byte[] encryptedBuffer = encryptMessageJni(mNativeId, clearMsg, 0, clearMsg.length);
 				
 				if (null != encryptedBuffer)
 				{
@@ -212,6 +268,10 @@ public class OlmOutboundGroupSession extends CommonSerializeUtils implements Ser
 				LOGGER.error("## encryptMessage() failed " + e.getMessage());
 				throw new OlmException(OlmException.EXCEPTION_CODE_OUTBOUND_GROUP_ENCRYPT_MESSAGE, e.getMessage());
 			}
+			finally
+			{
+				Reference.reachabilityFence(this);
+			}
 		}
 		
 		return retValue;
@@ -221,10 +281,388 @@ public class OlmOutboundGroupSession extends CommonSerializeUtils implements Ser
 	 * Encrypt a bytes buffer messages.
 	 * An exception is thrown if the operation fails.
 	 *
+	 * @param aNativeId native session instance identifier
 	 * @param aClearMsgBuffer the message to encode
+	 * @param aOffset offset of the message in aClearMsgBuffer
+	 * @param aLength length of the message
 	 * @return the encoded message
 	 */
-	private native byte[] encryptMessageJni(byte[] aClearMsgBuffer);
+	private static native byte[] encryptMessageJni(long aNativeId, byte[] aClearMsgBuffer, int aOffset, int aLength);
+	
+	/**
+	 * Encrypt the message held in a slice of a byte array.
+	 *
+	 * @param aClearMsg the array holding the message to be encrypted
+	 * @param aOffset   offset of the message in the array
+	 * @param aLength   length of the message
+	 * @return the UTF-8 encoded encrypted message
+	 * @throws OlmException the encryption failure reason
+	 */
+	@Nonnull
+	public byte[] encryptMessage(@Nonnull byte[] aClearMsg, int aOffset, int aLength)
+			throws OlmException
+	{
+		OlmGroupBackend backend = OlmBackends.GROUP;
+		
+		try
+		{
+			if (null != backend)
+			{
+				long[] result = new long[1];
+				byte[] encryptedMsg = new byte[backend.encryptedMessageLength(mNativeId, aLength)];
+				OlmError error = OlmError.fromStatus(backend.encrypt(mNativeId, aClearMsg, aOffset, aLength, encryptedMsg, 0, result));
+				
+				if (OlmError.SUCCESS != error)
+				{
+					throw new Exception(error.name());
+				}
+				return (result[0] == encryptedMsg.length) ? encryptedMsg : Arrays.copyOf(encryptedMsg, (int) result[0]);
+			}
+			
+			return encryptMessageJni(mNativeId, aClearMsg, aOffset, aLength);
+		}
+		catch (Exception e)
+		{
+			LOGGER.error("## encryptMessage() failed " + e.getMessage());
+			throw new OlmException(OlmException.EXCEPTION_CODE_OUTBOUND_GROUP_ENCRYPT_MESSAGE, e.getMessage());
+		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
+	}
+	
+	/**
+	 * Encrypt the message held in a slice of a byte array, returning the raw megolm message instead of its base64
+	 * encoding. The result is three quarters of the size of {@link #encryptMessage(byte[], int, int)}, and is decrypted
+	 * with {@link OlmInboundGroupSession#decryptMessageBinary(byte[], int, int)}.
+	 *
+	 * @param aClearMsg the array holding the message to be encrypted
+	 * @param aOffset   offset of the message in the array
+	 * @param aLength   length of the message
+	 * @return the binary encrypted message
+	 * @throws OlmException the encryption failure reason
+	 */
+	@Nonnull
+	public byte[] encryptMessageBinary(@Nonnull byte[] aClearMsg, int aOffset, int aLength)
+			throws OlmException
+	{
+		try
+		{
+			return encryptMessageBinaryJni(mNativeId, aClearMsg, aOffset, aLength);
+		}
+		catch (Exception e)
+		{
+			LOGGER.error("## encryptMessageBinary() failed " + e.getMessage());
+			throw new OlmException(OlmException.EXCEPTION_CODE_OUTBOUND_GROUP_ENCRYPT_MESSAGE, e.getMessage());
+		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
+	}
+	
+	/**
+	 * @param aNativeId native session instance identifier
+	 * @param aClearMsgBuffer the message to encrypt
+	 * @param aOffset offset of the message in aClearMsgBuffer
+	 * @param aLength length of the message
+	 * @return the binary encrypted message
+	 */
+	private static native byte[] encryptMessageBinaryJni(long aNativeId, byte[] aClearMsgBuffer, int aOffset, int aLength);
+	
+	/**
+	 * Encrypt a batch of messages in a single native call.<br>
+	 * The messages are encrypted in order, so the result also tells the message index of each of them without
+	 * calling {@link #messageIndex()}.<br>
+	 * A message which fails to encrypt stops the batch. The messages encrypted before it have spent their
+	 * indexes, so they are returned, and {@link OlmBatchEncryptResult#isComplete()} is false: the following
+	 * messages are left to the caller.
+	 *
+	 * @param aClearMsgs the messages to be encrypted
+	 * @return the encrypted messages
+	 * @throws OlmException the encryption failure reason, if no message could be encrypted
+	 */
+	@Nonnull
+	public OlmBatchEncryptResult encryptMessages(@Nonnull List<String> aClearMsgs)
+			throws OlmException
+	{
+		byte[][] clearMsgs = new byte[aClearMsgs.size()][];
+		int i = 0;
+		for (String clearMsg : aClearMsgs)
+		{
+			clearMsgs[i++] = clearMsg.getBytes(UTF_8);
+		}
+		return encryptMessages(clearMsgs);
+	}
+	
+	/**
+	 * Encrypt a batch of messages in a single native call.<br>
+	 * The messages are encrypted in order, so the result also tells the message index of each of them without
+	 * calling {@link #messageIndex()}.<br>
+	 * A message which fails to encrypt stops the batch. The messages encrypted before it have spent their
+	 * indexes, so they are returned, and {@link OlmBatchEncryptResult#isComplete()} is false: the following
+	 * messages are left to the caller.
+	 *
+	 * @param aClearMsgs the messages to be encrypted
+	 * @return the encrypted messages
+	 * @throws OlmException the encryption failure reason, if no message could be encrypted
+	 */
+	@Nonnull
+	public OlmBatchEncryptResult encryptMessages(@Nonnull byte[][] aClearMsgs)
+			throws OlmException
+	{
+		OlmGroupBackend backend = OlmBackends.GROUP;
+		int count = aClearMsgs.length;
+		int[] clearMsgEnds = new int[count];
+		int[] encryptedMsgEnds = new int[count];
+		long[] progress = new long[2];
+		byte[] clearMsgs = pack(aClearMsgs, clearMsgEnds);
+		
+		try
+		{
+			byte[] encryptedMsgs;
+			
+			if (null != backend)
+			{
+				encryptedMsgs = encryptMessagesWithBackend(backend, mNativeId, clearMsgs, clearMsgEnds, encryptedMsgEnds, progress);
+			}
+			else
+			{
+				encryptedMsgs = encryptMessagesJni(mNativeId, clearMsgs, clearMsgEnds, count, encryptedMsgEnds, progress);
+			}
+			
+			int encrypted = (int) progress[1];
+			if (encrypted < count)
+			{
+				LOGGER.error("## encryptMessages(): stopped after {} of {} messages", encrypted, count);
+			}
+			
+			// the output is sized for the worst case message indexes
+			int length = (0 == encrypted) ? 0 : encryptedMsgEnds[encrypted - 1];
+			if (length != encryptedMsgs.length)
+			{
+				encryptedMsgs = Arrays.copyOf(encryptedMsgs, length);
+			}
+			
+			return new OlmBatchEncryptResult(encryptedMsgs, encryptedMsgEnds, encrypted, count, progress[0]);
+		}
+		catch (Exception e)
+		{
+			LOGGER.error("## encryptMessages() failed " + e.getMessage());
+			throw new OlmException(OlmException.EXCEPTION_CODE_OUTBOUND_GROUP_ENCRYPT_MESSAGE, e.getMessage());
+		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
+	}
+	
+	/**
+	 * Pack messages one after the other.
+	 *
+	 * @param aMsgs the messages to pack
+	 * @param aEnds receives the offset following each message in the packed array
+	 * @return the packed array
+	 */
+	@Nonnull
+	private static byte[] pack(@Nonnull byte[][] aMsgs, @Nonnull int[] aEnds)
+	{
+		int length = 0;
+		for (int i = 0; i < aMsgs.length; i++)
+		{
+			length = Math.addExact(length, aMsgs[i].length);
+			aEnds[i] = length;
+		}
+		
+		byte[] packed = new byte[length];
+		for (int i = 0; i < aMsgs.length; i++)
+		{
+			System.arraycopy(aMsgs[i], 0, packed, aEnds[i] - aMsgs[i].length, aMsgs[i].length);
+		}
+		return packed;
+	}
+	
+	/**
+	 * Batch encryption through a {@link OlmGroupBackend}, one message at a time.
+	 * A failure stops the batch, see {@link #encryptMessages(byte[][])}.
+	 *
+	 * @param aBackend          the backend
+	 * @param aNativeId         native session instance identifier
+	 * @param aClearMsgs        the packed messages to encrypt
+	 * @param aClearMsgEnds     the offset following each message in aClearMsgs
+	 * @param aEncryptedMsgEnds receives the offset following each encrypted message
+	 * @param aProgress         receives the message index of the first message and the number of encrypted messages
+	 * @return the packed encrypted messages, possibly followed by unused bytes
+	 * @throws Exception the encryption failure reason, if no message could be encrypted
+	 */
+	@Nonnull
+	static byte[] encryptMessagesWithBackend(@Nonnull OlmGroupBackend aBackend, long aNativeId, @Nonnull byte[] aClearMsgs,
+	                                         @Nonnull int[] aClearMsgEnds, @Nonnull int[] aEncryptedMsgEnds, @Nonnull long[] aProgress)
+			throws Exception
+	{
+		int length = 0;
+		for (int i = 0; i < aClearMsgEnds.length; i++)
+		{
+			int clearLength = aClearMsgEnds[i] - ((0 == i) ? 0 : aClearMsgEnds[i - 1]);
+			// the message index advances along the batch, and its varint may grow
+			length = Math.addExact(length, aBackend.encryptedMessageLength(aNativeId, clearLength) + MESSAGE_INDEX_MAX_GROWTH);
+		}
+		
+		byte[] encryptedMsgs = new byte[length];
+		long[] result = new long[1];
+		int encryptedOffset = 0;
+		aProgress[0] = aBackend.messageIndex(aNativeId) & 0xFFFFFFFFL;
+		aProgress[1] = 0;
+		
+		for (int i = 0; i < aClearMsgEnds.length; i++)
+		{
+			int clearOffset = (0 == i) ? 0 : aClearMsgEnds[i - 1];
+			OlmError error = OlmError.fromStatus(aBackend.encrypt(aNativeId, aClearMsgs, clearOffset, aClearMsgEnds[i] - clearOffset,
+					encryptedMsgs, encryptedOffset, result));
+			
+			if (OlmError.SUCCESS != error)
+			{
+				LOGGER.error("## encryptMessagesWithBackend(): message {} failed {}", i, error);
+				// the messages already encrypted have spent their indexes: they are returned
+				if (0 == i)
+				{
+					throw new Exception(error.name());
+				}
+				break;
+			}
+			encryptedOffset += (int) result[0];
+			aEncryptedMsgEnds[i] = encryptedOffset;
+			aProgress[1]++;
+		}
+		
+		return encryptedMsgs;
+	}
+	
+	/**
+	 * Encrypt a batch of messages packed in one array.
+	 * An exception is thrown if the operation fails.
+	 *
+	 * @param aNativeId          native session instance identifier
+	 * @param aClearMsgs         the packed messages to encrypt
+	 * @param aClearMsgEnds      the offset following each message in aClearMsgs
+	 * @param aCount             number of messages to encrypt
+	 * @param aEncryptedMsgEnds  receives the offset following each encrypted message
+	 * @param aProgress          receives the message index of the first message and the number of encrypted messages
+	 * @return the packed encrypted messages, possibly followed by unused bytes
+	 */
+	private static native byte[] encryptMessagesJni(long aNativeId, byte[] aClearMsgs, int[] aClearMsgEnds, int aCount,
+	                                                int[] aEncryptedMsgEnds, long[] aProgress);
+	
+	/**
+	 * Return the length of the encrypted message produced for a message of the given length,
+	 * to size the output of {@link #encryptMessage(ByteBuffer, ByteBuffer)}.
+	 *
+	 * @param aClearMsgLength length of the message to be encrypted
+	 * @return the length of the encrypted message
+	 */
+	public int encryptedMessageLength(int aClearMsgLength)
+	{
+		OlmGroupBackend backend = OlmBackends.GROUP;
+		
+		try
+		{
+			return (null != backend) ? backend.encryptedMessageLength(mNativeId, aClearMsgLength) : encryptedMessageLengthJni(mNativeId, aClearMsgLength);
+		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
+	}
+	
+	private static native int encryptedMessageLengthJni(long aNativeId, int aClearMsgLength);
+	
+	/**
+	 * Return an upper bound of the length of the encrypted message produced for a message of the given length,
+	 * whatever the message index of the session. Unlike {@link #encryptedMessageLength(int)}, it stays valid
+	 * while the session encrypts messages, so one output buffer can be reused.
+	 *
+	 * @param aClearMsgLength length of the message to be encrypted
+	 * @return the maximum length of the encrypted message
+	 */
+	public int maxEncryptedMessageLength(int aClearMsgLength)
+	{
+		return encryptedMessageLength(aClearMsgLength) + MESSAGE_INDEX_MAX_GROWTH;
+	}
+	
+	/**
+	 * Encrypt a message from a direct buffer into another direct buffer, without any copy through the java heap.<br>
+	 * The message is read between the position and the limit of {@code aClearMsg}, the UTF-8 encoded encrypted
+	 * message is written at the position of {@code aEncryptedMsg}. On success the position of {@code aClearMsg}
+	 * is moved to its limit and the position of {@code aEncryptedMsg} is advanced by the length of the encrypted message.
+	 *
+	 * @param aClearMsg     direct buffer holding the message to be encrypted
+	 * @param aEncryptedMsg direct buffer receiving the encrypted message
+	 * @return the length of the encrypted message
+	 * @throws OlmException the encryption failure reason, also thrown if a buffer is not direct or the output is read-only
+	 */
+	public int encryptMessage(@Nonnull ByteBuffer aClearMsg, @Nonnull ByteBuffer aEncryptedMsg)
+			throws OlmException
+	{
+		if (!aClearMsg.isDirect() || !aEncryptedMsg.isDirect() || aEncryptedMsg.isReadOnly())
+		{
+			LOGGER.error("## encryptMessage(): direct buffers are required");
+			throw new OlmException(OlmException.EXCEPTION_CODE_OUTBOUND_GROUP_ENCRYPT_MESSAGE, "direct buffers are required");
+		}
+		
+		OlmGroupBackend backend = OlmBackends.GROUP;
+		int encryptedLength;
+		
+		try
+		{
+			if (null != backend)
+			{
+				long[] result = new long[1];
+				OlmError error = OlmError.fromStatus(backend.encrypt(mNativeId, aClearMsg, aEncryptedMsg, result));
+				
+				if (OlmError.SUCCESS != error)
+				{
+					throw new Exception(error.name());
+				}
+				encryptedLength = (int) result[0];
+			}
+			else
+			{
+				encryptedLength = encryptMessageBufferJni(mNativeId,
+						aClearMsg, aClearMsg.position(), aClearMsg.remaining(),
+						aEncryptedMsg, aEncryptedMsg.position(), aEncryptedMsg.remaining());
+			}
+		}
+		catch (Exception e)
+		{
+			LOGGER.error("## encryptMessage() failed " + e.getMessage());
+			throw new OlmException(OlmException.EXCEPTION_CODE_OUTBOUND_GROUP_ENCRYPT_MESSAGE, e.getMessage());
+		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
+		
+		aClearMsg.position(aClearMsg.limit());
+		aEncryptedMsg.position(aEncryptedMsg.position() + encryptedLength);
+		return encryptedLength;
+	}
+	
+	/**
+	 * Encrypt a message held in a direct buffer into another direct buffer.
+	 * An exception is thrown if the operation fails.
+	 *
+	 * @param aNativeId        native session instance identifier
+	 * @param aClearMsg        direct buffer holding the message to encode
+	 * @param aClearOffset     offset of the message in aClearMsg
+	 * @param aClearLength     length of the message
+	 * @param aEncryptedMsg    direct buffer receiving the encoded message
+	 * @param aEncryptedOffset offset of the output in aEncryptedMsg
+	 * @param aEncryptedLength space available for the output
+	 * @return the length of the encoded message
+	 */
+	private static native int encryptMessageBufferJni(long aNativeId, ByteBuffer aClearMsg, int aClearOffset, int aClearLength,
+	                                                  ByteBuffer aEncryptedMsg, int aEncryptedOffset, int aEncryptedLength);
 	
 	//==============================================================================================================
 	// Serialization management
@@ -272,13 +710,17 @@ public class OlmOutboundGroupSession extends CommonSerializeUtils implements Ser
 		
 		try
 		{
-			pickleRetValue = serializeJni(aKey);
+			pickleRetValue = serializeJni(mNativeId, aKey);
 		}
 		catch (Exception e)
 		{
 			LOGGER.error("## serialize(): failed " + e.getMessage());
 			aErrorMsg.append(e.getMessage());
 		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
 		
 		return pickleRetValue;
 	}
@@ -287,10 +729,11 @@ public class OlmOutboundGroupSession extends CommonSerializeUtils implements Ser
 	 * JNI counter part of {@link #serialize(byte[], StringBuffer)}.
 	 * An exception is thrown if the operation fails.
 	 *
+	 * @param aNativeId native session instance identifier
 	 * @param aKey encryption key
 	 * @return the serialized session
 	 */
-	private native byte[] serializeJni(byte[] aKey);
+	private static native byte[] serializeJni(long aNativeId, byte[] aKey);
 	
 	/**
 	 * Loads an account from a pickled base64 string.<br>
@@ -309,6 +752,8 @@ public class OlmOutboundGroupSession extends CommonSerializeUtils implements Ser
 		try
 		{
 			mNativeId = deserializeJni(aSerializedData, aKey);
+			mNativeHandle = OlmNativeTracker.track(this, mNativeId, OlmOutboundGroupSession::releaseSessionJni);
+			mSessionIdentifier = null;
 		}
 		catch (Exception e)
 		{
@@ -331,6 +776,6 @@ public class OlmOutboundGroupSession extends CommonSerializeUtils implements Ser
 	 * @param aKey            the key used to encrypt the serialized account data
 	 * @return the deserialized session
 	 **/
-	private native long deserializeJni(byte[] aSerializedData, byte[] aKey);
+	private static native long deserializeJni(byte[] aSerializedData, byte[] aKey);
 	
 }
@@ -0,0 +1,386 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import javax.annotation.*;
+
+import org.slf4j.*;
+
+/**
+ * Rotates the outbound group sessions of rooms according to a message count and an age policy, with the successor
+ * of every session created in the background.<br>
+ * Creating a session involves generating its megolm and ed25519 keys; doing it on the send path stalls the first
+ * message after a rotation. Instead, as soon as a session becomes the current session of a room, its successor and
+ * the successor's session key are created on an executor, so that rotating is a swap.<br>
+ * The price is memory: every room holds two live native sessions, its current session and the successor waiting
+ * for the next rotation, so a room takes twice the native memory and slab slots of a single outbound session.
+ * Rooms no longer used should be {@link #remove(String) removed}.<br>
+ * The rotator owns its sessions: they are used through {@link #apply(String, SessionFunction)}, which reserves the
+ * session of the room to the calling thread while the function runs. A rotated session is released. The rotator is
+ * thread safe.
+ */
+public class OlmOutboundGroupSessionRotator
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(OlmOutboundGroupSessionRotator.class);
+	
+	/**
+	 * Work on the current session of a room.
+	 *
+	 * @param <R> the result type
+	 */
+	public interface SessionFunction<R>
+	{
+		/**
+		 * @param aSession the session, only valid until the function returns
+		 * @return the result
+		 * @throws OlmException the failure reason
+		 */
+		R apply(@Nonnull RoomSession aSession)
+				throws OlmException;
+	}
+	
+	/**
+	 * A session with the metadata computed when it was created.
+	 */
+	public static final class RoomSession
+	{
+		private final OlmOutboundGroupSession mSession;
+		private final String mSessionId;
+		private final String mSessionKey;
+		private boolean mShared;
+		
+		private RoomSession(@Nonnull OlmOutboundGroupSession aSession)
+				throws OlmException
+		{
+			mSession = aSession;
+			mSessionId = aSession.sessionIdentifier();
+			mSessionKey = aSession.sessionKey();
+		}
+		
+		/**
+		 * @return the session
+		 */
+		@Nonnull
+		public OlmOutboundGroupSession getSession()
+		{
+			return mSession;
+		}
+		
+		/**
+		 * @return the session identifier
+		 */
+		@Nonnull
+		public String getSessionId()
+		{
+			return mSessionId;
+		}
+		
+		/**
+		 * @return the session key at the first message index, to be shared with the devices of the room
+		 */
+		@Nonnull
+		public String getSessionKey()
+		{
+			return mSessionKey;
+		}
+		
+		/**
+		 * @return true until a function run on the session completes normally, i.e. while its key still has to be
+		 * shared
+		 */
+		public boolean isNew()
+		{
+			return !mShared;
+		}
+	}
+	
+	/**
+	 * Sessions of a room. Guarded by its own lock.
+	 */
+	private static final class Room
+	{
+		@Nullable
+		RoomSession mCurrent;
+		long mActivationNanos;
+		boolean mRotationRequested;
+		@Nullable
+		CompletableFuture<RoomSession> mSuccessor;
+		boolean mRemoved;
+	}
+	
+	private final long mMaxMessages;
+	private final long mMaxAgeNanos;
+	private final Executor mExecutor;
+	
+	private final Map<String, Room> mRooms = new HashMap<>();
+	
+	/**
+	 * Create the successor sessions on the common fork-join pool.
+	 *
+	 * @param aMaxMessages   number of messages after which a session is rotated
+	 * @param aMaxAgeMillis  age after which a session is rotated, counted from the rotation that made it the current
+	 *                       session of the room, right before its first use
+	 */
+	public OlmOutboundGroupSessionRotator(long aMaxMessages, long aMaxAgeMillis)
+	{
+		this(aMaxMessages, aMaxAgeMillis, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * @param aMaxMessages   number of messages after which a session is rotated
+	 * @param aMaxAgeMillis  age after which a session is rotated, counted from the rotation that made it the current
+	 *                       session of the room, right before its first use
+	 * @param aExecutor      the executor creating the successor sessions
+	 */
+	public OlmOutboundGroupSessionRotator(long aMaxMessages, long aMaxAgeMillis, @Nonnull Executor aExecutor)
+	{
+		mMaxMessages = aMaxMessages;
+		mMaxAgeNanos = TimeUnit.MILLISECONDS.toNanos(aMaxAgeMillis);
+		mExecutor = aExecutor;
+	}
+	
+	/**
+	 * Run a function on the current session of a room, rotating it first if the policy requires it.<br>
+	 * The session of the room is reserved to the calling thread while the function runs. The session handed to the
+	 * function is new until a function run on it completes normally, see {@link RoomSession#isNew()}.
+	 *
+	 * @param aRoomId   the room
+	 * @param aFunction the function
+	 * @param <R>       the result type
+	 * @return the result of the function
+	 * @throws OlmException if a session can not be created, or the failure of the function
+	 */
+	public <R> R apply(@Nonnull String aRoomId, @Nonnull SessionFunction<R> aFunction)
+			throws OlmException
+	{
+		while (true)
+		{
+			Room room;
+			synchronized (this)
+			{
+				room = mRooms.computeIfAbsent(aRoomId, id -> new Room());
+			}
+			
+			synchronized (room)
+			{
+				if (room.mRemoved)
+				{
+					// removed while waiting for the room, use the new one
+					continue;
+				}
+				
+				if (needsRotation(room))
+				{
+					rotate(room);
+				}
+				
+				RoomSession session = room.mCurrent;
+				R result = aFunction.apply(session);
+				// the function succeeded, so the key of a new session was shared
+				session.mShared = true;
+				return result;
+			}
+		}
+	}
+	
+	/**
+	 * Encrypt a message with the current session of a room.
+	 *
+	 * @param aRoomId   the room
+	 * @param aClearMsg the message to be encrypted
+	 * @return the encrypted message
+	 * @throws OlmException the failure reason
+	 */
+	@Nullable
+	public String encryptMessage(@Nonnull String aRoomId, @Nonnull String aClearMsg)
+			throws OlmException
+	{
+		return apply(aRoomId, session -> session.getSession().encryptMessage(aClearMsg));
+	}
+	
+	/**
+	 * Rotate the session of a room before its next use, whatever the policy, typically when a member left.
+	 *
+	 * @param aRoomId the room
+	 */
+	public void requestRotation(@Nonnull String aRoomId)
+	{
+		Room room;
+		synchronized (this)
+		{
+			room = mRooms.get(aRoomId);
+		}
+		
+		if (null != room)
+		{
+			synchronized (room)
+			{
+				room.mRotationRequested = true;
+			}
+		}
+	}
+	
+	/**
+	 * Release the sessions of a room and forget it.
+	 *
+	 * @param aRoomId the room
+	 * @return true if the room was known
+	 */
+	public boolean remove(@Nonnull String aRoomId)
+	{
+		Room room;
+		synchronized (this)
+		{
+			room = mRooms.remove(aRoomId);
+		}
+		
+		if (null == room)
+		{
+			return false;
+		}
+		
+		discard(room);
+		return true;
+	}
+	
+	/**
+	 * @return number of rooms with a session
+	 */
+	public synchronized int size()
+	{
+		return mRooms.size();
+	}
+	
+	/**
+	 * Release every session and forget every room.
+	 */
+	public void clear()
+	{
+		List<Room> rooms;
+		synchronized (this)
+		{
+			rooms = new ArrayList<>(mRooms.values());
+			mRooms.clear();
+		}
+		
+		for (Room room : rooms)
+		{
+			discard(room);
+		}
+	}
+	
+	/**
+	 * Called with the room lock held.
+	 */
+	private boolean needsRotation(@Nonnull Room aRoom)
+	{
+		return (null == aRoom.mCurrent) || aRoom.mRotationRequested
+				|| (aRoom.mCurrent.mSession.messageIndex() >= mMaxMessages)
+				|| (System.nanoTime() - aRoom.mActivationNanos >= mMaxAgeNanos);
+	}
+	
+	/**
+	 * Make the successor the current session, and start creating the next one. Called with the room lock held.
+	 */
+	private void rotate(@Nonnull Room aRoom)
+			throws OlmException
+	{
+		RoomSession successor = null;
+		
+		if (null != aRoom.mSuccessor)
+		{
+			try
+			{
+				// usually done already; otherwise waiting is still shorter than starting over
+				successor = aRoom.mSuccessor.join();
+			}
+			catch (CompletionException | CancellationException e)
+			{
+				LOGGER.error("## rotate(): the successor session could not be created {}", e.getMessage());
+			}
+			aRoom.mSuccessor = null;
+		}
+		
+		if (null == successor)
+		{
+			successor = createSession();
+		}
+		
+		RoomSession retired = aRoom.mCurrent;
+		aRoom.mCurrent = successor;
+		aRoom.mActivationNanos = System.nanoTime();
+		aRoom.mRotationRequested = false;
+		aRoom.mSuccessor = CompletableFuture.supplyAsync(() ->
+		{
+			try
+			{
+				return createSession();
+			}
+			catch (OlmException e)
+			{
+				throw new CompletionException(e);
+			}
+		}, mExecutor);
+		
+		if (null != retired)
+		{
+			retired.mSession.releaseSession();
+		}
+	}
+	
+	@Nonnull
+	private static RoomSession createSession()
+			throws OlmException
+	{
+		OlmOutboundGroupSession session = new OlmOutboundGroupSession();
+		try
+		{
+			return new RoomSession(session);
+		}
+		catch (OlmException e)
+		{
+			session.releaseSession();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Release the sessions of a room which is no longer in the map.
+	 */
+	private static void discard(@Nonnull Room aRoom)
+	{
+		synchronized (aRoom)
+		{
+			aRoom.mRemoved = true;
+			
+			if (null != aRoom.mCurrent)
+			{
+				aRoom.mCurrent.mSession.releaseSession();
+				aRoom.mCurrent = null;
+			}
+			
+			if (null != aRoom.mSuccessor)
+			{
+				aRoom.mSuccessor.thenAccept(session -> session.mSession.releaseSession());
+				aRoom.mSuccessor = null;
+			}
+		}
+	}
+}
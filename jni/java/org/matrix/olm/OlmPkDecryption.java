@@ -16,9 +16,10 @@
 
 package org.matrix.olm;
 
-import static kotlin.text.Charsets.UTF_8;
 import static org.matrix.olm.OlmException.*;
 
+import java.lang.ref.*;
+
 import javax.annotation.Nonnull;
 
 import org.slf4j.*;
@@ -33,12 +34,18 @@ public class OlmPkDecryption
 	 **/
 	private transient long mNativeId;
 	
+	/**
+	 * Registration of {@link #mNativeId} with the cleaner.
+	 */
+	private transient OlmNativeTracker.Handle mNativeHandle;
+	
 	public OlmPkDecryption()
 			throws OlmException
 	{
 		try
 		{
 			mNativeId = createNewPkDecryptionJni();
+			mNativeHandle = OlmNativeTracker.track(this, mNativeId, OlmPkDecryption::releasePkDecryptionJni);
 		}
 		catch (Exception e)
 		{
@@ -46,15 +53,16 @@ public class OlmPkDecryption
 		}
 	}
 	
-	private native long createNewPkDecryptionJni();
+	private static native long createNewPkDecryptionJni();
 	
-	private native void releasePkDecryptionJni();
+	private static native void releasePkDecryptionJni(long aNativeId);
 	
 	public void releaseDecryption()
 	{
 		if (0 != mNativeId)
-			releasePkDecryptionJni();
+			mNativeHandle.release();
 		mNativeId = 0;
+		mNativeHandle = null;
 	}
 	
 	public boolean isReleased()
@@ -68,7 +76,7 @@ public class OlmPkDecryption
 	{
 		try
 		{
-			byte[] key = generateKeyJni();
+			byte[] key = generateKeyJni(mNativeId);
 			return new String(key, "UTF-8");
 		}
 		catch (Exception e)
@@ -76,24 +84,78 @@ public class OlmPkDecryption
 			LOGGER.error("## setRecipientKey(): failed " + e.getMessage());
 			throw new OlmException(EXCEPTION_CODE_PK_DECRYPTION_GENERATE_KEY, e.getMessage());
 		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
 	}
 	
-	private native byte[] generateKeyJni();
+	private static native byte[] generateKeyJni(long aNativeId);
 	
 	@Nonnull
 	public String decrypt(@Nonnull OlmPkMessage aMessage)
 			throws OlmException
+	{
+		return decryptPlaintext(aMessage).getString();
+	}
+	
+	/**
+	 * Decrypt a message, keeping the decrypted message as bytes.<br>
+	 * See {@link OlmPlaintext}: the message is only decoded on demand, and can be wiped once consumed.
+	 *
+	 * @param aMessage the message to decrypt
+	 * @return the decrypted message
+	 * @throws OlmException the failure reason
+	 */
+	@Nonnull
+	public OlmPlaintext decryptPlaintext(@Nonnull OlmPkMessage aMessage)
+			throws OlmException
 	{
 		try
 		{
-			return new String(decryptJni(aMessage), UTF_8);
+			return new OlmPlaintext(decryptJni(mNativeId, aMessage));
 		}
 		catch (Exception e)
 		{
-			LOGGER.error("## pkDecrypt(): failed " + e.getMessage());
+			LOGGER.error("## pkDecrypt(): failed {}", e.getMessage());
 			throw new OlmException(EXCEPTION_CODE_PK_DECRYPTION_DECRYPT, e.getMessage());
 		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
 	}
 	
-	private native byte[] decryptJni(@Nonnull OlmPkMessage aMessage);
+	private static native byte[] decryptJni(long aNativeId, @Nonnull OlmPkMessage aMessage);
+	
+	/**
+	 * Decrypt a message whose fields are in binary form.
+	 *
+	 * @param aMessage the binary message to decrypt
+	 * @return the decrypted message
+	 * @throws OlmException the failure reason
+	 */
+	@Nonnull
+	public OlmPlaintext decryptBinary(@Nonnull OlmPkBinaryMessage aMessage)
+			throws OlmException
+	{
+		final OlmPkMessage message = new OlmPkMessage();
+		
+		try
+		{
+			message.mCipherText = OlmBase64.encodeToString(aMessage.mCipherText);
+			message.mMac = OlmBase64.encodeToString(aMessage.mMac);
+			message.mEphemeralKey = OlmBase64.encodeToString(aMessage.mEphemeralKey);
+			return new OlmPlaintext(decryptJni(mNativeId, message));
+		}
+		catch (Exception e)
+		{
+			LOGGER.error("## pkDecryptBinary(): failed {}", e.getMessage());
+			throw new OlmException(EXCEPTION_CODE_PK_DECRYPTION_DECRYPT, e.getMessage());
+		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
+	}
 }
@@ -18,6 +18,8 @@ package org.matrix.olm;
 
 import static org.matrix.olm.OlmException.*;
 
+import java.lang.ref.*;
+
 import javax.annotation.Nonnull;
 
 import org.slf4j.*;
@@ -32,12 +34,18 @@ public class OlmPkEncryption
 	 **/
 	private transient long mNativeId;
 	
+	/**
+	 * Registration of {@link #mNativeId} with the cleaner.
+	 */
+	private transient OlmNativeTracker.Handle mNativeHandle;
+	
 	public OlmPkEncryption()
 			throws OlmException
 	{
 		try
 		{
 			mNativeId = createNewPkEncryptionJni();
+			mNativeHandle = OlmNativeTracker.track(this, mNativeId, OlmPkEncryption::releasePkEncryptionJni);
 		}
 		catch (Exception e)
 		{
@@ -45,15 +53,16 @@ public class OlmPkEncryption
 		}
 	}
 	
-	private native long createNewPkEncryptionJni();
+	private static native long createNewPkEncryptionJni();
 	
-	private native void releasePkEncryptionJni();
+	private static native void releasePkEncryptionJni(long aNativeId);
 	
 	public void releaseEncryption()
 	{
 		if (0 != mNativeId)
-			releasePkEncryptionJni();
+			mNativeHandle.release();
 		mNativeId = 0;
+		mNativeHandle = null;
 	}
 	
 	public boolean isReleased()
@@ -66,16 +75,20 @@ public class OlmPkEncryption
 	{
 		try
 		{
-			setRecipientKeyJni(aKey.getBytes("UTF-8"));
+			setRecipientKeyJni(mNativeId, aKey.getBytes("UTF-8"));
 		}
 		catch (Exception e)
 		{
 			LOGGER.error("## setRecipientKey(): failed " + e.getMessage());
 			throw new OlmException(EXCEPTION_CODE_PK_ENCRYPTION_SET_RECIPIENT_KEY, e.getMessage());
 		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
 	}
 	
-	private native void setRecipientKeyJni(byte[] aKey);
+	private static native void setRecipientKeyJni(long aNativeId, byte[] aKey);
 	
 	public OlmPkMessage encrypt(@Nonnull String aPlaintext)
 			throws OlmException
@@ -85,7 +98,7 @@ public class OlmPkEncryption
 		
 		try
 		{
-			byte[] ciphertextBuffer = encryptJni(aPlaintext.getBytes("UTF-8"), encryptedMsgRetValue);
+			byte[] ciphertextBuffer = encryptJni(mNativeId, aPlaintext.getBytes("UTF-8"), encryptedMsgRetValue);
 			
 			if (null != ciphertextBuffer)
 			{
@@ -97,9 +110,48 @@ public class OlmPkEncryption
 			LOGGER.error("## pkEncrypt(): failed " + e.getMessage());
 			throw new OlmException(EXCEPTION_CODE_PK_ENCRYPTION_ENCRYPT, e.getMessage());
 		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
 		
 		return encryptedMsgRetValue;
 	}
 	
-	private native byte[] encryptJni(byte[] plaintext, @Nonnull OlmPkMessage aMessage);
+	private static native byte[] encryptJni(long aNativeId, byte[] plaintext, @Nonnull OlmPkMessage aMessage);
+	
+	/**
+	 * Encrypt a message, returning the fields of the encrypted message in binary form.<br>
+	 * libolm only produces base64, so each field is decoded once here; the binary form is 3/4 of the size.
+	 *
+	 * @param aPlaintext the message to encrypt
+	 * @return the binary encrypted message
+	 * @throws OlmException the failure reason
+	 */
+	@Nonnull
+	public OlmPkBinaryMessage encryptBinary(@Nonnull byte[] aPlaintext)
+			throws OlmException
+	{
+		final OlmPkMessage message = new OlmPkMessage();
+		final OlmPkBinaryMessage binaryMessage = new OlmPkBinaryMessage();
+		
+		try
+		{
+			byte[] cipherText = encryptJni(mNativeId, aPlaintext, message);
+			binaryMessage.mCipherText = OlmBase64.decode(cipherText, 0, cipherText.length);
+			binaryMessage.mMac = OlmBase64.decode(message.mMac);
+			binaryMessage.mEphemeralKey = OlmBase64.decode(message.mEphemeralKey);
+		}
+		catch (Exception e)
+		{
+			LOGGER.error("## pkEncryptBinary(): failed {}", e.getMessage());
+			throw new OlmException(EXCEPTION_CODE_PK_ENCRYPTION_ENCRYPT, e.getMessage());
+		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
+		
+		return binaryMessage;
+	}
 }
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import static java.nio.charset.StandardCharsets.*;
+
+import java.nio.*;
+import java.util.*;
+
+import javax.annotation.*;
+
+/**
+ * A decrypted message, kept as the UTF-8 bytes returned by libolm.<br>
+ * The bytes are handed out without copy, so that they can be fed to a parser directly; the {@code String} is only
+ * decoded when asked for. {@link #wipe()} zeroes the bytes once the message is consumed, which a {@code String}
+ * can not offer: a decoded {@code String} stays on the heap until collected.
+ */
+public class OlmPlaintext
+{
+	@Nullable
+	private byte[] mBytes;
+	@Nullable
+	private String mString;
+	private boolean mWiped;
+	
+	/**
+	 * @param aBytes the UTF-8 encoded message, owned by the plaintext from now on
+	 */
+	public OlmPlaintext(@Nonnull byte[] aBytes)
+	{
+		mBytes = aBytes;
+	}
+	
+	/**
+	 * @param aString the message
+	 */
+	public OlmPlaintext(@Nonnull String aString)
+	{
+		mString = aString;
+	}
+	
+	/**
+	 * @return the UTF-8 encoded message. This is the array of the plaintext, not a copy.
+	 * @throws IllegalStateException if the plaintext was wiped
+	 */
+	@Nonnull
+	public byte[] getBytes()
+	{
+		checkNotWiped();
+		if (null == mBytes)
+		{
+			mBytes = mString.getBytes(UTF_8);
+		}
+		return mBytes;
+	}
+	
+	/**
+	 * @return a read-only buffer over the UTF-8 encoded message, without copy
+	 * @throws IllegalStateException if the plaintext was wiped
+	 */
+	@Nonnull
+	public ByteBuffer getByteBuffer()
+	{
+		return ByteBuffer.wrap(getBytes()).asReadOnlyBuffer();
+	}
+	
+	/**
+	 * @return the length of the UTF-8 encoded message
+	 * @throws IllegalStateException if the plaintext was wiped
+	 */
+	public int getLength()
+	{
+		return getBytes().length;
+	}
+	
+	/**
+	 * @return the message, decoded on the first call
+	 * @throws IllegalStateException if the plaintext was wiped
+	 */
+	@Nonnull
+	public String getString()
+	{
+		checkNotWiped();
+		if (null == mString)
+		{
+			mString = new String(mBytes, UTF_8);
+		}
+		return mString;
+	}
+	
+	/**
+	 * Zero the bytes of the message and drop the decoded {@code String}, if any.
+	 * The plaintext can not be read anymore.
+	 */
+	public void wipe()
+	{
+		if (null != mBytes)
+		{
+			Arrays.fill(mBytes, (byte) 0);
+		}
+		mBytes = null;
+		mString = null;
+		mWiped = true;
+	}
+	
+	/**
+	 * @return true if {@link #wipe()} was called
+	 */
+	public boolean isWiped()
+	{
+		return mWiped;
+	}
+	
+	private void checkNotWiped()
+	{
+		if (mWiped)
+		{
+			throw new IllegalStateException("the plaintext was wiped");
+		}
+	}
+}
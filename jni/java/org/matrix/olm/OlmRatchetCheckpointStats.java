@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+/**
+ * Counters of the ratchet checkpoint cache of an inbound group session.<br>
+ * See {@link OlmInboundGroupSession#enableRatchetCheckpoints(int, long)}.
+ */
+public class OlmRatchetCheckpointStats
+{
+	private final long mHits;
+	private final long mMisses;
+	private final long mRatchetSteps;
+	private final int mCheckpoints;
+	private final long mBytes;
+	
+	OlmRatchetCheckpointStats(long aHits, long aMisses, long aRatchetSteps, int aCheckpoints, long aBytes)
+	{
+		mHits = aHits;
+		mMisses = aMisses;
+		mRatchetSteps = aRatchetSteps;
+		mCheckpoints = aCheckpoints;
+		mBytes = aBytes;
+	}
+	
+	/**
+	 * @return number of decryptions which started from an existing checkpoint
+	 */
+	public long getHits()
+	{
+		return mHits;
+	}
+	
+	/**
+	 * @return number of decryptions which created a checkpoint first
+	 */
+	public long getMisses()
+	{
+		return mMisses;
+	}
+	
+	/**
+	 * @return number of ratchet advances done by the decryptions and the checkpoint creations.
+	 * Decryptions which did not go through a checkpoint are counted from the first known index: an upper bound.
+	 */
+	public long getRatchetSteps()
+	{
+		return mRatchetSteps;
+	}
+	
+	/**
+	 * @return number of checkpoints currently held
+	 */
+	public int getCheckpoints()
+	{
+		return mCheckpoints;
+	}
+	
+	/**
+	 * @return native memory used by the checkpoints currently held
+	 */
+	public long getBytes()
+	{
+		return mBytes;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "{hits=" + mHits + ", misses=" + mMisses + ", steps=" + mRatchetSteps + ", checkpoints=" + mCheckpoints + ", bytes=" + mBytes + "}";
+	}
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import java.nio.*;
+import java.util.*;
+import java.util.function.*;
+
+import javax.annotation.*;
+
+import org.slf4j.*;
+
+/**
+ * Ratchet checkpoint cache of an inbound group session.<br>
+ * libolm decrypts a message older than the latest one by advancing a copy of the initial ratchet of the session up
+ * to the message index. A checkpoint is a native inbound group session whose initial ratchet is the ratchet of the
+ * session at a multiple of the interval, so that decrypting with the closest checkpoint below the message index
+ * costs less than one interval of ratchet advances.<br>
+ * Checkpoints are created on demand, from the closest checkpoint below them, and the least recently used one is
+ * evicted once the budget is reached. An evicted checkpoint is wiped natively.<br>
+ * Like the session, the cache is not thread safe.
+ */
+final class OlmRatchetCheckpoints
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(OlmRatchetCheckpoints.class);
+	
+	// base64 characters covering the header of a megolm message up to the message index
+	private static final int HEADER_CHARS = 12;
+	
+	private final long mMask;
+	private final int mMaxCheckpoints;
+	private final long mCheckpointSize;
+	private final long mFirstKnownIndex;
+	private final LongBinaryOperator mCreate;
+	private final LongConsumer mRelease;
+	
+	// checkpoints, sorted by index
+	private final long[] mIndexes;
+	private final long[] mNativeIds;
+	private final OlmNativeTracker.Handle[] mHandles;
+	private final long[] mLastUses;
+	private int mCount;
+	private long mClock;
+	
+	private final byte[] mHeader = new byte[HEADER_CHARS];
+	
+	private long mHits;
+	private long mMisses;
+	private long mRatchetSteps;
+	
+	/**
+	 * @param aIntervalBits   log2 of the interval between two checkpoints
+	 * @param aMaxCheckpoints maximum number of checkpoints, at least 1
+	 * @param aCheckpointSize native memory used by one checkpoint
+	 * @param aFirstKnownIndex first known index of the session
+	 * @param aCreate         creates a checkpoint from a native session and an index, see createCheckpointJni()
+	 * @param aRelease        releases a checkpoint
+	 */
+	OlmRatchetCheckpoints(int aIntervalBits, int aMaxCheckpoints, long aCheckpointSize, long aFirstKnownIndex,
+	                      @Nonnull LongBinaryOperator aCreate, @Nonnull LongConsumer aRelease)
+	{
+		mMask = (1L << aIntervalBits) - 1;
+		mMaxCheckpoints = aMaxCheckpoints;
+		mCheckpointSize = aCheckpointSize;
+		mFirstKnownIndex = aFirstKnownIndex;
+		mCreate = aCreate;
+		mRelease = aRelease;
+		
+		mIndexes = new long[aMaxCheckpoints];
+		mNativeIds = new long[aMaxCheckpoints];
+		mHandles = new OlmNativeTracker.Handle[aMaxCheckpoints];
+		mLastUses = new long[aMaxCheckpoints];
+	}
+	
+	/**
+	 * Select the native session to decrypt a message with.
+	 *
+	 * @param aNativeId     native instance of the session
+	 * @param aEncryptedMsg the array holding the message
+	 * @param aOffset       offset of the message in the array
+	 * @param aLength       length of the message
+	 * @return the native session: a checkpoint, or aNativeId if no checkpoint applies
+	 */
+	long select(long aNativeId, @Nonnull byte[] aEncryptedMsg, int aOffset, int aLength)
+	{
+		if ((aOffset < 0) || (aLength < 0) || (aOffset > aEncryptedMsg.length - aLength))
+		{
+			// let the session report the invalid parameters
+			return aNativeId;
+		}
+		return select(aNativeId, OlmMessageHeader.peekGroupMessageIndex(aEncryptedMsg, aOffset, aLength));
+	}
+	
+	/**
+	 * Select the native session to decrypt a message with.
+	 *
+	 * @param aNativeId     native instance of the session
+	 * @param aEncryptedMsg the buffer holding the message between its position and limit, left untouched
+	 * @return the native session: a checkpoint, or aNativeId if no checkpoint applies
+	 */
+	long select(long aNativeId, @Nonnull ByteBuffer aEncryptedMsg)
+	{
+		int length = Math.min(aEncryptedMsg.remaining(), HEADER_CHARS);
+		int position = aEncryptedMsg.position();
+		for (int i = 0; i < length; i++)
+		{
+			mHeader[i] = aEncryptedMsg.get(position + i);
+		}
+		return select(aNativeId, OlmMessageHeader.peekGroupMessageIndex(mHeader, 0, length));
+	}
+	
+	private long select(long aNativeId, long aMessageIndex)
+	{
+		long slot = aMessageIndex & ~mMask;
+		
+		if ((aMessageIndex < 0) || (slot <= mFirstKnownIndex))
+		{
+			// unreadable header or first interval: the session is as close as a checkpoint
+			mRatchetSteps += Math.max(0, aMessageIndex - mFirstKnownIndex);
+			return aNativeId;
+		}
+		
+		int position = Arrays.binarySearch(mIndexes, 0, mCount, slot);
+		
+		if (position >= 0)
+		{
+			mHits++;
+			mLastUses[position] = ++mClock;
+			mRatchetSteps += aMessageIndex - slot;
+			return mNativeIds[position];
+		}
+		
+		mMisses++;
+		position = -position - 1;
+		
+		// advance from the closest checkpoint below rather than from the first known index
+		long sourceId = (position > 0) ? mNativeIds[position - 1] : aNativeId;
+		long sourceIndex = (position > 0) ? mIndexes[position - 1] : mFirstKnownIndex;
+		long checkpointId;
+		
+		try
+		{
+			checkpointId = mCreate.applyAsLong(sourceId, slot);
+		}
+		catch (Exception e)
+		{
+			LOGGER.error("## select(): checkpoint creation failed {}", e.getMessage());
+			mRatchetSteps += aMessageIndex - sourceIndex;
+			return sourceId;
+		}
+		
+		if (mCount == mMaxCheckpoints)
+		{
+			int evicted = leastRecentlyUsed();
+			mHandles[evicted].release();
+			remove(evicted);
+			if (evicted < position)
+			{
+				position--;
+			}
+		}
+		
+		insert(position, slot, checkpointId);
+		mRatchetSteps += (slot - sourceIndex) + (aMessageIndex - slot);
+		return checkpointId;
+	}
+	
+	private int leastRecentlyUsed()
+	{
+		int oldest = 0;
+		for (int i = 1; i < mCount; i++)
+		{
+			if (mLastUses[i] < mLastUses[oldest])
+			{
+				oldest = i;
+			}
+		}
+		return oldest;
+	}
+	
+	private void insert(int aPosition, long aIndex, long aNativeId)
+	{
+		int moved = mCount - aPosition;
+		System.arraycopy(mIndexes, aPosition, mIndexes, aPosition + 1, moved);
+		System.arraycopy(mNativeIds, aPosition, mNativeIds, aPosition + 1, moved);
+		System.arraycopy(mHandles, aPosition, mHandles, aPosition + 1, moved);
+		System.arraycopy(mLastUses, aPosition, mLastUses, aPosition + 1, moved);
+		
+		mIndexes[aPosition] = aIndex;
+		mNativeIds[aPosition] = aNativeId;
+		mHandles[aPosition] = OlmNativeTracker.track(this, aNativeId, mRelease);
+		mLastUses[aPosition] = ++mClock;
+		mCount++;
+	}
+	
+	private void remove(int aPosition)
+	{
+		int moved = mCount - aPosition - 1;
+		System.arraycopy(mIndexes, aPosition + 1, mIndexes, aPosition, moved);
+		System.arraycopy(mNativeIds, aPosition + 1, mNativeIds, aPosition, moved);
+		System.arraycopy(mHandles, aPosition + 1, mHandles, aPosition, moved);
+		System.arraycopy(mLastUses, aPosition + 1, mLastUses, aPosition, moved);
+		mCount--;
+		mHandles[mCount] = null;
+	}
+	
+	/**
+	 * Release every checkpoint. The cache can be used again afterwards.
+	 */
+	void release()
+	{
+		for (int i = 0; i < mCount; i++)
+		{
+			mHandles[i].release();
+			mHandles[i] = null;
+		}
+		mCount = 0;
+	}
+	
+	/**
+	 * @return a snapshot of the counters
+	 */
+	@Nonnull
+	OlmRatchetCheckpointStats getStats()
+	{
+		return new OlmRatchetCheckpointStats(mHits, mMisses, mRatchetSteps, mCount, mCount * mCheckpointSize);
+	}
+}
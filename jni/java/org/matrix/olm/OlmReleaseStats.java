@@ -0,0 +1,73 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+/**
+ * Release counters of the native instances of one class.<br>
+ * See {@link OlmManager#getReleaseStats()}.
+ */
+public class OlmReleaseStats
+{
+	private final long mTracked;
+	private final long mExplicitReleases;
+	private final long mCleanerReleases;
+	
+	OlmReleaseStats(long aTracked, long aExplicitReleases, long aCleanerReleases)
+	{
+		mTracked = aTracked;
+		mExplicitReleases = aExplicitReleases;
+		mCleanerReleases = aCleanerReleases;
+	}
+	
+	/**
+	 * @return number of native instances created
+	 */
+	public long getTracked()
+	{
+		return mTracked;
+	}
+	
+	/**
+	 * @return number of native instances released by the application
+	 */
+	public long getExplicitReleases()
+	{
+		return mExplicitReleases;
+	}
+	
+	/**
+	 * @return number of native instances reclaimed by the cleaner, i.e. leaked by the application
+	 */
+	public long getCleanerReleases()
+	{
+		return mCleanerReleases;
+	}
+	
+	/**
+	 * @return number of native instances not released yet
+	 */
+	public long getLive()
+	{
+		return mTracked - mExplicitReleases - mCleanerReleases;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "{tracked=" + mTracked + ", explicit=" + mExplicitReleases + ", cleaner=" + mCleanerReleases + ", live=" + getLive() + "}";
+	}
+}
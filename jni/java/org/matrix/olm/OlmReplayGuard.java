@@ -0,0 +1,320 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import javax.annotation.*;
+
+/**
+ * Detects replayed megolm messages: a message index of a session decrypted again for a different event.<br>
+ * Every (session, message index) pair is recorded with a 64 bits fingerprint of the event identifier, in an open
+ * addressing table of primitive arrays per session instead of a map of strings. A slot takes 12 bytes and the table
+ * starts with 16 slots and doubles once it is 3/4 full, so beyond the first 12 messages of a session a message
+ * costs between 16 and 32 bytes, and a table briefly needs its old arrays too while it grows.
+ * The tables are on the java heap. Decrypting the same event again is not a replay. Two different event
+ * identifiers have a 2^-64 chance of sharing a fingerprint, which would hide the replay.<br>
+ * The guard is thread safe, and can be saved and reloaded with {@link #writeTo(OutputStream)} and
+ * {@link #readFrom(InputStream)}.
+ */
+public class OlmReplayGuard
+{
+	private static final int MAGIC = 0x4F4C5247;
+	private static final int VERSION = 1;
+	
+	// a loaded session table is pre-sized up to this count, then grows as the message indexes are actually read
+	private static final int MAX_PRESIZE = 1 << 16;
+	
+	private final ConcurrentMap<String, SessionIndex> mSessions = new ConcurrentHashMap<>();
+	
+	/**
+	 * Message indexes of one session.
+	 */
+	private static final class SessionIndex
+	{
+		// 0xFFFFFFFF marks a free slot: that message index is kept aside
+		private static final int FREE = -1;
+		
+		// the largest table, and the number of message indexes it holds besides the one kept aside
+		private static final int MAX_CAPACITY = 1 << 30;
+		static final int MAX_COUNT = MAX_CAPACITY / 4 * 3;
+		
+		private int[] mKeys;
+		private long[] mFingerprints;
+		private int mCount;
+		private boolean mHasLastIndex;
+		private long mLastIndexFingerprint;
+		
+		SessionIndex(int aCapacity)
+		{
+			int capacity = 16;
+			while ((capacity < MAX_CAPACITY) && (capacity / 4 * 3 < aCapacity))
+			{
+				capacity <<= 1;
+			}
+			mKeys = new int[capacity];
+			mFingerprints = new long[capacity];
+			Arrays.fill(mKeys, FREE);
+		}
+		
+		/**
+		 * Record a message index, unless it is already recorded.
+		 *
+		 * @return the fingerprint already recorded for the index, or aFingerprint if it was not recorded
+		 */
+		synchronized long putIfAbsent(int aIndex, long aFingerprint)
+		{
+			if (FREE == aIndex)
+			{
+				if (!mHasLastIndex)
+				{
+					mHasLastIndex = true;
+					mLastIndexFingerprint = aFingerprint;
+				}
+				return mLastIndexFingerprint;
+			}
+			
+			int mask = mKeys.length - 1;
+			int slot = mix(aIndex) & mask;
+			
+			while (FREE != mKeys[slot])
+			{
+				if (aIndex == mKeys[slot])
+				{
+					return mFingerprints[slot];
+				}
+				slot = (slot + 1) & mask;
+			}
+			
+			if (mCount >= MAX_COUNT)
+			{
+				throw new IllegalStateException("too many message indexes");
+			}
+			
+			mKeys[slot] = aIndex;
+			mFingerprints[slot] = aFingerprint;
+			if (++mCount > mKeys.length / 4 * 3)
+			{
+				grow();
+			}
+			return aFingerprint;
+		}
+		
+		private void grow()
+		{
+			int[] keys = mKeys;
+			long[] fingerprints = mFingerprints;
+			int mask = keys.length * 2 - 1;
+			
+			mKeys = new int[keys.length * 2];
+			mFingerprints = new long[keys.length * 2];
+			Arrays.fill(mKeys, FREE);
+			
+			for (int i = 0; i < keys.length; i++)
+			{
+				if (FREE != keys[i])
+				{
+					int slot = mix(keys[i]) & mask;
+					while (FREE != mKeys[slot])
+					{
+						slot = (slot + 1) & mask;
+					}
+					mKeys[slot] = keys[i];
+					mFingerprints[slot] = fingerprints[i];
+				}
+			}
+		}
+		
+		synchronized int size()
+		{
+			return mCount + (mHasLastIndex ? 1 : 0);
+		}
+		
+		synchronized void writeTo(@Nonnull DataOutputStream aOutput)
+				throws IOException
+		{
+			aOutput.writeInt(size());
+			for (int i = 0; i < mKeys.length; i++)
+			{
+				if (FREE != mKeys[i])
+				{
+					aOutput.writeInt(mKeys[i]);
+					aOutput.writeLong(mFingerprints[i]);
+				}
+			}
+			if (mHasLastIndex)
+			{
+				aOutput.writeInt(FREE);
+				aOutput.writeLong(mLastIndexFingerprint);
+			}
+		}
+		
+		private static int mix(int aIndex)
+		{
+			// message indexes are sequential: spread them over the table
+			int h = aIndex * 0x9E3779B9;
+			return h ^ (h >>> 16);
+		}
+	}
+	
+	/**
+	 * Check a decrypted message, and record it if it was not seen yet.
+	 *
+	 * @param aSessionId    identifier of the session which decrypted the message
+	 * @param aMessageIndex megolm message index of the message
+	 * @param aEventId      identifier of the event holding the message
+	 * @return true if the message index was already decrypted for another event: the message is a replay
+	 */
+	public boolean isReplay(@Nonnull String aSessionId, long aMessageIndex, @Nonnull String aEventId)
+	{
+		long fingerprint = fingerprint(aEventId);
+		SessionIndex index = mSessions.computeIfAbsent(aSessionId, id -> new SessionIndex(0));
+		return fingerprint != index.putIfAbsent((int) aMessageIndex, fingerprint);
+	}
+	
+	/**
+	 * Check a decrypted message, and record it if it was not seen yet.
+	 *
+	 * @param aSessionId identifier of the session which decrypted the message
+	 * @param aResult    the decryption result
+	 * @param aEventId   identifier of the event holding the message
+	 * @return true if the message index was already decrypted for another event: the message is a replay
+	 */
+	public boolean isReplay(@Nonnull String aSessionId, @Nonnull OlmInboundGroupSession.DecryptMessageResult aResult, @Nonnull String aEventId)
+	{
+		return isReplay(aSessionId, aResult.getIndex(), aEventId);
+	}
+	
+	/**
+	 * Drop the message indexes of a session.
+	 *
+	 * @param aSessionId identifier of the session
+	 */
+	public void forget(@Nonnull String aSessionId)
+	{
+		mSessions.remove(aSessionId);
+	}
+	
+	/**
+	 * @return number of sessions with recorded messages
+	 */
+	public int getSessionCount()
+	{
+		return mSessions.size();
+	}
+	
+	/**
+	 * @return number of recorded messages, all sessions included
+	 */
+	public long size()
+	{
+		long size = 0;
+		for (SessionIndex index : mSessions.values())
+		{
+			size += index.size();
+		}
+		return size;
+	}
+	
+	/**
+	 * Save the recorded messages. The stream is not closed.
+	 *
+	 * @param aOutput the stream
+	 * @throws IOException the failure reason
+	 */
+	public void writeTo(@Nonnull OutputStream aOutput)
+			throws IOException
+	{
+		DataOutputStream output = new DataOutputStream(new BufferedOutputStream(aOutput));
+		List<Map.Entry<String, SessionIndex>> sessions = new ArrayList<>(mSessions.entrySet());
+		
+		output.writeInt(MAGIC);
+		output.writeInt(VERSION);
+		output.writeInt(sessions.size());
+		for (Map.Entry<String, SessionIndex> entry : sessions)
+		{
+			output.writeUTF(entry.getKey());
+			entry.getValue().writeTo(output);
+		}
+		output.flush();
+	}
+	
+	/**
+	 * Load recorded messages saved by {@link #writeTo(OutputStream)}. The stream is not closed, and is not read
+	 * past the end of the guard data.
+	 *
+	 * @param aInput the stream
+	 * @return the guard
+	 * @throws IOException the failure reason, also thrown if the data is not a saved guard
+	 */
+	@Nonnull
+	public static OlmReplayGuard readFrom(@Nonnull InputStream aInput)
+			throws IOException
+	{
+		DataInputStream input = new DataInputStream(aInput);
+		
+		if ((MAGIC != input.readInt()) || (VERSION != input.readInt()))
+		{
+			throw new IOException("invalid replay guard data");
+		}
+		
+		OlmReplayGuard guard = new OlmReplayGuard();
+		int sessionCount = input.readInt();
+		
+		for (int i = 0; i < sessionCount; i++)
+		{
+			String sessionId = input.readUTF();
+			int count = input.readInt();
+			// the message index kept aside is not in the table
+			if ((count < 0) || (count > SessionIndex.MAX_COUNT + 1))
+			{
+				throw new IOException("invalid replay guard data");
+			}
+			
+			SessionIndex index = new SessionIndex(Math.min(count, MAX_PRESIZE));
+			for (int j = 0; j < count; j++)
+			{
+				int messageIndex = input.readInt();
+				index.putIfAbsent(messageIndex, input.readLong());
+			}
+			guard.mSessions.put(sessionId, index);
+		}
+		
+		return guard;
+	}
+	
+	/**
+	 * 64 bits fingerprint of an event identifier: FNV-1a over the characters, then the murmur3 finalizer.
+	 */
+	private static long fingerprint(@Nonnull String aEventId)
+	{
+		long h = 0xCBF29CE484222325L;
+		for (int i = 0; i < aEventId.length(); i++)
+		{
+			h ^= aEventId.charAt(i);
+			h *= 0x100000001B3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
@@ -0,0 +1,366 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import java.io.*;
+import java.util.*;
+
+import javax.annotation.*;
+
+/**
+ * Records which devices received the key of which outbound group session, and from which message index, so that
+ * the devices still missing the key are found with a bitmap operation on every send.<br>
+ * The curve25519 keys of the devices are interned into small integers, and the devices of a session are a
+ * {@link BitSet} of them. The member devices of a room are interned once into a {@link DeviceSet}, reused as long
+ * as the membership does not change. The interned keys are never forgotten: an index is meant for the devices of
+ * one client, not for an unbounded stream of keys.<br>
+ * The index is thread safe, and can be saved and reloaded with {@link #writeTo(OutputStream)} and
+ * {@link #readFrom(InputStream)}.
+ */
+public class OlmRoomKeyShareIndex
+{
+	private static final int MAGIC = 0x4F4C4B53;
+	private static final int VERSION = 1;
+	
+	/**
+	 * Message index of a device which did not receive the key.
+	 */
+	public static final int NOT_SHARED = -1;
+	
+	/**
+	 * A set of devices interned by an index.
+	 */
+	public static final class DeviceSet
+	{
+		private final OlmRoomKeyShareIndex mOwner;
+		private final BitSet mDevices;
+		
+		private DeviceSet(@Nonnull OlmRoomKeyShareIndex aOwner, @Nonnull BitSet aDevices)
+		{
+			mOwner = aOwner;
+			mDevices = aDevices;
+		}
+		
+		/**
+		 * @return number of devices of the set
+		 */
+		public int size()
+		{
+			return mDevices.cardinality();
+		}
+	}
+	
+	/**
+	 * Devices which received the key of one session.
+	 */
+	private static final class SessionShares
+	{
+		final BitSet mShared = new BitSet();
+		// message index from which each device has the key, by device number
+		int[] mIndexes = new int[16];
+		
+		void record(int aDevice, int aMessageIndex)
+		{
+			if (aDevice >= mIndexes.length)
+			{
+				mIndexes = Arrays.copyOf(mIndexes, Math.max(aDevice + 1, mIndexes.length * 2));
+			}
+			
+			// a device keeps the earliest index it received
+			if (!mShared.get(aDevice) || (Integer.compareUnsigned(aMessageIndex, mIndexes[aDevice]) < 0))
+			{
+				mIndexes[aDevice] = aMessageIndex;
+			}
+			mShared.set(aDevice);
+		}
+	}
+	
+	private final Map<String, Integer> mDeviceNumbers = new HashMap<>();
+	private final List<String> mDeviceKeys = new ArrayList<>();
+	private final Map<String, SessionShares> mSessions = new HashMap<>();
+	
+	/**
+	 * Intern a set of devices, typically the member devices of a room.
+	 *
+	 * @param aDeviceKeys the curve25519 keys of the devices
+	 * @return the set, to be used with this index only
+	 */
+	@Nonnull
+	public synchronized DeviceSet devices(@Nonnull Collection<String> aDeviceKeys)
+	{
+		BitSet devices = new BitSet(mDeviceKeys.size() + aDeviceKeys.size());
+		for (String deviceKey : aDeviceKeys)
+		{
+			devices.set(intern(deviceKey));
+		}
+		return new DeviceSet(this, devices);
+	}
+	
+	/**
+	 * Record that a device received the key of a session.
+	 *
+	 * @param aSessionId    the outbound group session identifier
+	 * @param aDeviceKey    the curve25519 key of the device
+	 * @param aMessageIndex the message index of the shared key, see {@link OlmOutboundGroupSession#messageIndex()}
+	 */
+	public synchronized void recordShared(@Nonnull String aSessionId, @Nonnull String aDeviceKey, int aMessageIndex)
+	{
+		mSessions.computeIfAbsent(aSessionId, id -> new SessionShares()).record(intern(aDeviceKey), aMessageIndex);
+	}
+	
+	/**
+	 * Record that a set of devices received the key of a session.
+	 *
+	 * @param aSessionId    the outbound group session identifier
+	 * @param aDevices      the devices
+	 * @param aMessageIndex the message index of the shared key, see {@link OlmOutboundGroupSession#messageIndex()}
+	 */
+	public synchronized void recordShared(@Nonnull String aSessionId, @Nonnull DeviceSet aDevices, int aMessageIndex)
+	{
+		BitSet devices = checkOwner(aDevices);
+		SessionShares shares = mSessions.computeIfAbsent(aSessionId, id -> new SessionShares());
+		for (int device = devices.nextSetBit(0); device >= 0; device = devices.nextSetBit(device + 1))
+		{
+			shares.record(device, aMessageIndex);
+		}
+	}
+	
+	/**
+	 * @param aSessionId the outbound group session identifier
+	 * @param aDeviceKey the curve25519 key of the device
+	 * @return true if the device received the key of the session
+	 */
+	public synchronized boolean isShared(@Nonnull String aSessionId, @Nonnull String aDeviceKey)
+	{
+		return NOT_SHARED != getSharedIndex(aSessionId, aDeviceKey);
+	}
+	
+	/**
+	 * @param aSessionId the outbound group session identifier
+	 * @param aDeviceKey the curve25519 key of the device
+	 * @return the message index from which the device has the key of the session, {@link #NOT_SHARED} if it does
+	 * not have it
+	 */
+	public synchronized int getSharedIndex(@Nonnull String aSessionId, @Nonnull String aDeviceKey)
+	{
+		SessionShares shares = mSessions.get(aSessionId);
+		Integer device = mDeviceNumbers.get(aDeviceKey);
+		return ((null == shares) || (null == device) || !shares.mShared.get(device)) ? NOT_SHARED : shares.mIndexes[device];
+	}
+	
+	/**
+	 * Find the devices which still need the key of a session.
+	 *
+	 * @param aSessionId the outbound group session identifier
+	 * @param aMembers   the member devices of the room
+	 * @return the curve25519 keys of the members which did not receive the key
+	 */
+	@Nonnull
+	public synchronized List<String> getUnshared(@Nonnull String aSessionId, @Nonnull DeviceSet aMembers)
+	{
+		BitSet unshared = (BitSet) checkOwner(aMembers).clone();
+		SessionShares shares = mSessions.get(aSessionId);
+		if (null != shares)
+		{
+			unshared.andNot(shares.mShared);
+		}
+		return deviceKeys(unshared);
+	}
+	
+	/**
+	 * Find the devices which received the key of a session but are no longer members, typically to decide to rotate
+	 * the session.
+	 *
+	 * @param aSessionId the outbound group session identifier
+	 * @param aMembers   the member devices of the room
+	 * @return the curve25519 keys of the devices which received the key and are not members
+	 */
+	@Nonnull
+	public synchronized List<String> getSharedOutside(@Nonnull String aSessionId, @Nonnull DeviceSet aMembers)
+	{
+		BitSet members = checkOwner(aMembers);
+		SessionShares shares = mSessions.get(aSessionId);
+		if (null == shares)
+		{
+			return Collections.emptyList();
+		}
+		
+		BitSet outside = (BitSet) shares.mShared.clone();
+		outside.andNot(members);
+		return deviceKeys(outside);
+	}
+	
+	/**
+	 * Forget a session, typically once it was rotated.
+	 *
+	 * @param aSessionId the outbound group session identifier
+	 * @return true if the session was known
+	 */
+	public synchronized boolean remove(@Nonnull String aSessionId)
+	{
+		return null != mSessions.remove(aSessionId);
+	}
+	
+	/**
+	 * @return number of sessions recorded
+	 */
+	public synchronized int getSessionCount()
+	{
+		return mSessions.size();
+	}
+	
+	/**
+	 * @return number of interned devices
+	 */
+	public synchronized int getDeviceCount()
+	{
+		return mDeviceKeys.size();
+	}
+	
+	/**
+	 * Save the index. The stream is not closed.
+	 *
+	 * @param aOutput the stream
+	 * @throws IOException the failure reason
+	 */
+	public synchronized void writeTo(@Nonnull OutputStream aOutput)
+			throws IOException
+	{
+		DataOutputStream output = new DataOutputStream(new BufferedOutputStream(aOutput));
+		
+		output.writeInt(MAGIC);
+		output.writeInt(VERSION);
+		output.writeInt(mDeviceKeys.size());
+		for (String deviceKey : mDeviceKeys)
+		{
+			output.writeUTF(deviceKey);
+		}
+		
+		output.writeInt(mSessions.size());
+		for (Map.Entry<String, SessionShares> entry : mSessions.entrySet())
+		{
+			SessionShares shares = entry.getValue();
+			output.writeUTF(entry.getKey());
+			output.writeInt(shares.mShared.cardinality());
+			for (int device = shares.mShared.nextSetBit(0); device >= 0; device = shares.mShared.nextSetBit(device + 1))
+			{
+				output.writeInt(device);
+				output.writeInt(shares.mIndexes[device]);
+			}
+		}
+		output.flush();
+	}
+	
+	/**
+	 * Load an index saved by {@link #writeTo(OutputStream)}. The stream is not closed, and is not read past the end
+	 * of the index data.
+	 *
+	 * @param aInput the stream
+	 * @return the index
+	 * @throws IOException the failure reason, also thrown if the data is not a saved index
+	 */
+	@Nonnull
+	public static OlmRoomKeyShareIndex readFrom(@Nonnull InputStream aInput)
+			throws IOException
+	{
+		DataInputStream input = new DataInputStream(aInput);
+		
+		if ((MAGIC != input.readInt()) || (VERSION != input.readInt()))
+		{
+			throw new IOException("invalid room key share index data");
+		}
+		
+		OlmRoomKeyShareIndex index = new OlmRoomKeyShareIndex();
+		int deviceCount = input.readInt();
+		if (deviceCount < 0)
+		{
+			throw new IOException("invalid room key share index data");
+		}
+		for (int i = 0; i < deviceCount; i++)
+		{
+			if (i != index.intern(input.readUTF()))
+			{
+				// a duplicated key would shift the device numbers
+				throw new IOException("invalid room key share index data");
+			}
+		}
+		
+		int sessionCount = input.readInt();
+		for (int i = 0; i < sessionCount; i++)
+		{
+			String sessionId = input.readUTF();
+			int count = input.readInt();
+			if (count < 0)
+			{
+				throw new IOException("invalid room key share index data");
+			}
+			
+			SessionShares shares = new SessionShares();
+			for (int j = 0; j < count; j++)
+			{
+				int device = input.readInt();
+				if ((device < 0) || (device >= deviceCount))
+				{
+					throw new IOException("invalid room key share index data");
+				}
+				shares.record(device, input.readInt());
+			}
+			index.mSessions.put(sessionId, shares);
+		}
+		
+		return index;
+	}
+	
+	/**
+	 * Called with the index lock held.
+	 */
+	private int intern(@Nonnull String aDeviceKey)
+	{
+		Integer device = mDeviceNumbers.get(aDeviceKey);
+		if (null == device)
+		{
+			device = mDeviceKeys.size();
+			mDeviceKeys.add(aDeviceKey);
+			mDeviceNumbers.put(aDeviceKey, device);
+		}
+		return device;
+	}
+	
+	/**
+	 * Called with the index lock held.
+	 */
+	@Nonnull
+	private List<String> deviceKeys(@Nonnull BitSet aDevices)
+	{
+		List<String> deviceKeys = new ArrayList<>(aDevices.cardinality());
+		for (int device = aDevices.nextSetBit(0); device >= 0; device = aDevices.nextSetBit(device + 1))
+		{
+			deviceKeys.add(mDeviceKeys.get(device));
+		}
+		return deviceKeys;
+	}
+	
+	@Nonnull
+	private BitSet checkOwner(@Nonnull DeviceSet aDevices)
+	{
+		if (this != aDevices.mOwner)
+		{
+			throw new IllegalArgumentException("the device set belongs to another index");
+		}
+		return aDevices.mDevices;
+	}
+}
@@ -20,6 +20,7 @@ import static java.nio.charset.StandardCharsets.*;
 import static org.matrix.olm.OlmException.*;
 
 import java.io.*;
+import java.lang.ref.*;
 import javax.annotation.*;
 
 import org.slf4j.*;
@@ -43,12 +44,25 @@ public class OlmSession extends CommonSerializeUtils implements Serializable
 	 **/
 	private transient long mNativeId;
 	
+	/**
+	 * Registration of {@link #mNativeId} with the cleaner.
+	 */
+	private transient OlmNativeTracker.Handle mNativeHandle;
+	
+	/**
+	 * Session identifier, cached on the first call of {@link #sessionIdentifier()}.<br>
+	 * The identifier is derived from the keys of the session, so the cache is cleared when the session is initialised.
+	 */
+	@Nullable
+	private transient volatile String mSessionIdentifier;
+	
 	public OlmSession()
 			throws OlmException
 	{
 		try
 		{
 			mNativeId = createNewSessionJni();
+			mNativeHandle = OlmNativeTracker.track(this, mNativeId, OlmSession::releaseSessionJni);
 		}
 		catch (Exception e)
 		{
@@ -62,7 +76,7 @@ public class OlmSession extends CommonSerializeUtils implements Serializable
 	 *
 	 * @return native account instance identifier or throw an exception.
 	 */
-	private native long createNewSessionJni();
+	private static native long createNewSessionJni();
 	
 	/**
 	 * Getter on the session ID.
@@ -79,20 +93,23 @@ public class OlmSession extends CommonSerializeUtils implements Serializable
 	 * This method must ALWAYS be called when this JAVA instance
 	 * is destroyed (ie. garbage collected) to prevent memory leak in native side.
 	 * See {@link #createNewSessionJni()}.
+	 * @param aNativeId native session instance identifier
 	 */
-	private native void releaseSessionJni();
+	private static native void releaseSessionJni(long aNativeId);
 	
 	/**
 	 * Release native session and invalid its JAVA reference counter part.<br>
-	 * Public API for {@link #releaseSessionJni()}.
+	 * Public API for {@link #releaseSessionJni(long)}.
 	 */
 	public void releaseSession()
 	{
 		if (0 != mNativeId)
 		{
-			releaseSessionJni();
+			mNativeHandle.release();
 		}
 		mNativeId = 0;
+		mNativeHandle = null;
+		mSessionIdentifier = null;
 	}
 	
 	/**
@@ -125,9 +142,10 @@ public class OlmSession extends CommonSerializeUtils implements Serializable
 		}
 		else
 		{
+			mSessionIdentifier = null;
 			try
 			{
-				initOutboundSessionJni(aAccount.getOlmAccountId(),
+				initOutboundSessionJni(mNativeId, aAccount.getOlmAccountId(),
 						aTheirIdentityKey.getBytes(UTF_8), aTheirOneTimeKey.getBytes(UTF_8));
 			}
 			catch (Exception e)
@@ -135,6 +153,11 @@ public class OlmSession extends CommonSerializeUtils implements Serializable
 				LOGGER.error("## initOutboundSession(): " + e.getMessage());
 				throw new OlmException(EXCEPTION_CODE_SESSION_INIT_OUTBOUND_SESSION, e.getMessage());
 			}
+			finally
+			{
+				Reference.reachabilityFence(this);
+				Reference.reachabilityFence(aAccount);
+			}
 		}
 	}
 	
@@ -144,11 +167,12 @@ public class OlmSession extends CommonSerializeUtils implements Serializable
 	 * with whom the session is established.
 	 * An exception is thrown if the operation fails.
 	 *
+	 * @param aNativeId native session instance identifier
 	 * @param aOlmAccountId     account instance
 	 * @param aTheirIdentityKey the identity key of the recipient
 	 * @param aTheirOneTimeKey  the one time key of the recipient
 	 **/
-	private native void initOutboundSessionJni(long aOlmAccountId, byte[] aTheirIdentityKey, byte[] aTheirOneTimeKey);
+	private static native void initOutboundSessionJni(long aNativeId, long aOlmAccountId, byte[] aTheirIdentityKey, byte[] aTheirOneTimeKey);
 	
 	/**
 	 * Create a new in-bound session for sending/receiving messages from an
@@ -169,15 +193,21 @@ public class OlmSession extends CommonSerializeUtils implements Serializable
 		}
 		else
 		{
+			mSessionIdentifier = null;
 			try
 			{
-				initInboundSessionJni(aAccount.getOlmAccountId(), aPreKeyMsg.getBytes("UTF-8"));
+				initInboundSessionJni(mNativeId, aAccount.getOlmAccountId(), aPreKeyMsg.getBytes("UTF-8"));
 			}
 			catch (Exception e)
 			{
-				LOGGER.error("## initInboundSession(): " + e.getMessage());
+				LOGGER.error("## initInboundSession(): {}", e.getMessage());
 				throw new OlmException(OlmException.EXCEPTION_CODE_SESSION_INIT_INBOUND_SESSION, e.getMessage());
 			}
+			finally
+			{
+				Reference.reachabilityFence(this);
+				Reference.reachabilityFence(aAccount);
+			}
 		}
 	}
 	
@@ -186,15 +216,16 @@ public class OlmSession extends CommonSerializeUtils implements Serializable
 	 * incoming PRE_KEY message.<br>
 	 * An exception is thrown if the operation fails.
 	 *
+	 * @param aNativeId native session instance identifier
 	 * @param aOlmAccountId  account instance
 	 * @param aOneTimeKeyMsg PRE_KEY message
 	 */
-	private native void initInboundSessionJni(long aOlmAccountId, byte[] aOneTimeKeyMsg);
+	private static native void initInboundSessionJni(long aNativeId, long aOlmAccountId, byte[] aOneTimeKeyMsg);
 	
 	/**
 	 * Create a new in-bound session for sending/receiving messages from an
 	 * incoming PRE_KEY({@link OlmMessage#MESSAGE_TYPE_PRE_KEY}) message based on the sender identity key.<br>
-	 * Public API for {@link #initInboundSessionFromIdKeyJni(long, byte[], byte[])}.
+	 * Public API for {@link #initInboundSessionFromIdKeyJni(long, long, byte[], byte[])}.
 	 * This API may be used to process a "m.room.encrypted" event when type = 1 (PRE_KEY).
 	 * This method must only be called the first time a pre-key message is received from an inbound session.
 	 *
@@ -214,16 +245,22 @@ public class OlmSession extends CommonSerializeUtils implements Serializable
 		}
 		else
 		{
+			mSessionIdentifier = null;
 			try
 			{
-				initInboundSessionFromIdKeyJni(aAccount.getOlmAccountId(),
+				initInboundSessionFromIdKeyJni(mNativeId, aAccount.getOlmAccountId(),
 						aTheirIdentityKey.getBytes(UTF_8), aPreKeyMsg.getBytes(UTF_8));
 			}
 			catch (Exception e)
 			{
-				LOGGER.error("## initInboundSessionFrom(): " + e.getMessage());
+				LOGGER.error("## initInboundSessionFrom(): {}", e.getMessage());
 				throw new OlmException(EXCEPTION_CODE_SESSION_INIT_INBOUND_SESSION_FROM, e.getMessage());
 			}
+			finally
+			{
+				Reference.reachabilityFence(this);
+				Reference.reachabilityFence(aAccount);
+			}
 		}
 	}
 	
@@ -232,17 +269,18 @@ public class OlmSession extends CommonSerializeUtils implements Serializable
 	 * incoming PRE_KEY message based on the recipient identity key.<br>
 	 * An exception is thrown if the operation fails.
 	 *
+	 * @param aNativeId native session instance identifier
 	 * @param aOlmAccountId     account instance
 	 * @param aTheirIdentityKey the identity key of the recipient
 	 * @param aOneTimeKeyMsg    encrypted message
 	 */
-	private native void initInboundSessionFromIdKeyJni(long aOlmAccountId, byte[] aTheirIdentityKey, byte[] aOneTimeKeyMsg);
+	private static native void initInboundSessionFromIdKeyJni(long aNativeId, long aOlmAccountId, byte[] aTheirIdentityKey, byte[] aOneTimeKeyMsg);
 	
 	/**
 	 * Get the session identifier.<br> Will be the same for both ends of the
 	 * conversation. The session identifier is returned as a String object.
 	 * Session Id sample: "session_id":"M4fOVwD6AABrkTKl"
-	 * Public API for {@link #getSessionIdentifierJni()}.
+	 * Public API for {@link #getSessionIdentifierJni(long)}.
 	 *
 	 * @return the session ID
 	 * @throws OlmException the failure reason
@@ -251,11 +289,17 @@ public class OlmSession extends CommonSerializeUtils implements Serializable
 	public String sessionIdentifier()
 			throws OlmException
 	{
+		String identifier = mSessionIdentifier;
+		if (null != identifier)
+		{
+			return identifier;
+		}
+		
 		byte buffer[];
 		
 		try
 		{
-			buffer = getSessionIdentifierJni();
+			buffer = getSessionIdentifierJni(mNativeId);
 			
 			if (buffer == null)
 				throw new Exception("getSessionIdentifierJni()=null");
@@ -265,22 +309,29 @@ public class OlmSession extends CommonSerializeUtils implements Serializable
 			LOGGER.error("## sessionIdentifier(): " + e.getMessage());
 			throw new OlmException(EXCEPTION_CODE_SESSION_SESSION_IDENTIFIER, e.getMessage());
 		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
 		
-		return new String(buffer, UTF_8);
+		identifier = new String(buffer, UTF_8);
+		mSessionIdentifier = identifier;
+		return identifier;
 	}
 	
 	/**
 	 * Get the session identifier for this session.
 	 * An exception is thrown if the operation fails.
 	 *
+	 * @param aNativeId native session instance identifier
 	 * @return the session identifier
 	 */
-	private native byte[] getSessionIdentifierJni();
+	private static native byte[] getSessionIdentifierJni(long aNativeId);
 	
 	/**
 	 * Checks if the PRE_KEY({@link OlmMessage#MESSAGE_TYPE_PRE_KEY}) message is for this in-bound session.<br>
 	 * This API may be used to process a "m.room.encrypted" event when type = 1 (PRE_KEY).
-	 * Public API for {@link #matchesInboundSessionJni(byte[])}.
+	 * Public API for {@link #matchesInboundSessionJni(long, byte[])}.
 	 *
 	 * @param aOneTimeKeyMsg PRE KEY message
 	 * @return true if the one time key matches.
@@ -291,12 +342,16 @@ public class OlmSession extends CommonSerializeUtils implements Serializable
 		
 		try
 		{
-			retCode = matchesInboundSessionJni(aOneTimeKeyMsg.getBytes(UTF_8));
+			retCode = matchesInboundSessionJni(mNativeId, aOneTimeKeyMsg.getBytes(UTF_8));
 		}
 		catch (Exception e)
 		{
 			LOGGER.error("## matchesInboundSession(): failed " + e.getMessage());
 		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
 		
 		return retCode;
 	}
@@ -306,15 +361,16 @@ public class OlmSession extends CommonSerializeUtils implements Serializable
 	 * This API may be used to process a "m.room.encrypted" event when type = 1 (PRE_KEY).
 	 * An exception is thrown if the operation fails.
 	 *
+	 * @param aNativeId native session instance identifier
 	 * @param aOneTimeKeyMsg PRE KEY message
 	 * @return true if the PRE_KEY message matches
 	 */
-	private native boolean matchesInboundSessionJni(byte[] aOneTimeKeyMsg);
+	private static native boolean matchesInboundSessionJni(long aNativeId, byte[] aOneTimeKeyMsg);
 	
 	/**
 	 * Checks if the PRE_KEY({@link OlmMessage#MESSAGE_TYPE_PRE_KEY}) message is for this in-bound session based on the sender identity key.<br>
 	 * This API may be used to process a "m.room.encrypted" event when type = 1 (PRE_KEY).
-	 * Public API for {@link #matchesInboundSessionJni(byte[])}.
+	 * Public API for {@link #matchesInboundSessionJni(long, byte[])}.
 	 *
 	 * @param aTheirIdentityKey the sender identity key
 	 * @param aOneTimeKeyMsg    PRE KEY message
@@ -326,12 +382,16 @@ public class OlmSession extends CommonSerializeUtils implements Serializable
 		
 		try
 		{
-			retCode = matchesInboundSessionFromIdKeyJni(aTheirIdentityKey.getBytes(UTF_8), aOneTimeKeyMsg.getBytes(UTF_8));
+			retCode = matchesInboundSessionFromIdKeyJni(mNativeId, aTheirIdentityKey.getBytes(UTF_8), aOneTimeKeyMsg.getBytes(UTF_8));
 		}
 		catch (Exception e)
 		{
 			LOGGER.error("## matchesInboundSessionFrom(): failed " + e.getMessage());
 		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
 		
 		return retCode;
 	}
@@ -341,16 +401,17 @@ public class OlmSession extends CommonSerializeUtils implements Serializable
 	 * This API may be used to process a "m.room.encrypted" event when type = 1 (PRE_KEY).
 	 * An exception is thrown if the operation fails.
 	 *
+	 * @param aNativeId native session instance identifier
 	 * @param aTheirIdentityKey the identity key of the sender
 	 * @param aOneTimeKeyMsg    PRE KEY message
 	 * @return true if the PRE_KEY message matches.
 	 */
-	private native boolean matchesInboundSessionFromIdKeyJni(byte[] aTheirIdentityKey, byte[] aOneTimeKeyMsg);
+	private static native boolean matchesInboundSessionFromIdKeyJni(long aNativeId, byte[] aTheirIdentityKey, byte[] aOneTimeKeyMsg);
 	
 	/**
 	 * Encrypt a message using the session.<br>
 	 * The encrypted message is returned in a OlmMessage object.
-	 * Public API for {@link #encryptMessageJni(byte[])}.
+	 * Public API for {@link #encryptMessageJni(long, byte[])}.
 	 *
 	 * @param aClearMsg message to encrypted
 	 * @return the encrypted message
@@ -362,23 +423,116 @@ public class OlmSession extends CommonSerializeUtils implements Serializable
 	{
 		try
 		{
-			return encryptMessageJni(aClearMsg.getBytes(UTF_8));
+			return encryptMessageJni(mNativeId, aClearMsg.getBytes(UTF_8));
+		}
+		catch (Exception e)
+		{
+			LOGGER.error("## encryptMessage(): failed " + e.getMessage());
+			throw new OlmException(EXCEPTION_CODE_SESSION_ENCRYPT_MESSAGE, e.getMessage());
+		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
+	}
+	
+	/**
+	 * Encrypt a UTF-8 encoded message using the session.<br>
+	 * The message array is only read, so one encoding of a payload may be encrypted for many sessions.
+	 *
+	 * @param aClearMsg the UTF-8 encoded message to encrypt
+	 * @return the encrypted message
+	 * @throws OlmException the failure reason
+	 */
+	@Nonnull
+	public OlmMessage encryptMessage(@Nonnull byte[] aClearMsg)
+			throws OlmException
+	{
+		try
+		{
+			return encryptMessageJni(mNativeId, aClearMsg);
 		}
 		catch (Exception e)
 		{
 			LOGGER.error("## encryptMessage(): failed " + e.getMessage());
 			throw new OlmException(EXCEPTION_CODE_SESSION_ENCRYPT_MESSAGE, e.getMessage());
 		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
 	}
 	
 	/**
 	 * Encrypt a message using the session.<br>
 	 * An exception is thrown if the operation fails.
 	 *
+	 * @param aNativeId native session instance identifier
 	 * @param aClearMsg     clear text message
 	 * @return the encrypted message
 	 */
-	private native OlmMessage encryptMessageJni(byte[] aClearMsg);
+	private static native OlmMessage encryptMessageJni(long aNativeId, byte[] aClearMsg);
+	
+	/**
+	 * Encrypt one UTF-8 encoded message for many sessions, in a single native call.<br>
+	 * The message is pinned once and the random data of all the sessions is generated at once, instead of paying
+	 * a JNI transition, a pin and a random draw per recipient as {@link #encryptMessage(byte[])} does.
+	 * A session which fails, or which is null or released, does not abort the call: its entry of the returned
+	 * array is null, so the caller can retry it alone.<br>
+	 * An {@link OlmSession} is not thread safe: as with {@link OlmFanOutEncryptor}, each encryption holds the lock
+	 * of its session, so a session listed several times encrypts one message per entry. Other code using the same
+	 * sessions concurrently must synchronize on them too.
+	 *
+	 * @param aClearMsg the UTF-8 encoded message to encrypt
+	 * @param aSessions the sessions to encrypt the message for
+	 * @return the encrypted message of each session, in the order of aSessions
+	 * @throws OlmException if the call itself fails
+	 */
+	@Nonnull
+	public static OlmMessage[] encryptForAll(@Nonnull byte[] aClearMsg, @Nonnull OlmSession[] aSessions)
+			throws OlmException
+	{
+		// the native side locks the sessions of this copy, whatever the caller does with its array
+		OlmSession[] sessions = aSessions.clone();
+		OlmMessage[] encryptedMsgs = new OlmMessage[sessions.length];
+		long[] nativeIds = new long[sessions.length];
+		for (int i = 0; i < sessions.length; i++)
+		{
+			nativeIds[i] = (sessions[i] == null) ? 0 : sessions[i].mNativeId;
+		}
+		
+		try
+		{
+			int failures = encryptForAllJni(aClearMsg, sessions, nativeIds, encryptedMsgs);
+			if (failures != 0)
+			{
+				LOGGER.error("## encryptForAll(): failed for {} of {} sessions", failures, sessions.length);
+			}
+		}
+		catch (Exception e)
+		{
+			LOGGER.error("## encryptForAll(): failed " + e.getMessage());
+			throw new OlmException(EXCEPTION_CODE_SESSION_ENCRYPT_MESSAGE, e.getMessage());
+		}
+		finally
+		{
+			Reference.reachabilityFence(sessions);
+		}
+		
+		return encryptedMsgs;
+	}
+	
+	/**
+	 * Encrypt one message with many sessions, each encryption holding the lock of its session object.<br>
+	 * An exception is thrown if the parameters are invalid.
+	 *
+	 * @param aClearMsg      clear text message
+	 * @param aSessions      the session objects to lock
+	 * @param aNativeIds     native session instance identifiers, 0 for a session which is not usable
+	 * @param aEncryptedMsgs receives the encrypted message of each session, null if it failed
+	 * @return the number of sessions which failed
+	 */
+	private static native int encryptForAllJni(byte[] aClearMsg, OlmSession[] aSessions, long[] aNativeIds, OlmMessage[] aEncryptedMsgs);
 	
 	/**
 	 * Decrypt a message using the session.<br>
@@ -391,27 +545,189 @@ public class OlmSession extends CommonSerializeUtils implements Serializable
 	@Nonnull
 	public String decryptMessage(@Nonnull OlmMessage aEncryptedMsg)
 			throws OlmException
+	{
+		return decryptMessagePlaintext(aEncryptedMsg).getString();
+	}
+	
+	/**
+	 * Decrypt a message using the session, keeping the decrypted message as bytes.<br>
+	 * See {@link OlmPlaintext}: the message is only decoded on demand, and can be wiped once consumed.
+	 *
+	 * @param aEncryptedMsg message to decrypt
+	 * @return the decrypted message
+	 * @throws OlmException the failure reason
+	 */
+	@Nonnull
+	public OlmPlaintext decryptMessagePlaintext(@Nonnull OlmMessage aEncryptedMsg)
+			throws OlmException
 	{
 		try
 		{
-			return new String(decryptMessageJni(aEncryptedMsg.getCipherText().getBytes(UTF_8), aEncryptedMsg.getType()), UTF_8);
+			return new OlmPlaintext(decryptMessageJni(mNativeId, aEncryptedMsg.getCipherText().getBytes(UTF_8), aEncryptedMsg.getType()));
 		}
 		catch (Exception e)
 		{
-			LOGGER.error("## decryptMessage(): failed " + e.getMessage());
+			LOGGER.error("## decryptMessage(): failed {}", e.getMessage());
 			throw new OlmException(EXCEPTION_CODE_SESSION_DECRYPT_MESSAGE, e.getMessage());
 		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
 	}
 	
 	/**
 	 * Decrypt a message using the session.<br>
 	 * An exception is thrown if the operation fails.
 	 *
+	 * @param aNativeId native session instance identifier
 	 * @param aEncryptedMsg message to decrypt
 	 * @param aEncryptedMsgType the message type
 	 * @return the decrypted message
 	 */
-	private native byte[] decryptMessageJni(byte[] aEncryptedMsg, int aEncryptedMsgType);
+	private static native byte[] decryptMessageJni(long aNativeId, byte[] aEncryptedMsg, int aEncryptedMsgType);
+	
+	/**
+	 * Encrypt a message using the session, returning the encrypted message in binary form.<br>
+	 * libolm only produces base64, so the message is decoded once here; the binary form is 3/4 of the size.
+	 *
+	 * @param aClearMsg message to encrypt
+	 * @return the binary encrypted message
+	 * @throws OlmException the failure reason
+	 */
+	@Nonnull
+	public OlmBinaryMessage encryptMessageBinary(@Nonnull byte[] aClearMsg)
+			throws OlmException
+	{
+		try
+		{
+			return new OlmBinaryMessage(encryptMessageJni(mNativeId, aClearMsg));
+		}
+		catch (Exception e)
+		{
+			LOGGER.error("## encryptMessageBinary(): failed {}", e.getMessage());
+			throw new OlmException(EXCEPTION_CODE_SESSION_ENCRYPT_MESSAGE, e.getMessage());
+		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
+	}
+	
+	/**
+	 * Decrypt a message in binary form using the session.
+	 *
+	 * @param aEncryptedMsg binary message to decrypt
+	 * @return the decrypted message
+	 * @throws OlmException the failure reason
+	 */
+	@Nonnull
+	public OlmPlaintext decryptMessageBinary(@Nonnull OlmBinaryMessage aEncryptedMsg)
+			throws OlmException
+	{
+		try
+		{
+			byte[] cipherText = aEncryptedMsg.getCipherText();
+			return new OlmPlaintext(decryptMessageJni(mNativeId, OlmBase64.encode(cipherText, 0, cipherText.length), aEncryptedMsg.getType()));
+		}
+		catch (Exception e)
+		{
+			LOGGER.error("## decryptMessageBinary(): failed {}", e.getMessage());
+			throw new OlmException(EXCEPTION_CODE_SESSION_DECRYPT_MESSAGE, e.getMessage());
+		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
+	}
+	
+	/**
+	 * Decrypt a message using the session, writing the decrypted message into a caller provided array.<br>
+	 * Decrypting advances the ratchet of the session, so the space left in the array is checked beforehand:
+	 * it must be at least 3/4 of the length of the UTF-8 encoded ciphertext.
+	 *
+	 * @param aEncryptedMsg    message to decrypt
+	 * @param aDecryptedMsg    array receiving the decrypted message
+	 * @param aDecryptedOffset offset of the output in the array
+	 * @return the length of the decrypted message
+	 * @throws OlmException the failure reason
+	 */
+	public int decryptMessage(@Nonnull OlmMessage aEncryptedMsg, @Nonnull byte[] aDecryptedMsg, int aDecryptedOffset)
+			throws OlmException
+	{
+		try
+		{
+			return decryptMessageIntoJni(mNativeId, aEncryptedMsg.getCipherText().getBytes(UTF_8), aEncryptedMsg.getType(),
+					aDecryptedMsg, aDecryptedOffset);
+		}
+		catch (Exception e)
+		{
+			LOGGER.error("## decryptMessage(): failed {}", e.getMessage());
+			throw new OlmException(EXCEPTION_CODE_SESSION_DECRYPT_MESSAGE, e.getMessage());
+		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
+	}
+	
+	/**
+	 * Decrypt a message using the session into a caller provided array.<br>
+	 * An exception is thrown if the operation fails.
+	 *
+	 * @param aNativeId         native session instance identifier
+	 * @param aEncryptedMsg     message to decrypt
+	 * @param aEncryptedMsgType the message type
+	 * @param aDecryptedMsg     array receiving the decrypted message
+	 * @param aDecryptedOffset  offset of the output in aDecryptedMsg
+	 * @return the length of the decrypted message
+	 */
+	private static native int decryptMessageIntoJni(long aNativeId, byte[] aEncryptedMsg, int aEncryptedMsgType, byte[] aDecryptedMsg, int aDecryptedOffset);
+	
+	/**
+	 * Status variant of {@link #decryptMessage(OlmMessage, byte[], int)}: failures are returned as an
+	 * {@link OlmError} instead of being thrown, so that rejecting a message does not build any exception.<br>
+	 * As decrypting advances the ratchet, {@link OlmError#OUTPUT_BUFFER_TOO_SMALL} is returned before decrypting if
+	 * the output cannot hold 3/4 of the encrypted message length.
+	 *
+	 * @param aEncryptedMsg    message to decrypt
+	 * @param aDecryptedMsg    array receiving the decrypted message
+	 * @param aDecryptedOffset offset of the output in the array
+	 * @param aResult          receives the outcome and the decrypted length
+	 * @return the outcome, {@link OlmError#SUCCESS} if the message was decrypted
+	 */
+	@Nonnull
+	public OlmError tryDecryptMessage(@Nonnull OlmMessage aEncryptedMsg, @Nonnull byte[] aDecryptedMsg, int aDecryptedOffset,
+	                                  @Nonnull OlmDecryptionResult aResult)
+	{
+		// olm messages have no message index
+		aResult.mNativeResult[1] = 0;
+		
+		try
+		{
+			return aResult.setStatus(decryptMessageStatusJni(mNativeId, aEncryptedMsg.getCipherText().getBytes(UTF_8), aEncryptedMsg.getType(),
+			                                                 aDecryptedMsg, aDecryptedOffset, aResult.mNativeResult));
+		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
+	}
+	
+	/**
+	 * Decrypt a message into a caller provided array, returning the outcome as a status code.
+	 * No exception is thrown.
+	 *
+	 * @param aNativeId         native session instance identifier
+	 * @param aEncryptedMsg     message to decrypt
+	 * @param aEncryptedMsgType type of the message
+	 * @param aDecryptedMsg     array receiving the decrypted message
+	 * @param aDecryptedOffset  offset of the output in aDecryptedMsg
+	 * @param aResult           on success, receives the decrypted length in its first element
+	 * @return the ordinal of the {@link OlmError}
+	 */
+	private static native int decryptMessageStatusJni(long aNativeId, byte[] aEncryptedMsg, int aEncryptedMsgType,
+	                                                  byte[] aDecryptedMsg, int aDecryptedOffset, long[] aResult);
 	
 	//==============================================================================================================
 	// Serialization management
@@ -462,13 +778,17 @@ public class OlmSession extends CommonSerializeUtils implements Serializable
 		aErrorMsg.setLength(0);
 		try
 		{
-			pickleRetValue = serializeJni(aKey);
+			pickleRetValue = serializeJni(mNativeId, aKey);
 		}
 		catch (Exception e)
 		{
 			LOGGER.error("## serializeDataWithKey(): failed " + e.getMessage());
 			aErrorMsg.append(e.getMessage());
 		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
 		
 		return pickleRetValue;
 	}
@@ -477,10 +797,11 @@ public class OlmSession extends CommonSerializeUtils implements Serializable
 	 * Serialize and encrypt session instance.<br>
 	 * An exception is thrown if the operation fails.
 	 *
+	 * @param aNativeId native session instance identifier
 	 * @param aKeyBuffer key used to encrypt the serialized account data
 	 * @return the serialised account as bytes buffer.
 	 **/
-	private native byte[] serializeJni(byte[] aKeyBuffer);
+	private static native byte[] serializeJni(long aNativeId, byte[] aKeyBuffer);
 	
 	/**
 	 * Loads an account from a pickled base64 string.<br>
@@ -498,6 +819,8 @@ public class OlmSession extends CommonSerializeUtils implements Serializable
 		try
 		{
 			mNativeId = deserializeJni(aSerializedData, aKey);
+			mNativeHandle = OlmNativeTracker.track(this, mNativeId, OlmSession::releaseSessionJni);
+			mSessionIdentifier = null;
 		}
 		catch (Exception e)
 		{
@@ -520,11 +843,13 @@ public class OlmSession extends CommonSerializeUtils implements Serializable
 	 * @param aKey            the key used to encrypt the serialized account data
 	 * @return the deserialized session
 	 **/
-	private native long deserializeJni(byte[] aSerializedData, byte[] aKey);
+	private static native long deserializeJni(byte[] aSerializedData, byte[] aKey);
 	
 	
 	/**
-	 * Hash code of the session identifier.
+	 * Hash code of the session identifier.<br>
+	 * The identifier is cached, and so is the hash code of a String, so this does not allocate once the identifier
+	 * was retrieved.
 	 */
 	@Override
 	public int hashCode()
@@ -548,6 +873,8 @@ public class OlmSession extends CommonSerializeUtils implements Serializable
 	{
 		if (!(other instanceof OlmSession))
 			return false;
+		if (this == other)
+			return true;
 		OlmSession o = (OlmSession) other;
 		try
 		{
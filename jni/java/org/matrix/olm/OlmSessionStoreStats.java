@@ -0,0 +1,134 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+/**
+ * Counters of an {@link OlmInboundGroupSessionStore}.
+ */
+public class OlmSessionStoreStats
+{
+	private final long mHits;
+	private final long mRehydrations;
+	private final long mRehydrationNanos;
+	private final long mEvictions;
+	private final int mLiveSessions;
+	private final int mPickledSessions;
+	private final long mNativeBytes;
+	private final long mPickledBytes;
+	
+	OlmSessionStoreStats(long aHits, long aRehydrations, long aRehydrationNanos, long aEvictions,
+	                     int aLiveSessions, int aPickledSessions, long aNativeBytes, long aPickledBytes)
+	{
+		mHits = aHits;
+		mRehydrations = aRehydrations;
+		mRehydrationNanos = aRehydrationNanos;
+		mEvictions = aEvictions;
+		mLiveSessions = aLiveSessions;
+		mPickledSessions = aPickledSessions;
+		mNativeBytes = aNativeBytes;
+		mPickledBytes = aPickledBytes;
+	}
+	
+	/**
+	 * @return number of lookups which found the session live
+	 */
+	public long getHits()
+	{
+		return mHits;
+	}
+	
+	/**
+	 * @return number of lookups which had to unpickle the session
+	 */
+	public long getRehydrations()
+	{
+		return mRehydrations;
+	}
+	
+	/**
+	 * @return ratio of the lookups which found the session live, 1 if there was no lookup
+	 */
+	public double getHitRate()
+	{
+		long lookups = mHits + mRehydrations;
+		return (0 == lookups) ? 1 : (double) mHits / lookups;
+	}
+	
+	/**
+	 * @return total time spent unpickling sessions, in nanoseconds
+	 */
+	public long getRehydrationNanos()
+	{
+		return mRehydrationNanos;
+	}
+	
+	/**
+	 * @return mean time to unpickle a session, in nanoseconds
+	 */
+	public long getMeanRehydrationNanos()
+	{
+		return (0 == mRehydrations) ? 0 : mRehydrationNanos / mRehydrations;
+	}
+	
+	/**
+	 * @return number of live sessions pickled and released to honour the native memory budget
+	 */
+	public long getEvictions()
+	{
+		return mEvictions;
+	}
+	
+	/**
+	 * @return number of sessions held as native objects
+	 */
+	public int getLiveSessions()
+	{
+		return mLiveSessions;
+	}
+	
+	/**
+	 * @return number of sessions held as pickles
+	 */
+	public int getPickledSessions()
+	{
+		return mPickledSessions;
+	}
+	
+	/**
+	 * @return native memory used by the live sessions
+	 */
+	public long getNativeBytes()
+	{
+		return mNativeBytes;
+	}
+	
+	/**
+	 * @return memory used by the pickles
+	 */
+	public long getPickledBytes()
+	{
+		return mPickledBytes;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "{hits=" + mHits + ", rehydrations=" + mRehydrations + ", meanRehydrationNanos=" + getMeanRehydrationNanos()
+				+ ", evictions=" + mEvictions + ", live=" + mLiveSessions + ", pickled=" + mPickledSessions
+				+ ", nativeBytes=" + mNativeBytes + ", pickledBytes=" + mPickledBytes + "}";
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import javax.annotation.*;
+
+/**
+ * Snapshot of the counters of a native slab.<br>
+ * The native accounts and sessions are allocated from one slab per struct type: slots of a fixed size packed
+ * in pages, wiped when released and reused in O(1). See {@link OlmManager#getSlabStats(SlabType)}.
+ */
+public class OlmSlabStats
+{
+	/**
+	 * The native structs allocated from a slab. The ordinal matches the native SlabType.
+	 */
+	public enum SlabType
+	{
+		ACCOUNT,
+		SESSION,
+		INBOUND_GROUP_SESSION,
+		OUTBOUND_GROUP_SESSION
+	}
+	
+	@Nonnull
+	private final SlabType mType;
+	private final long mSlotSize;
+	private final long mSlotsInUse;
+	private final long mSlotsTotal;
+	private final long mBytesReserved;
+	private final long mAllocations;
+	private final long mReleases;
+	
+	OlmSlabStats(@Nonnull SlabType aType, @Nonnull long[] aStats)
+	{
+		mType = aType;
+		mSlotSize = aStats[0];
+		mSlotsInUse = aStats[1];
+		mSlotsTotal = aStats[2];
+		mBytesReserved = aStats[3];
+		mAllocations = aStats[4];
+		mReleases = aStats[5];
+	}
+	
+	@Nonnull
+	public SlabType getType()
+	{
+		return mType;
+	}
+	
+	/**
+	 * @return bytes per struct, including the alignment padding
+	 */
+	public long getSlotSize()
+	{
+		return mSlotSize;
+	}
+	
+	/**
+	 * @return number of structs currently allocated
+	 */
+	public long getSlotsInUse()
+	{
+		return mSlotsInUse;
+	}
+	
+	/**
+	 * @return number of structs that fit in the reserved pages
+	 */
+	public long getSlotsTotal()
+	{
+		return mSlotsTotal;
+	}
+	
+	/**
+	 * @return memory reserved from the system, in bytes
+	 */
+	public long getBytesReserved()
+	{
+		return mBytesReserved;
+	}
+	
+	/**
+	 * @return number of allocations since the library was loaded
+	 */
+	public long getAllocations()
+	{
+		return mAllocations;
+	}
+	
+	/**
+	 * @return number of releases since the library was loaded
+	 */
+	public long getReleases()
+	{
+		return mReleases;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return mType + "{slotSize=" + mSlotSize + ", inUse=" + mSlotsInUse + ", total=" + mSlotsTotal
+				+ ", bytesReserved=" + mBytesReserved + ", allocations=" + mAllocations + ", releases=" + mReleases + "}";
+	}
+}
@@ -16,7 +16,11 @@
  */
 package org.matrix.olm;
 
+import static java.nio.charset.StandardCharsets.*;
+
+import java.lang.ref.*;
 import java.security.SecureRandom;
+import java.util.*;
 
 import javax.annotation.*;
 
@@ -35,6 +39,11 @@ public class OlmUtility
 	 **/
 	private long mNativeId;
 	
+	/**
+	 * Registration of {@link #mNativeId} with the cleaner.
+	 */
+	private OlmNativeTracker.Handle mNativeHandle;
+	
 	public OlmUtility()
 			throws OlmException
 	{
@@ -74,6 +83,7 @@ public class OlmUtility
 		try
 		{
 			mNativeId = createUtilityJni();
+			mNativeHandle = OlmNativeTracker.track(this, mNativeId, OlmUtility::releaseUtilityJni);
 		}
 		catch (Exception e)
 		{
@@ -81,22 +91,23 @@ public class OlmUtility
 		}
 	}
 	
-	private native long createUtilityJni();
+	private static native long createUtilityJni();
 	
 	/**
 	 * Release native instance.<br>
-	 * Public API for {@link #releaseUtilityJni()}.
+	 * Public API for {@link #releaseUtilityJni(long)}.
 	 */
 	public void releaseUtility()
 	{
 		if (0 != mNativeId)
 		{
-			releaseUtilityJni();
+			mNativeHandle.release();
 		}
 		mNativeId = 0;
+		mNativeHandle = null;
 	}
 	
-	private native void releaseUtilityJni();
+	private static native void releaseUtilityJni(long aNativeId);
 	
 	/**
 	 * Verify an ed25519 signature.<br>
@@ -121,14 +132,18 @@ public class OlmUtility
 			}
 			else
 			{
-				errorMessage = verifyEd25519SignatureJni(aSignature.getBytes("UTF-8"),
+				errorMessage = verifyEd25519SignatureJni(mNativeId, aSignature.getBytes("UTF-8"),
 						aFingerprintKey.getBytes("UTF-8"), aMessage.getBytes("UTF-8"));
 			}
 		}
 		catch (Exception e)
 		{
 			errorMessage = e.getMessage();
-			LOGGER.error("## verifyEd25519Signature(): failed " + errorMessage);
+			LOGGER.error("## verifyEd25519Signature(): failed {}", errorMessage);
+		}
+		finally
+		{
+			Reference.reachabilityFence(this);
 		}
 		
 		if (errorMessage != null)
@@ -141,12 +156,107 @@ public class OlmUtility
 	 * Verify an ed25519 signature.
 	 * Return a human readable error message in case of verification failure.
 	 *
+	 * @param aNativeId native utility instance identifier
 	 * @param aSignature      the base64-encoded message signature to be checked.
 	 * @param aFingerprintKey the ed25519 key
 	 * @param aMessage        the signed message
 	 * @return null if validation succeed, the error message string if operation failed
 	 */
-	private native String verifyEd25519SignatureJni(byte[] aSignature, byte[] aFingerprintKey, byte[] aMessage);
+	private static native String verifyEd25519SignatureJni(long aNativeId, byte[] aSignature, byte[] aFingerprintKey, byte[] aMessage);
+	
+	/**
+	 * Verify ed25519 signatures made with the same key, typically the messages of one sender during a backfill, in
+	 * a single native call.<br>
+	 * Each signature is still verified on its own, exactly as {@link #verifyEd25519Signature(String, String, String)}
+	 * does: the saving is the JNI round trips, not the curve arithmetic.<br>
+	 * Unlike {@link #verifyEd25519Signature(String, String, String)}, an invalid signature does not throw: it is
+	 * reported in the returned array, and the other signatures are still checked.
+	 *
+	 * @param aFingerprintKey the ed25519 key (fingerprint key)
+	 * @param aMessages       the signed messages
+	 * @param aSignatures     the base64-encoded signature of each message
+	 * @return the validity of each signature
+	 * @throws OlmException if the parameters are invalid
+	 */
+	@Nonnull
+	public boolean[] verifyEd25519SignaturesIndividually(@Nonnull String aFingerprintKey, @Nonnull List<String> aMessages, @Nonnull List<String> aSignatures)
+			throws OlmException
+	{
+		int count = aMessages.size();
+		boolean[] valid = new boolean[count];
+		
+		if (aSignatures.size() != count)
+		{
+			LOGGER.error("## verifyEd25519SignaturesIndividually(): invalid input parameters");
+			throw new OlmException(OlmException.EXCEPTION_CODE_UTILITY_VERIFY_SIGNATURE, "the number of messages and signatures differ");
+		}
+		
+		try
+		{
+			int[] messageEnds = new int[count];
+			int[] signatureEnds = new int[count];
+			byte[] messages = pack(aMessages, messageEnds);
+			byte[] signatures = pack(aSignatures, signatureEnds);
+		
+			verifyEd25519SignaturesIndividuallyJni(mNativeId, aFingerprintKey.getBytes(UTF_8), messages, messageEnds, signatures, signatureEnds, count, valid);
+		}
+		catch (Exception e)
+		{
+			LOGGER.error("## verifyEd25519SignaturesIndividually(): failed {}", e.getMessage());
+			throw new OlmException(OlmException.EXCEPTION_CODE_UTILITY_VERIFY_SIGNATURE, e.getMessage());
+		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
+		
+		return valid;
+	}
+		
+	/**
+	 * Pack the UTF-8 encoding of strings one after the other.
+	 *
+	 * @param aStrings the strings to pack
+	 * @param aEnds    receives the offset following each string in the packed array
+	 * @return the packed array
+	 */
+	@Nonnull
+	private static byte[] pack(@Nonnull List<String> aStrings, @Nonnull int[] aEnds)
+	{
+		byte[][] encoded = new byte[aStrings.size()][];
+		int length = 0;
+		for (int i = 0; i < encoded.length; i++)
+		{
+			encoded[i] = aStrings.get(i).getBytes(UTF_8);
+			length += encoded[i].length;
+			aEnds[i] = length;
+		}
+	
+		byte[] packed = new byte[length];
+		for (int i = 0; i < encoded.length; i++)
+		{
+			int start = aEnds[i] - encoded[i].length;
+			System.arraycopy(encoded[i], 0, packed, start, encoded[i].length);
+		}
+		return packed;
+	}
+	
+	/**
+	 * Verify ed25519 signatures made with the same key, one after the other.
+	 * An exception is thrown if the parameters are invalid.
+	 *
+	 * @param aNativeId       native utility instance identifier
+	 * @param aFingerprintKey the ed25519 key
+	 * @param aMessages       the packed signed messages
+	 * @param aMessageEnds    the offset following each message in aMessages
+	 * @param aSignatures     the packed base64-encoded signatures
+	 * @param aSignatureEnds  the offset following each signature in aSignatures
+	 * @param aCount          number of signatures to verify
+	 * @param aValid          receives the validity of each signature
+	 * @return the number of invalid signatures
+	 */
+	private static native int verifyEd25519SignaturesIndividuallyJni(long aNativeId, byte[] aFingerprintKey, byte[] aMessages, int[] aMessageEnds,
+	                                                                 byte[] aSignatures, int[] aSignatureEnds, int aCount, boolean[] aValid);
 	
 	/**
 	 * Compute the hash(SHA-256) value of the string given in parameter(aMessageToHash).<br>
@@ -160,13 +270,17 @@ public class OlmUtility
 	{
 		try
 		{
-			return new String(sha256Jni(aMessageToHash.getBytes("UTF-8")), "UTF-8");
+			return new String(sha256Jni(mNativeId, aMessageToHash.getBytes("UTF-8")), "UTF-8");
 		}
 		catch (Exception e)
 		{
 			LOGGER.error("## sha256(): failed " + e.getMessage());
 			return null;
 		}
+		finally
+		{
+			Reference.reachabilityFence(this);
+		}
 	}
 	
 	/**
@@ -174,10 +288,11 @@ public class OlmUtility
 	 * The digest value is the function return value.
 	 * An exception is thrown if the operation fails.
 	 *
+	 * @param aNativeId native utility instance identifier
 	 * @param aMessage the message
 	 * @return digest of the message.
 	 **/
-	private native byte[] sha256Jni(byte[] aMessage);
+	private static native byte[] sha256Jni(long aNativeId, byte[] aMessage);
 	
 	/**
 	 * Return true the object resources have been released.<br>
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import javax.annotation.*;
+
+import org.slf4j.*;
+
+/**
+ * Selection of the binding used for the megolm hot paths, JDK 22 version.<br>
+ * The Foreign Function &amp; Memory backend is used when native access is enabled for this module
+ * ({@code --enable-native-access}). The system property {@code org.matrix.olm.backend} overrides the selection:
+ * {@code jni} always uses the JNI entry points, {@code foreign} uses the foreign backend whenever it can be bound.
+ */
+final class OlmBackends
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(OlmBackends.class);
+	
+	/**
+	 * Backend of the megolm hot paths, null to use the JNI entry points.
+	 */
+	@Nullable
+	static final OlmGroupBackend GROUP = loadGroupBackend();
+	
+	private OlmBackends()
+	{
+	}
+	
+	@Nullable
+	private static OlmGroupBackend loadGroupBackend()
+	{
+		String backend = System.getProperty("org.matrix.olm.backend", "auto");
+		
+		if ("jni".equals(backend)
+				|| ("auto".equals(backend) && !OlmBackends.class.getModule().isNativeAccessEnabled()))
+		{
+			return null;
+		}
+		
+		try
+		{
+			OlmGroupBackend groupBackend = new OlmForeignGroupBackend();
+			LOGGER.debug("## loadGroupBackend(): using the {} backend", groupBackend.name());
+			return groupBackend;
+		}
+		catch (Throwable t)
+		{
+			// the library symbols are not visible or the platform is not supported
+			LOGGER.warn("## loadGroupBackend(): foreign backend unavailable, using JNI: {}", t.toString());
+			return null;
+		}
+	}
+}
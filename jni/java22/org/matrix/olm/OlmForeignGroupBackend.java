@@ -0,0 +1,346 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import static java.lang.foreign.ValueLayout.*;
+
+import java.lang.foreign.*;
+import java.lang.invoke.*;
+import java.nio.*;
+import java.util.*;
+
+/**
+ * Megolm hot paths bound to libolm through the Foreign Function &amp; Memory API.<br>
+ * The libolm symbols are looked up in the native library loaded by {@link OlmManager}, and called directly on the
+ * native session instances created through JNI. The downcalls are critical ones: heap arrays are handed to libolm
+ * without any copy, except for the encrypted messages to decrypt as libolm decodes them in place.
+ */
+final class OlmForeignGroupBackend implements OlmGroupBackend
+{
+	private static final Linker LINKER = Linker.nativeLinker();
+	
+	private static final SymbolLookup LOOKUP = SymbolLookup.loaderLookup();
+	
+	private static final Linker.Option CRITICAL = Linker.Option.critical(true);
+	
+	private static final MethodHandle OLM_ERROR = downcall("olm_error",
+			FunctionDescriptor.of(JAVA_LONG));
+	
+	private static final MethodHandle OLM_GROUP_DECRYPT = downcall("olm_group_decrypt",
+			FunctionDescriptor.of(JAVA_LONG, ADDRESS, ADDRESS, JAVA_LONG, ADDRESS, JAVA_LONG, ADDRESS));
+	
+	private static final MethodHandle OLM_INBOUND_GROUP_SESSION_LAST_ERROR = downcall("olm_inbound_group_session_last_error",
+			FunctionDescriptor.of(ADDRESS, ADDRESS));
+	
+	private static final MethodHandle OLM_GROUP_ENCRYPT = downcall("olm_group_encrypt",
+			FunctionDescriptor.of(JAVA_LONG, ADDRESS, ADDRESS, JAVA_LONG, ADDRESS, JAVA_LONG));
+	
+	private static final MethodHandle OLM_GROUP_ENCRYPT_MESSAGE_LENGTH = downcall("olm_group_encrypt_message_length",
+			FunctionDescriptor.of(JAVA_LONG, ADDRESS, JAVA_LONG));
+	
+	private static final MethodHandle OLM_OUTBOUND_GROUP_SESSION_MESSAGE_INDEX = downcall("olm_outbound_group_session_message_index",
+			FunctionDescriptor.of(JAVA_INT, ADDRESS));
+	
+	private static final MethodHandle OLM_OUTBOUND_GROUP_SESSION_LAST_ERROR = downcall("olm_outbound_group_session_last_error",
+			FunctionDescriptor.of(ADDRESS, ADDRESS));
+	
+	/** Value returned by libolm on failure. */
+	private static final long ERROR_VALUE = olmError();
+	
+	/** Room for the message index at the start of the scratch buffer. */
+	private static final long INDEX_SLOT = 8;
+	
+	/**
+	 * Per-thread native buffer holding the message index, the decoded message and the plaintext of a decryption.
+	 */
+	private static final class Scratch
+	{
+		MemorySegment mSegment = MemorySegment.NULL;
+	}
+	
+	private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+	
+	/**
+	 * Last error strings already mapped: libolm returns static strings, so the address identifies the error.
+	 */
+	private static volatile long[] sErrorAddresses = new long[0];
+	private static volatile OlmError[] sErrors = new OlmError[0];
+	
+	OlmForeignGroupBackend()
+	{
+		// size_t is bound as a java long
+		if (!JAVA_LONG.equals(LINKER.canonicalLayouts().get("size_t")))
+		{
+			throw new UnsupportedOperationException("size_t is not 64 bits wide");
+		}
+	}
+	
+	private static MethodHandle downcall(String aName, FunctionDescriptor aDescriptor)
+	{
+		MemorySegment symbol = LOOKUP.find(aName).orElseThrow(() -> new UnsatisfiedLinkError("symbol not found: " + aName));
+		return LINKER.downcallHandle(symbol, aDescriptor, CRITICAL);
+	}
+	
+	private static long olmError()
+	{
+		try
+		{
+			return (long) OLM_ERROR.invokeExact();
+		}
+		catch (Throwable t)
+		{
+			throw new ExceptionInInitializerError(t);
+		}
+	}
+	
+	/**
+	 * Map the last error of a session to its status code.
+	 *
+	 * @param aLastError the string returned by an {@code olm_*_last_error} function
+	 * @return the ordinal of the {@link OlmError}
+	 */
+	private static int errorStatus(MemorySegment aLastError)
+	{
+		long address = aLastError.address();
+		long[] addresses = sErrorAddresses;
+		
+		for (int i = 0; i < addresses.length; i++)
+		{
+			if (addresses[i] == address)
+			{
+				return sErrors[i].ordinal();
+			}
+		}
+		
+		OlmError error = OlmError.fromMessage(aLastError.reinterpret(Long.MAX_VALUE).getString(0));
+		
+		synchronized (OlmForeignGroupBackend.class)
+		{
+			OlmError[] errors = Arrays.copyOf(sErrors, sErrors.length + 1);
+			long[] newAddresses = Arrays.copyOf(sErrorAddresses, sErrorAddresses.length + 1);
+			errors[errors.length - 1] = error;
+			newAddresses[newAddresses.length - 1] = address;
+			// publish the errors first, the addresses are read first
+			sErrors = errors;
+			sErrorAddresses = newAddresses;
+		}
+		
+		return error.ordinal();
+	}
+	
+	/**
+	 * @param aSize the minimum size
+	 * @return the scratch buffer of the calling thread, of at least aSize bytes
+	 */
+	private static MemorySegment scratch(long aSize)
+	{
+		Scratch scratch = SCRATCH.get();
+		
+		if (scratch.mSegment.byteSize() < aSize)
+		{
+			scratch.mSegment.fill((byte) 0);
+			scratch.mSegment = Arena.ofAuto().allocate(Math.max(aSize, Math.max(4096, 2 * scratch.mSegment.byteSize())), 16);
+		}
+		
+		return scratch.mSegment;
+	}
+	
+	/**
+	 * {@code invokeExact} declares {@link Throwable}, but a downcall only fails with an unchecked exception or an
+	 * error, which is a failure of the backend itself rather than of the operation: propagate it, instead of
+	 * reporting it as an {@link OlmError}.
+	 *
+	 * @param aThrowable what the downcall threw
+	 * @return the exception to throw
+	 */
+	private static RuntimeException propagate(Throwable aThrowable)
+	{
+		if (aThrowable instanceof Error)
+		{
+			throw (Error) aThrowable;
+		}
+		return (aThrowable instanceof RuntimeException) ? (RuntimeException) aThrowable : new IllegalStateException(aThrowable);
+	}
+	
+	private static boolean isValidRange(int aArrayLength, int aOffset, int aLength)
+	{
+		return (aOffset >= 0) && (aLength >= 0) && (aOffset <= aArrayLength - aLength);
+	}
+	
+	@Override
+	public String name()
+	{
+		return "foreign";
+	}
+	
+	@Override
+	public int decrypt(long aSessionId, byte[] aEncryptedMsg, int aOffset, int aLength, byte[] aDecryptedMsg, int aDecryptedOffset, long[] aResult)
+	{
+		if ((0 == aSessionId) || (null == aEncryptedMsg) || (aLength <= 0) || !isValidRange(aEncryptedMsg.length, aOffset, aLength)
+				|| (null == aDecryptedMsg) || !isValidRange(aDecryptedMsg.length, aDecryptedOffset, 0) || (aResult.length < 2))
+		{
+			return OlmError.INVALID_ARGUMENT.ordinal();
+		}
+		
+		// the plaintext is never longer than the decoded message: 3 bytes per 4 base64 characters
+		long maxPlainTextLength = ((long) aLength * 3) / 4;
+		MemorySegment scratch = scratch(INDEX_SLOT + aLength + maxPlainTextLength);
+		MemorySegment encrypted = scratch.asSlice(INDEX_SLOT, aLength);
+		MemorySegment plainText = scratch.asSlice(INDEX_SLOT + aLength, maxPlainTextLength);
+		// libolm checks the output size before decrypting, so a too small caller array leaves the ratchet untouched
+		long outputLength = Math.min(maxPlainTextLength, aDecryptedMsg.length - aDecryptedOffset);
+		MemorySegment session = MemorySegment.ofAddress(aSessionId);
+		
+		MemorySegment.copy(aEncryptedMsg, aOffset, encrypted, JAVA_BYTE, 0, aLength);
+		
+		try
+		{
+			long plainTextLength = (long) OLM_GROUP_DECRYPT.invokeExact(session, encrypted, (long) aLength, plainText, outputLength, scratch);
+			
+			if (ERROR_VALUE == plainTextLength)
+			{
+				return errorStatus((MemorySegment) OLM_INBOUND_GROUP_SESSION_LAST_ERROR.invokeExact(session));
+			}
+			
+			MemorySegment.copy(plainText, JAVA_BYTE, 0, aDecryptedMsg, aDecryptedOffset, (int) plainTextLength);
+			aResult[0] = plainTextLength;
+			aResult[1] = Integer.toUnsignedLong(scratch.get(JAVA_INT, 0));
+			return OlmError.SUCCESS.ordinal();
+		}
+		catch (Throwable t)
+		{
+			throw propagate(t);
+		}
+		finally
+		{
+			scratch.asSlice(0, INDEX_SLOT + aLength + maxPlainTextLength).fill((byte) 0);
+		}
+	}
+	
+	@Override
+	public int decrypt(long aSessionId, ByteBuffer aEncryptedMsg, ByteBuffer aDecryptedMsg, long[] aResult)
+	{
+		if ((0 == aSessionId) || !aEncryptedMsg.hasRemaining() || (aResult.length < 2))
+		{
+			return OlmError.INVALID_ARGUMENT.ordinal();
+		}
+		
+		MemorySegment encrypted = MemorySegment.ofBuffer(aEncryptedMsg);
+		MemorySegment decrypted = MemorySegment.ofBuffer(aDecryptedMsg);
+		MemorySegment index = scratch(INDEX_SLOT);
+		MemorySegment session = MemorySegment.ofAddress(aSessionId);
+		
+		try
+		{
+			long plainTextLength = (long) OLM_GROUP_DECRYPT.invokeExact(session, encrypted, encrypted.byteSize(), decrypted, decrypted.byteSize(), index);
+			
+			if (ERROR_VALUE == plainTextLength)
+			{
+				return errorStatus((MemorySegment) OLM_INBOUND_GROUP_SESSION_LAST_ERROR.invokeExact(session));
+			}
+			
+			aResult[0] = plainTextLength;
+			aResult[1] = Integer.toUnsignedLong(index.get(JAVA_INT, 0));
+			return OlmError.SUCCESS.ordinal();
+		}
+		catch (Throwable t)
+		{
+			throw propagate(t);
+		}
+	}
+	
+	@Override
+	public int encrypt(long aSessionId, byte[] aClearMsg, int aOffset, int aLength, byte[] aEncryptedMsg, int aEncryptedOffset, long[] aResult)
+	{
+		if ((0 == aSessionId) || (null == aClearMsg) || !isValidRange(aClearMsg.length, aOffset, aLength)
+				|| (null == aEncryptedMsg) || !isValidRange(aEncryptedMsg.length, aEncryptedOffset, 0) || (aResult.length < 1))
+		{
+			return OlmError.INVALID_ARGUMENT.ordinal();
+		}
+		
+		MemorySegment clear = MemorySegment.ofArray(aClearMsg).asSlice(aOffset, aLength);
+		MemorySegment encrypted = MemorySegment.ofArray(aEncryptedMsg).asSlice(aEncryptedOffset);
+		
+		return groupEncrypt(aSessionId, clear, encrypted, aResult);
+	}
+	
+	@Override
+	public int encrypt(long aSessionId, ByteBuffer aClearMsg, ByteBuffer aEncryptedMsg, long[] aResult)
+	{
+		if ((0 == aSessionId) || (aResult.length < 1))
+		{
+			return OlmError.INVALID_ARGUMENT.ordinal();
+		}
+		
+		return groupEncrypt(aSessionId, MemorySegment.ofBuffer(aClearMsg), MemorySegment.ofBuffer(aEncryptedMsg), aResult);
+	}
+	
+	private static int groupEncrypt(long aSessionId, MemorySegment aClearMsg, MemorySegment aEncryptedMsg, long[] aResult)
+	{
+		MemorySegment session = MemorySegment.ofAddress(aSessionId);
+		
+		try
+		{
+			long encryptedLength = (long) OLM_GROUP_ENCRYPT_MESSAGE_LENGTH.invokeExact(session, aClearMsg.byteSize());
+			
+			if (encryptedLength > aEncryptedMsg.byteSize())
+			{
+				return OlmError.OUTPUT_BUFFER_TOO_SMALL.ordinal();
+			}
+			
+			encryptedLength = (long) OLM_GROUP_ENCRYPT.invokeExact(session, aClearMsg, aClearMsg.byteSize(), aEncryptedMsg, encryptedLength);
+			
+			if (ERROR_VALUE == encryptedLength)
+			{
+				return errorStatus((MemorySegment) OLM_OUTBOUND_GROUP_SESSION_LAST_ERROR.invokeExact(session));
+			}
+			
+			aResult[0] = encryptedLength;
+			return OlmError.SUCCESS.ordinal();
+		}
+		catch (Throwable t)
+		{
+			throw propagate(t);
+		}
+	}
+	
+	@Override
+	public int encryptedMessageLength(long aSessionId, int aClearMsgLength)
+	{
+		try
+		{
+			return (int) (long) OLM_GROUP_ENCRYPT_MESSAGE_LENGTH.invokeExact(MemorySegment.ofAddress(aSessionId), (long) aClearMsgLength);
+		}
+		catch (Throwable t)
+		{
+			throw propagate(t);
+		}
+	}
+	
+	@Override
+	public int messageIndex(long aSessionId)
+	{
+		try
+		{
+			return (int) OLM_OUTBOUND_GROUP_SESSION_MESSAGE_INDEX.invokeExact(MemorySegment.ofAddress(aSessionId));
+		}
+		catch (Throwable t)
+		{
+			throw propagate(t);
+		}
+	}
+}
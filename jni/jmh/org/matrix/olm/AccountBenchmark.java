@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks of the {@link OlmAccount} operations: creation, key generation and signing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccountBenchmark
+{
+	@Param({"32", "1024"})
+	public int messageLength;
+	
+	private OlmAccount mAccount;
+	private String mMessage;
+	
+	@Setup(Level.Trial)
+	public void setUp()
+			throws Exception
+	{
+		Benchmarks.loadLibrary();
+		mAccount = new OlmAccount();
+		mMessage = Benchmarks.message(messageLength);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		mAccount.releaseAccount();
+	}
+	
+	@Benchmark
+	public boolean createAccount()
+			throws OlmException
+	{
+		OlmAccount account = new OlmAccount();
+		account.releaseAccount();
+		return account.isReleased();
+	}
+	
+	@Benchmark
+	public Object identityKeys()
+			throws OlmException
+	{
+		return mAccount.identityKeysJson();
+	}
+	
+	@Benchmark
+	public Object generateOneTimeKey()
+			throws OlmException
+	{
+		mAccount.generateOneTimeKeys(1);
+		Object keys = mAccount.oneTimeKeys();
+		mAccount.markOneTimeKeysAsPublished();
+		return keys;
+	}
+	
+	@Benchmark
+	public String signMessage()
+			throws OlmException
+	{
+		return mAccount.signMessage(mMessage);
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks of a backfill: decrypting interleaved messages of many megolm sessions, one message at a time
+ * or with a {@link MegolmBatchDecryptor}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BackfillBenchmark
+{
+	@Param({"1", "8", "64"})
+	public int sessionCount;
+	
+	@Param({"64"})
+	public int messagesPerSession;
+	
+	private final Map<String, OlmInboundGroupSession> mSessions = new HashMap<>();
+	private final List<String> mSessionIds = new ArrayList<>();
+	private final List<String> mEncryptedMsgs = new ArrayList<>();
+	private MegolmBatchDecryptor mDecryptor;
+	
+	@Setup(Level.Trial)
+	public void setUp()
+			throws Exception
+	{
+		Benchmarks.loadLibrary();
+		String message = Benchmarks.message(256);
+		List<OlmOutboundGroupSession> outboundSessions = new ArrayList<>();
+		
+		for (int i = 0; i < sessionCount; i++)
+		{
+			OlmOutboundGroupSession outboundSession = new OlmOutboundGroupSession();
+			outboundSessions.add(outboundSession);
+			mSessions.put(outboundSession.sessionIdentifier(), new OlmInboundGroupSession(outboundSession.sessionKey()));
+		}
+		
+		// interleave the sessions, as in a room timeline
+		for (int j = 0; j < messagesPerSession; j++)
+		{
+			for (OlmOutboundGroupSession outboundSession : outboundSessions)
+			{
+				mSessionIds.add(outboundSession.sessionIdentifier());
+				mEncryptedMsgs.add(outboundSession.encryptMessage(message));
+			}
+		}
+		
+		for (OlmOutboundGroupSession outboundSession : outboundSessions)
+		{
+			outboundSession.releaseSession();
+		}
+		
+		mDecryptor = new MegolmBatchDecryptor();
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		for (OlmInboundGroupSession session : mSessions.values())
+		{
+			session.releaseSession();
+		}
+	}
+	
+	@Benchmark
+	public int serial()
+			throws OlmException
+	{
+		int length = 0;
+		for (int i = 0; i < mEncryptedMsgs.size(); i++)
+		{
+			length += mSessions.get(mSessionIds.get(i)).decryptMessage(mEncryptedMsgs.get(i)).getDecryptedMessage().length();
+		}
+		return length;
+	}
+	
+	@Benchmark
+	public OlmBatchDecryptResult parallel()
+			throws OlmException
+	{
+		return mDecryptor.decryptMessages(mSessionIds, mEncryptedMsgs, mSessions::get);
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import java.io.*;
+import java.util.*;
+
+import com.beust.klaxon.*;
+
+/**
+ * Helpers shared by the benchmarks.
+ */
+final class Benchmarks
+{
+	private Benchmarks()
+	{
+	}
+	
+	/**
+	 * Load the native library, once per JVM.
+	 */
+	static synchronized void loadLibrary()
+	{
+		new OlmManager();
+	}
+	
+	/**
+	 * Generate a one time key on an account and return it.
+	 *
+	 * @param aAccount the account
+	 * @return the curve25519 one time key
+	 * @throws OlmException the failure reason
+	 */
+	static String oneTimeKey(OlmAccount aAccount)
+			throws OlmException
+	{
+		aAccount.generateOneTimeKeys(1);
+		JsonObject keys = (JsonObject) aAccount.oneTimeKeys().get(OlmAccount.JSON_KEY_ONE_TIME_KEY);
+		return (String) keys.values().iterator().next();
+	}
+	
+	/**
+	 * Build a message of the given length.
+	 *
+	 * @param aLength length of the message
+	 * @return an ASCII message
+	 */
+	static String message(int aLength)
+	{
+		char[] message = new char[aLength];
+		Random random = new Random(aLength);
+		for (int i = 0; i < aLength; i++)
+		{
+			message[i] = (char) ('a' + random.nextInt(26));
+		}
+		return new String(message);
+	}
+	
+	/**
+	 * Pickle an object through java serialization.
+	 *
+	 * @param aObject the object
+	 * @return the serialized object
+	 * @throws IOException the failure reason
+	 */
+	static byte[] pickle(Serializable aObject)
+			throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+		{
+			out.writeObject(aObject);
+		}
+		return bytes.toByteArray();
+	}
+	
+	/**
+	 * Unpickle an object serialized by {@link #pickle(Serializable)}.
+	 *
+	 * @param aPickle the serialized object
+	 * @return the object
+	 * @throws IOException            the failure reason
+	 * @throws ClassNotFoundException the failure reason
+	 */
+	static Object unpickle(byte[] aPickle)
+			throws IOException, ClassNotFoundException
+	{
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(aPickle)))
+		{
+			return in.readObject();
+		}
+	}
+}
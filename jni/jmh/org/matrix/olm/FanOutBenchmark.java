@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import static java.nio.charset.StandardCharsets.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks of sharing a room key with many devices over their Olm sessions, serially, with
+ * {@link OlmFanOutEncryptor} and with {@link OlmSession#encryptForAll(byte[], OlmSession[])}.<br>
+ * Every device session is established with the same one time key: the sessions stay in the pre-key phase, as
+ * for a room key sent to devices which have not replied yet.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FanOutBenchmark
+{
+	@Param({"100", "1000", "5000"})
+	public int deviceCount;
+	
+	private OlmAccount mAliceAccount;
+	private OlmAccount mBobAccount;
+	private OlmOutboundGroupSession mGroupSession;
+	private Map<String, OlmSession> mSessions;
+	private OlmSession[] mSessionArray;
+	private String mPayload;
+	private byte[] mPayloadBytes;
+	private OlmFanOutEncryptor mEncryptor;
+	
+	@Setup(Level.Trial)
+	public void setUp()
+			throws Exception
+	{
+		Benchmarks.loadLibrary();
+		mAliceAccount = new OlmAccount();
+		mBobAccount = new OlmAccount();
+		String bobIdentityKey = mBobAccount.identityKeys().getCurve25519();
+		String bobOneTimeKey = Benchmarks.oneTimeKey(mBobAccount);
+		
+		mSessions = new LinkedHashMap<>();
+		for (int i = 0; i < deviceCount; i++)
+		{
+			OlmSession session = new OlmSession();
+			session.initOutboundSession(mAliceAccount, bobIdentityKey, bobOneTimeKey);
+			mSessions.put("DEVICE" + i, session);
+		}
+		
+		mGroupSession = new OlmOutboundGroupSession();
+		mPayload = "{\"algorithm\":\"m.megolm.v1.aes-sha2\",\"room_id\":\"!room:example.org\",\"session_id\":\""
+				+ mGroupSession.sessionIdentifier() + "\",\"session_key\":\"" + mGroupSession.sessionKey() + "\"}";
+		mPayloadBytes = mPayload.getBytes(UTF_8);
+		mSessionArray = mSessions.values().toArray(new OlmSession[0]);
+		mEncryptor = new OlmFanOutEncryptor();
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		for (OlmSession session : mSessions.values())
+		{
+			session.releaseSession();
+		}
+		mGroupSession.releaseSession();
+		mAliceAccount.releaseAccount();
+		mBobAccount.releaseAccount();
+	}
+	
+	@Benchmark
+	public Map<String, OlmMessage> serial()
+			throws OlmException
+	{
+		Map<String, OlmMessage> messages = new HashMap<>();
+		for (Map.Entry<String, OlmSession> entry : mSessions.entrySet())
+		{
+			messages.put(entry.getKey(), entry.getValue().encryptMessage(mPayload));
+		}
+		return messages;
+	}
+	
+	@Benchmark
+	public OlmFanOutResult<String> fanOut()
+	{
+		return mEncryptor.encrypt(mPayload, mSessions);
+	}
+	
+	@Benchmark
+	public OlmMessage[] encryptForAll()
+			throws OlmException
+	{
+		return OlmSession.encryptForAll(mPayloadBytes, mSessionArray);
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import java.nio.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares the JNI entry points and the Foreign Function &amp; Memory backend on the megolm hot paths.<br>
+ * Every value of {@link #backend} runs in its own JVM, so {@link OlmBackends} is initialized with the requested backend.
+ * The foreign backend requires JDK 22 or later.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-native-access=ALL-UNNAMED")
+public class GroupBackendBenchmark
+{
+	@Param({"jni", "foreign"})
+	public String backend;
+	
+	@Param({"64", "1024", "16384"})
+	public int messageLength;
+	
+	private OlmOutboundGroupSession mOutboundSession;
+	private OlmInboundGroupSession mInboundSession;
+	
+	private byte[] mClearMsg;
+	private byte[] mEncryptedMsg;
+	private byte[] mDecryptedMsg;
+	private OlmDecryptionResult mResult;
+	
+	private ByteBuffer mClearBuffer;
+	private ByteBuffer mEncryptedTemplate;
+	private ByteBuffer mEncryptedBuffer;
+	private ByteBuffer mDecryptedBuffer;
+	
+	@Setup(Level.Trial)
+	public void setUp()
+			throws Exception
+	{
+		System.setProperty("org.matrix.olm.backend", backend);
+		new OlmManager();
+		
+		String expected = "jni".equals(backend) ? null : backend;
+		String actual = (null == OlmBackends.GROUP) ? null : OlmBackends.GROUP.name();
+		if ((null == expected) ? (null != actual) : !expected.equals(actual))
+		{
+			throw new IllegalStateException("requested backend " + backend + " is not available");
+		}
+		
+		mOutboundSession = new OlmOutboundGroupSession();
+		mInboundSession = new OlmInboundGroupSession(mOutboundSession.sessionKey());
+		
+		mClearMsg = new byte[messageLength];
+		ThreadLocalRandom.current().nextBytes(mClearMsg);
+		mEncryptedMsg = mOutboundSession.encryptMessage(mClearMsg, 0, mClearMsg.length);
+		mDecryptedMsg = new byte[mEncryptedMsg.length];
+		mResult = new OlmDecryptionResult();
+		
+		mClearBuffer = ByteBuffer.allocateDirect(mClearMsg.length);
+		mClearBuffer.put(mClearMsg).flip();
+		mEncryptedTemplate = ByteBuffer.allocateDirect(mEncryptedMsg.length);
+		mEncryptedTemplate.put(mEncryptedMsg).flip();
+		// the outbound ratchet advances on every encryption: size the output for any message index
+		mEncryptedBuffer = ByteBuffer.allocateDirect(mOutboundSession.maxEncryptedMessageLength(mClearMsg.length));
+		mDecryptedBuffer = ByteBuffer.allocateDirect(mEncryptedMsg.length);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		mInboundSession.releaseSession();
+		mOutboundSession.releaseSession();
+	}
+	
+	@Benchmark
+	public int decryptArray()
+	{
+		mInboundSession.tryDecryptMessage(mEncryptedMsg, 0, mEncryptedMsg.length, mDecryptedMsg, 0, mResult);
+		return mResult.getLength();
+	}
+	
+	@Benchmark
+	public long decryptDirectBuffer()
+			throws OlmException
+	{
+		// the encrypted message is decoded in place: restore it before every call
+		mEncryptedBuffer.clear();
+		mEncryptedBuffer.put(mEncryptedTemplate.duplicate()).flip();
+		mDecryptedBuffer.clear();
+		return mInboundSession.decryptMessage(mEncryptedBuffer, mDecryptedBuffer);
+	}
+	
+	@Benchmark
+	public byte[] encryptArray()
+			throws OlmException
+	{
+		return mOutboundSession.encryptMessage(mClearMsg, 0, mClearMsg.length);
+	}
+	
+	@Benchmark
+	public int encryptDirectBuffer()
+			throws OlmException
+	{
+		mClearBuffer.rewind();
+		mEncryptedBuffer.clear();
+		return mOutboundSession.encryptMessage(mClearBuffer, mEncryptedBuffer);
+	}
+	
+	@Benchmark
+	public int messageIndex()
+	{
+		return mOutboundSession.messageIndex();
+	}
+}
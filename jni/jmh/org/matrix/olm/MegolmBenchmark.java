@@ -0,0 +1,134 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks of the megolm operations, across message sizes and ratchet indices.<br>
+ * The inbound session knows the ratchet from index 0, so decrypting a message at index {@link #ratchetIndex}
+ * includes advancing a copy of the ratchet that far.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MegolmBenchmark
+{
+	/** number of messages of {@link #encryptBatch()} */
+	private static final int BATCH_SIZE = 32;
+	
+	@Param({"64", "1024", "16384"})
+	public int messageLength;
+	
+	@Param({"0", "256", "65536"})
+	public int ratchetIndex;
+	
+	private OlmOutboundGroupSession mOutboundSession;
+	private OlmInboundGroupSession mInboundSession;
+	private OlmInboundGroupSession mCheckpointedSession;
+	
+	private String mMessage;
+	private List<String> mBatch;
+	private byte[] mClearMsg;
+	private String mEncryptedMsg;
+	private byte[] mEncryptedBytes;
+	private byte[] mDecryptedMsg;
+	private OlmDecryptionResult mResult;
+	
+	@Setup(Level.Trial)
+	public void setUp()
+			throws Exception
+	{
+		Benchmarks.loadLibrary();
+		mOutboundSession = new OlmOutboundGroupSession();
+		mInboundSession = new OlmInboundGroupSession(mOutboundSession.sessionKey());
+		mCheckpointedSession = new OlmInboundGroupSession(mOutboundSession.sessionKey());
+		mCheckpointedSession.enableRatchetCheckpoints(8, 1024 * 1024);
+		
+		mMessage = Benchmarks.message(messageLength);
+		mClearMsg = mMessage.getBytes("UTF-8");
+		mBatch = Collections.nCopies(BATCH_SIZE, mMessage);
+		
+		byte[] empty = new byte[1];
+		while (mOutboundSession.messageIndex() < ratchetIndex)
+		{
+			mOutboundSession.encryptMessage(empty, 0, empty.length);
+		}
+		
+		mEncryptedMsg = mOutboundSession.encryptMessage(mMessage);
+		mEncryptedBytes = mEncryptedMsg.getBytes("UTF-8");
+		mDecryptedMsg = new byte[mEncryptedBytes.length];
+		mResult = new OlmDecryptionResult();
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		mInboundSession.releaseSession();
+		mCheckpointedSession.releaseSession();
+		mOutboundSession.releaseSession();
+	}
+	
+	@Benchmark
+	public String encrypt()
+			throws OlmException
+	{
+		return mOutboundSession.encryptMessage(mMessage);
+	}
+	
+	@Benchmark
+	public byte[] encryptBytes()
+			throws OlmException
+	{
+		return mOutboundSession.encryptMessage(mClearMsg, 0, mClearMsg.length);
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(BATCH_SIZE)
+	public OlmBatchEncryptResult encryptBatch()
+			throws OlmException
+	{
+		return mOutboundSession.encryptMessages(mBatch);
+	}
+	
+	@Benchmark
+	public Object decrypt()
+			throws OlmException
+	{
+		return mInboundSession.decryptMessage(mEncryptedMsg);
+	}
+	
+	@Benchmark
+	public int decryptInto()
+	{
+		mInboundSession.tryDecryptMessage(mEncryptedBytes, 0, mEncryptedBytes.length, mDecryptedMsg, 0, mResult);
+		return mResult.getLength();
+	}
+	
+	@Benchmark
+	public int decryptCheckpointed()
+	{
+		mCheckpointedSession.tryDecryptMessage(mEncryptedBytes, 0, mEncryptedBytes.length, mDecryptedMsg, 0, mResult);
+		return mResult.getLength();
+	}
+}
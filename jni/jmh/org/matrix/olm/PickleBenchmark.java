@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks of the pickling of the Olm objects, through the java serialization of {@link CommonSerializeUtils}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PickleBenchmark
+{
+	private OlmAccount mAccount;
+	private OlmSession mSession;
+	private OlmOutboundGroupSession mOutboundSession;
+	private OlmInboundGroupSession mInboundSession;
+	
+	private byte[] mAccountPickle;
+	private byte[] mSessionPickle;
+	private byte[] mOutboundSessionPickle;
+	private byte[] mInboundSessionPickle;
+	
+	@Setup(Level.Trial)
+	public void setUp()
+			throws Exception
+	{
+		Benchmarks.loadLibrary();
+		mAccount = new OlmAccount();
+		mAccount.generateOneTimeKeys((int) mAccount.maxOneTimeKeys() / 2);
+		
+		OlmAccount peer = new OlmAccount();
+		mSession = new OlmSession();
+		mSession.initOutboundSession(mAccount, peer.identityKeys().getCurve25519(), Benchmarks.oneTimeKey(peer));
+		peer.releaseAccount();
+		
+		mOutboundSession = new OlmOutboundGroupSession();
+		mInboundSession = new OlmInboundGroupSession(mOutboundSession.sessionKey());
+		
+		mAccountPickle = Benchmarks.pickle(mAccount);
+		mSessionPickle = Benchmarks.pickle(mSession);
+		mOutboundSessionPickle = Benchmarks.pickle(mOutboundSession);
+		mInboundSessionPickle = Benchmarks.pickle(mInboundSession);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		mInboundSession.releaseSession();
+		mOutboundSession.releaseSession();
+		mSession.releaseSession();
+		mAccount.releaseAccount();
+	}
+	
+	@Benchmark
+	public byte[] pickleAccount()
+			throws Exception
+	{
+		return Benchmarks.pickle(mAccount);
+	}
+	
+	@Benchmark
+	public boolean unpickleAccount()
+			throws Exception
+	{
+		OlmAccount account = (OlmAccount) Benchmarks.unpickle(mAccountPickle);
+		account.releaseAccount();
+		return account.isReleased();
+	}
+	
+	@Benchmark
+	public byte[] pickleSession()
+			throws Exception
+	{
+		return Benchmarks.pickle(mSession);
+	}
+	
+	@Benchmark
+	public boolean unpickleSession()
+			throws Exception
+	{
+		OlmSession session = (OlmSession) Benchmarks.unpickle(mSessionPickle);
+		session.releaseSession();
+		return session.isReleased();
+	}
+	
+	@Benchmark
+	public byte[] pickleOutboundGroupSession()
+			throws Exception
+	{
+		return Benchmarks.pickle(mOutboundSession);
+	}
+	
+	@Benchmark
+	public boolean unpickleOutboundGroupSession()
+			throws Exception
+	{
+		OlmOutboundGroupSession session = (OlmOutboundGroupSession) Benchmarks.unpickle(mOutboundSessionPickle);
+		session.releaseSession();
+		return session.isReleased();
+	}
+	
+	@Benchmark
+	public byte[] pickleInboundGroupSession()
+			throws Exception
+	{
+		return Benchmarks.pickle(mInboundSession);
+	}
+	
+	@Benchmark
+	public boolean unpickleInboundGroupSession()
+			throws Exception
+	{
+		OlmInboundGroupSession session = (OlmInboundGroupSession) Benchmarks.unpickle(mInboundSessionPickle);
+		session.releaseSession();
+		return session.isReleased();
+	}
+}
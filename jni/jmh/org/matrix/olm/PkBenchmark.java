@@ -0,0 +1,74 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks of {@link OlmPkEncryption} and {@link OlmPkDecryption}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PkBenchmark
+{
+	@Param({"64", "1024", "16384"})
+	public int messageLength;
+	
+	private OlmPkEncryption mEncryption;
+	private OlmPkDecryption mDecryption;
+	private String mMessage;
+	private OlmPkMessage mEncryptedMsg;
+	
+	@Setup(Level.Trial)
+	public void setUp()
+			throws Exception
+	{
+		Benchmarks.loadLibrary();
+		mDecryption = new OlmPkDecryption();
+		mEncryption = new OlmPkEncryption();
+		mEncryption.setRecipientKey(mDecryption.generateKey());
+		mMessage = Benchmarks.message(messageLength);
+		mEncryptedMsg = mEncryption.encrypt(mMessage);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		mEncryption.releaseEncryption();
+		mDecryption.releaseDecryption();
+	}
+	
+	@Benchmark
+	public OlmPkMessage encrypt()
+			throws OlmException
+	{
+		return mEncryption.encrypt(mMessage);
+	}
+	
+	@Benchmark
+	public String decrypt()
+			throws OlmException
+	{
+		return mDecryption.decrypt(mEncryptedMsg);
+	}
+}
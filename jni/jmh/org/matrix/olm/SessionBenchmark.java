@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks of the {@link OlmSession} operations: session establishment and the olm ratchet.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionBenchmark
+{
+	@Param({"64", "1024", "16384"})
+	public int messageLength;
+	
+	private OlmAccount mAliceAccount;
+	private OlmAccount mBobAccount;
+	private String mBobIdentityKey;
+	private String mBobOneTimeKey;
+	private String mPreKeyMessage;
+	
+	private OlmSession mAliceSession;
+	private OlmSession mBobSession;
+	private String mMessage;
+	private byte[] mDecryptedMsg;
+	
+	@Setup(Level.Trial)
+	public void setUp()
+			throws Exception
+	{
+		Benchmarks.loadLibrary();
+		mAliceAccount = new OlmAccount();
+		mBobAccount = new OlmAccount();
+		mBobIdentityKey = mBobAccount.identityKeys().getCurve25519();
+		mBobOneTimeKey = Benchmarks.oneTimeKey(mBobAccount);
+		mMessage = Benchmarks.message(messageLength);
+		
+		mAliceSession = new OlmSession();
+		mAliceSession.initOutboundSession(mAliceAccount, mBobIdentityKey, mBobOneTimeKey);
+		OlmMessage preKeyMessage = mAliceSession.encryptMessage(mMessage);
+		mPreKeyMessage = preKeyMessage.getCipherText();
+		
+		// the one time key is not removed from Bob's account, so the pre-key message can be replayed by establishInbound()
+		mBobSession = new OlmSession();
+		mBobSession.initInboundSession(mBobAccount, mPreKeyMessage);
+		mBobSession.decryptMessage(preKeyMessage);
+		
+		// a reply moves Alice's session out of the pre-key phase
+		mAliceSession.decryptMessage(mBobSession.encryptMessage(mMessage));
+		
+		mDecryptedMsg = new byte[mAliceSession.encryptMessage(mMessage).getCipherText().length()];
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		mAliceSession.releaseSession();
+		mBobSession.releaseSession();
+		mAliceAccount.releaseAccount();
+		mBobAccount.releaseAccount();
+	}
+	
+	@Benchmark
+	public boolean establishOutbound()
+			throws OlmException
+	{
+		OlmSession session = new OlmSession();
+		session.initOutboundSession(mAliceAccount, mBobIdentityKey, mBobOneTimeKey);
+		session.releaseSession();
+		return session.isReleased();
+	}
+	
+	@Benchmark
+	public boolean establishInbound()
+			throws OlmException
+	{
+		OlmSession session = new OlmSession();
+		session.initInboundSession(mBobAccount, mPreKeyMessage);
+		session.releaseSession();
+		return session.isReleased();
+	}
+	
+	@Benchmark
+	public OlmMessage encrypt()
+			throws OlmException
+	{
+		return mAliceSession.encryptMessage(mMessage);
+	}
+	
+	/**
+	 * Olm message keys are single use, so every decryption needs a fresh message: this measures both directions.
+	 */
+	@Benchmark
+	public int encryptThenDecrypt()
+			throws OlmException
+	{
+		return mBobSession.decryptMessage(mAliceSession.encryptMessage(mMessage), mDecryptedMsg, 0);
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks of the {@link OlmUtility} operations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UtilityBenchmark
+{
+	@Param({"32", "1024", "16384"})
+	public int messageLength;
+	
+	private OlmAccount mAccount;
+	private OlmUtility mUtility;
+	private String mMessage;
+	private String mSignature;
+	private String mFingerprintKey;
+	
+	@Setup(Level.Trial)
+	public void setUp()
+			throws Exception
+	{
+		Benchmarks.loadLibrary();
+		mAccount = new OlmAccount();
+		mUtility = new OlmUtility();
+		mMessage = Benchmarks.message(messageLength);
+		mSignature = mAccount.signMessage(mMessage);
+		mFingerprintKey = mAccount.identityKeys().getEd25519();
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		mUtility.releaseUtility();
+		mAccount.releaseAccount();
+	}
+	
+	@Benchmark
+	public void verifyEd25519Signature()
+			throws OlmException
+	{
+		mUtility.verifyEd25519Signature(mSignature, mFingerprintKey, mMessage);
+	}
+	
+	@Benchmark
+	public String sha256()
+	{
+		return mUtility.sha256(mMessage);
+	}
+}
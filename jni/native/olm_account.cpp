@@ -16,6 +16,7 @@
  */
 
 #include "olm_account.h"
+#include "olm_slab.h"
 
 using namespace AndroidOlmSdk;
 
@@ -25,14 +26,13 @@ using namespace AndroidOlmSdk;
  **/
 OlmAccount* initializeAccountMemory()
 {
-    size_t accountSize = olm_account_size();
-    OlmAccount* accountPtr = (OlmAccount*)malloc(accountSize);
+    OlmAccount* accountPtr = (OlmAccount*)slabAlloc(SLAB_ACCOUNT);
 
     if (accountPtr)
     {
         // init account object
         accountPtr = olm_account(accountPtr);
-        LOGD("## initializeAccountMemory(): success - OLM account size=%lu",static_cast<long unsigned int>(accountSize));
+        LOGD("## initializeAccountMemory(): success - OLM account");
     }
     else
     {
@@ -48,7 +48,7 @@ OlmAccount* initializeAccountMemory()
  * to make the cast (OlmAccount* => jlong) platform independent.
  * @return the initialized OlmAccount* instance or throw an exception if fails
  **/
-JNIEXPORT jlong OLM_ACCOUNT_FUNC_DEF(createNewAccountJni)(JNIEnv *env, jobject thiz)
+JNIEXPORT jlong OLM_ACCOUNT_FUNC_DEF(createNewAccountJni)(JNIEnv *env, jclass clazz)
 {
     const char* errorMessage = NULL;
     OlmAccount *accountPtr = initializeAccountMemory();
@@ -103,9 +103,9 @@ JNIEXPORT jlong OLM_ACCOUNT_FUNC_DEF(createNewAccountJni)(JNIEnv *env, jobject t
         if (accountPtr)
         {
             olm_clear_account(accountPtr);
-            free(accountPtr);
+            slabFree(SLAB_ACCOUNT, accountPtr);
         }
-        env->ThrowNew(env->FindClass("java/lang/Exception"), errorMessage);
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
     }
 
     return (jlong)(intptr_t)accountPtr;
@@ -114,11 +114,11 @@ JNIEXPORT jlong OLM_ACCOUNT_FUNC_DEF(createNewAccountJni)(JNIEnv *env, jobject t
  * Release the account allocation made by initializeAccountMemory().<br>
  * This method MUST be called when java counter part account instance is done.
  */
-JNIEXPORT void OLM_ACCOUNT_FUNC_DEF(releaseAccountJni)(JNIEnv *env, jobject thiz)
+JNIEXPORT void OLM_ACCOUNT_FUNC_DEF(releaseAccountJni)(JNIEnv *env, jclass clazz, jlong aNativeId)
 {
     LOGD("## releaseAccountJni(): IN");
 
-    OlmAccount* accountPtr = getAccountInstanceId(env, thiz);
+    OlmAccount* accountPtr = (OlmAccount*)aNativeId;
 
     if (!accountPtr)
     {
@@ -131,7 +131,7 @@ JNIEXPORT void OLM_ACCOUNT_FUNC_DEF(releaseAccountJni)(JNIEnv *env, jobject thiz
 
         LOGD(" ## releaseAccountJni(): IN");
         // even if free(NULL) does not crash, logs are performed for debug purpose
-        free(accountPtr);
+        slabFree(SLAB_ACCOUNT, accountPtr);
         LOGD(" ## releaseAccountJni(): OUT");
     }
 }
@@ -145,11 +145,11 @@ JNIEXPORT void OLM_ACCOUNT_FUNC_DEF(releaseAccountJni)(JNIEnv *env, jobject thiz
  * The keys are returned in the byte array.
  * @return the identity keys or throw an exception if it fails
  **/
-JNIEXPORT jbyteArray OLM_ACCOUNT_FUNC_DEF(identityKeysJni)(JNIEnv *env, jobject thiz)
+JNIEXPORT jbyteArray OLM_ACCOUNT_FUNC_DEF(identityKeysJni)(JNIEnv *env, jclass clazz, jlong aNativeId)
 {
     const char* errorMessage = NULL;
     jbyteArray byteArrayRetValue = NULL;
-    OlmAccount* accountPtr = getAccountInstanceId(env, thiz);
+    OlmAccount* accountPtr = (OlmAccount*)aNativeId;
 
     if (!accountPtr)
     {
@@ -202,7 +202,7 @@ JNIEXPORT jbyteArray OLM_ACCOUNT_FUNC_DEF(identityKeysJni)(JNIEnv *env, jobject
 
     if (errorMessage)
     {
-        env->ThrowNew(env->FindClass("java/lang/Exception"), errorMessage);
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
     }
 
     return byteArrayRetValue;
@@ -219,9 +219,9 @@ JNIEXPORT jbyteArray OLM_ACCOUNT_FUNC_DEF(identityKeysJni)(JNIEnv *env, jobject
  * base64-encoded Curve25519 key.<br>
  * @return byte array containing the one time keys or throw an exception if it fails
  */
-JNIEXPORT jlong OLM_ACCOUNT_FUNC_DEF(maxOneTimeKeysJni)(JNIEnv *env, jobject thiz)
+JNIEXPORT jlong OLM_ACCOUNT_FUNC_DEF(maxOneTimeKeysJni)(JNIEnv *env, jclass clazz, jlong aNativeId)
 {
-    OlmAccount* accountPtr = getAccountInstanceId(env, thiz);
+    OlmAccount* accountPtr = (OlmAccount*)aNativeId;
     size_t maxKeys = -1;
 
     if (!accountPtr)
@@ -243,10 +243,10 @@ JNIEXPORT jlong OLM_ACCOUNT_FUNC_DEF(maxOneTimeKeysJni)(JNIEnv *env, jobject thi
  * An exception is thrown if the operation fails.
  * @param aNumberOfKeys number of keys to generate
  **/
-JNIEXPORT void OLM_ACCOUNT_FUNC_DEF(generateOneTimeKeysJni)(JNIEnv *env, jobject thiz, jint aNumberOfKeys)
+JNIEXPORT void OLM_ACCOUNT_FUNC_DEF(generateOneTimeKeysJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jint aNumberOfKeys)
 {
     const char* errorMessage = NULL;
-    OlmAccount *accountPtr = getAccountInstanceId(env, thiz);
+    OlmAccount *accountPtr = (OlmAccount*)aNativeId;
 
     if (!accountPtr)
     {
@@ -294,7 +294,7 @@ JNIEXPORT void OLM_ACCOUNT_FUNC_DEF(generateOneTimeKeysJni)(JNIEnv *env, jobject
 
     if (errorMessage)
     {
-        env->ThrowNew(env->FindClass("java/lang/Exception"), errorMessage);
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
     }
 }
 
@@ -303,11 +303,11 @@ JNIEXPORT void OLM_ACCOUNT_FUNC_DEF(generateOneTimeKeysJni)(JNIEnv *env, jobject
  * Return the public parts of the unpublished "one time keys" for the account
  * @return a valid byte array if operation succeed, null otherwise
  **/
-JNIEXPORT jbyteArray OLM_ACCOUNT_FUNC_DEF(oneTimeKeysJni)(JNIEnv *env, jobject thiz)
+JNIEXPORT jbyteArray OLM_ACCOUNT_FUNC_DEF(oneTimeKeysJni)(JNIEnv *env, jclass clazz, jlong aNativeId)
 {
     const char* errorMessage = NULL;
     jbyteArray byteArrayRetValue = NULL;
-    OlmAccount* accountPtr = getAccountInstanceId(env, thiz);
+    OlmAccount* accountPtr = (OlmAccount*)aNativeId;
 
     LOGD("## oneTimeKeysJni(): IN");
 
@@ -359,7 +359,7 @@ JNIEXPORT jbyteArray OLM_ACCOUNT_FUNC_DEF(oneTimeKeysJni)(JNIEnv *env, jobject t
 
     if (errorMessage)
     {
-        env->ThrowNew(env->FindClass("java/lang/Exception"), errorMessage);
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
     }
 
     return byteArrayRetValue;
@@ -370,7 +370,7 @@ JNIEXPORT jbyteArray OLM_ACCOUNT_FUNC_DEF(oneTimeKeysJni)(JNIEnv *env, jobject t
  * An exception is thrown if the operation fails.
  * @param aNativeOlmSessionId session instance
  **/
-JNIEXPORT void OLM_ACCOUNT_FUNC_DEF(removeOneTimeKeysJni)(JNIEnv *env, jobject thiz, jlong aNativeOlmSessionId)
+JNIEXPORT void OLM_ACCOUNT_FUNC_DEF(removeOneTimeKeysJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jlong aNativeOlmSessionId)
 {
     const char* errorMessage = NULL;
     OlmAccount* accountPtr = NULL;
@@ -381,7 +381,7 @@ JNIEXPORT void OLM_ACCOUNT_FUNC_DEF(removeOneTimeKeysJni)(JNIEnv *env, jobject t
         LOGE("## removeOneTimeKeysJni(): failure - invalid session ptr");
         errorMessage = "invalid session ptr";
     }
-    else if (!(accountPtr = getAccountInstanceId(env, thiz)))
+    else if (!(accountPtr = (OlmAccount*)aNativeId))
     {
         LOGE("## removeOneTimeKeysJni(): failure - invalid account ptr");
         errorMessage = "invalid account ptr";
@@ -403,7 +403,7 @@ JNIEXPORT void OLM_ACCOUNT_FUNC_DEF(removeOneTimeKeysJni)(JNIEnv *env, jobject t
 
     if (errorMessage)
     {
-        env->ThrowNew(env->FindClass("java/lang/Exception"), errorMessage);
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
     }
 }
 
@@ -411,10 +411,10 @@ JNIEXPORT void OLM_ACCOUNT_FUNC_DEF(removeOneTimeKeysJni)(JNIEnv *env, jobject t
  * Mark the current set of "one time keys" as being published.
  * An exception is thrown if the operation fails.
  **/
-JNIEXPORT void OLM_ACCOUNT_FUNC_DEF(markOneTimeKeysAsPublishedJni)(JNIEnv *env, jobject thiz)
+JNIEXPORT void OLM_ACCOUNT_FUNC_DEF(markOneTimeKeysAsPublishedJni)(JNIEnv *env, jclass clazz, jlong aNativeId)
 {
     const char* errorMessage = NULL;
-    OlmAccount* accountPtr = getAccountInstanceId(env, thiz);
+    OlmAccount* accountPtr = (OlmAccount*)aNativeId;
 
     if (!accountPtr)
     {
@@ -438,7 +438,7 @@ JNIEXPORT void OLM_ACCOUNT_FUNC_DEF(markOneTimeKeysAsPublishedJni)(JNIEnv *env,
 
     if (errorMessage)
     {
-        env->ThrowNew(env->FindClass("java/lang/Exception"), errorMessage);
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
     }
 }
 
@@ -448,7 +448,7 @@ JNIEXPORT void OLM_ACCOUNT_FUNC_DEF(markOneTimeKeysAsPublishedJni)(JNIEnv *env,
  * @param aMessage message to sign
  * @return the signed message, null otherwise
  **/
-JNIEXPORT jbyteArray OLM_ACCOUNT_FUNC_DEF(signMessageJni)(JNIEnv *env, jobject thiz, jbyteArray aMessage)
+JNIEXPORT jbyteArray OLM_ACCOUNT_FUNC_DEF(signMessageJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jbyteArray aMessage)
 {
     const char* errorMessage = NULL;
     OlmAccount* accountPtr = NULL;
@@ -459,7 +459,7 @@ JNIEXPORT jbyteArray OLM_ACCOUNT_FUNC_DEF(signMessageJni)(JNIEnv *env, jobject t
         LOGE("## signMessageJni(): failure - invalid aMessage param");
         errorMessage = "invalid aMessage param";
     }
-    else if (!(accountPtr = getAccountInstanceId(env, thiz)))
+    else if (!(accountPtr = (OlmAccount*)aNativeId))
     {
         LOGE("## signMessageJni(): failure - invalid account ptr");
         errorMessage = "invalid account ptr";
@@ -512,7 +512,7 @@ JNIEXPORT jbyteArray OLM_ACCOUNT_FUNC_DEF(signMessageJni)(JNIEnv *env, jobject t
 
     if (errorMessage)
     {
-        env->ThrowNew(env->FindClass("java/lang/Exception"), errorMessage);
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
     }
 
     return signedMsgRetValueBuffer;
@@ -523,7 +523,7 @@ JNIEXPORT jbyteArray OLM_ACCOUNT_FUNC_DEF(signMessageJni)(JNIEnv *env, jobject t
  * @param aKeyBuffer key used to encrypt the serialized account data
  * @return the serialised account as bytes buffer.
  **/
-JNIEXPORT jbyteArray OLM_ACCOUNT_FUNC_DEF(serializeJni)(JNIEnv *env, jobject thiz, jbyteArray aKeyBuffer)
+JNIEXPORT jbyteArray OLM_ACCOUNT_FUNC_DEF(serializeJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jbyteArray aKeyBuffer)
 {
     const char* errorMessage = NULL;
     jbyteArray pickledDataRetValue = 0;
@@ -537,7 +537,7 @@ JNIEXPORT jbyteArray OLM_ACCOUNT_FUNC_DEF(serializeJni)(JNIEnv *env, jobject thi
         LOGE(" ## serializeJni(): failure - invalid key");
         errorMessage = "invalid key";
     }
-    else if (!(accountPtr = getAccountInstanceId(env, thiz)))
+    else if (!(accountPtr = (OlmAccount*)aNativeId))
     {
        LOGE(" ## serializeJni(): failure - invalid account ptr");
        errorMessage = "invalid account ptr";
@@ -591,7 +591,7 @@ JNIEXPORT jbyteArray OLM_ACCOUNT_FUNC_DEF(serializeJni)(JNIEnv *env, jobject thi
 
     if (errorMessage)
     {
-        env->ThrowNew(env->FindClass("java/lang/Exception"), errorMessage);
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
     }
 
     return pickledDataRetValue;
@@ -603,7 +603,7 @@ JNIEXPORT jbyteArray OLM_ACCOUNT_FUNC_DEF(serializeJni)(JNIEnv *env, jobject thi
  * @param aKeyBuffer the key used to encrypt the serialized account data
  * @return the deserialised account
  **/
-JNIEXPORT jlong OLM_ACCOUNT_FUNC_DEF(deserializeJni)(JNIEnv *env, jobject thiz, jbyteArray aSerializedDataBuffer, jbyteArray aKeyBuffer)
+JNIEXPORT jlong OLM_ACCOUNT_FUNC_DEF(deserializeJni)(JNIEnv *env, jclass clazz, jbyteArray aSerializedDataBuffer, jbyteArray aKeyBuffer)
 {
     const char* errorMessage = NULL;
 
@@ -678,9 +678,9 @@ JNIEXPORT jlong OLM_ACCOUNT_FUNC_DEF(deserializeJni)(JNIEnv *env, jobject thiz,
         if (accountPtr)
         {
             olm_clear_account(accountPtr);
-            free(accountPtr);
+            slabFree(SLAB_ACCOUNT, accountPtr);
         }
-        env->ThrowNew(env->FindClass("java/lang/Exception"), errorMessage);
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
     }
 
     return (jlong)(intptr_t)accountPtr;
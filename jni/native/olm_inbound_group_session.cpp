@@ -16,6 +16,9 @@
  */
 
 #include "olm_inbound_group_session.h"
+#include "olm_slab.h"
+
+#include <vector>
 
 using namespace AndroidOlmSdk;
 
@@ -23,9 +26,9 @@ using namespace AndroidOlmSdk;
  * Release the session allocation made by initializeInboundGroupSessionMemory().<br>
  * This method MUST be called when java counter part account instance is done.
  */
-JNIEXPORT void OLM_INBOUND_GROUP_SESSION_FUNC_DEF(releaseSessionJni)(JNIEnv *env, jobject thiz)
+JNIEXPORT void OLM_INBOUND_GROUP_SESSION_FUNC_DEF(releaseSessionJni)(JNIEnv *env, jclass clazz, jlong aNativeId)
 {
-    OlmInboundGroupSession* sessionPtr = getInboundGroupSessionInstanceId(env,thiz);
+    OlmInboundGroupSession* sessionPtr = (OlmInboundGroupSession*)aNativeId;
 
     LOGD("## releaseSessionJni(): InBound group session IN");
 
@@ -44,7 +47,7 @@ JNIEXPORT void OLM_INBOUND_GROUP_SESSION_FUNC_DEF(releaseSessionJni)(JNIEnv *env
 #endif
 
         LOGD(" ## releaseSessionJni(): free IN");
-        free(sessionPtr);
+        slabFree(SLAB_INBOUND_GROUP_SESSION, sessionPtr);
         LOGD(" ## releaseSessionJni(): free OUT");
     }
 }
@@ -57,7 +60,7 @@ JNIEXPORT void OLM_INBOUND_GROUP_SESSION_FUNC_DEF(releaseSessionJni)(JNIEnv *env
  * @param isImported true when the session key has been retrieved from a backup
  * @return the initialized OlmInboundGroupSession* instance or throw an exception it fails.
  **/
-JNIEXPORT jlong OLM_INBOUND_GROUP_SESSION_FUNC_DEF(createNewSessionJni)(JNIEnv *env, jobject thiz, jbyteArray aSessionKeyBuffer, jboolean isImported)
+JNIEXPORT jlong OLM_INBOUND_GROUP_SESSION_FUNC_DEF(createNewSessionJni)(JNIEnv *env, jclass clazz, jbyteArray aSessionKeyBuffer, jboolean isImported)
 {
     const char* errorMessage = NULL;
     OlmInboundGroupSession* sessionPtr = NULL;
@@ -71,7 +74,7 @@ JNIEXPORT jlong OLM_INBOUND_GROUP_SESSION_FUNC_DEF(createNewSessionJni)(JNIEnv *
         LOGE(" ## createNewSessionJni(): failure - inbound group session size = 0");
         errorMessage = "inbound group session size = 0";
     }
-    else if (!(sessionPtr = (OlmInboundGroupSession*)malloc(sessionSize)))
+    else if (!(sessionPtr = (OlmInboundGroupSession*)slabAlloc(SLAB_INBOUND_GROUP_SESSION)))
     {
         LOGE(" ## createNewSessionJni(): failure - inbound group session OOM");
         errorMessage = "inbound group session OOM";
@@ -128,9 +131,9 @@ JNIEXPORT jlong OLM_INBOUND_GROUP_SESSION_FUNC_DEF(createNewSessionJni)(JNIEnv *
         if (sessionPtr)
         {
             olm_clear_inbound_group_session(sessionPtr);
-            free(sessionPtr);
+            slabFree(SLAB_INBOUND_GROUP_SESSION, sessionPtr);
         }
-        env->ThrowNew(env->FindClass("java/lang/Exception"), errorMessage);
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
     }
 
     return (jlong)(intptr_t)sessionPtr;
@@ -141,10 +144,10 @@ JNIEXPORT jlong OLM_INBOUND_GROUP_SESSION_FUNC_DEF(createNewSessionJni)(JNIEnv *
  * An exception is thrown if the operation fails.
  * @return the base64-encoded identifier
  */
-JNIEXPORT jbyteArray OLM_INBOUND_GROUP_SESSION_FUNC_DEF(sessionIdentifierJni)(JNIEnv *env, jobject thiz)
+JNIEXPORT jbyteArray OLM_INBOUND_GROUP_SESSION_FUNC_DEF(sessionIdentifierJni)(JNIEnv *env, jclass clazz, jlong aNativeId)
 {
     const char* errorMessage = NULL;
-    OlmInboundGroupSession *sessionPtr = getInboundGroupSessionInstanceId(env, thiz);
+    OlmInboundGroupSession *sessionPtr = (OlmInboundGroupSession*)aNativeId;
     jbyteArray returnValue = 0;
 
     LOGD("## sessionIdentifierJni(): inbound group session IN");
@@ -190,144 +193,673 @@ JNIEXPORT jbyteArray OLM_INBOUND_GROUP_SESSION_FUNC_DEF(sessionIdentifierJni)(JN
 
     if (errorMessage)
     {
-        env->ThrowNew(env->FindClass("java/lang/Exception"), errorMessage);
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
     }
 
     return returnValue;
 }
 
 /**
- * Decrypt a message.
+ * Decrypt a slice of a java array into the scratch buffer of the calling thread.<br>
+ * The ciphertext is copied once into the scratch buffer and base64-decoded a single time
+ * by olm_group_decrypt(); the plaintext follows it in the scratch buffer.
+ * A binary ciphertext is first copied in the plaintext area, and base64-encoded from there
+ * in front of it, since libolm only decrypts base64 messages.
+ * The caller must wipe the plaintext with clearScratchBuffer() once consumed.
+ * @param aEncryptedMsgBuffer the encrypted message
+ * @param aOffset offset of the message in aEncryptedMsgBuffer
+ * @param aLength length of the message
+ * @param aPlainTextPtr receives the plaintext address
+ * @param aMessageIndex receives the message index
+ * @param aErrorMessage receives the error message on failure
+ * @param aBinary true if the message is binary rather than base64
+ * @return the plaintext length, olm_error() if the operation failed
+ */
+static size_t groupDecrypt(JNIEnv *env, OlmInboundGroupSession *sessionPtr, jbyteArray aEncryptedMsgBuffer, jint aOffset, jint aLength,
+                           uint8_t **aPlainTextPtr, uint32_t *aMessageIndex, const char **aErrorMessage, bool aBinary = false)
+{
+    size_t plaintextLength = olm_error();
+    uint8_t *scratchPtr = NULL;
+    size_t encryptedMsgLength = aBinary ? _olm_encode_base64_length((size_t)aLength) : (size_t)aLength;
+
+    // the plaintext is never longer than the decoded message: 3 bytes per 4 base64 characters
+    size_t maxPlainTextLength = (encryptedMsgLength * 3) / 4;
+
+    if (!sessionPtr)
+    {
+        LOGE(" ## groupDecrypt(): failure - invalid inbound group session ptr=NULL");
+        *aErrorMessage = "invalid inbound group session ptr=NULL";
+    }
+    else if (!aEncryptedMsgBuffer || (aOffset < 0) || (aLength <= 0) || (aOffset > env->GetArrayLength(aEncryptedMsgBuffer) - aLength))
+    {
+        LOGE(" ## groupDecrypt(): failure - invalid encrypted message");
+        *aErrorMessage = "invalid encrypted message";
+    }
+    else if (!(scratchPtr = getScratchBuffer(encryptedMsgLength + maxPlainTextLength)))
+    {
+        LOGE(" ## groupDecrypt(): failure - scratch buffer allocation OOM");
+        *aErrorMessage = "scratch buffer allocation OOM";
+    }
+    else
+    {
+        *aPlainTextPtr = scratchPtr + encryptedMsgLength;
+
+        if (aBinary)
+        {
+            // the plaintext area holds at least the decoded length of the encoding
+            env->GetByteArrayRegion(aEncryptedMsgBuffer, aOffset, aLength, (jbyte*)*aPlainTextPtr);
+            _olm_encode_base64(*aPlainTextPtr, (size_t)aLength, scratchPtr);
+        }
+        else
+        {
+            env->GetByteArrayRegion(aEncryptedMsgBuffer, aOffset, aLength, (jbyte*)scratchPtr);
+        }
+        LOGD(" ## groupDecrypt(): encryptedMsgLength=%lu maxPlaintextLength=%lu",static_cast<long unsigned int>(encryptedMsgLength),static_cast<long unsigned int>(maxPlainTextLength));
+
+        plaintextLength = olm_group_decrypt(sessionPtr,
+                                            scratchPtr,
+                                            encryptedMsgLength,
+                                            *aPlainTextPtr,
+                                            maxPlainTextLength,
+                                            aMessageIndex);
+        if (plaintextLength == olm_error())
+        {
+            *aErrorMessage = olm_inbound_group_session_last_error(sessionPtr);
+            LOGE(" ## groupDecrypt(): failure - olm_group_decrypt Msg=%s", *aErrorMessage);
+        }
+
+        // the decoded ciphertext is of no use anymore
+        clearScratchBuffer(scratchPtr, encryptedMsgLength);
+    }
+
+    return plaintextLength;
+}
+
+/**
+ * Map a failure of groupDecrypt() to a status code.<br>
+ * The parameters having been validated, the failure comes either from libolm or from the scratch buffer allocation.
+ * @param aErrorMessage the error message returned by groupDecrypt()
+ * @return the OlmJniStatus value
+ */
+static jint groupDecryptStatus(OlmInboundGroupSession *sessionPtr, const char *aErrorMessage)
+{
+    return (aErrorMessage == olm_inbound_group_session_last_error(sessionPtr)) ? getErrorStatus(aErrorMessage) : OLM_JNI_STATUS_OUT_OF_MEMORY;
+}
+
+/**
+ * Decrypt a message into a new DecryptMessageResult.
  * An exception is thrown if the operation fails.
- * @param aEncryptedMsg the encrypted message
- * @return the decrypted message
+ * @param aBinary true if the message is binary rather than base64
  */
-JNIEXPORT jobject OLM_INBOUND_GROUP_SESSION_FUNC_DEF(decryptMessageJni)(JNIEnv *env, jobject thiz, jbyteArray aEncryptedMsgBuffer)
+static jobject decryptMessageResult(JNIEnv *env, jlong aNativeId, jbyteArray aEncryptedMsgBuffer, jint aOffset, jint aLength, bool aBinary)
 {
-    jbyteArray decryptedMsgBuffer = 0;
-    jlong decryptMsgIndex = 0;
     jobject decryptMsgResult = 0;
     const char* errorMessage = NULL;
 
-    OlmInboundGroupSession *sessionPtr = getInboundGroupSessionInstanceId(env, thiz);
-    jbyte *encryptedMsgPtr = NULL;
-    jclass resultObjJClass = 0;
-    jmethodID resultObjCtor = 0;
+    OlmInboundGroupSession *sessionPtr = (OlmInboundGroupSession*)aNativeId;
+    uint8_t *plainTextMsgPtr = NULL;
+    uint32_t messageIndex = 0;
 
-    LOGD("## decryptMessageJni(): inbound group session IN");
+    size_t plaintextLength = groupDecrypt(env, sessionPtr, aEncryptedMsgBuffer, aOffset, aLength, &plainTextMsgPtr, &messageIndex, &errorMessage, aBinary);
 
-    if (!sessionPtr)
+    if (plaintextLength != olm_error())
     {
-        LOGE(" ## decryptMessageJni(): failure - invalid inbound group session ptr=NULL");
-        errorMessage = "invalid inbound group session ptr=NULL";
+        jbyteArray decryptedMsgBuffer = env->NewByteArray(plaintextLength);
+
+        if (decryptedMsgBuffer)
+        {
+            env->SetByteArrayRegion(decryptedMsgBuffer, 0 , plaintextLength, (jbyte*)plainTextMsgPtr);
+            decryptMsgResult = env->NewObject(gJniCache.decryptMessageResultClass, gJniCache.decryptMessageResultCtor, decryptedMsgBuffer, (jlong)messageIndex);
+        }
+
+        LOGD(" ## decryptMessageResult(): success - decrypted returnedLg=%lu",static_cast<long unsigned int>(plaintextLength));
+        clearScratchBuffer(plainTextMsgPtr, plaintextLength);
+    }
+
+    if (errorMessage)
+    {
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
     }
-    else if (!aEncryptedMsgBuffer)
+
+    return decryptMsgResult;
+}
+
+/**
+ * Decrypt a message.
+ * An exception is thrown if the operation fails.
+ * @param aEncryptedMsg the encrypted message
+ * @param aOffset offset of the message in aEncryptedMsg
+ * @param aLength length of the message
+ * @return the decrypted message
+ */
+JNIEXPORT jobject OLM_INBOUND_GROUP_SESSION_FUNC_DEF(decryptMessageJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jbyteArray aEncryptedMsgBuffer, jint aOffset, jint aLength)
+{
+    LOGD("## decryptMessageJni(): inbound group session IN");
+
+    return decryptMessageResult(env, aNativeId, aEncryptedMsgBuffer, aOffset, aLength, false);
+}
+
+/**
+ * Decrypt a binary message, i.e. the base64-decoded form of a message.
+ * An exception is thrown if the operation fails.
+ * @param aEncryptedMsg the binary encrypted message
+ * @param aOffset offset of the message in aEncryptedMsg
+ * @param aLength length of the message
+ * @return the decrypted message
+ */
+JNIEXPORT jobject OLM_INBOUND_GROUP_SESSION_FUNC_DEF(decryptMessageBinaryJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jbyteArray aEncryptedMsgBuffer, jint aOffset, jint aLength)
+{
+    LOGD("## decryptMessageBinaryJni(): inbound group session IN");
+
+    return decryptMessageResult(env, aNativeId, aEncryptedMsgBuffer, aOffset, aLength, true);
+}
+
+/**
+ * Decrypt a message into a java array provided by the caller.
+ * An exception is thrown if the operation fails.
+ * @param aEncryptedMsg the encrypted message
+ * @param aOffset offset of the message in aEncryptedMsg
+ * @param aLength length of the message
+ * @param aDecryptedMsg array receiving the decrypted message
+ * @param aDecryptedOffset offset of the output in aDecryptedMsg
+ * @param aMessageIndex if not null, receives the message index in its first element
+ * @return the decrypted message length
+ */
+JNIEXPORT jint OLM_INBOUND_GROUP_SESSION_FUNC_DEF(decryptMessageIntoJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jbyteArray aEncryptedMsgBuffer, jint aOffset, jint aLength, jbyteArray aDecryptedMsgBuffer, jint aDecryptedOffset, jlongArray aMessageIndex)
+{
+    jint plaintextLengthRet = 0;
+    const char* errorMessage = NULL;
+
+    OlmInboundGroupSession *sessionPtr = (OlmInboundGroupSession*)aNativeId;
+    uint8_t *plainTextMsgPtr = NULL;
+    uint32_t messageIndex = 0;
+
+    LOGD("## decryptMessageIntoJni(): inbound group session IN");
+
+    if (!aDecryptedMsgBuffer || (aDecryptedOffset < 0) || (aDecryptedOffset > env->GetArrayLength(aDecryptedMsgBuffer)))
     {
-        LOGE(" ## decryptMessageJni(): failure - invalid encrypted message");
-        errorMessage = "invalid encrypted message";
+        LOGE(" ## decryptMessageIntoJni(): failure - invalid output buffer");
+        errorMessage = "invalid output buffer";
     }
-    else if (!(encryptedMsgPtr = env->GetByteArrayElements(aEncryptedMsgBuffer, 0)))
+    else
     {
-        LOGE(" ## decryptMessageJni(): failure - encrypted message JNI allocation OOM");
-        errorMessage = "encrypted message JNI allocation OOM";
+        size_t plaintextLength = groupDecrypt(env, sessionPtr, aEncryptedMsgBuffer, aOffset, aLength, &plainTextMsgPtr, &messageIndex, &errorMessage);
+
+        if (plaintextLength != olm_error())
+        {
+            if (plaintextLength > (size_t)(env->GetArrayLength(aDecryptedMsgBuffer) - aDecryptedOffset))
+            {
+                LOGE(" ## decryptMessageIntoJni(): failure - output buffer too small for %lu bytes",static_cast<long unsigned int>(plaintextLength));
+                errorMessage = "output buffer too small";
+            }
+            else
+            {
+                env->SetByteArrayRegion(aDecryptedMsgBuffer, aDecryptedOffset, plaintextLength, (jbyte*)plainTextMsgPtr);
+                plaintextLengthRet = (jint)plaintextLength;
+
+                if (aMessageIndex && (env->GetArrayLength(aMessageIndex) > 0))
+                {
+                    jlong index = (jlong)messageIndex;
+                    env->SetLongArrayRegion(aMessageIndex, 0, 1, &index);
+                }
+            }
+
+            clearScratchBuffer(plainTextMsgPtr, plaintextLength);
+        }
     }
-    else if (!(resultObjJClass = env->FindClass("org/matrix/olm/OlmInboundGroupSession$DecryptMessageResult")))
+
+    if (errorMessage)
     {
-        LOGE("## decryptMessageJni(): failure - unable to get result class");
-        errorMessage = "unable to get result class";
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
     }
-    else if (!(resultObjCtor = env->GetMethodID(resultObjJClass, "<init>", "([BJ)V")))
+
+    return plaintextLengthRet;
+}
+
+/**
+ * Decrypt a message into a java array provided by the caller, reporting failures as a status code.<br>
+ * No exception is thrown: invalid parameters and libolm failures are both returned as status codes.
+ * @param aEncryptedMsg the encrypted message
+ * @param aOffset offset of the message in aEncryptedMsg
+ * @param aLength length of the message
+ * @param aDecryptedMsg array receiving the decrypted message
+ * @param aDecryptedOffset offset of the output in aDecryptedMsg
+ * @param aResult on success, receives the decrypted message length and the message index
+ * @return the OlmJniStatus value
+ */
+JNIEXPORT jint OLM_INBOUND_GROUP_SESSION_FUNC_DEF(decryptMessageStatusJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jbyteArray aEncryptedMsgBuffer, jint aOffset, jint aLength, jbyteArray aDecryptedMsgBuffer, jint aDecryptedOffset, jlongArray aResult)
+{
+    jint status = OLM_JNI_STATUS_SUCCESS;
+    const char* errorMessage = NULL;
+
+    OlmInboundGroupSession *sessionPtr = (OlmInboundGroupSession*)aNativeId;
+    uint8_t *plainTextMsgPtr = NULL;
+    uint32_t messageIndex = 0;
+
+    LOGD("## decryptMessageStatusJni(): inbound group session IN");
+
+    if (!sessionPtr
+        || !aEncryptedMsgBuffer || (aOffset < 0) || (aLength <= 0) || (aOffset > env->GetArrayLength(aEncryptedMsgBuffer) - aLength)
+        || !aDecryptedMsgBuffer || (aDecryptedOffset < 0) || (aDecryptedOffset > env->GetArrayLength(aDecryptedMsgBuffer))
+        || !aResult || (env->GetArrayLength(aResult) < 2))
     {
-        LOGE("## decryptMessageJni(): failure - unable to get result class constructor");
-        errorMessage = "unable to get result class constructor";
+        LOGE(" ## decryptMessageStatusJni(): failure - invalid parameters");
+        status = OLM_JNI_STATUS_INVALID_ARGUMENT;
     }
     else
     {
-        // get encrypted message length
-        size_t encryptedMsgLength = (size_t)env->GetArrayLength(aEncryptedMsgBuffer);
-        uint8_t *tempEncryptedPtr = static_cast<uint8_t*>(malloc(encryptedMsgLength*sizeof(uint8_t)));
+        size_t plaintextLength = groupDecrypt(env, sessionPtr, aEncryptedMsgBuffer, aOffset, aLength, &plainTextMsgPtr, &messageIndex, &errorMessage);
 
-        // create a dedicated temp buffer to be used in next Olm API calls
-        if (!tempEncryptedPtr)
+        if (plaintextLength == olm_error())
         {
-            LOGE(" ## decryptMessageJni(): failure - tempEncryptedPtr allocation OOM");
-            errorMessage = "tempEncryptedPtr allocation OOM";
+            status = groupDecryptStatus(sessionPtr, errorMessage);
         }
         else
         {
-            memcpy(tempEncryptedPtr, encryptedMsgPtr, encryptedMsgLength);
-            LOGD(" ## decryptMessageJni(): encryptedMsgLength=%lu encryptedMsg=%.*s",static_cast<long unsigned int>(encryptedMsgLength), static_cast<int>(encryptedMsgLength), encryptedMsgPtr);
-
-            // get max plaintext length
-            size_t maxPlainTextLength = olm_group_decrypt_max_plaintext_length(sessionPtr,
-                                                                               tempEncryptedPtr,
-                                                                               encryptedMsgLength);
-            if (maxPlainTextLength == olm_error())
+            if (plaintextLength > (size_t)(env->GetArrayLength(aDecryptedMsgBuffer) - aDecryptedOffset))
             {
-                errorMessage = olm_inbound_group_session_last_error(sessionPtr);
-                LOGE(" ## decryptMessageJni(): failure - olm_group_decrypt_max_plaintext_length Msg=%s", errorMessage);
+                LOGE(" ## decryptMessageStatusJni(): failure - output buffer too small for %lu bytes",static_cast<long unsigned int>(plaintextLength));
+                status = OLM_JNI_STATUS_OUTPUT_BUFFER_TOO_SMALL;
             }
             else
             {
-                LOGD(" ## decryptMessageJni(): maxPlaintextLength=%lu",static_cast<long unsigned int>(maxPlainTextLength));
+                jlong result[2] = { (jlong)plaintextLength, (jlong)messageIndex };
+                env->SetByteArrayRegion(aDecryptedMsgBuffer, aDecryptedOffset, plaintextLength, (jbyte*)plainTextMsgPtr);
+                env->SetLongArrayRegion(aResult, 0, 2, result);
+            }
+
+            clearScratchBuffer(plainTextMsgPtr, plaintextLength);
+        }
+    }
+
+    return status;
+}
+
+/**
+ * Decrypt a message held in a direct buffer into another direct buffer.<br>
+ * Both buffers are accessed in place: the encrypted message is base64-decoded
+ * where it is, so its content is destroyed whether or not the decryption succeeds.
+ * An exception is thrown if the operation fails.
+ * @param aEncryptedMsg direct buffer holding the encrypted message
+ * @param aEncryptedOffset offset of the message in aEncryptedMsg
+ * @param aEncryptedLength length of the message
+ * @param aDecryptedMsg direct buffer receiving the decrypted message
+ * @param aDecryptedOffset offset of the output in aDecryptedMsg
+ * @param aDecryptedLength space available for the output
+ * @return the message index in the upper 32 bits, the decrypted length in the lower 32 bits
+ */
+JNIEXPORT jlong OLM_INBOUND_GROUP_SESSION_FUNC_DEF(decryptMessageBufferJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jobject aEncryptedMsg, jint aEncryptedOffset, jint aEncryptedLength, jobject aDecryptedMsg, jint aDecryptedOffset, jint aDecryptedLength)
+{
+    jlong retValue = 0;
+    const char* errorMessage = NULL;
+
+    OlmInboundGroupSession *sessionPtr = (OlmInboundGroupSession*)aNativeId;
+    uint8_t *encryptedMsgPtr = NULL;
+    uint8_t *decryptedMsgPtr = NULL;
+
+    LOGD("## decryptMessageBufferJni(): inbound group session IN");
+
+    if (!sessionPtr)
+    {
+        LOGE(" ## decryptMessageBufferJni(): failure - invalid inbound group session ptr=NULL");
+        errorMessage = "invalid inbound group session ptr=NULL";
+    }
+    else if (!(encryptedMsgPtr = getDirectBufferRange(env, aEncryptedMsg, aEncryptedOffset, aEncryptedLength)) || !aEncryptedLength)
+    {
+        LOGE(" ## decryptMessageBufferJni(): failure - invalid encrypted message buffer");
+        errorMessage = "invalid encrypted message buffer";
+    }
+    else if (!(decryptedMsgPtr = getDirectBufferRange(env, aDecryptedMsg, aDecryptedOffset, aDecryptedLength)))
+    {
+        LOGE(" ## decryptMessageBufferJni(): failure - invalid decrypted message buffer");
+        errorMessage = "invalid decrypted message buffer";
+    }
+    else
+    {
+        uint32_t messageIndex = 0;
+
+        // the output space is checked by olm_group_decrypt() against the decoded message
+        size_t plaintextLength = olm_group_decrypt(sessionPtr,
+                                                   encryptedMsgPtr,
+                                                   (size_t)aEncryptedLength,
+                                                   decryptedMsgPtr,
+                                                   (size_t)aDecryptedLength,
+                                                   &messageIndex);
+        if (plaintextLength == olm_error())
+        {
+            errorMessage = olm_inbound_group_session_last_error(sessionPtr);
+            LOGE(" ## decryptMessageBufferJni(): failure - olm_group_decrypt Msg=%s", errorMessage);
+        }
+        else
+        {
+            LOGD(" ## decryptMessageBufferJni(): success - plaintextLength=%lu index=%u",static_cast<long unsigned int>(plaintextLength), messageIndex);
+            retValue = (((jlong)messageIndex) << 32) | (jlong)plaintextLength;
+        }
+    }
+
+    if (errorMessage)
+    {
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
+    }
+
+    return retValue;
+}
 
+/**
+ * Decrypt a batch of messages held in separate java arrays.<br>
+ * A failure only affects its own message: its status is set and the batch goes on.
+ * An exception is thrown if the batch parameters are invalid.
+ * @param aEncryptedMsgs the encrypted messages (byte[][])
+ * @param aCount number of messages to decrypt
+ * @param aDecryptedMsgs receives the decrypted messages (byte[][]), null for the failed ones
+ * @param aStatus receives the OlmJniStatus value of each message
+ * @param aMessageIndexes receives the message index of each message
+ */
+JNIEXPORT void OLM_INBOUND_GROUP_SESSION_FUNC_DEF(decryptMessagesJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jobjectArray aEncryptedMsgs, jint aCount, jobjectArray aDecryptedMsgs, jintArray aStatus, jlongArray aMessageIndexes)
+{
+    const char* errorMessage = NULL;
+    OlmInboundGroupSession *sessionPtr = (OlmInboundGroupSession*)aNativeId;
+
+    LOGD("## decryptMessagesJni(): inbound group session IN");
+
+    if (!sessionPtr)
+    {
+        LOGE(" ## decryptMessagesJni(): failure - invalid inbound group session ptr=NULL");
+        errorMessage = "invalid inbound group session ptr=NULL";
+    }
+    else if (!aEncryptedMsgs || !aDecryptedMsgs || !aStatus || !aMessageIndexes || (aCount < 0)
+             || (env->GetArrayLength(aEncryptedMsgs) < aCount) || (env->GetArrayLength(aDecryptedMsgs) < aCount)
+             || (env->GetArrayLength(aStatus) < aCount) || (env->GetArrayLength(aMessageIndexes) < aCount))
+    {
+        LOGE(" ## decryptMessagesJni(): failure - invalid batch parameters");
+        errorMessage = "invalid batch parameters";
+    }
+    else
+    {
+        std::vector<jint> status(aCount, OLM_JNI_STATUS_SUCCESS);
+        std::vector<jlong> messageIndexes(aCount, 0);
+
+        for (jint i = 0; i < aCount; i++)
+        {
+            jbyteArray encryptedMsg = (jbyteArray)env->GetObjectArrayElement(aEncryptedMsgs, i);
+            jbyteArray decryptedMsg = 0;
+
+            if (!encryptedMsg)
+            {
+                status[i] = OLM_JNI_STATUS_INVALID_ARGUMENT;
+            }
+            else
+            {
+                const char* itemErrorMessage = NULL;
+                uint8_t *plainTextMsgPtr = NULL;
                 uint32_t messageIndex = 0;
+                size_t plaintextLength = groupDecrypt(env, sessionPtr, encryptedMsg, 0, env->GetArrayLength(encryptedMsg), &plainTextMsgPtr, &messageIndex, &itemErrorMessage);
 
-                // allocate output decrypted message
-                uint8_t *plainTextMsgPtr = static_cast<uint8_t*>(malloc(maxPlainTextLength*sizeof(uint8_t)));
-
-                // decrypt, but before reload encrypted buffer (previous one was destroyed)
-                memcpy(tempEncryptedPtr, encryptedMsgPtr, encryptedMsgLength);
-                size_t plaintextLength = olm_group_decrypt(sessionPtr,
-                                                           tempEncryptedPtr,
-                                                           encryptedMsgLength,
-                                                           plainTextMsgPtr,
-                                                           maxPlainTextLength,
-                                                           &messageIndex);
                 if (plaintextLength == olm_error())
                 {
-                    errorMessage = olm_inbound_group_session_last_error(sessionPtr);
-                    LOGE(" ## decryptMessageJni(): failure - olm_group_decrypt Msg=%s", errorMessage);
+                    // an empty message is rejected by groupDecrypt() before reaching libolm
+                    status[i] = env->GetArrayLength(encryptedMsg) ? groupDecryptStatus(sessionPtr, itemErrorMessage) : OLM_JNI_STATUS_INVALID_ARGUMENT;
                 }
                 else
                 {
-                    // update index
-                    decryptMsgIndex = (jlong) messageIndex;
+                    if ((decryptedMsg = env->NewByteArray(plaintextLength)))
+                    {
+                        env->SetByteArrayRegion(decryptedMsg, 0, plaintextLength, (jbyte*)plainTextMsgPtr);
+                        messageIndexes[i] = (jlong)messageIndex;
+                    }
+                    else
+                    {
+                        // report the failure in the status rather than as a pending OutOfMemoryError
+                        env->ExceptionClear();
+                        status[i] = OLM_JNI_STATUS_OUT_OF_MEMORY;
+                    }
+
+                    clearScratchBuffer(plainTextMsgPtr, plaintextLength);
+                }
 
-                    decryptedMsgBuffer = env->NewByteArray(plaintextLength);
-                    env->SetByteArrayRegion(decryptedMsgBuffer, 0 , plaintextLength, (jbyte*)plainTextMsgPtr);
+                env->DeleteLocalRef(encryptedMsg);
+            }
 
-                    LOGD(" ## decryptMessageJni(): UTF-8 Conversion - decrypted returnedLg=%lu OK",static_cast<long unsigned int>(plaintextLength));
+            env->SetObjectArrayElement(aDecryptedMsgs, i, decryptedMsg);
 
-                    decryptMsgResult = env->NewObject(resultObjJClass, resultObjCtor, decryptedMsgBuffer, decryptMsgIndex);
-                }
+            if (decryptedMsg)
+            {
+                env->DeleteLocalRef(decryptedMsg);
+            }
+        }
 
-                if (plainTextMsgPtr)
-                {
-                    memset(plainTextMsgPtr, 0, maxPlainTextLength*sizeof(uint8_t));
-                    free(plainTextMsgPtr);
-                }
+        env->SetIntArrayRegion(aStatus, 0, aCount, status.data());
+        env->SetLongArrayRegion(aMessageIndexes, 0, aCount, messageIndexes.data());
+    }
+
+    if (errorMessage)
+    {
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
+    }
+}
+
+/**
+ * Check the batch parameters shared by the packed variants, and read the message ranges.
+ * @return true if the parameters are valid
+ */
+static bool readBatchRanges(JNIEnv *env, jintArray aOffsets, jintArray aLengths, jint aCount,
+                            jintArray aDecryptedOffsets, jintArray aDecryptedLengths, jintArray aStatus, jlongArray aMessageIndexes,
+                            std::vector<jint> &aOffsetValues, std::vector<jint> &aLengthValues)
+{
+    if (!aOffsets || !aLengths || !aDecryptedOffsets || !aDecryptedLengths || !aStatus || !aMessageIndexes || (aCount < 0)
+        || (env->GetArrayLength(aOffsets) < aCount) || (env->GetArrayLength(aLengths) < aCount)
+        || (env->GetArrayLength(aDecryptedOffsets) < aCount) || (env->GetArrayLength(aDecryptedLengths) < aCount)
+        || (env->GetArrayLength(aStatus) < aCount) || (env->GetArrayLength(aMessageIndexes) < aCount))
+    {
+        return false;
+    }
+
+    aOffsetValues.resize(aCount);
+    aLengthValues.resize(aCount);
+    env->GetIntArrayRegion(aOffsets, 0, aCount, aOffsetValues.data());
+    env->GetIntArrayRegion(aLengths, 0, aCount, aLengthValues.data());
+
+    return true;
+}
+
+/**
+ * Decrypt a batch of messages packed in one java array, into another java array.<br>
+ * The decrypted messages are written one after the other from aDecryptedOffset.
+ * A failure only affects its own message: its status is set and the batch goes on.
+ * An exception is thrown if the batch parameters are invalid.
+ * @param aEncryptedMsgs the encrypted messages
+ * @param aOffsets offset of each message in aEncryptedMsgs
+ * @param aLengths length of each message
+ * @param aCount number of messages to decrypt
+ * @param aDecryptedMsgs array receiving the decrypted messages
+ * @param aDecryptedOffset offset of the first decrypted message in aDecryptedMsgs
+ * @param aDecryptedOffsets receives the offset of each decrypted message in aDecryptedMsgs
+ * @param aDecryptedLengths receives the length of each decrypted message
+ * @param aStatus receives the OlmJniStatus value of each message
+ * @param aMessageIndexes receives the message index of each message
+ * @return the offset following the last decrypted message
+ */
+JNIEXPORT jint OLM_INBOUND_GROUP_SESSION_FUNC_DEF(decryptMessagesPackedJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jbyteArray aEncryptedMsgs, jintArray aOffsets, jintArray aLengths, jint aCount,
+                                                                           jbyteArray aDecryptedMsgs, jint aDecryptedOffset, jintArray aDecryptedOffsets, jintArray aDecryptedLengths, jintArray aStatus, jlongArray aMessageIndexes)
+{
+    const char* errorMessage = NULL;
+    OlmInboundGroupSession *sessionPtr = (OlmInboundGroupSession*)aNativeId;
+    std::vector<jint> offsets;
+    std::vector<jint> lengths;
+    jint cursor = aDecryptedOffset;
+
+    LOGD("## decryptMessagesPackedJni(): inbound group session IN");
+
+    if (!sessionPtr)
+    {
+        LOGE(" ## decryptMessagesPackedJni(): failure - invalid inbound group session ptr=NULL");
+        errorMessage = "invalid inbound group session ptr=NULL";
+    }
+    else if (!aEncryptedMsgs || !aDecryptedMsgs || (aDecryptedOffset < 0) || (aDecryptedOffset > env->GetArrayLength(aDecryptedMsgs))
+             || !readBatchRanges(env, aOffsets, aLengths, aCount, aDecryptedOffsets, aDecryptedLengths, aStatus, aMessageIndexes, offsets, lengths))
+    {
+        LOGE(" ## decryptMessagesPackedJni(): failure - invalid batch parameters");
+        errorMessage = "invalid batch parameters";
+    }
+    else
+    {
+        jint decryptedCapacity = env->GetArrayLength(aDecryptedMsgs);
+        std::vector<jint> status(aCount, OLM_JNI_STATUS_SUCCESS);
+        std::vector<jint> decryptedOffsets(aCount, 0);
+        std::vector<jint> decryptedLengths(aCount, 0);
+        std::vector<jlong> messageIndexes(aCount, 0);
+
+        jint encryptedCapacity = env->GetArrayLength(aEncryptedMsgs);
+
+        for (jint i = 0; i < aCount; i++)
+        {
+            const char* itemErrorMessage = NULL;
+            uint8_t *plainTextMsgPtr = NULL;
+            uint32_t messageIndex = 0;
+
+            if ((offsets[i] < 0) || (lengths[i] <= 0) || (offsets[i] > encryptedCapacity - lengths[i]))
+            {
+                status[i] = OLM_JNI_STATUS_INVALID_ARGUMENT;
+                continue;
+            }
+
+            size_t plaintextLength = groupDecrypt(env, sessionPtr, aEncryptedMsgs, offsets[i], lengths[i], &plainTextMsgPtr, &messageIndex, &itemErrorMessage);
+
+            if (plaintextLength == olm_error())
+            {
+                status[i] = groupDecryptStatus(sessionPtr, itemErrorMessage);
+                continue;
             }
 
-            if (tempEncryptedPtr)
+            if (plaintextLength > (size_t)(decryptedCapacity - cursor))
             {
-                free(tempEncryptedPtr);
+                status[i] = OLM_JNI_STATUS_OUTPUT_BUFFER_TOO_SMALL;
             }
+            else
+            {
+                env->SetByteArrayRegion(aDecryptedMsgs, cursor, plaintextLength, (jbyte*)plainTextMsgPtr);
+                decryptedOffsets[i] = cursor;
+                decryptedLengths[i] = (jint)plaintextLength;
+                messageIndexes[i] = (jlong)messageIndex;
+                cursor += (jint)plaintextLength;
+            }
+
+            clearScratchBuffer(plainTextMsgPtr, plaintextLength);
         }
+
+        env->SetIntArrayRegion(aStatus, 0, aCount, status.data());
+        env->SetIntArrayRegion(aDecryptedOffsets, 0, aCount, decryptedOffsets.data());
+        env->SetIntArrayRegion(aDecryptedLengths, 0, aCount, decryptedLengths.data());
+        env->SetLongArrayRegion(aMessageIndexes, 0, aCount, messageIndexes.data());
     }
 
-    // free alloc
-    if (encryptedMsgPtr)
+    if (errorMessage)
+    {
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
+    }
+
+    return cursor;
+}
+
+/**
+ * Decrypt a batch of messages packed in one direct buffer, into another direct buffer.<br>
+ * The messages are decoded in place, so the content of aEncryptedMsgs is destroyed. The decrypted
+ * messages are written one after the other from aDecryptedOffset; as libolm checks the output space
+ * against the decoded message, the last messages may fail with OUTPUT_BUFFER_TOO_SMALL when the space
+ * left is less than 3/4 of their length.
+ * A failure only affects its own message: its status is set and the batch goes on.
+ * An exception is thrown if the batch parameters are invalid.
+ * @param aEncryptedMsgs direct buffer holding the encrypted messages
+ * @param aOffsets offset of each message in aEncryptedMsgs
+ * @param aLengths length of each message
+ * @param aCount number of messages to decrypt
+ * @param aDecryptedMsgs direct buffer receiving the decrypted messages
+ * @param aDecryptedOffset offset of the first decrypted message in aDecryptedMsgs
+ * @param aDecryptedLength space available from aDecryptedOffset
+ * @param aDecryptedOffsets receives the offset of each decrypted message in aDecryptedMsgs
+ * @param aDecryptedLengths receives the length of each decrypted message
+ * @param aStatus receives the OlmJniStatus value of each message
+ * @param aMessageIndexes receives the message index of each message
+ * @return the offset following the last decrypted message
+ */
+JNIEXPORT jint OLM_INBOUND_GROUP_SESSION_FUNC_DEF(decryptMessagesBufferJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jobject aEncryptedMsgs, jintArray aOffsets, jintArray aLengths, jint aCount,
+                                                                           jobject aDecryptedMsgs, jint aDecryptedOffset, jint aDecryptedLength, jintArray aDecryptedOffsets, jintArray aDecryptedLengths, jintArray aStatus, jlongArray aMessageIndexes)
+{
+    const char* errorMessage = NULL;
+    OlmInboundGroupSession *sessionPtr = (OlmInboundGroupSession*)aNativeId;
+    std::vector<jint> offsets;
+    std::vector<jint> lengths;
+    jint cursor = aDecryptedOffset;
+    uint8_t *encryptedMsgsPtr = NULL;
+    uint8_t *decryptedMsgsPtr = NULL;
+    jlong encryptedCapacity = aEncryptedMsgs ? env->GetDirectBufferCapacity(aEncryptedMsgs) : -1;
+
+    LOGD("## decryptMessagesBufferJni(): inbound group session IN");
+
+    if (!sessionPtr)
+    {
+        LOGE(" ## decryptMessagesBufferJni(): failure - invalid inbound group session ptr=NULL");
+        errorMessage = "invalid inbound group session ptr=NULL";
+    }
+    else if (!(encryptedMsgsPtr = getDirectBufferRange(env, aEncryptedMsgs, 0, (jint)encryptedCapacity))
+             || !(decryptedMsgsPtr = getDirectBufferRange(env, aDecryptedMsgs, aDecryptedOffset, aDecryptedLength))
+             || !readBatchRanges(env, aOffsets, aLengths, aCount, aDecryptedOffsets, aDecryptedLengths, aStatus, aMessageIndexes, offsets, lengths))
     {
-        env->ReleaseByteArrayElements(aEncryptedMsgBuffer, encryptedMsgPtr, JNI_ABORT);
+        LOGE(" ## decryptMessagesBufferJni(): failure - invalid batch parameters");
+        errorMessage = "invalid batch parameters";
+    }
+    else
+    {
+        jint decryptedEnd = aDecryptedOffset + aDecryptedLength;
+        std::vector<jint> status(aCount, OLM_JNI_STATUS_SUCCESS);
+        std::vector<jint> decryptedOffsets(aCount, 0);
+        std::vector<jint> decryptedLengths(aCount, 0);
+        std::vector<jlong> messageIndexes(aCount, 0);
+
+        // getDirectBufferRange() returns the address of the range: rebase to index 0
+        decryptedMsgsPtr -= aDecryptedOffset;
+
+        for (jint i = 0; i < aCount; i++)
+        {
+            if ((offsets[i] < 0) || (lengths[i] <= 0) || (offsets[i] > encryptedCapacity - lengths[i]))
+            {
+                status[i] = OLM_JNI_STATUS_INVALID_ARGUMENT;
+                continue;
+            }
+
+            uint32_t messageIndex = 0;
+            size_t plaintextLength = olm_group_decrypt(sessionPtr,
+                                                       encryptedMsgsPtr + offsets[i],
+                                                       (size_t)lengths[i],
+                                                       decryptedMsgsPtr + cursor,
+                                                       (size_t)(decryptedEnd - cursor),
+                                                       &messageIndex);
+
+            if (plaintextLength == olm_error())
+            {
+                status[i] = getErrorStatus(olm_inbound_group_session_last_error(sessionPtr));
+            }
+            else
+            {
+                decryptedOffsets[i] = cursor;
+                decryptedLengths[i] = (jint)plaintextLength;
+                messageIndexes[i] = (jlong)messageIndex;
+                cursor += (jint)plaintextLength;
+            }
+        }
+
+        env->SetIntArrayRegion(aStatus, 0, aCount, status.data());
+        env->SetIntArrayRegion(aDecryptedOffsets, 0, aCount, decryptedOffsets.data());
+        env->SetIntArrayRegion(aDecryptedLengths, 0, aCount, decryptedLengths.data());
+        env->SetLongArrayRegion(aMessageIndexes, 0, aCount, messageIndexes.data());
     }
 
     if (errorMessage)
     {
-        env->ThrowNew(env->FindClass("java/lang/Exception"), errorMessage);
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
     }
 
-    return decryptMsgResult;
+    return cursor;
 }
 
 /**
@@ -335,10 +867,10 @@ JNIEXPORT jobject OLM_INBOUND_GROUP_SESSION_FUNC_DEF(decryptMessageJni)(JNIEnv *
  * An exception is thrown if the operation fails.
  * @return the first known index
  */
-JNIEXPORT jlong OLM_INBOUND_GROUP_SESSION_FUNC_DEF(firstKnownIndexJni)(JNIEnv *env, jobject thiz)
+JNIEXPORT jlong OLM_INBOUND_GROUP_SESSION_FUNC_DEF(firstKnownIndexJni)(JNIEnv *env, jclass clazz, jlong aNativeId)
 {
     const char* errorMessage = NULL;
-    OlmInboundGroupSession *sessionPtr = getInboundGroupSessionInstanceId(env, thiz);
+    OlmInboundGroupSession *sessionPtr = (OlmInboundGroupSession*)aNativeId;
     long returnValue = 0;
 
     LOGD("## firstKnownIndexJni(): inbound group session IN");
@@ -355,7 +887,7 @@ JNIEXPORT jlong OLM_INBOUND_GROUP_SESSION_FUNC_DEF(firstKnownIndexJni)(JNIEnv *e
 
     if (errorMessage)
     {
-        env->ThrowNew(env->FindClass("java/lang/Exception"), errorMessage);
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
     }
 
     return returnValue;
@@ -366,10 +898,10 @@ JNIEXPORT jlong OLM_INBOUND_GROUP_SESSION_FUNC_DEF(firstKnownIndexJni)(JNIEnv *e
  * An exception is thrown if the operation fails.
  * @return true if the session is verified
  */
-JNIEXPORT jboolean OLM_INBOUND_GROUP_SESSION_FUNC_DEF(isVerifiedJni)(JNIEnv *env, jobject thiz)
+JNIEXPORT jboolean OLM_INBOUND_GROUP_SESSION_FUNC_DEF(isVerifiedJni)(JNIEnv *env, jclass clazz, jlong aNativeId)
 {
     const char* errorMessage = NULL;
-    OlmInboundGroupSession *sessionPtr = getInboundGroupSessionInstanceId(env, thiz);
+    OlmInboundGroupSession *sessionPtr = (OlmInboundGroupSession*)aNativeId;
     jboolean returnValue = JNI_FALSE;
 
     LOGD("## isVerifiedJni(): inbound group session IN");
@@ -388,7 +920,7 @@ JNIEXPORT jboolean OLM_INBOUND_GROUP_SESSION_FUNC_DEF(isVerifiedJni)(JNIEnv *env
 
     if (errorMessage)
     {
-        env->ThrowNew(env->FindClass("java/lang/Exception"), errorMessage);
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
     }
 
     return returnValue;
@@ -400,10 +932,10 @@ JNIEXPORT jboolean OLM_INBOUND_GROUP_SESSION_FUNC_DEF(isVerifiedJni)(JNIEnv *env
  * @param messageIndex key used to encrypt the serialized session data
  * @return the session saved as bytes array
  **/
-JNIEXPORT jbyteArray OLM_INBOUND_GROUP_SESSION_FUNC_DEF(exportJni)(JNIEnv *env, jobject thiz, jlong messageIndex) {
+JNIEXPORT jbyteArray OLM_INBOUND_GROUP_SESSION_FUNC_DEF(exportJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jlong messageIndex) {
     jbyteArray exportedByteArray = 0;
     const char* errorMessage = NULL;
-    OlmInboundGroupSession *sessionPtr = getInboundGroupSessionInstanceId(env, thiz);
+    OlmInboundGroupSession *sessionPtr = (OlmInboundGroupSession*)aNativeId;
 
     LOGD("## exportJni(): inbound group session IN");
 
@@ -454,25 +986,98 @@ JNIEXPORT jbyteArray OLM_INBOUND_GROUP_SESSION_FUNC_DEF(exportJni)(JNIEnv *env,
 
     if (errorMessage)
     {
-        env->ThrowNew(env->FindClass("java/lang/Exception"), errorMessage);
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
     }
 
     return exportedByteArray;
 }
 
+/**
+ * Create a ratchet checkpoint: a new inbound group session whose initial ratchet is the ratchet of this session
+ * at a message index.<br>
+ * The session is exported and re-imported natively, so that the key material never reaches the java heap.
+ * An exception is thrown if the operation fails.
+ * @param aMessageIndex index of the checkpoint, not before the first known index of the session
+ * @return the checkpoint OlmInboundGroupSession* instance, to be released with releaseSessionJni()
+ **/
+JNIEXPORT jlong OLM_INBOUND_GROUP_SESSION_FUNC_DEF(createCheckpointJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jlong aMessageIndex)
+{
+    const char* errorMessage = NULL;
+    OlmInboundGroupSession *sessionPtr = (OlmInboundGroupSession*)aNativeId;
+    OlmInboundGroupSession *checkpointPtr = NULL;
+    uint8_t *bufferPtr = NULL;
+    size_t length = 0;
+
+    LOGD("## createCheckpointJni(): inbound group session IN");
+
+    if (!sessionPtr)
+    {
+        LOGE(" ## createCheckpointJni(): failure - invalid inbound group session instance");
+        errorMessage = "invalid inbound group session instance";
+    }
+    else if ((aMessageIndex < 0) || (aMessageIndex > UINT32_MAX))
+    {
+        LOGE(" ## createCheckpointJni(): failure - invalid message index");
+        errorMessage = "invalid message index";
+    }
+    else if (!(bufferPtr = (uint8_t*)malloc(length = olm_export_inbound_group_session_length(sessionPtr))))
+    {
+        LOGE(" ## createCheckpointJni(): failure - export buffer OOM");
+        errorMessage = "export buffer OOM";
+    }
+    else if (olm_export_inbound_group_session(sessionPtr, bufferPtr, length, (uint32_t)aMessageIndex) == olm_error())
+    {
+        errorMessage = olm_inbound_group_session_last_error(sessionPtr);
+        LOGE(" ## createCheckpointJni(): failure - olm_export_inbound_group_session() Msg=%s", errorMessage);
+    }
+    else if (!(checkpointPtr = (OlmInboundGroupSession*)slabAlloc(SLAB_INBOUND_GROUP_SESSION)))
+    {
+        LOGE(" ## createCheckpointJni(): failure - checkpoint OOM");
+        errorMessage = "checkpoint OOM";
+    }
+    else
+    {
+        checkpointPtr = olm_inbound_group_session(checkpointPtr);
+
+        if (olm_import_inbound_group_session(checkpointPtr, bufferPtr, length) == olm_error())
+        {
+            errorMessage = olm_inbound_group_session_last_error(checkpointPtr);
+            LOGE(" ## createCheckpointJni(): failure - olm_import_inbound_group_session() Msg=%s", errorMessage);
+
+            olm_clear_inbound_group_session(checkpointPtr);
+            slabFree(SLAB_INBOUND_GROUP_SESSION, checkpointPtr);
+            checkpointPtr = NULL;
+        }
+    }
+
+    if (bufferPtr)
+    {
+        // the exported session holds the ratchet
+        memset(bufferPtr, 0, length);
+        free(bufferPtr);
+    }
+
+    if (errorMessage)
+    {
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
+    }
+
+    return (jlong)(intptr_t)checkpointPtr;
+}
+
 /**
  * Serialize and encrypt session instance into a base64 string.<br>
  * An exception is thrown if the operation fails.
  * @param aKeyBuffer key used to encrypt the serialized session data
  * @return a base64 string if operation succeed, null otherwise
  **/
-JNIEXPORT jbyteArray OLM_INBOUND_GROUP_SESSION_FUNC_DEF(serializeJni)(JNIEnv *env, jobject thiz, jbyteArray aKeyBuffer)
+JNIEXPORT jbyteArray OLM_INBOUND_GROUP_SESSION_FUNC_DEF(serializeJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jbyteArray aKeyBuffer)
 {
     const char* errorMessage = NULL;
 
     jbyteArray pickledDataRet = 0;
     jbyte* keyPtr = NULL;
-    OlmInboundGroupSession* sessionPtr = getInboundGroupSessionInstanceId(env, thiz);
+    OlmInboundGroupSession* sessionPtr = (OlmInboundGroupSession*)aNativeId;
 
     LOGD("## inbound group session serializeJni(): IN");
 
@@ -536,7 +1141,7 @@ JNIEXPORT jbyteArray OLM_INBOUND_GROUP_SESSION_FUNC_DEF(serializeJni)(JNIEnv *en
 
     if (errorMessage)
     {
-        env->ThrowNew(env->FindClass("java/lang/Exception"), errorMessage);
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
     }
 
     return pickledDataRet;
@@ -549,7 +1154,7 @@ JNIEXPORT jbyteArray OLM_INBOUND_GROUP_SESSION_FUNC_DEF(serializeJni)(JNIEnv *en
  * @param aKey the key used to encrypt the serialized account data
  * @return the deserialized session
  **/
-JNIEXPORT jlong OLM_INBOUND_GROUP_SESSION_FUNC_DEF(deserializeJni)(JNIEnv *env, jobject thiz, jbyteArray aSerializedDataBuffer, jbyteArray aKeyBuffer)
+JNIEXPORT jlong OLM_INBOUND_GROUP_SESSION_FUNC_DEF(deserializeJni)(JNIEnv *env, jclass clazz, jbyteArray aSerializedDataBuffer, jbyteArray aKeyBuffer)
 {
     const char* errorMessage = NULL;
 
@@ -565,7 +1170,7 @@ JNIEXPORT jlong OLM_INBOUND_GROUP_SESSION_FUNC_DEF(deserializeJni)(JNIEnv *env,
         LOGE(" ## deserializeJni(): failure - inbound group session size = 0");
         errorMessage = "inbound group session size = 0";
     }
-    else if (!(sessionPtr = (OlmInboundGroupSession*)malloc(sessionSize)))
+    else if (!(sessionPtr = (OlmInboundGroupSession*)slabAlloc(SLAB_INBOUND_GROUP_SESSION)))
     {
         LOGE(" ## deserializeJni(): failure - session failure OOM");
         errorMessage = "session failure OOM";
@@ -631,9 +1236,9 @@ JNIEXPORT jlong OLM_INBOUND_GROUP_SESSION_FUNC_DEF(deserializeJni)(JNIEnv *env,
         if (sessionPtr)
         {
             olm_clear_inbound_group_session(sessionPtr);
-            free(sessionPtr);
+            slabFree(SLAB_INBOUND_GROUP_SESSION, sessionPtr);
         }
-        env->ThrowNew(env->FindClass("java/lang/Exception"), errorMessage);
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
     }
 
     return (jlong)(intptr_t)sessionPtr;
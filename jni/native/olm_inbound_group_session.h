@@ -21,6 +21,7 @@
 #include "olm_jni.h"
 #include "olm/olm.h"
 #include "olm/inbound_group_session.h"
+#include "olm/base64.h"
 
 #define OLM_INBOUND_GROUP_SESSION_FUNC_DEF(func_name) FUNC_DEF(OlmInboundGroupSession,func_name)
 
@@ -29,20 +30,28 @@ extern "C" {
 #endif
 
 // session creation/destruction
-JNIEXPORT void OLM_INBOUND_GROUP_SESSION_FUNC_DEF(releaseSessionJni)(JNIEnv *env, jobject thiz);
-JNIEXPORT jlong OLM_INBOUND_GROUP_SESSION_FUNC_DEF(createNewSessionJni)(JNIEnv *env, jobject thiz, jbyteArray aSessionKeyBuffer, jboolean isImported);
+JNIEXPORT void OLM_INBOUND_GROUP_SESSION_FUNC_DEF(releaseSessionJni)(JNIEnv *env, jclass clazz, jlong aNativeId);
+JNIEXPORT jlong OLM_INBOUND_GROUP_SESSION_FUNC_DEF(createNewSessionJni)(JNIEnv *env, jclass clazz, jbyteArray aSessionKeyBuffer, jboolean isImported);
 
-JNIEXPORT jbyteArray OLM_INBOUND_GROUP_SESSION_FUNC_DEF(sessionIdentifierJni)(JNIEnv *env, jobject thiz);
-JNIEXPORT jobject OLM_INBOUND_GROUP_SESSION_FUNC_DEF(decryptMessageJni)(JNIEnv *env, jobject thiz, jbyteArray aEncryptedMsg);
+JNIEXPORT jbyteArray OLM_INBOUND_GROUP_SESSION_FUNC_DEF(sessionIdentifierJni)(JNIEnv *env, jclass clazz, jlong aNativeId);
+JNIEXPORT jobject OLM_INBOUND_GROUP_SESSION_FUNC_DEF(decryptMessageJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jbyteArray aEncryptedMsg, jint aOffset, jint aLength);
+JNIEXPORT jobject OLM_INBOUND_GROUP_SESSION_FUNC_DEF(decryptMessageBinaryJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jbyteArray aEncryptedMsgBuffer, jint aOffset, jint aLength);
+JNIEXPORT jint OLM_INBOUND_GROUP_SESSION_FUNC_DEF(decryptMessageIntoJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jbyteArray aEncryptedMsg, jint aOffset, jint aLength, jbyteArray aDecryptedMsg, jint aDecryptedOffset, jlongArray aMessageIndex);
+JNIEXPORT jint OLM_INBOUND_GROUP_SESSION_FUNC_DEF(decryptMessageStatusJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jbyteArray aEncryptedMsg, jint aOffset, jint aLength, jbyteArray aDecryptedMsg, jint aDecryptedOffset, jlongArray aResult);
+JNIEXPORT jlong OLM_INBOUND_GROUP_SESSION_FUNC_DEF(decryptMessageBufferJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jobject aEncryptedMsg, jint aEncryptedOffset, jint aEncryptedLength, jobject aDecryptedMsg, jint aDecryptedOffset, jint aDecryptedLength);
+JNIEXPORT void OLM_INBOUND_GROUP_SESSION_FUNC_DEF(decryptMessagesJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jobjectArray aEncryptedMsgs, jint aCount, jobjectArray aDecryptedMsgs, jintArray aStatus, jlongArray aMessageIndexes);
+JNIEXPORT jint OLM_INBOUND_GROUP_SESSION_FUNC_DEF(decryptMessagesPackedJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jbyteArray aEncryptedMsgs, jintArray aOffsets, jintArray aLengths, jint aCount, jbyteArray aDecryptedMsgs, jint aDecryptedOffset, jintArray aDecryptedOffsets, jintArray aDecryptedLengths, jintArray aStatus, jlongArray aMessageIndexes);
+JNIEXPORT jint OLM_INBOUND_GROUP_SESSION_FUNC_DEF(decryptMessagesBufferJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jobject aEncryptedMsgs, jintArray aOffsets, jintArray aLengths, jint aCount, jobject aDecryptedMsgs, jint aDecryptedOffset, jint aDecryptedLength, jintArray aDecryptedOffsets, jintArray aDecryptedLengths, jintArray aStatus, jlongArray aMessageIndexes);
 
-JNIEXPORT jlong OLM_INBOUND_GROUP_SESSION_FUNC_DEF(firstKnownIndexJni)(JNIEnv *env, jobject thiz);
-JNIEXPORT jboolean OLM_INBOUND_GROUP_SESSION_FUNC_DEF(isVerifiedJni)(JNIEnv *env, jobject thiz);
+JNIEXPORT jlong OLM_INBOUND_GROUP_SESSION_FUNC_DEF(firstKnownIndexJni)(JNIEnv *env, jclass clazz, jlong aNativeId);
+JNIEXPORT jboolean OLM_INBOUND_GROUP_SESSION_FUNC_DEF(isVerifiedJni)(JNIEnv *env, jclass clazz, jlong aNativeId);
 
-JNIEXPORT jbyteArray OLM_INBOUND_GROUP_SESSION_FUNC_DEF(exportJni)(JNIEnv *env, jobject thiz, jlong messageIndex);
+JNIEXPORT jbyteArray OLM_INBOUND_GROUP_SESSION_FUNC_DEF(exportJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jlong messageIndex);
+JNIEXPORT jlong OLM_INBOUND_GROUP_SESSION_FUNC_DEF(createCheckpointJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jlong aMessageIndex);
 
 // serialization
-JNIEXPORT jbyteArray OLM_INBOUND_GROUP_SESSION_FUNC_DEF(serializeJni)(JNIEnv *env, jobject thiz, jbyteArray aKey);
-JNIEXPORT jlong OLM_INBOUND_GROUP_SESSION_FUNC_DEF(deserializeJni)(JNIEnv *env, jobject thiz, jbyteArray aSerializedData, jbyteArray aKey);
+JNIEXPORT jbyteArray OLM_INBOUND_GROUP_SESSION_FUNC_DEF(serializeJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jbyteArray aKey);
+JNIEXPORT jlong OLM_INBOUND_GROUP_SESSION_FUNC_DEF(deserializeJni)(JNIEnv *env, jclass clazz, jbyteArray aSerializedData, jbyteArray aKey);
 
 #ifdef __cplusplus
 }
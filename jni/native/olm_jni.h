@@ -46,7 +46,66 @@
 
 namespace AndroidOlmSdk
 {
-
+    /**
+     * JNI references resolved once in JNI_OnLoad() and shared by every entry point.<br>
+     * Classes are pinned with global references so the field and method IDs stay valid
+     * until the library is unloaded.
+     */
+    struct JniCache
+    {
+        // java exceptions thrown by the native layer
+        jclass exceptionClass;
+
+        // random generator
+        jclass secureRandomClass;
+        jmethodID secureRandomCtor;
+        jmethodID secureRandomNextBytesMethod;
+        jmethodID entropySourceNextBytesMethod;
+
+        // OlmMessage
+        jclass olmMessageClass;
+        jmethodID olmMessageCtor;
+
+        // OlmInboundGroupSession.DecryptMessageResult
+        jclass decryptMessageResultClass;
+        jmethodID decryptMessageResultCtor;
+
+        // OlmPkMessage
+        jfieldID pkMessageCipherTextField;
+        jfieldID pkMessageMacField;
+        jfieldID pkMessageEphemeralKeyField;
+    };
+
+    extern JniCache gJniCache;
+
+    /**
+     * Status codes returned by the status variants of the entry points.<br>
+     * The values are the ordinals of org.matrix.olm.OlmError: the first ones follow
+     * the libolm error codes, the last ones are raised by the JNI layer itself.
+     */
+    enum OlmJniStatus
+    {
+        OLM_JNI_STATUS_SUCCESS = 0,
+        OLM_JNI_STATUS_NOT_ENOUGH_RANDOM,
+        OLM_JNI_STATUS_OUTPUT_BUFFER_TOO_SMALL,
+        OLM_JNI_STATUS_BAD_MESSAGE_VERSION,
+        OLM_JNI_STATUS_BAD_MESSAGE_FORMAT,
+        OLM_JNI_STATUS_BAD_MESSAGE_MAC,
+        OLM_JNI_STATUS_BAD_MESSAGE_KEY_ID,
+        OLM_JNI_STATUS_INVALID_BASE64,
+        OLM_JNI_STATUS_BAD_ACCOUNT_KEY,
+        OLM_JNI_STATUS_UNKNOWN_PICKLE_VERSION,
+        OLM_JNI_STATUS_CORRUPTED_PICKLE,
+        OLM_JNI_STATUS_BAD_SESSION_KEY,
+        OLM_JNI_STATUS_UNKNOWN_MESSAGE_INDEX,
+        OLM_JNI_STATUS_BAD_LEGACY_ACCOUNT_PICKLE,
+        OLM_JNI_STATUS_BAD_SIGNATURE,
+        OLM_JNI_STATUS_INPUT_BUFFER_TOO_SMALL,
+        OLM_JNI_STATUS_INVALID_ARGUMENT,
+        OLM_JNI_STATUS_OUT_OF_MEMORY,
+        OLM_JNI_STATUS_UNKNOWN_SESSION,
+        OLM_JNI_STATUS_UNKNOWN
+    };
 }
 
 
@@ -56,14 +115,10 @@ extern "C" {
 
 // internal helper functions
 bool setRandomInBuffer(JNIEnv *env, uint8_t **aBuffer2Ptr, size_t aRandomSize);
-
-struct OlmSession* getSessionInstanceId(JNIEnv* aJniEnv, jobject aJavaObject);
-struct OlmAccount* getAccountInstanceId(JNIEnv* aJniEnv, jobject aJavaObject);
-struct OlmInboundGroupSession* getInboundGroupSessionInstanceId(JNIEnv* aJniEnv, jobject aJavaObject);
-struct OlmOutboundGroupSession* getOutboundGroupSessionInstanceId(JNIEnv* aJniEnv, jobject aJavaObject);
-struct OlmUtility* getUtilityInstanceId(JNIEnv* aJniEnv, jobject aJavaObject);
-struct OlmPkDecryption* getPkDecryptionInstanceId(JNIEnv* aJniEnv, jobject aJavaObject);
-struct OlmPkEncryption* getPkEncryptionInstanceId(JNIEnv* aJniEnv, jobject aJavaObject);
+uint8_t* getDirectBufferRange(JNIEnv *env, jobject aBuffer, jint aOffset, jint aLength);
+uint8_t* getScratchBuffer(size_t aLength);
+void clearScratchBuffer(uint8_t *aBuffer, size_t aLength);
+jint getErrorStatus(const char *aLastError);
 
 #ifdef __cplusplus
 }
@@ -16,209 +16,306 @@
  */
 
 #include "olm_jni_helper.h"
+#include "olm_random.h"
 #include "olm/olm.h"
 #include <sys/time.h>
 
 using namespace AndroidOlmSdk;
 
+JniCache AndroidOlmSdk::gJniCache;
+
+namespace
+{
+    /**
+     * Growable buffer owned by one thread, reused by the decryption paths
+     * instead of allocating temporary buffers on every call.
+     */
+    struct ScratchArena
+    {
+        uint8_t *ptr;
+        size_t capacity;
+
+        ScratchArena() : ptr(NULL), capacity(0)
+        {
+        }
+
+        ~ScratchArena()
+        {
+            if (ptr)
+            {
+                clearScratchBuffer(ptr, capacity);
+                free(ptr);
+            }
+        }
+    };
+
+    thread_local ScratchArena tScratchArena;
+}
+
 /**
-* Init a buffer with a given number of random values.
-* @param aBuffer2Ptr the buffer to be initialized
-* @param aRandomSize the number of random values to apply
+* Resolve a class and pin it with a global reference.
+* @param env pointer pointing on the JNI function table
+* @param aClassName fully qualified class name
+* @param aClassRef receives the global reference
 * @return true if operation succeed, false otherwise
 **/
-bool setRandomInBuffer(JNIEnv *env, uint8_t **aBuffer2Ptr, size_t aRandomSize)
+static bool cacheClass(JNIEnv *env, const char *aClassName, jclass *aClassRef)
 {
     bool retCode = false;
-    int bufferLen = aRandomSize*sizeof(uint8_t);
+    jclass localRef = env->FindClass(aClassName);
 
-    if (!aBuffer2Ptr)
+    if (!localRef)
     {
-        LOGE("## setRandomInBuffer(): failure - aBuffer=NULL");
+        LOGE("## cacheClass(): failure - class %s not found", aClassName);
     }
-    else if (!aRandomSize)
+    else
     {
-        LOGE("## setRandomInBuffer(): failure - random size=0");
+        *aClassRef = static_cast<jclass>(env->NewGlobalRef(localRef));
+        retCode = (NULL != *aClassRef);
+        env->DeleteLocalRef(localRef);
     }
-    else if (!(*aBuffer2Ptr = (uint8_t*)malloc(bufferLen)))
+
+    return retCode;
+}
+
+/**
+* Called by the JVM when the library is loaded.<br>
+* Every class, field and method the binding uses is resolved here once,
+* so that the entry points never have to look them up.
+* @return the required JNI version, JNI_ERR if a lookup failed
+**/
+JNIEXPORT jint JNICALL JNI_OnLoad(JavaVM *vm, void *reserved)
+{
+    JNIEnv *env = NULL;
+    jclass pkMessageClass = 0;
+    jclass entropySourceClass = 0;
+
+    if (JNI_OK != vm->GetEnv(reinterpret_cast<void**>(&env), JNI_VERSION_1_6))
     {
-        LOGE("## setRandomInBuffer(): failure - alloc mem OOM");
+        LOGE("## JNI_OnLoad(): failure - unable to get JNI env");
+        return JNI_ERR;
     }
-    else
-    {
-        LOGD("## setRandomInBuffer(): randomSize=%lu",static_cast<long unsigned int>(aRandomSize));
 
-        // use the secureRandom class
-        jclass cls = env->FindClass("java/security/SecureRandom");
+    memset(&gJniCache, 0, sizeof(gJniCache));
 
-        if (cls)
-        {
-            jobject newObj = 0;
-            jmethodID constructor = env->GetMethodID(cls, "<init>", "()V");
-            jmethodID nextByteMethod = env->GetMethodID(cls, "nextBytes", "([B)V");
+    bool retCode = cacheClass(env, CLASS_JAVA_EXCEPTION, &gJniCache.exceptionClass)
+            && cacheClass(env, CLASS_SECURE_RANDOM, &gJniCache.secureRandomClass)
+            && (gJniCache.secureRandomCtor = env->GetMethodID(gJniCache.secureRandomClass, "<init>", "()V"))
+            && (gJniCache.secureRandomNextBytesMethod = env->GetMethodID(gJniCache.secureRandomClass, "nextBytes", "([B)V"))
+            && (entropySourceClass = env->FindClass(CLASS_OLM_ENTROPY_SOURCE))
+            && (gJniCache.entropySourceNextBytesMethod = env->GetMethodID(entropySourceClass, "nextBytes", "([B)V"))
+            && cacheClass(env, CLASS_OLM_MESSAGE, &gJniCache.olmMessageClass)
+            && (gJniCache.olmMessageCtor = env->GetMethodID(gJniCache.olmMessageClass, "<init>", "([BI)V"))
+            && cacheClass(env, CLASS_DECRYPT_MESSAGE_RESULT, &gJniCache.decryptMessageResultClass)
+            && (gJniCache.decryptMessageResultCtor = env->GetMethodID(gJniCache.decryptMessageResultClass, "<init>", "([BJ)V"))
+            && (pkMessageClass = env->FindClass(CLASS_OLM_PK_MESSAGE))
+            && (gJniCache.pkMessageCipherTextField = env->GetFieldID(pkMessageClass, "mCipherText", "Ljava/lang/String;"))
+            && (gJniCache.pkMessageMacField = env->GetFieldID(pkMessageClass, "mMac", "Ljava/lang/String;"))
+            && (gJniCache.pkMessageEphemeralKeyField = env->GetFieldID(pkMessageClass, "mEphemeralKey", "Ljava/lang/String;"));
 
-            if (constructor)
-            {
-                newObj = env->NewObject(cls, constructor);
-                jbyteArray tempByteArray = env->NewByteArray(bufferLen);
-
-                if (newObj && tempByteArray)
-                {
-                    env->CallVoidMethod(newObj, nextByteMethod, tempByteArray);
-
-                    if (!env->ExceptionOccurred())
-                    {
-                        jbyte* buffer = env->GetByteArrayElements(tempByteArray, NULL);
-
-                        if (buffer)
-                        {
-                            memcpy(*aBuffer2Ptr, buffer, bufferLen);
-                            retCode = true;
-
-                            // clear tempByteArray to hide sensitive data.
-                            memset(buffer, 0, bufferLen);
-                            env->SetByteArrayRegion(tempByteArray, 0, bufferLen, buffer);
-
-                            // ensure that the buffer is released
-                            env->ReleaseByteArrayElements(tempByteArray, buffer, JNI_ABORT);
-                        }
-                    }
-                }
-
-                if (tempByteArray)
-                {
-                    env->DeleteLocalRef(tempByteArray);
-                }
-
-                if (newObj)
-                {
-                    env->DeleteLocalRef(newObj);
-                }
-            }
-        }
+    if (pkMessageClass)
+    {
+        env->DeleteLocalRef(pkMessageClass);
+    }
 
-        // debug purpose
-        /*for(int i = 0; i < aRandomSize; i++)
-        {
-            LOGD("## setRandomInBuffer(): randomBuffPtr[%ld]=%d",i, (*aBuffer2Ptr)[i]);
-        }*/
+    if (entropySourceClass)
+    {
+        env->DeleteLocalRef(entropySourceClass);
     }
 
-    return retCode;
+    if (!retCode)
+    {
+        LOGE("## JNI_OnLoad(): failure - unable to resolve the JNI references");
+        return JNI_ERR;
+    }
+
+    return JNI_VERSION_1_6;
 }
 
 /**
-* Read the instance ID of the calling object.
-* @param aJniEnv pointer pointing on the JNI function table
-* @param aJavaObject reference to the object on which the method is invoked
-* @param aCallingClass java calling class name
-* @return the related instance ID
+* Called by the JVM when the class loader of the library is garbage collected.<br>
+* Release the global references taken in JNI_OnLoad().
 **/
-jlong getInstanceId(JNIEnv* aJniEnv, jobject aJavaObject, const char *aCallingClass)
+JNIEXPORT void JNICALL JNI_OnUnload(JavaVM *vm, void *reserved)
 {
-    jlong instanceId = 0;
+    JNIEnv *env = NULL;
 
-    if (aJniEnv)
+    if (JNI_OK == vm->GetEnv(reinterpret_cast<void**>(&env), JNI_VERSION_1_6))
     {
-        jclass requiredClass = aJniEnv->FindClass(aCallingClass);
-        jclass loaderClass = 0;
+        releaseRandomEntropySource(env);
 
-        if (requiredClass && (JNI_TRUE != aJniEnv->IsInstanceOf(aJavaObject, requiredClass)))
-        {
-            LOGE("## getInstanceId() failure - invalid instance of");
-        }
-        else if ((loaderClass = aJniEnv->GetObjectClass(aJavaObject)))
-        {
-            jfieldID instanceIdField = aJniEnv->GetFieldID(loaderClass, "mNativeId", "J");
+        jclass classes[] = { gJniCache.exceptionClass, gJniCache.secureRandomClass, gJniCache.olmMessageClass, gJniCache.decryptMessageResultClass };
 
-            if (instanceIdField)
-            {
-                instanceId = aJniEnv->GetLongField(aJavaObject, instanceIdField);
-                LOGD("## getInstanceId(): read from java instanceId=%lld",instanceId);
-            }
-            else
+        for (size_t i = 0; i < sizeof(classes)/sizeof(classes[0]); i++)
+        {
+            if (classes[i])
             {
-                LOGE("## getInstanceId() ERROR! GetFieldID=null");
+                env->DeleteGlobalRef(classes[i]);
             }
-
-             aJniEnv->DeleteLocalRef(loaderClass);
-        }
-        else
-        {
-            LOGE("## getInstanceId() ERROR! GetObjectClass=null");
         }
     }
-    else
-    {
-        LOGE("## getInstanceId() ERROR! aJniEnv=NULL");
-    }
-
-    LOGD("## getInstanceId() success - instanceId=%p (jlong)(intptr_t)instanceId=%lld",(void*)instanceId, (jlong)(intptr_t)instanceId);
 
-    return instanceId;
+    memset(&gJniCache, 0, sizeof(gJniCache));
 }
 
 /**
-* Read the account instance ID of the calling object.
-* @param aJniEnv pointer pointing on the JNI function table
-* @param aJavaObject reference to the object on which the method is invoked
-* @return the related OlmAccount.
+* Init a buffer with a given number of random values.<br>
+* The values are served by the random pool of the calling thread, see randomPoolBytes().
+* @param aBuffer2Ptr the buffer to be initialized
+* @param aRandomSize the number of random values to apply
+* @return true if operation succeed, false otherwise
 **/
-struct OlmAccount* getAccountInstanceId(JNIEnv* aJniEnv, jobject aJavaObject)
+bool setRandomInBuffer(JNIEnv *env, uint8_t **aBuffer2Ptr, size_t aRandomSize)
 {
-    return (struct OlmAccount*)getInstanceId(aJniEnv, aJavaObject, CLASS_OLM_ACCOUNT);
+    bool retCode = false;
+    int bufferLen = aRandomSize*sizeof(uint8_t);
+
+    if (!aBuffer2Ptr)
+    {
+        LOGE("## setRandomInBuffer(): failure - aBuffer=NULL");
+    }
+    else if (!aRandomSize)
+    {
+        LOGE("## setRandomInBuffer(): failure - random size=0");
+    }
+    else if (!(*aBuffer2Ptr = (uint8_t*)malloc(bufferLen)))
+    {
+        LOGE("## setRandomInBuffer(): failure - alloc mem OOM");
+    }
+    else if (!(retCode = randomPoolBytes(env, *aBuffer2Ptr, aRandomSize)))
+    {
+        LOGE("## setRandomInBuffer(): failure - random pool");
+    }
+    else
+    {
+        LOGD("## setRandomInBuffer(): randomSize=%lu",static_cast<long unsigned int>(aRandomSize));
+    }
+
+    return retCode;
 }
 
 /**
-* Read the session instance ID of the calling object (aJavaObject).<br>
-* @param aJniEnv pointer pointing on the JNI function table
-* @param aJavaObject reference to the object on which the method is invoked
-* @return the related OlmSession.
+* Resolve a range of a direct buffer.
+* @param env pointer pointing on the JNI function table
+* @param aBuffer the direct java.nio.ByteBuffer
+* @param aOffset offset of the range in the buffer
+* @param aLength length of the range
+* @return the address of the range, NULL if the buffer is not direct or the range is out of bounds
 **/
-struct OlmSession* getSessionInstanceId(JNIEnv* aJniEnv, jobject aJavaObject)
+uint8_t* getDirectBufferRange(JNIEnv *env, jobject aBuffer, jint aOffset, jint aLength)
 {
-    return (struct OlmSession*)getInstanceId(aJniEnv, aJavaObject, CLASS_OLM_SESSION);
+    uint8_t *rangePtr = NULL;
+
+    if (!aBuffer)
+    {
+        LOGE("## getDirectBufferRange(): failure - aBuffer=NULL");
+    }
+    else if ((aOffset < 0) || (aLength < 0) || ((jlong)aOffset + aLength > env->GetDirectBufferCapacity(aBuffer)))
+    {
+        LOGE("## getDirectBufferRange(): failure - invalid range offset=%d length=%d", aOffset, aLength);
+    }
+    else if (!(rangePtr = static_cast<uint8_t*>(env->GetDirectBufferAddress(aBuffer))))
+    {
+        LOGE("## getDirectBufferRange(): failure - not a direct buffer");
+    }
+    else
+    {
+        rangePtr += aOffset;
+    }
+
+    return rangePtr;
 }
 
 /**
-* Read the inbound group session instance ID of the calling object (aJavaObject).<br>
-* @param aJniEnv pointer pointing on the JNI function table
-* @param aJavaObject reference to the object on which the method is invoked
-* @return the related OlmInboundGroupSession.
+* Get the scratch buffer of the calling thread.<br>
+* The buffer grows to the largest length requested so far and is never shrunk.
+* Its content is not preserved across calls, and sensitive data must be wiped with
+* clearScratchBuffer() once consumed.
+* @param aLength the required length
+* @return the buffer, NULL if it could not be grown
 **/
-struct OlmInboundGroupSession* getInboundGroupSessionInstanceId(JNIEnv* aJniEnv, jobject aJavaObject)
+uint8_t* getScratchBuffer(size_t aLength)
 {
-    return (struct OlmInboundGroupSession*)getInstanceId(aJniEnv, aJavaObject, CLASS_OLM_INBOUND_GROUP_SESSION);
+    ScratchArena &arena = tScratchArena;
+
+    if (aLength > arena.capacity)
+    {
+        // round up to limit the number of reallocations
+        size_t capacity = (aLength + 1023) & ~(size_t)1023;
+        uint8_t *newPtr = static_cast<uint8_t*>(malloc(capacity));
+
+        if (!newPtr)
+        {
+            LOGE("## getScratchBuffer(): failure - OOM length=%lu", static_cast<long unsigned int>(aLength));
+            return NULL;
+        }
+
+        if (arena.ptr)
+        {
+            clearScratchBuffer(arena.ptr, arena.capacity);
+            free(arena.ptr);
+        }
+
+        arena.ptr = newPtr;
+        arena.capacity = capacity;
+    }
+
+    return arena.ptr;
 }
 
 /**
-* Read the outbound group session instance ID of the calling object (aJavaObject).<br>
-* @param aJniEnv pointer pointing on the JNI function table
-* @param aJavaObject reference to the object on which the method is invoked
-* @return the related OlmOutboundGroupSession
+* Wipe a region of memory holding sensitive data.
+* @param aBuffer the region
+* @param aLength its length
 **/
-struct OlmOutboundGroupSession* getOutboundGroupSessionInstanceId(JNIEnv* aJniEnv, jobject aJavaObject)
+void clearScratchBuffer(uint8_t *aBuffer, size_t aLength)
 {
-    return (struct OlmOutboundGroupSession*)getInstanceId(aJniEnv, aJavaObject, CLASS_OLM_OUTBOUND_GROUP_SESSION);
+    volatile uint8_t *ptr = aBuffer;
+
+    for (size_t i = 0; i < aLength; i++)
+    {
+        ptr[i] = 0;
+    }
 }
 
 /**
-* Read the utility instance ID of the calling object (aJavaObject).<br>
-* @param aJniEnv pointer pointing on the JNI function table
-* @param aJavaObject reference to the object on which the method is invoked
-* @return the related OlmUtility
+* Map the string returned by an olm_*_last_error() function to its status code.<br>
+* The strings are the ones of libolm's _olm_error_to_string(), in the order of the OlmErrorCode values.
+* @param aLastError the last error of a libolm object
+* @return the matching OlmJniStatus value, OLM_JNI_STATUS_UNKNOWN if the string is not known
 **/
-struct OlmUtility* getUtilityInstanceId(JNIEnv* aJniEnv, jobject aJavaObject)
+jint getErrorStatus(const char *aLastError)
 {
-    return (struct OlmUtility*)getInstanceId(aJniEnv, aJavaObject, CLASS_OLM_UTILITY);
-}
+    static const char *const ERROR_STRINGS[] =
+    {
+        "SUCCESS",
+        "NOT_ENOUGH_RANDOM",
+        "OUTPUT_BUFFER_TOO_SMALL",
+        "BAD_MESSAGE_VERSION",
+        "BAD_MESSAGE_FORMAT",
+        "BAD_MESSAGE_MAC",
+        "BAD_MESSAGE_KEY_ID",
+        "INVALID_BASE64",
+        "BAD_ACCOUNT_KEY",
+        "UNKNOWN_PICKLE_VERSION",
+        "CORRUPTED_PICKLE",
+        "BAD_SESSION_KEY",
+        "UNKNOWN_MESSAGE_INDEX",
+        "BAD_LEGACY_ACCOUNT_PICKLE",
+        "BAD_SIGNATURE",
+        "OLM_INPUT_BUFFER_TOO_SMALL"
+    };
 
-struct OlmPkDecryption* getPkDecryptionInstanceId(JNIEnv* aJniEnv, jobject aJavaObject)
-{
-    return (struct OlmPkDecryption*)getInstanceId(aJniEnv, aJavaObject, CLASS_OLM_PK_DECRYPTION);
-}
+    if (aLastError)
+    {
+        for (size_t i = 0; i < sizeof(ERROR_STRINGS) / sizeof(ERROR_STRINGS[0]); i++)
+        {
+            if (!strcmp(aLastError, ERROR_STRINGS[i]))
+            {
+                return (jint)i;
+            }
+        }
+    }
 
-struct OlmPkEncryption* getPkEncryptionInstanceId(JNIEnv* aJniEnv, jobject aJavaObject)
-{
-    return (struct OlmPkEncryption*)getInstanceId(aJniEnv, aJavaObject, CLASS_OLM_PK_ENCRYPTION);
+    return OLM_JNI_STATUS_UNKNOWN;
 }
@@ -27,4 +27,10 @@ namespace AndroidOlmSdk
     static const char *CLASS_OLM_UTILITY = "org/matrix/olm/OlmUtility";
     static const char *CLASS_OLM_PK_ENCRYPTION = "org/matrix/olm/OlmPkEncryption";
     static const char *CLASS_OLM_PK_DECRYPTION = "org/matrix/olm/OlmPkDecryption";
+    static const char *CLASS_OLM_PK_MESSAGE = "org/matrix/olm/OlmPkMessage";
+    static const char *CLASS_OLM_MESSAGE = "org/matrix/olm/OlmMessage";
+    static const char *CLASS_DECRYPT_MESSAGE_RESULT = "org/matrix/olm/OlmInboundGroupSession$DecryptMessageResult";
+    static const char *CLASS_OLM_ENTROPY_SOURCE = "org/matrix/olm/OlmEntropySource";
+    static const char *CLASS_JAVA_EXCEPTION = "java/lang/Exception";
+    static const char *CLASS_SECURE_RANDOM = "java/security/SecureRandom";
 }
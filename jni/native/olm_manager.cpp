@@ -16,6 +16,8 @@
  */
 
 #include "olm_manager.h"
+#include "olm_random.h"
+#include "olm_slab.h"
 
 using namespace AndroidOlmSdk;
 
@@ -32,4 +34,46 @@ JNIEXPORT jstring OLM_MANAGER_FUNC_DEF(getOlmLibVersionJni)(JNIEnv* env, jobject
     returnValueStr = env->NewStringUTF((const char*)buff);
 
     return returnValueStr;
-}
\ No newline at end of file
+}
+
+/**
+ * Replace the entropy source of the native random pools.
+ * @param aSource the OlmEntropySource, or null to read the operating system entropy
+ */
+JNIEXPORT void OLM_MANAGER_FUNC_DEF(setEntropySourceJni)(JNIEnv *env, jclass clazz, jobject aSource)
+{
+    LOGD("## setEntropySourceJni(): IN");
+    setRandomEntropySource(env, aSource);
+}
+
+/**
+ * Read the counters of a native slab.
+ * @param aSlabType the slab, see SlabType
+ * @return slot size, slots in use, total slots, reserved bytes, allocations and releases, null if the type is invalid
+ */
+JNIEXPORT jlongArray OLM_MANAGER_FUNC_DEF(getSlabStatsJni)(JNIEnv *env, jclass clazz, jint aSlabType)
+{
+    jlongArray statsRet = 0;
+    SlabStats stats;
+
+    LOGD("## getSlabStatsJni(): IN");
+
+    if (!slabStats(static_cast<SlabType>(aSlabType), &stats))
+    {
+        LOGE("## getSlabStatsJni(): failure - invalid slab type %d", aSlabType);
+    }
+    else if ((statsRet = env->NewLongArray(6)))
+    {
+        jlong values[6] = {
+            (jlong)stats.slotSize,
+            (jlong)stats.slotsInUse,
+            (jlong)stats.slotsTotal,
+            (jlong)stats.bytesReserved,
+            (jlong)stats.allocations,
+            (jlong)stats.releases
+        };
+        env->SetLongArrayRegion(statsRet, 0, 6, values);
+    }
+
+    return statsRet;
+}
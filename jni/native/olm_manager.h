@@ -28,6 +28,8 @@ extern "C" {
 #endif
 
 JNIEXPORT jstring OLM_MANAGER_FUNC_DEF(getOlmLibVersionJni)(JNIEnv *env, jobject thiz);
+JNIEXPORT void OLM_MANAGER_FUNC_DEF(setEntropySourceJni)(JNIEnv *env, jclass clazz, jobject aSource);
+JNIEXPORT jlongArray OLM_MANAGER_FUNC_DEF(getSlabStatsJni)(JNIEnv *env, jclass clazz, jint aSlabType);
 
 #ifdef __cplusplus
 }
@@ -16,19 +16,28 @@
  */
 
 #include "olm_outbound_group_session.h"
+#include "olm_slab.h"
+
+#include <vector>
 
 using namespace AndroidOlmSdk;
 
+/**
+ * Maximum growth of an encrypted message when the message index grows: the index is
+ * a varint of 1 to 5 bytes, and 4 more bytes take at most 6 more base64 characters.
+ */
+static const size_t MESSAGE_INDEX_MAX_GROWTH = 6;
+
 /**
  * Release the session allocation made by initializeOutboundGroupSessionMemory().<br>
  * This method MUST be called when java counter part account instance is done.
  *
  */
-JNIEXPORT void OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(releaseSessionJni)(JNIEnv *env, jobject thiz)
+JNIEXPORT void OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(releaseSessionJni)(JNIEnv *env, jclass clazz, jlong aNativeId)
 {
     LOGD("## releaseSessionJni(): OutBound group session IN");
 
-    OlmOutboundGroupSession* sessionPtr = (OlmOutboundGroupSession*)getOutboundGroupSessionInstanceId(env,thiz);
+    OlmOutboundGroupSession* sessionPtr = (OlmOutboundGroupSession*)aNativeId;
 
     if (!sessionPtr)
     {
@@ -46,7 +55,7 @@ JNIEXPORT void OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(releaseSessionJni)(JNIEnv *en
 #endif
 
         LOGD(" ## releaseSessionJni(): free IN");
-        free(sessionPtr);
+        slabFree(SLAB_OUTBOUND_GROUP_SESSION, sessionPtr);
         LOGD(" ## releaseSessionJni(): free OUT");
     }
 }
@@ -57,7 +66,7 @@ JNIEXPORT void OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(releaseSessionJni)(JNIEnv *en
  * to make the cast (OlmOutboundGroupSession* => jlong) platform independent.
  * @return the initialized OlmOutboundGroupSession* instance or throw an exception
  **/
-JNIEXPORT jlong OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(createNewSessionJni)(JNIEnv *env, jobject thiz)
+JNIEXPORT jlong OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(createNewSessionJni)(JNIEnv *env, jclass clazz)
 {
     const char* errorMessage = NULL;
 
@@ -72,7 +81,7 @@ JNIEXPORT jlong OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(createNewSessionJni)(JNIEnv
         LOGE(" ## createNewSessionJni(): failure - outbound group session size = 0");
         errorMessage = "outbound group session size = 0";
     }
-    else if (!(sessionPtr = (OlmOutboundGroupSession*)malloc(sessionSize)))
+    else if (!(sessionPtr = (OlmOutboundGroupSession*)slabAlloc(SLAB_OUTBOUND_GROUP_SESSION)))
     {
         LOGE(" ## createNewSessionJni(): failure - outbound group session OOM");
         errorMessage = "outbound group session OOM";
@@ -122,10 +131,10 @@ JNIEXPORT jlong OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(createNewSessionJni)(JNIEnv
         if (sessionPtr)
         {
             olm_clear_outbound_group_session(sessionPtr);
-            free(sessionPtr);
+            slabFree(SLAB_OUTBOUND_GROUP_SESSION, sessionPtr);
         }
 
-        env->ThrowNew(env->FindClass("java/lang/Exception"), errorMessage);
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
     }
 
     return (jlong)(intptr_t)sessionPtr;
@@ -136,12 +145,12 @@ JNIEXPORT jlong OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(createNewSessionJni)(JNIEnv
  * An exception is thrown if the operation fails.
  * @return the session identifier
  */
-JNIEXPORT jbyteArray OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(sessionIdentifierJni)(JNIEnv *env, jobject thiz)
+JNIEXPORT jbyteArray OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(sessionIdentifierJni)(JNIEnv *env, jclass clazz, jlong aNativeId)
 {
     LOGD("## sessionIdentifierJni(): outbound group session IN");
 
     const char* errorMessage = NULL;
-    OlmOutboundGroupSession *sessionPtr = (OlmOutboundGroupSession*)getOutboundGroupSessionInstanceId(env,thiz);
+    OlmOutboundGroupSession *sessionPtr = (OlmOutboundGroupSession*)aNativeId;
     jbyteArray returnValue = 0;
     
     if (!sessionPtr)
@@ -186,7 +195,7 @@ JNIEXPORT jbyteArray OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(sessionIdentifierJni)(J
 
     if (errorMessage)
     {
-        env->ThrowNew(env->FindClass("java/lang/Exception"), errorMessage);
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
     }
 
     return returnValue;
@@ -200,14 +209,14 @@ JNIEXPORT jbyteArray OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(sessionIdentifierJni)(J
  * An exception is thrown if the operation fails.
  * @return current session index
  */
-JNIEXPORT jint OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(messageIndexJni)(JNIEnv *env, jobject thiz)
+JNIEXPORT jint OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(messageIndexJni)(JNIEnv *env, jclass clazz, jlong aNativeId)
 {
     OlmOutboundGroupSession *sessionPtr = NULL;
     jint indexRetValue = 0;
 
     LOGD("## messageIndexJni(): IN");
 
-    if (!(sessionPtr = (OlmOutboundGroupSession*)getOutboundGroupSessionInstanceId(env,thiz)))
+    if (!(sessionPtr = (OlmOutboundGroupSession*)aNativeId))
     {
         LOGE(" ## messageIndexJni(): failure - invalid outbound group session instance");
     }
@@ -226,12 +235,12 @@ JNIEXPORT jint OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(messageIndexJni)(JNIEnv *env,
  * An exception is thrown if the operation fails.
  * @return the session key
  */
-JNIEXPORT jbyteArray OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(sessionKeyJni)(JNIEnv *env, jobject thiz)
+JNIEXPORT jbyteArray OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(sessionKeyJni)(JNIEnv *env, jclass clazz, jlong aNativeId)
 {
     LOGD("## sessionKeyJni(): outbound group session IN");
 
     const char* errorMessage = NULL;
-    OlmOutboundGroupSession *sessionPtr = (OlmOutboundGroupSession*)getOutboundGroupSessionInstanceId(env,thiz);
+    OlmOutboundGroupSession *sessionPtr = (OlmOutboundGroupSession*)aNativeId;
     jbyteArray returnValue = 0;
 
     if (!sessionPtr)
@@ -276,7 +285,7 @@ JNIEXPORT jbyteArray OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(sessionKeyJni)(JNIEnv *
 
     if (errorMessage)
     {
-        env->ThrowNew(env->FindClass("java/lang/Exception"), errorMessage);
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
     }
 
     return returnValue;
@@ -286,9 +295,11 @@ JNIEXPORT jbyteArray OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(sessionKeyJni)(JNIEnv *
  * Encrypt a bytes buffer messages.
  * An exception is thrown if the operation fails.
  * @param aClearMsgBuffer  the message to encode
+ * @param aOffset offset of the message in aClearMsgBuffer
+ * @param aLength length of the message
  * @return the encoded message
  */
-JNIEXPORT jbyteArray OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(encryptMessageJni)(JNIEnv *env, jobject thiz, jbyteArray aClearMsgBuffer)
+JNIEXPORT jbyteArray OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(encryptMessageJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jbyteArray aClearMsgBuffer, jint aOffset, jint aLength)
 {
     LOGD("## encryptMessageJni(): IN");
 
@@ -298,12 +309,12 @@ JNIEXPORT jbyteArray OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(encryptMessageJni)(JNIE
     OlmOutboundGroupSession *sessionPtr = NULL;
     jbyte* clearMsgPtr = NULL;
 
-    if (!(sessionPtr = (OlmOutboundGroupSession*)getOutboundGroupSessionInstanceId(env,thiz)))
+    if (!(sessionPtr = (OlmOutboundGroupSession*)aNativeId))
     {
         LOGE(" ## encryptMessageJni(): failure - invalid outbound group session ptr=NULL");
         errorMessage = "invalid outbound group session ptr=NULL";
     }
-    else if (!aClearMsgBuffer)
+    else if (!aClearMsgBuffer || (aOffset < 0) || (aLength < 0) || (aOffset > env->GetArrayLength(aClearMsgBuffer) - aLength))
     {
         LOGE(" ## encryptMessageJni(): failure - invalid clear message");
         errorMessage = "invalid clear message";
@@ -316,7 +327,7 @@ JNIEXPORT jbyteArray OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(encryptMessageJni)(JNIE
     else
     {
         // get clear message length
-        size_t clearMsgLength = (size_t)env->GetArrayLength(aClearMsgBuffer);
+        size_t clearMsgLength = (size_t)aLength;
         LOGD(" ## encryptMessageJni(): clearMsgLength=%lu",static_cast<long unsigned int>(clearMsgLength));
 
         // compute max encrypted length
@@ -333,7 +344,7 @@ JNIEXPORT jbyteArray OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(encryptMessageJni)(JNIE
             LOGD(" ## encryptMessageJni(): estimated encryptedMsgLength=%lu",static_cast<long unsigned int>(encryptedMsgLength));
 
             size_t encryptedLength = olm_group_encrypt(sessionPtr,
-                                                       (uint8_t*)clearMsgPtr,
+                                                       (uint8_t*)clearMsgPtr + aOffset,
                                                        clearMsgLength,
                                                        encryptedMsgPtr,
                                                        encryptedMsgLength);
@@ -364,19 +375,334 @@ JNIEXPORT jbyteArray OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(encryptMessageJni)(JNIE
 
     if (errorMessage)
     {
-        env->ThrowNew(env->FindClass("java/lang/Exception"), errorMessage);
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
     }
 
     return encryptedMsgRet;
 }
 
+/**
+ * Encrypt a batch of messages packed in one array, in a single native call.<br>
+ * The messages are encrypted in order, so they get consecutive message indexes starting
+ * from the index returned in aFirstMessageIndex. The encrypted messages are packed in the
+ * returned array, aEncryptedMsgEnds receiving the offset following each of them; the array
+ * is sized for the worst case, so it may end with unused bytes.<br>
+ * A message which fails to encrypt stops the batch. The messages encrypted before it have
+ * advanced the ratchet, so they are returned rather than lost, aProgress telling how many
+ * they are. An exception is thrown if the operation fails before any message is encrypted.
+ * @param aClearMsgs the packed messages to encrypt
+ * @param aClearMsgEnds the offset following each message in aClearMsgs
+ * @param aCount number of messages to encrypt
+ * @param aEncryptedMsgEnds receives the offset following each encrypted message
+ * @param aProgress receives the message index of the first message and the number of encrypted messages
+ * @return the packed encrypted messages
+ */
+JNIEXPORT jbyteArray OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(encryptMessagesJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jbyteArray aClearMsgs, jintArray aClearMsgEnds, jint aCount,
+                                                                           jintArray aEncryptedMsgEnds, jlongArray aProgress)
+{
+    LOGD("## encryptMessagesJni(): IN");
+
+    const char* errorMessage = NULL;
+    jbyteArray encryptedMsgsRet = 0;
+
+    OlmOutboundGroupSession *sessionPtr = (OlmOutboundGroupSession*)aNativeId;
+    jbyte* clearMsgsPtr = NULL;
+    jbyte* encryptedMsgsPtr = NULL;
+    std::vector<jint> clearMsgEnds;
+    std::vector<jint> encryptedMsgEnds;
+    jlong progress[2] = { 0, 0 };
+
+    if (!sessionPtr)
+    {
+        LOGE(" ## encryptMessagesJni(): failure - invalid outbound group session ptr=NULL");
+        errorMessage = "invalid outbound group session ptr=NULL";
+    }
+    else if (!aClearMsgs || !aClearMsgEnds || !aEncryptedMsgEnds || !aProgress || (aCount < 0)
+             || (env->GetArrayLength(aClearMsgEnds) < aCount) || (env->GetArrayLength(aEncryptedMsgEnds) < aCount)
+             || (env->GetArrayLength(aProgress) < 2))
+    {
+        LOGE(" ## encryptMessagesJni(): failure - invalid batch parameters");
+        errorMessage = "invalid batch parameters";
+    }
+    else
+    {
+        jint clearMsgsLength = env->GetArrayLength(aClearMsgs);
+        size_t encryptedMsgsLength = 0;
+
+        clearMsgEnds.resize(aCount);
+        encryptedMsgEnds.resize(aCount);
+        env->GetIntArrayRegion(aClearMsgEnds, 0, aCount, clearMsgEnds.data());
+
+        // the encrypted length grows with the varint of the message index, which advances along
+        // the batch: the output is sized up front for the longest index, and packed while encrypting
+        for (jint i = 0; i < aCount; i++)
+        {
+            jint start = (0 == i) ? 0 : clearMsgEnds[i - 1];
+
+            if ((start < 0) || (clearMsgEnds[i] < start) || (clearMsgEnds[i] > clearMsgsLength))
+            {
+                errorMessage = "invalid batch parameters";
+                break;
+            }
+
+            encryptedMsgsLength += olm_group_encrypt_message_length(sessionPtr, (size_t)(clearMsgEnds[i] - start)) + MESSAGE_INDEX_MAX_GROWTH;
+            if (encryptedMsgsLength > INT32_MAX)
+            {
+                errorMessage = "batch too large";
+                break;
+            }
+        }
+
+        if (errorMessage)
+        {
+            LOGE(" ## encryptMessagesJni(): failure - %s", errorMessage);
+        }
+        else if (!(encryptedMsgsRet = env->NewByteArray((jsize)encryptedMsgsLength)))
+        {
+            LOGE(" ## encryptMessagesJni(): failure - encrypted messages OOM");
+            errorMessage = "encrypted messages OOM";
+        }
+        else if (!(clearMsgsPtr = env->GetByteArrayElements(aClearMsgs, NULL)))
+        {
+            LOGE(" ## encryptMessagesJni(): failure - clear messages JNI allocation OOM");
+            errorMessage = "clear messages JNI allocation OOM";
+        }
+        else if (!(encryptedMsgsPtr = env->GetByteArrayElements(encryptedMsgsRet, NULL)))
+        {
+            LOGE(" ## encryptMessagesJni(): failure - encrypted messages JNI allocation OOM");
+            errorMessage = "encrypted messages JNI allocation OOM";
+        }
+        else
+        {
+            progress[0] = (jlong)olm_outbound_group_session_message_index(sessionPtr);
+
+            size_t encryptedStart = 0;
+
+            for (jint i = 0; i < aCount; i++)
+            {
+                jint clearStart = (0 == i) ? 0 : clearMsgEnds[i - 1];
+
+                // the space left is at least the bound of this message, whatever the previous ones took
+                size_t encryptedLength = olm_group_encrypt(sessionPtr,
+                                                           (uint8_t*)clearMsgsPtr + clearStart,
+                                                           (size_t)(clearMsgEnds[i] - clearStart),
+                                                           (uint8_t*)encryptedMsgsPtr + encryptedStart,
+                                                           encryptedMsgsLength - encryptedStart);
+
+                if (encryptedLength == olm_error())
+                {
+                    LOGE(" ## encryptMessagesJni(): failure - olm_group_encrypt message %d Msg=%s", static_cast<int>(i), olm_outbound_group_session_last_error(sessionPtr));
+                    // the messages already encrypted have spent their indexes: they are returned
+                    if (0 == i)
+                    {
+                        errorMessage = olm_outbound_group_session_last_error(sessionPtr);
+                    }
+                    break;
+                }
+
+                encryptedStart += encryptedLength;
+                encryptedMsgEnds[i] = (jint)encryptedStart;
+                progress[1]++;
+            }
+
+            LOGD(" ## encryptMessagesJni(): count=%d encrypted=%lld firstMessageIndex=%lld", static_cast<int>(aCount), static_cast<long long>(progress[1]), static_cast<long long>(progress[0]));
+        }
+    }
+
+    // free alloc
+    if (encryptedMsgsPtr)
+    {
+        env->ReleaseByteArrayElements(encryptedMsgsRet, encryptedMsgsPtr, 0);
+    }
+
+    if (clearMsgsPtr)
+    {
+        env->ReleaseByteArrayElements(aClearMsgs, clearMsgsPtr, JNI_ABORT);
+    }
+
+    if (errorMessage)
+    {
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
+        return 0;
+    }
+
+    env->SetIntArrayRegion(aEncryptedMsgEnds, 0, (jsize)progress[1], encryptedMsgEnds.data());
+    env->SetLongArrayRegion(aProgress, 0, 2, progress);
+
+    return encryptedMsgsRet;
+}
+
+/**
+ * Encrypt a message into its binary form, i.e. the base64-decoded form of the message.<br>
+ * libolm only produces base64 messages: the message is encrypted in the scratch buffer
+ * of the calling thread and decoded in place, before being copied to java.
+ * An exception is thrown if the operation fails.
+ * @param aClearMsgBuffer  the message to encode
+ * @param aOffset offset of the message in aClearMsgBuffer
+ * @param aLength length of the message
+ * @return the binary encrypted message
+ */
+JNIEXPORT jbyteArray OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(encryptMessageBinaryJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jbyteArray aClearMsgBuffer, jint aOffset, jint aLength)
+{
+    LOGD("## encryptMessageBinaryJni(): IN");
+
+    const char* errorMessage = NULL;
+    jbyteArray encryptedMsgRet = 0;
+
+    OlmOutboundGroupSession *sessionPtr = (OlmOutboundGroupSession*)aNativeId;
+    uint8_t *scratchPtr = NULL;
+    size_t clearMsgLength = (size_t)aLength;
+    size_t encryptedMsgLength = 0;
+
+    if (!sessionPtr)
+    {
+        LOGE(" ## encryptMessageBinaryJni(): failure - invalid outbound group session ptr=NULL");
+        errorMessage = "invalid outbound group session ptr=NULL";
+    }
+    else if (!aClearMsgBuffer || (aOffset < 0) || (aLength < 0) || (aOffset > env->GetArrayLength(aClearMsgBuffer) - aLength))
+    {
+        LOGE(" ## encryptMessageBinaryJni(): failure - invalid clear message");
+        errorMessage = "invalid clear message";
+    }
+    else if (!(scratchPtr = getScratchBuffer(clearMsgLength + (encryptedMsgLength = olm_group_encrypt_message_length(sessionPtr, clearMsgLength)))))
+    {
+        LOGE(" ## encryptMessageBinaryJni(): failure - scratch buffer allocation OOM");
+        errorMessage = "scratch buffer allocation OOM";
+    }
+    else
+    {
+        uint8_t *encryptedMsgPtr = scratchPtr + clearMsgLength;
+        env->GetByteArrayRegion(aClearMsgBuffer, aOffset, aLength, (jbyte*)scratchPtr);
+
+        size_t encryptedLength = olm_group_encrypt(sessionPtr,
+                                                   scratchPtr,
+                                                   clearMsgLength,
+                                                   encryptedMsgPtr,
+                                                   encryptedMsgLength);
+
+        if (encryptedLength == olm_error())
+        {
+            errorMessage = olm_outbound_group_session_last_error(sessionPtr);
+            LOGE(" ## encryptMessageBinaryJni(): failure - olm_group_encrypt Msg=%s", errorMessage);
+        }
+        else
+        {
+            // decoding never writes ahead of the characters being read
+            size_t binaryLength = _olm_decode_base64(encryptedMsgPtr, encryptedLength, encryptedMsgPtr);
+
+            if ((encryptedMsgRet = env->NewByteArray(binaryLength)))
+            {
+                env->SetByteArrayRegion(encryptedMsgRet, 0, binaryLength, (jbyte*)encryptedMsgPtr);
+            }
+        }
+
+        // the clear message must not linger in the scratch buffer
+        clearScratchBuffer(scratchPtr, clearMsgLength + encryptedMsgLength);
+    }
+
+    if (errorMessage)
+    {
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
+    }
+
+    return encryptedMsgRet;
+}
+
+/**
+ * Compute the length of the encrypted message for a given message length.
+ * @param aClearMsgLength length of the message to encode
+ * @return the length of the encoded message
+ */
+JNIEXPORT jint OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(encryptedMessageLengthJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jint aClearMsgLength)
+{
+    OlmOutboundGroupSession *sessionPtr = NULL;
+    jint lengthRetValue = 0;
+
+    if (!(sessionPtr = (OlmOutboundGroupSession*)aNativeId))
+    {
+        LOGE(" ## encryptedMessageLengthJni(): failure - invalid outbound group session instance");
+    }
+    else if (aClearMsgLength >= 0)
+    {
+        lengthRetValue = static_cast<jint>(olm_group_encrypt_message_length(sessionPtr, (size_t)aClearMsgLength));
+    }
+
+    return lengthRetValue;
+}
+
+/**
+ * Encrypt a message held in a direct buffer into another direct buffer.<br>
+ * Both buffers are accessed in place, no intermediate copy is made.
+ * An exception is thrown if the operation fails.
+ * @param aClearMsg direct buffer holding the message to encode
+ * @param aClearOffset offset of the message in aClearMsg
+ * @param aClearLength length of the message
+ * @param aEncryptedMsg direct buffer receiving the encoded message
+ * @param aEncryptedOffset offset of the output in aEncryptedMsg
+ * @param aEncryptedLength space available for the output
+ * @return the length of the encoded message
+ */
+JNIEXPORT jint OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(encryptMessageBufferJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jobject aClearMsg, jint aClearOffset, jint aClearLength, jobject aEncryptedMsg, jint aEncryptedOffset, jint aEncryptedLength)
+{
+    LOGD("## encryptMessageBufferJni(): IN");
+
+    const char* errorMessage = NULL;
+    jint encryptedLengthRet = 0;
+
+    OlmOutboundGroupSession *sessionPtr = (OlmOutboundGroupSession*)aNativeId;
+    uint8_t *clearMsgPtr = NULL;
+    uint8_t *encryptedMsgPtr = NULL;
+
+    if (!sessionPtr)
+    {
+        LOGE(" ## encryptMessageBufferJni(): failure - invalid outbound group session ptr=NULL");
+        errorMessage = "invalid outbound group session ptr=NULL";
+    }
+    else if (!(clearMsgPtr = getDirectBufferRange(env, aClearMsg, aClearOffset, aClearLength)))
+    {
+        LOGE(" ## encryptMessageBufferJni(): failure - invalid clear message buffer");
+        errorMessage = "invalid clear message buffer";
+    }
+    else if (!(encryptedMsgPtr = getDirectBufferRange(env, aEncryptedMsg, aEncryptedOffset, aEncryptedLength)))
+    {
+        LOGE(" ## encryptMessageBufferJni(): failure - invalid encrypted message buffer");
+        errorMessage = "invalid encrypted message buffer";
+    }
+    else
+    {
+        size_t encryptedLength = olm_group_encrypt(sessionPtr,
+                                                   clearMsgPtr,
+                                                   (size_t)aClearLength,
+                                                   encryptedMsgPtr,
+                                                   (size_t)aEncryptedLength);
+
+        if (encryptedLength == olm_error())
+        {
+            errorMessage = olm_outbound_group_session_last_error(sessionPtr);
+            LOGE(" ## encryptMessageBufferJni(): failure - olm_group_encrypt Msg=%s", errorMessage);
+        }
+        else
+        {
+            LOGD(" ## encryptMessageBufferJni(): success - encryptedLength=%lu",static_cast<long unsigned int>(encryptedLength));
+            encryptedLengthRet = (jint)encryptedLength;
+        }
+    }
+
+    if (errorMessage)
+    {
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
+    }
+
+    return encryptedLengthRet;
+}
+
 /**
  * Serialize and encrypt session instance into a base64 string.<br>
  * An exception is thrown if the operation fails.
  * @param aKey key used to encrypt the serialized session data
  * @return a base64 string if operation succeed, null otherwise
  **/
-JNIEXPORT jbyteArray OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(serializeJni)(JNIEnv *env, jobject thiz, jbyteArray aKeyBuffer)
+JNIEXPORT jbyteArray OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(serializeJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jbyteArray aKeyBuffer)
 {
     const char* errorMessage = NULL;
     jbyteArray returnValue = 0;
@@ -386,7 +712,7 @@ JNIEXPORT jbyteArray OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(serializeJni)(JNIEnv *e
 
     LOGD("## outbound group session serializeJni(): IN");
 
-    if (!(sessionPtr = (OlmOutboundGroupSession*)getOutboundGroupSessionInstanceId(env,thiz)))
+    if (!(sessionPtr = (OlmOutboundGroupSession*)aNativeId))
     {
         LOGE(" ## serializeJni(): failure - invalid session ptr");
         errorMessage = "invalid session ptr";
@@ -446,7 +772,7 @@ JNIEXPORT jbyteArray OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(serializeJni)(JNIEnv *e
 
     if (errorMessage)
     {
-        env->ThrowNew(env->FindClass("java/lang/Exception"), errorMessage);
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
     }
 
     return returnValue;
@@ -459,7 +785,7 @@ JNIEXPORT jbyteArray OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(serializeJni)(JNIEnv *e
  * @param aKey the key used to encrypt the serialized account data
  * @return the deserialized session
  **/
-JNIEXPORT jlong OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(deserializeJni)(JNIEnv *env, jobject thiz, jbyteArray aSerializedDataBuffer, jbyteArray aKeyBuffer)
+JNIEXPORT jlong OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(deserializeJni)(JNIEnv *env, jclass clazz, jbyteArray aSerializedDataBuffer, jbyteArray aKeyBuffer)
 {
     const char* errorMessage = NULL;
     size_t sessionSize = olm_outbound_group_session_size();
@@ -475,7 +801,7 @@ JNIEXPORT jlong OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(deserializeJni)(JNIEnv *env,
         LOGE(" ## deserializeJni(): failure - outbound group session size = 0");
         errorMessage = "outbound group session size = 0";
     }
-    else if (!(sessionPtr = (OlmOutboundGroupSession*)malloc(sessionSize)))
+    else if (!(sessionPtr = (OlmOutboundGroupSession*)slabAlloc(SLAB_OUTBOUND_GROUP_SESSION)))
     {
         LOGE(" ## deserializeJni(): failure - session failure OOM");
         errorMessage = "session failure OOM";
@@ -540,9 +866,9 @@ JNIEXPORT jlong OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(deserializeJni)(JNIEnv *env,
         if (sessionPtr)
         {
             olm_clear_outbound_group_session(sessionPtr);
-            free(sessionPtr);
+            slabFree(SLAB_OUTBOUND_GROUP_SESSION, sessionPtr);
         }
-        env->ThrowNew(env->FindClass("java/lang/Exception"), errorMessage);
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
     }
 
     return (jlong)(intptr_t)sessionPtr;
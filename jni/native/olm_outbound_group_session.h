@@ -21,6 +21,7 @@
 #include "olm_jni.h"
 #include "olm/olm.h"
 #include "olm/outbound_group_session.h"
+#include "olm/base64.h"
 
 #define OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(func_name) FUNC_DEF(OlmOutboundGroupSession,func_name)
 
@@ -29,18 +30,23 @@ extern "C" {
 #endif
 
 // session creation/destruction
-JNIEXPORT void OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(releaseSessionJni)(JNIEnv *env, jobject thiz);
-JNIEXPORT jlong OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(createNewSessionJni)(JNIEnv *env, jobject thiz);
+JNIEXPORT void OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(releaseSessionJni)(JNIEnv *env, jclass clazz, jlong aNativeId);
+JNIEXPORT jlong OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(createNewSessionJni)(JNIEnv *env, jclass clazz);
 
-JNIEXPORT jbyteArray OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(sessionIdentifierJni)(JNIEnv *env, jobject thiz);
-JNIEXPORT jint OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(messageIndexJni)(JNIEnv *env, jobject thiz);
-JNIEXPORT jbyteArray OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(sessionKeyJni)(JNIEnv *env, jobject thiz);
+JNIEXPORT jbyteArray OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(sessionIdentifierJni)(JNIEnv *env, jclass clazz, jlong aNativeId);
+JNIEXPORT jint OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(messageIndexJni)(JNIEnv *env, jclass clazz, jlong aNativeId);
+JNIEXPORT jbyteArray OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(sessionKeyJni)(JNIEnv *env, jclass clazz, jlong aNativeId);
 
-JNIEXPORT jbyteArray OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(encryptMessageJni)(JNIEnv *env, jobject thiz, jbyteArray aClearMsgBuffer);
+JNIEXPORT jbyteArray OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(encryptMessageJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jbyteArray aClearMsgBuffer, jint aOffset, jint aLength);
+JNIEXPORT jbyteArray OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(encryptMessagesJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jbyteArray aClearMsgs, jintArray aClearMsgEnds, jint aCount,
+                                                                           jintArray aEncryptedMsgEnds, jlongArray aProgress);
+JNIEXPORT jbyteArray OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(encryptMessageBinaryJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jbyteArray aClearMsgBuffer, jint aOffset, jint aLength);
+JNIEXPORT jint OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(encryptedMessageLengthJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jint aClearMsgLength);
+JNIEXPORT jint OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(encryptMessageBufferJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jobject aClearMsg, jint aClearOffset, jint aClearLength, jobject aEncryptedMsg, jint aEncryptedOffset, jint aEncryptedLength);
 
 // serialization
-JNIEXPORT jbyteArray OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(serializeJni)(JNIEnv *env, jobject thiz, jbyteArray aKey);
-JNIEXPORT jlong OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(deserializeJni)(JNIEnv *env, jobject thiz, jbyteArray aSerializedData, jbyteArray aKey);
+JNIEXPORT jbyteArray OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(serializeJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jbyteArray aKey);
+JNIEXPORT jlong OLM_OUTBOUND_GROUP_SESSION_FUNC_DEF(deserializeJni)(JNIEnv *env, jclass clazz, jbyteArray aSerializedData, jbyteArray aKey);
 
 #ifdef __cplusplus
 }
@@ -39,7 +39,7 @@ OlmPkEncryption * initializePkEncryptionMemory()
     return encryptionPtr;
 }
 
-JNIEXPORT jlong OLM_PK_ENCRYPTION_FUNC_DEF(createNewPkEncryptionJni)(JNIEnv *env, jobject thiz)
+JNIEXPORT jlong OLM_PK_ENCRYPTION_FUNC_DEF(createNewPkEncryptionJni)(JNIEnv *env, jclass clazz)
 {
     const char* errorMessage = NULL;
     OlmPkEncryption *encryptionPtr = initializePkEncryptionMemory();
@@ -64,17 +64,17 @@ JNIEXPORT jlong OLM_PK_ENCRYPTION_FUNC_DEF(createNewPkEncryptionJni)(JNIEnv *env
             olm_clear_pk_encryption(encryptionPtr);
             free(encryptionPtr);
         }
-        env->ThrowNew(env->FindClass("java/lang/Exception"), errorMessage);
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
     }
 
     return (jlong)(intptr_t)encryptionPtr;
 }
 
-JNIEXPORT void OLM_PK_ENCRYPTION_FUNC_DEF(releasePkEncryptionJni)(JNIEnv *env, jobject thiz)
+JNIEXPORT void OLM_PK_ENCRYPTION_FUNC_DEF(releasePkEncryptionJni)(JNIEnv *env, jclass clazz, jlong aNativeId)
 {
     LOGD("## releasePkEncryptionJni(): IN");
 
-    OlmPkEncryption* encryptionPtr = getPkEncryptionInstanceId(env, thiz);
+    OlmPkEncryption* encryptionPtr = (OlmPkEncryption*)aNativeId;
 
     if (!encryptionPtr)
     {
@@ -93,12 +93,12 @@ JNIEXPORT void OLM_PK_ENCRYPTION_FUNC_DEF(releasePkEncryptionJni)(JNIEnv *env, j
     }
 }
 
-JNIEXPORT void OLM_PK_ENCRYPTION_FUNC_DEF(setRecipientKeyJni)(JNIEnv *env, jobject thiz, jbyteArray aKeyBuffer)
+JNIEXPORT void OLM_PK_ENCRYPTION_FUNC_DEF(setRecipientKeyJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jbyteArray aKeyBuffer)
 {
     const char *errorMessage = NULL;
     jbyte *keyPtr = NULL;
 
-    OlmPkEncryption *encryptionPtr = getPkEncryptionInstanceId(env, thiz);
+    OlmPkEncryption *encryptionPtr = (OlmPkEncryption*)aNativeId;
 
     if (!encryptionPtr)
     {
@@ -130,20 +130,17 @@ JNIEXPORT void OLM_PK_ENCRYPTION_FUNC_DEF(setRecipientKeyJni)(JNIEnv *env, jobje
 
     if (errorMessage)
     {
-        env->ThrowNew(env->FindClass("java/lang/Exception"), errorMessage);
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
     }
 }
 
-JNIEXPORT jbyteArray OLM_PK_ENCRYPTION_FUNC_DEF(encryptJni)(JNIEnv *env, jobject thiz, jbyteArray aPlaintextBuffer, jobject aEncryptedMsg)
+JNIEXPORT jbyteArray OLM_PK_ENCRYPTION_FUNC_DEF(encryptJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jbyteArray aPlaintextBuffer, jobject aEncryptedMsg)
 {
     jbyteArray encryptedMsgRet = 0;
     const char* errorMessage = NULL;
     jbyte *plaintextPtr = NULL;
 
-    OlmPkEncryption *encryptionPtr = getPkEncryptionInstanceId(env, thiz);
-    jclass encryptedMsgJClass = 0;
-    jfieldID macFieldId;
-    jfieldID ephemeralFieldId;
+    OlmPkEncryption *encryptionPtr = (OlmPkEncryption*)aNativeId;
 
     if (!encryptionPtr)
     {
@@ -159,20 +156,10 @@ JNIEXPORT jbyteArray OLM_PK_ENCRYPTION_FUNC_DEF(encryptJni)(JNIEnv *env, jobject
         LOGE(" ## pkEncryptJni(): failure - plaintext JNI allocation OOM");
         errorMessage = "plaintext JNI allocation OOM";
     }
-    else if (!(encryptedMsgJClass = env->GetObjectClass(aEncryptedMsg)))
-    {
-        LOGE(" ## pkEncryptJni(): failure - unable to get crypted message class");
-        errorMessage = "unable to get crypted message class";
-    }
-    else if (!(macFieldId = env->GetFieldID(encryptedMsgJClass, "mMac", "Ljava/lang/String;")))
-    {
-        LOGE("## pkEncryptJni(): failure - unable to get MAC field");
-        errorMessage = "unable to get MAC field";
-    }
-    else if (!(ephemeralFieldId = env->GetFieldID(encryptedMsgJClass, "mEphemeralKey", "Ljava/lang/String;")))
+    else if (!aEncryptedMsg)
     {
-        LOGE("## pkEncryptJni(): failure - unable to get ephemeral key field");
-        errorMessage = "unable to get ephemeral key field";
+        LOGE(" ## pkEncryptJni(): failure - invalid encrypted message");
+        errorMessage = "invalid encrypted message";
     }
     else
     {
@@ -229,9 +216,9 @@ JNIEXPORT jbyteArray OLM_PK_ENCRYPTION_FUNC_DEF(encryptJni)(JNIEnv *env, jobject
                 env->SetByteArrayRegion(encryptedMsgRet, 0, ciphertextLength, (jbyte*)ciphertextPtr);
 
                 jstring macStr = env->NewStringUTF((char*)macPtr);
-                env->SetObjectField(aEncryptedMsg, macFieldId, macStr);
+                env->SetObjectField(aEncryptedMsg, gJniCache.pkMessageMacField, macStr);
                 jstring ephemeralStr = env->NewStringUTF((char*)ephemeralPtr);
-                env->SetObjectField(aEncryptedMsg, ephemeralFieldId, ephemeralStr);
+                env->SetObjectField(aEncryptedMsg, gJniCache.pkMessageEphemeralKeyField, ephemeralStr);
             }
         }
 
@@ -261,7 +248,7 @@ JNIEXPORT jbyteArray OLM_PK_ENCRYPTION_FUNC_DEF(encryptJni)(JNIEnv *env, jobject
 
     if (errorMessage)
     {
-        env->ThrowNew(env->FindClass("java/lang/Exception"), errorMessage);
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
     }
 
     return encryptedMsgRet;
@@ -286,7 +273,7 @@ OlmPkDecryption * initializePkDecryptionMemory()
     return decryptionPtr;
 }
 
-JNIEXPORT jlong OLM_PK_DECRYPTION_FUNC_DEF(createNewPkDecryptionJni)(JNIEnv *env, jobject thiz)
+JNIEXPORT jlong OLM_PK_DECRYPTION_FUNC_DEF(createNewPkDecryptionJni)(JNIEnv *env, jclass clazz)
 {
     const char* errorMessage = NULL;
     OlmPkDecryption *decryptionPtr = initializePkDecryptionMemory();
@@ -311,17 +298,17 @@ JNIEXPORT jlong OLM_PK_DECRYPTION_FUNC_DEF(createNewPkDecryptionJni)(JNIEnv *env
             olm_clear_pk_decryption(decryptionPtr);
             free(decryptionPtr);
         }
-        env->ThrowNew(env->FindClass("java/lang/Exception"), errorMessage);
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
     }
 
     return (jlong)(intptr_t)decryptionPtr;
 }
 
-JNIEXPORT void OLM_PK_DECRYPTION_FUNC_DEF(releasePkDecryptionJni)(JNIEnv *env, jobject thiz)
+JNIEXPORT void OLM_PK_DECRYPTION_FUNC_DEF(releasePkDecryptionJni)(JNIEnv *env, jclass clazz, jlong aNativeId)
 {
     LOGD("## releasePkDecryptionJni(): IN");
 
-    OlmPkDecryption* decryptionPtr = getPkDecryptionInstanceId(env, thiz);
+    OlmPkDecryption* decryptionPtr = (OlmPkDecryption*)aNativeId;
 
     if (!decryptionPtr)
     {
@@ -340,7 +327,7 @@ JNIEXPORT void OLM_PK_DECRYPTION_FUNC_DEF(releasePkDecryptionJni)(JNIEnv *env, j
     }
 }
 
-JNIEXPORT jbyteArray OLM_PK_DECRYPTION_FUNC_DEF(generateKeyJni)(JNIEnv *env, jobject thiz)
+JNIEXPORT jbyteArray OLM_PK_DECRYPTION_FUNC_DEF(generateKeyJni)(JNIEnv *env, jclass clazz, jlong aNativeId)
 {
     size_t randomLength = olm_pk_generate_key_random_length();
     uint8_t *randomBuffPtr = NULL;
@@ -350,7 +337,7 @@ JNIEXPORT jbyteArray OLM_PK_DECRYPTION_FUNC_DEF(generateKeyJni)(JNIEnv *env, job
     size_t publicKeyLength = olm_pk_key_length();
     const char* errorMessage = NULL;
 
-    OlmPkDecryption *decryptionPtr = getPkDecryptionInstanceId(env, thiz);
+    OlmPkDecryption *decryptionPtr = (OlmPkDecryption*)aNativeId;
 
     if (!decryptionPtr)
     {
@@ -396,24 +383,20 @@ JNIEXPORT jbyteArray OLM_PK_DECRYPTION_FUNC_DEF(generateKeyJni)(JNIEnv *env, job
             olm_clear_pk_decryption(decryptionPtr);
             free(decryptionPtr);
         }
-        env->ThrowNew(env->FindClass("java/lang/Exception"), errorMessage);
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
     }
 
     return publicKeyRet;
 }
 
-JNIEXPORT jbyteArray OLM_PK_DECRYPTION_FUNC_DEF(decryptJni)(JNIEnv *env, jobject thiz, jobject aEncryptedMsg)
+JNIEXPORT jbyteArray OLM_PK_DECRYPTION_FUNC_DEF(decryptJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jobject aEncryptedMsg)
 {
     const char* errorMessage = NULL;
-    OlmPkDecryption *decryptionPtr = getPkDecryptionInstanceId(env, thiz);
+    OlmPkDecryption *decryptionPtr = (OlmPkDecryption*)aNativeId;
 
-    jclass encryptedMsgJClass = 0;
     jstring ciphertextJstring = 0;
     jstring macJstring = 0;
     jstring ephemeralKeyJstring = 0;
-    jfieldID ciphertextFieldId;
-    jfieldID macFieldId;
-    jfieldID ephemeralKeyFieldId;
 
     const char *ciphertextPtr = NULL;
     const char *macPtr = NULL;
@@ -431,17 +414,7 @@ JNIEXPORT jbyteArray OLM_PK_DECRYPTION_FUNC_DEF(decryptJni)(JNIEnv *env, jobject
         LOGE(" ## pkDecryptJni(): failure - invalid encrypted message");
         errorMessage = "invalid encrypted message";
     }
-    else if (!(encryptedMsgJClass = env->GetObjectClass(aEncryptedMsg)))
-    {
-        LOGE("## pkDecryptJni(): failure - unable to get encrypted message class");
-        errorMessage = "unable to get encrypted message class";
-    }
-    else if (!(ciphertextFieldId = env->GetFieldID(encryptedMsgJClass,"mCipherText","Ljava/lang/String;")))
-    {
-        LOGE("## pkDecryptJni(): failure - unable to get message field");
-        errorMessage = "unable to get message field";
-    }
-    else if (!(ciphertextJstring = (jstring)env->GetObjectField(aEncryptedMsg, ciphertextFieldId)))
+    else if (!(ciphertextJstring = (jstring)env->GetObjectField(aEncryptedMsg, gJniCache.pkMessageCipherTextField)))
     {
         LOGE("## pkDecryptJni(): failure - no ciphertext");
         errorMessage = "no ciphertext";
@@ -451,22 +424,7 @@ JNIEXPORT jbyteArray OLM_PK_DECRYPTION_FUNC_DEF(decryptJni)(JNIEnv *env, jobject
         LOGE("## pkDecryptJni(): failure - ciphertext JNI allocation OOM");
         errorMessage = "ciphertext JNI allocation OOM";
     }
-    else if (!(ciphertextJstring = (jstring)env->GetObjectField(aEncryptedMsg, ciphertextFieldId)))
-    {
-        LOGE("## pkDecryptJni(): failure - no ciphertext");
-        errorMessage = "no ciphertext";
-    }
-    else if (!(ciphertextPtr = env->GetStringUTFChars(ciphertextJstring, 0)))
-    {
-        LOGE("## decryptMessageJni(): failure - ciphertext JNI allocation OOM");
-        errorMessage = "ciphertext JNI allocation OOM";
-    }
-    else if (!(macFieldId = env->GetFieldID(encryptedMsgJClass,"mMac","Ljava/lang/String;")))
-    {
-        LOGE("## pkDecryptJni(): failure - unable to get MAC field");
-        errorMessage = "unable to get MAC field";
-    }
-    else if (!(macJstring = (jstring)env->GetObjectField(aEncryptedMsg, macFieldId)))
+    else if (!(macJstring = (jstring)env->GetObjectField(aEncryptedMsg, gJniCache.pkMessageMacField)))
     {
         LOGE("## pkDecryptJni(): failure - no MAC");
         errorMessage = "no MAC";
@@ -476,12 +434,7 @@ JNIEXPORT jbyteArray OLM_PK_DECRYPTION_FUNC_DEF(decryptJni)(JNIEnv *env, jobject
         LOGE("## pkDecryptJni(): failure - MAC JNI allocation OOM");
         errorMessage = "ciphertext JNI allocation OOM";
     }
-    else if (!(ephemeralKeyFieldId = env->GetFieldID(encryptedMsgJClass,"mEphemeralKey","Ljava/lang/String;")))
-    {
-        LOGE("## pkDecryptJni(): failure - unable to get ephemeral key field");
-        errorMessage = "unable to get ephemeral key field";
-    }
-    else if (!(ephemeralKeyJstring = (jstring)env->GetObjectField(aEncryptedMsg, ephemeralKeyFieldId)))
+    else if (!(ephemeralKeyJstring = (jstring)env->GetObjectField(aEncryptedMsg, gJniCache.pkMessageEphemeralKeyField)))
     {
         LOGE("## pkDecryptJni(): failure - no ephemeral key");
         errorMessage = "no ephemeral key";
@@ -557,7 +510,7 @@ JNIEXPORT jbyteArray OLM_PK_DECRYPTION_FUNC_DEF(decryptJni)(JNIEnv *env, jobject
 
     if (errorMessage)
     {
-        env->ThrowNew(env->FindClass("java/lang/Exception"), errorMessage);
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
     }
 
     return decryptedMsgRet;
@@ -0,0 +1,375 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#ifdef _WIN32
+    // required for rand_s()
+    #define _CRT_RAND_S
+#endif
+
+#include "olm_random.h"
+#include "olm/crypto.h"
+
+#include <atomic>
+#include <mutex>
+
+#ifdef _WIN32
+    #include <stdlib.h>
+#else
+    #include <fcntl.h>
+    #include <unistd.h>
+    #include <errno.h>
+    #include <sys/syscall.h>
+#endif
+
+using namespace AndroidOlmSdk;
+
+namespace
+{
+    // entropy drawn for the initial seed (entropy input + nonce) and for a reseed
+    const size_t SEED_LENGTH = 48;
+    const size_t RESEED_LENGTH = 32;
+
+    // maximum number of bytes per generate call, as specified by SP 800-90A
+    const size_t MAX_GENERATE_LENGTH = 65536;
+
+    /**
+     * HMAC-SHA256 DRBG state of one thread.
+     */
+    struct RandomPool
+    {
+        uint8_t key[SHA256_OUTPUT_LENGTH];
+        uint8_t value[SHA256_OUTPUT_LENGTH];
+        size_t bytesSinceReseed;
+        unsigned int generation;
+        bool seeded;
+
+        RandomPool() : bytesSinceReseed(0), generation(0), seeded(false)
+        {
+        }
+
+        ~RandomPool()
+        {
+            // do not leave the state behind when the thread exits
+            volatile uint8_t *ptr = key;
+            for (size_t i = 0; i < sizeof(key); i++)
+            {
+                ptr[i] = 0;
+            }
+            ptr = value;
+            for (size_t i = 0; i < sizeof(value); i++)
+            {
+                ptr[i] = 0;
+            }
+        }
+    };
+
+    thread_local RandomPool tPool;
+
+    std::mutex gSourceMutex;
+    jobject gSourceRef = 0;
+    std::atomic<unsigned int> gSourceGeneration(1);
+
+    void clearMemory(uint8_t *aBuffer, size_t aLength)
+    {
+        volatile uint8_t *ptr = aBuffer;
+        for (size_t i = 0; i < aLength; i++)
+        {
+            ptr[i] = 0;
+        }
+    }
+
+    /**
+     * HMAC_DRBG_Update(): mix the provided data into the pool state.
+     */
+    void poolUpdate(RandomPool &aPool, const uint8_t *aData, size_t aDataLength)
+    {
+        uint8_t input[SHA256_OUTPUT_LENGTH + 1 + SEED_LENGTH];
+        size_t inputLength = SHA256_OUTPUT_LENGTH + 1 + aDataLength;
+
+        if (aDataLength)
+        {
+            memcpy(input + SHA256_OUTPUT_LENGTH + 1, aData, aDataLength);
+        }
+
+        for (uint8_t round = 0; round < 2; round++)
+        {
+            memcpy(input, aPool.value, SHA256_OUTPUT_LENGTH);
+            input[SHA256_OUTPUT_LENGTH] = round;
+            _olm_crypto_hmac_sha256(aPool.key, SHA256_OUTPUT_LENGTH, input, inputLength, aPool.key);
+            _olm_crypto_hmac_sha256(aPool.key, SHA256_OUTPUT_LENGTH, aPool.value, SHA256_OUTPUT_LENGTH, aPool.value);
+
+            if (!aDataLength)
+            {
+                break;
+            }
+        }
+
+        clearMemory(input, sizeof(input));
+    }
+
+    /**
+     * HMAC_DRBG_Generate(): produce at most MAX_GENERATE_LENGTH bytes.
+     */
+    void poolGenerate(RandomPool &aPool, uint8_t *aBuffer, size_t aLength)
+    {
+        while (aLength)
+        {
+            size_t chunk = (aLength < SHA256_OUTPUT_LENGTH) ? aLength : SHA256_OUTPUT_LENGTH;
+
+            _olm_crypto_hmac_sha256(aPool.key, SHA256_OUTPUT_LENGTH, aPool.value, SHA256_OUTPUT_LENGTH, aPool.value);
+            memcpy(aBuffer, aPool.value, chunk);
+            aBuffer += chunk;
+            aLength -= chunk;
+        }
+
+        poolUpdate(aPool, NULL, 0);
+    }
+
+    /**
+     * Read entropy from the operating system.
+     */
+    bool systemEntropy(uint8_t *aBuffer, size_t aLength)
+    {
+#ifdef _WIN32
+        while (aLength)
+        {
+            unsigned int value;
+
+            if (rand_s(&value))
+            {
+                return false;
+            }
+
+            size_t chunk = (aLength < sizeof(value)) ? aLength : sizeof(value);
+            memcpy(aBuffer, &value, chunk);
+            aBuffer += chunk;
+            aLength -= chunk;
+        }
+
+        return true;
+#else
+#ifdef SYS_getrandom
+        size_t offset = 0;
+
+        while (offset < aLength)
+        {
+            long result = syscall(SYS_getrandom, aBuffer + offset, aLength - offset, 0);
+
+            if (result > 0)
+            {
+                offset += (size_t)result;
+            }
+            else if ((result < 0) && (EINTR != errno))
+            {
+                break;
+            }
+        }
+
+        if (offset == aLength)
+        {
+            return true;
+        }
+#endif
+        int fd = open("/dev/urandom", O_RDONLY);
+        bool retCode = (fd >= 0);
+
+        while (retCode && aLength)
+        {
+            ssize_t result = read(fd, aBuffer, aLength);
+
+            if (result > 0)
+            {
+                aBuffer += result;
+                aLength -= (size_t)result;
+            }
+            else if ((result == 0) || (EINTR != errno))
+            {
+                retCode = false;
+            }
+        }
+
+        if (fd >= 0)
+        {
+            close(fd);
+        }
+
+        return retCode;
+#endif
+    }
+
+    /**
+     * Read entropy by calling nextBytes() on a java object.<br>
+     * aLength must not exceed SEED_LENGTH.
+     */
+    bool javaEntropy(JNIEnv *env, jobject aSource, jmethodID aNextBytesMethod, uint8_t *aBuffer, size_t aLength)
+    {
+        bool retCode = false;
+        jbyteArray tempByteArray = env->NewByteArray(aLength);
+
+        if (tempByteArray)
+        {
+            env->CallVoidMethod(aSource, aNextBytesMethod, tempByteArray);
+
+            if (env->ExceptionCheck())
+            {
+                LOGE("## javaEntropy(): failure - exception in nextBytes()");
+                env->ExceptionClear();
+            }
+            else
+            {
+                env->GetByteArrayRegion(tempByteArray, 0, aLength, (jbyte*)aBuffer);
+                retCode = true;
+            }
+
+            // clear tempByteArray to hide sensitive data.
+            jbyte zero[SEED_LENGTH] = {0};
+            env->SetByteArrayRegion(tempByteArray, 0, aLength, zero);
+            env->DeleteLocalRef(tempByteArray);
+        }
+
+        return retCode;
+    }
+
+    /**
+     * Fetch seed material: from the registered OlmEntropySource if there is one,
+     * otherwise from the operating system, falling back to java.security.SecureRandom.
+     */
+    bool collectEntropy(JNIEnv *env, uint8_t *aBuffer, size_t aLength)
+    {
+        bool retCode = false;
+        jobject source = 0;
+
+        {
+            std::lock_guard<std::mutex> lock(gSourceMutex);
+            if (gSourceRef)
+            {
+                source = env->NewLocalRef(gSourceRef);
+            }
+        }
+
+        if (source)
+        {
+            retCode = javaEntropy(env, source, gJniCache.entropySourceNextBytesMethod, aBuffer, aLength);
+            env->DeleteLocalRef(source);
+        }
+        else if (!(retCode = systemEntropy(aBuffer, aLength)))
+        {
+            LOGW("## collectEntropy(): system entropy unavailable, using SecureRandom");
+            jobject secureRandom = env->NewObject(gJniCache.secureRandomClass, gJniCache.secureRandomCtor);
+
+            if (secureRandom)
+            {
+                retCode = javaEntropy(env, secureRandom, gJniCache.secureRandomNextBytesMethod, aBuffer, aLength);
+                env->DeleteLocalRef(secureRandom);
+            }
+        }
+
+        return retCode;
+    }
+
+    /**
+     * Seed or reseed the pool of the calling thread.
+     */
+    bool poolSeed(JNIEnv *env, RandomPool &aPool, unsigned int aGeneration)
+    {
+        uint8_t seed[SEED_LENGTH];
+        // a new entropy source must fully determine the pool state
+        bool instantiate = !aPool.seeded || (aPool.generation != aGeneration);
+        size_t seedLength = instantiate ? SEED_LENGTH : RESEED_LENGTH;
+
+        if (!collectEntropy(env, seed, seedLength))
+        {
+            LOGE("## poolSeed(): failure - no entropy");
+            return false;
+        }
+
+        if (instantiate)
+        {
+            memset(aPool.key, 0x00, SHA256_OUTPUT_LENGTH);
+            memset(aPool.value, 0x01, SHA256_OUTPUT_LENGTH);
+        }
+
+        poolUpdate(aPool, seed, seedLength);
+        clearMemory(seed, sizeof(seed));
+
+        aPool.bytesSinceReseed = 0;
+        aPool.generation = aGeneration;
+        aPool.seeded = true;
+
+        return true;
+    }
+}
+
+bool AndroidOlmSdk::randomPoolBytes(JNIEnv *env, uint8_t *aBuffer, size_t aLength)
+{
+    RandomPool &pool = tPool;
+    unsigned int generation = gSourceGeneration.load(std::memory_order_acquire);
+
+    if (!pool.seeded || (pool.generation != generation) || (pool.bytesSinceReseed >= RANDOM_POOL_RESEED_INTERVAL))
+    {
+        if (!poolSeed(env, pool, generation))
+        {
+            return false;
+        }
+    }
+
+    while (aLength)
+    {
+        size_t chunk = (aLength < MAX_GENERATE_LENGTH) ? aLength : MAX_GENERATE_LENGTH;
+
+        poolGenerate(pool, aBuffer, chunk);
+        pool.bytesSinceReseed += chunk;
+        aBuffer += chunk;
+        aLength -= chunk;
+    }
+
+    return true;
+}
+
+void AndroidOlmSdk::setRandomEntropySource(JNIEnv *env, jobject aSource)
+{
+    jobject newRef = aSource ? env->NewGlobalRef(aSource) : 0;
+    jobject oldRef;
+
+    {
+        std::lock_guard<std::mutex> lock(gSourceMutex);
+        oldRef = gSourceRef;
+        gSourceRef = newRef;
+        gSourceGeneration.fetch_add(1, std::memory_order_acq_rel);
+    }
+
+    if (oldRef)
+    {
+        env->DeleteGlobalRef(oldRef);
+    }
+}
+
+void AndroidOlmSdk::releaseRandomEntropySource(JNIEnv *env)
+{
+    jobject oldRef;
+
+    {
+        std::lock_guard<std::mutex> lock(gSourceMutex);
+        oldRef = gSourceRef;
+        gSourceRef = 0;
+    }
+
+    if (oldRef)
+    {
+        env->DeleteGlobalRef(oldRef);
+    }
+}
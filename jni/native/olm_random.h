@@ -0,0 +1,55 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#ifndef _OMLRANDOM_H
+#define _OMLRANDOM_H
+
+#include "olm_jni.h"
+
+namespace AndroidOlmSdk
+{
+    // bytes served by a pool before it is reseeded from the entropy source
+    static const size_t RANDOM_POOL_RESEED_INTERVAL = 1024 * 1024;
+
+    /**
+     * Fill a buffer from the calling thread's random pool.<br>
+     * The pool is an HMAC-SHA256 DRBG (NIST SP 800-90A) seeded from the entropy source
+     * on first use, after RANDOM_POOL_RESEED_INTERVAL bytes and whenever the entropy
+     * source is changed. The entropy source is only queried when (re)seeding.
+     * @param env pointer pointing on the JNI function table
+     * @param aBuffer the buffer to be filled
+     * @param aLength the number of random bytes
+     * @return true if operation succeed, false otherwise
+     */
+    bool randomPoolBytes(JNIEnv *env, uint8_t *aBuffer, size_t aLength);
+
+    /**
+     * Replace the entropy source used to seed the random pools.<br>
+     * Every pool is reseeded before serving further bytes.
+     * @param env pointer pointing on the JNI function table
+     * @param aSource an org.matrix.olm.OlmEntropySource, or NULL to use the operating system
+     */
+    void setRandomEntropySource(JNIEnv *env, jobject aSource);
+
+    /**
+     * Drop the global reference to the entropy source, if any.
+     * @param env pointer pointing on the JNI function table
+     */
+    void releaseRandomEntropySource(JNIEnv *env);
+}
+
+#endif
@@ -16,6 +16,10 @@
  */
 
 #include "olm_session.h"
+#include "olm_slab.h"
+
+#include <algorithm>
+#include <vector>
 
 using namespace AndroidOlmSdk;
 
@@ -26,14 +30,13 @@ using namespace AndroidOlmSdk;
 **/
 OlmSession* initializeSessionMemory()
 {
-    size_t sessionSize = olm_session_size();
-    OlmSession* sessionPtr = (OlmSession*)malloc(sessionSize);
+    OlmSession* sessionPtr = (OlmSession*)slabAlloc(SLAB_SESSION);
 
     if (sessionPtr)
     {
         // init session object
         sessionPtr = olm_session(sessionPtr);
-        LOGD("## initializeSessionMemory(): success - OLM session size=%lu",static_cast<long unsigned int>(sessionSize));
+        LOGD("## initializeSessionMemory(): success - OLM session");
     }
     else
     {
@@ -43,7 +46,7 @@ OlmSession* initializeSessionMemory()
     return sessionPtr;
 }
 
-JNIEXPORT jlong OLM_SESSION_FUNC_DEF(createNewSessionJni)(JNIEnv *env, jobject thiz)
+JNIEXPORT jlong OLM_SESSION_FUNC_DEF(createNewSessionJni)(JNIEnv *env, jclass clazz)
 {
     LOGD("## createNewSessionJni(): IN");
     OlmSession* accountPtr = initializeSessionMemory();
@@ -51,7 +54,7 @@ JNIEXPORT jlong OLM_SESSION_FUNC_DEF(createNewSessionJni)(JNIEnv *env, jobject t
     if (!accountPtr)
     {
         LOGE("## initNewAccount(): failure - init session OOM");
-        env->ThrowNew(env->FindClass("java/lang/Exception"), "init session OOM");
+        env->ThrowNew(gJniCache.exceptionClass, "init session OOM");
     }
     else
     {
@@ -61,10 +64,10 @@ JNIEXPORT jlong OLM_SESSION_FUNC_DEF(createNewSessionJni)(JNIEnv *env, jobject t
     return (jlong)(intptr_t)accountPtr;
 }
 
-JNIEXPORT void OLM_SESSION_FUNC_DEF(releaseSessionJni)(JNIEnv *env, jobject thiz)
+JNIEXPORT void OLM_SESSION_FUNC_DEF(releaseSessionJni)(JNIEnv *env, jclass clazz, jlong aNativeId)
 {
     LOGD("## releaseSessionJni(): IN");
-    OlmSession* sessionPtr = getSessionInstanceId(env, thiz);
+    OlmSession* sessionPtr = (OlmSession*)aNativeId;
 
     if (!sessionPtr)
     {
@@ -75,7 +78,7 @@ JNIEXPORT void OLM_SESSION_FUNC_DEF(releaseSessionJni)(JNIEnv *env, jobject thiz
         olm_clear_session(sessionPtr);
 
         // even if free(NULL) does not crash, logs are performed for debug purpose
-        free(sessionPtr);
+        slabFree(SLAB_SESSION, sessionPtr);
     }
 }
 
@@ -90,9 +93,9 @@ JNIEXPORT void OLM_SESSION_FUNC_DEF(releaseSessionJni)(JNIEnv *env, jobject thiz
  * @param aTheirIdentityKey the identity key of the recipient
  * @param aTheirOneTimeKey the one time key of the recipient or an exception is thrown
  **/
-JNIEXPORT void OLM_SESSION_FUNC_DEF(initOutboundSessionJni)(JNIEnv *env, jobject thiz, jlong aOlmAccountId, jbyteArray aTheirIdentityKeyBuffer, jbyteArray aTheirOneTimeKeyBuffer)
+JNIEXPORT void OLM_SESSION_FUNC_DEF(initOutboundSessionJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jlong aOlmAccountId, jbyteArray aTheirIdentityKeyBuffer, jbyteArray aTheirOneTimeKeyBuffer)
 {
-    OlmSession* sessionPtr = getSessionInstanceId(env, thiz);
+    OlmSession* sessionPtr = (OlmSession*)aNativeId;
     const char* errorMessage = NULL;
     OlmAccount* accountPtr = NULL;
 
@@ -183,7 +186,7 @@ JNIEXPORT void OLM_SESSION_FUNC_DEF(initOutboundSessionJni)(JNIEnv *env, jobject
 
     if (errorMessage)
     {
-        env->ThrowNew(env->FindClass("java/lang/Exception"), errorMessage);
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
     }
 }
 
@@ -198,10 +201,10 @@ JNIEXPORT void OLM_SESSION_FUNC_DEF(initOutboundSessionJni)(JNIEnv *env, jobject
  * @param aOlmAccountId account instance
  * @param aOneTimeKeyMsg PRE_KEY message
  */
-JNIEXPORT void OLM_SESSION_FUNC_DEF(initInboundSessionJni)(JNIEnv *env, jobject thiz, jlong aOlmAccountId, jbyteArray aOneTimeKeyMsgBuffer)
+JNIEXPORT void OLM_SESSION_FUNC_DEF(initInboundSessionJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jlong aOlmAccountId, jbyteArray aOneTimeKeyMsgBuffer)
 {
     const char* errorMessage = NULL;
-    OlmSession *sessionPtr = getSessionInstanceId(env,thiz);
+    OlmSession *sessionPtr = (OlmSession*)aNativeId;
     OlmAccount *accountPtr = NULL;
     size_t sessionResult;
 
@@ -253,7 +256,7 @@ JNIEXPORT void OLM_SESSION_FUNC_DEF(initInboundSessionJni)(JNIEnv *env, jobject
 
     if (errorMessage)
     {
-        env->ThrowNew(env->FindClass("java/lang/Exception"), errorMessage);
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
     }
 }
 
@@ -265,11 +268,11 @@ JNIEXPORT void OLM_SESSION_FUNC_DEF(initInboundSessionJni)(JNIEnv *env, jobject
  * @param aTheirIdentityKey the identity key of the recipient
  * @param aOneTimeKeyMsg encrypted message
  */
-JNIEXPORT void OLM_SESSION_FUNC_DEF(initInboundSessionFromIdKeyJni)(JNIEnv *env, jobject thiz, jlong aOlmAccountId, jbyteArray aTheirIdentityKeyBuffer, jbyteArray aOneTimeKeyMsgBuffer)
+JNIEXPORT void OLM_SESSION_FUNC_DEF(initInboundSessionFromIdKeyJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jlong aOlmAccountId, jbyteArray aTheirIdentityKeyBuffer, jbyteArray aOneTimeKeyMsgBuffer)
 {
     const char* errorMessage = NULL;
 
-    OlmSession *sessionPtr = getSessionInstanceId(env, thiz);
+    OlmSession *sessionPtr = (OlmSession*)aNativeId;
     OlmAccount *accountPtr = NULL;
     jbyte *messagePtr = NULL;
     jbyte *theirIdentityKeyPtr = NULL;
@@ -337,7 +340,7 @@ JNIEXPORT void OLM_SESSION_FUNC_DEF(initInboundSessionFromIdKeyJni)(JNIEnv *env,
 
      if (errorMessage)
      {
-         env->ThrowNew(env->FindClass("java/lang/Exception"), errorMessage);
+         env->ThrowNew(gJniCache.exceptionClass, errorMessage);
      }
 }
 
@@ -347,10 +350,10 @@ JNIEXPORT void OLM_SESSION_FUNC_DEF(initInboundSessionFromIdKeyJni)(JNIEnv *env,
  * @param aOneTimeKeyMsg PRE KEY message
  * @return true if the PRE_KEY message matches
  */
-JNIEXPORT jboolean OLM_SESSION_FUNC_DEF(matchesInboundSessionJni)(JNIEnv *env, jobject thiz, jbyteArray aOneTimeKeyMsgBuffer)
+JNIEXPORT jboolean OLM_SESSION_FUNC_DEF(matchesInboundSessionJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jbyteArray aOneTimeKeyMsgBuffer)
 {
     jboolean retCode = JNI_FALSE;
-    OlmSession *sessionPtr = getSessionInstanceId(env, thiz);
+    OlmSession *sessionPtr = (OlmSession*)aNativeId;
     jbyte *messagePtr = NULL;
 
     if (!sessionPtr)
@@ -398,10 +401,10 @@ JNIEXPORT jboolean OLM_SESSION_FUNC_DEF(matchesInboundSessionJni)(JNIEnv *env, j
  * @param aOneTimeKeyMsg PRE KEY message
  * @return true if the PRE_KEY message matches.
  */
-JNIEXPORT jboolean JNICALL OLM_SESSION_FUNC_DEF(matchesInboundSessionFromIdKeyJni)(JNIEnv *env, jobject thiz, jbyteArray aTheirIdentityKeyBuffer, jbyteArray aOneTimeKeyMsgBuffer)
+JNIEXPORT jboolean JNICALL OLM_SESSION_FUNC_DEF(matchesInboundSessionFromIdKeyJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jbyteArray aTheirIdentityKeyBuffer, jbyteArray aOneTimeKeyMsgBuffer)
 {
     jboolean retCode = JNI_FALSE;
-    OlmSession *sessionPtr = getSessionInstanceId(env, thiz);
+    OlmSession *sessionPtr = (OlmSession*)aNativeId;
     jbyte *messagePtr = NULL;
     jbyte *theirIdentityKeyPtr = NULL;
 
@@ -464,17 +467,15 @@ JNIEXPORT jboolean JNICALL OLM_SESSION_FUNC_DEF(matchesInboundSessionFromIdKeyJn
  * @param aClearMsg clear text message
  * @return the encrypted message
  */
-JNIEXPORT jobject OLM_SESSION_FUNC_DEF(encryptMessageJni)(JNIEnv *env, jobject thiz, jbyteArray aClearMsgBuffer)
+JNIEXPORT jobject OLM_SESSION_FUNC_DEF(encryptMessageJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jbyteArray aClearMsgBuffer)
 {
 	jbyteArray encryptedMsgRet = 0;
 	jlong encryptedMsgType = 0;
     jobject encryptedMsg = 0;
     const char* errorMessage = NULL;
 
-    OlmSession *sessionPtr = getSessionInstanceId(env, thiz);
+    OlmSession *sessionPtr = (OlmSession*)aNativeId;
     jbyte *clearMsgPtr = NULL;
-    jclass encryptedMsgJClass = 0;
-    jmethodID encryptedMsgCtor = 0;
 
     LOGD("## encryptMessageJni(): IN ");
 
@@ -493,16 +494,6 @@ JNIEXPORT jobject OLM_SESSION_FUNC_DEF(encryptMessageJni)(JNIEnv *env, jobject t
         LOGE("## encryptMessageJni(): failure - clear message JNI allocation OOM");
         errorMessage = "clear message JNI allocation OOM";
     }
-    else if (!(encryptedMsgJClass = env->FindClass("org/matrix/olm/OlmMessage")))
-    {
-        LOGE("## encryptMessageJni(): failure - unable to get message class");
-        errorMessage = "unable to get crypted message class";
-    }
-    else if (!(encryptedMsgCtor = env->GetMethodID(encryptedMsgJClass, "<init>", "([BI)V")))
-    {
-        LOGE("## encryptMessageJni(): failure - unable to get message class constructor");
-        errorMessage = "unable to get message type field";
-    }
     else
     {
         // get message type
@@ -563,7 +554,7 @@ JNIEXPORT jobject OLM_SESSION_FUNC_DEF(encryptMessageJni)(JNIEnv *env, jobject t
                 	encryptedMsgRet = env->NewByteArray(encryptedMsgLength);
                     env->SetByteArrayRegion(encryptedMsgRet, 0 , encryptedMsgLength, (jbyte*)encryptedMsgPtr);
 
-                    encryptedMsg = env->NewObject(encryptedMsgJClass, encryptedMsgCtor, encryptedMsgRet, encryptedMsgType);
+                    encryptedMsg = env->NewObject(gJniCache.olmMessageClass, gJniCache.olmMessageCtor, encryptedMsgRet, encryptedMsgType);
 
                     LOGD("## encryptMessageJni(): success - result=%lu Type=%lu encryptedMsg=%.*s", static_cast<long unsigned int>(result), static_cast<unsigned long int>(messageType), static_cast<int>(result), (const char*)encryptedMsgPtr);
                 }
@@ -584,124 +575,402 @@ JNIEXPORT jobject OLM_SESSION_FUNC_DEF(encryptMessageJni)(JNIEnv *env, jobject t
 
     if (errorMessage)
     {
-        env->ThrowNew(env->FindClass("java/lang/Exception"), errorMessage);
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
     }
 
     return encryptedMsg;
 }
 
 /**
- * Decrypt a message using the session.<br>
- * An exception is thrown if the operation fails.
- * @param aEncryptedMsg message to decrypt
- * @param aEncryptedMsgType type of the message
- * @return decrypted message if operation succeed
+ * Encrypt one message with many sessions, in a single native call.<br>
+ * The clear message is pinned once, and the random data of all the sessions is generated at once.
+ * Each encryption holds the monitor of its session object, as OlmFanOutEncryptor does.
+ * A session which fails does not abort the call: its entry of aEncryptedMsgs is left null.
+ * An exception is thrown if the parameters are invalid.
+ * @param aClearMsg clear text message
+ * @param aSessions the session objects, locked around their encryption
+ * @param aNativeIds the native session instance identifiers, 0 for a session which is not usable
+ * @param aEncryptedMsgs receives the encrypted message of each session
+ * @return the number of sessions which failed
  */
-JNIEXPORT jbyteArray OLM_SESSION_FUNC_DEF(decryptMessageJni)(JNIEnv *env, jobject thiz, jbyteArray aEncryptedMsg, jint aEncryptedMsgType)
+JNIEXPORT jint OLM_SESSION_FUNC_DEF(encryptForAllJni)(JNIEnv *env, jclass clazz, jbyteArray aClearMsgBuffer, jobjectArray aSessions, jlongArray aNativeIds, jobjectArray aEncryptedMsgs)
 {
     const char* errorMessage = NULL;
+    jint failures = 0;
+    jbyte *clearMsgPtr = NULL;
+    uint8_t *randomBuffPtr = NULL;
+    size_t randomLength = 0;
+    size_t scratchLength = 0;
 
-    jbyteArray decryptedMsgRet = 0;
+    LOGD("## encryptForAllJni(): IN ");
 
-    // ptrs
-    OlmSession *sessionPtr = getSessionInstanceId(env, thiz);
-    jbyte *encryptedMsgPtr = NULL;
-    uint8_t *plainTextMsgPtr = NULL;
-    char *tempEncryptedPtr = NULL;
+    if (!aClearMsgBuffer || !aSessions || !aNativeIds || !aEncryptedMsgs
+        || (env->GetArrayLength(aSessions) < env->GetArrayLength(aNativeIds))
+        || (env->GetArrayLength(aEncryptedMsgs) < env->GetArrayLength(aNativeIds)))
+    {
+        LOGE("## encryptForAllJni(): failure - invalid parameters");
+        errorMessage = "invalid parameters";
+    }
+    else
+    {
+        jsize count = env->GetArrayLength(aNativeIds);
+        size_t clearMsgLength = (size_t)env->GetArrayLength(aClearMsgBuffer);
+        std::vector<jlong> nativeIds(count);
+        std::vector<size_t> randomLengths(count, 0);
 
-    LOGD("## decryptMessageJni(): IN - OlmSession");
+        env->GetLongArrayRegion(aNativeIds, 0, count, nativeIds.data());
+
+        // the random data of every session is generated at once; a session which needs more
+        // once it is locked, e.g. listed twice, gets its own random data
+        for (jsize i = 0; i < count; i++)
+        {
+            OlmSession *sessionPtr = (OlmSession*)nativeIds[i];
+            if (sessionPtr)
+            {
+                randomLengths[i] = olm_encrypt_random_length(sessionPtr);
+                randomLength += randomLengths[i];
+            }
+        }
+
+        if ((0 != randomLength) && !setRandomInBuffer(env, &randomBuffPtr, randomLength))
+        {
+            LOGE("## encryptForAllJni(): failure - random buffer init");
+            errorMessage = "random buffer init";
+        }
+        else if (!(clearMsgPtr = env->GetByteArrayElements(aClearMsgBuffer, 0)))
+        {
+            LOGE("## encryptForAllJni(): failure - clear message JNI allocation OOM");
+            errorMessage = "clear message JNI allocation OOM";
+        }
+        else
+        {
+            uint8_t *sessionRandomPtr = randomBuffPtr;
+
+            for (jsize i = 0; i < count; i++)
+            {
+                OlmSession *sessionPtr = (OlmSession*)nativeIds[i];
+                uint8_t *randomPtr = sessionRandomPtr;
+                sessionRandomPtr += randomLengths[i];
+
+                if (!sessionPtr)
+                {
+                    failures++;
+                    continue;
+                }
+
+                jobject session = env->GetObjectArrayElement(aSessions, i);
+                if (!session || (JNI_OK != env->MonitorEnter(session)))
+                {
+                    LOGE("## encryptForAllJni(): failure - session %d can not be locked", static_cast<int>(i));
+                    errorMessage = "session lock failure";
+                    break;
+                }
+
+                // the lengths are read under the lock: the session may have encrypted since, even earlier in this call
+                uint8_t *extraRandomPtr = NULL;
+                size_t sessionRandomLength = olm_encrypt_random_length(sessionPtr);
+                size_t messageType = olm_encrypt_message_type(sessionPtr);
+                size_t encryptedMsgLength = olm_encrypt_message_length(sessionPtr, clearMsgLength);
+                uint8_t *encryptedMsgPtr = getScratchBuffer(encryptedMsgLength);
+                size_t result = olm_error();
+
+                if (sessionRandomLength > randomLengths[i])
+                {
+                    randomPtr = setRandomInBuffer(env, &extraRandomPtr, sessionRandomLength) ? extraRandomPtr : NULL;
+                }
+
+                if (encryptedMsgPtr)
+                {
+                    scratchLength = std::max(scratchLength, encryptedMsgLength);
+                }
+
+                if (!encryptedMsgPtr || ((0 != sessionRandomLength) && !randomPtr))
+                {
+                    LOGE("## encryptForAllJni(): failure - session %d buffers OOM", static_cast<int>(i));
+                }
+                else
+                {
+                    result = olm_encrypt(sessionPtr,
+                                         (void const *)clearMsgPtr,
+                                         clearMsgLength,
+                                         randomPtr,
+                                         sessionRandomLength,
+                                         encryptedMsgPtr,
+                                         encryptedMsgLength);
+
+                    if (result == olm_error())
+                    {
+                        LOGE("## encryptForAllJni(): failure - session %d Msg=%s", static_cast<int>(i), olm_session_last_error(sessionPtr));
+                    }
+                }
+
+                env->MonitorExit(session);
+                env->DeleteLocalRef(session);
+
+                if (extraRandomPtr)
+                {
+                    memset(extraRandomPtr, 0, sessionRandomLength);
+                    free(extraRandomPtr);
+                }
+
+                if (result == olm_error())
+                {
+                    failures++;
+                    continue;
+                }
+
+                jbyteArray encryptedMsgRet = env->NewByteArray(result);
+                jobject encryptedMsg = NULL;
+
+                if (encryptedMsgRet)
+                {
+                    env->SetByteArrayRegion(encryptedMsgRet, 0, result, (jbyte*)encryptedMsgPtr);
+                    encryptedMsg = env->NewObject(gJniCache.olmMessageClass, gJniCache.olmMessageCtor, encryptedMsgRet, (jlong)messageType);
+                }
+
+                if (!encryptedMsg)
+                {
+                    LOGE("## encryptForAllJni(): failure - encrypted message OOM");
+                    errorMessage = "encrypted message OOM";
+                    break;
+                }
+
+                env->SetObjectArrayElement(aEncryptedMsgs, i, encryptedMsg);
+
+                // a local reference per session would overflow the local frame on large fan-outs
+                env->DeleteLocalRef(encryptedMsg);
+                env->DeleteLocalRef(encryptedMsgRet);
+            }
+
+            LOGD("## encryptForAllJni(): count=%d failures=%d", static_cast<int>(count), static_cast<int>(failures));
+        }
+    }
+
+    // free alloc
+    if (0 != scratchLength)
+    {
+        clearScratchBuffer(getScratchBuffer(scratchLength), scratchLength);
+    }
+
+    if (randomBuffPtr)
+    {
+        memset(randomBuffPtr, 0, randomLength);
+        free(randomBuffPtr);
+    }
+
+    if (clearMsgPtr)
+    {
+        env->ReleaseByteArrayElements(aClearMsgBuffer, clearMsgPtr, JNI_ABORT);
+    }
+
+    if (errorMessage)
+    {
+        if (!env->ExceptionCheck())
+        {
+            env->ThrowNew(gJniCache.exceptionClass, errorMessage);
+        }
+    }
+
+    return failures;
+}
+
+/**
+ * Decrypt a java array into the scratch buffer of the calling thread.<br>
+ * The ciphertext is copied once into the scratch buffer and base64-decoded a single time
+ * by olm_decrypt(); the plaintext follows it in the scratch buffer.
+ * The caller must wipe the plaintext with clearScratchBuffer() once consumed.
+ * @param aEncryptedMsg the encrypted message
+ * @param aEncryptedMsgType type of the message
+ * @param aPlainTextPtr receives the plaintext address
+ * @param aErrorMessage receives the error message on failure
+ * @return the plaintext length, olm_error() if the operation failed
+ */
+static size_t sessionDecrypt(JNIEnv *env, OlmSession *sessionPtr, jbyteArray aEncryptedMsg, jint aEncryptedMsgType,
+                             uint8_t **aPlainTextPtr, const char **aErrorMessage)
+{
+    size_t plaintextLength = olm_error();
+    uint8_t *scratchPtr = NULL;
+    size_t encryptedMsgLength = aEncryptedMsg ? (size_t)env->GetArrayLength(aEncryptedMsg) : 0;
+
+    // the plaintext is never longer than the decoded message: 3 bytes per 4 base64 characters
+    size_t maxPlainTextLength = (encryptedMsgLength * 3) / 4;
 
     if (!sessionPtr)
     {
-        LOGE("## decryptMessageJni(): failure - invalid Session ptr=NULL");
-        errorMessage = "invalid Session ptr=NULL";
+        LOGE("## sessionDecrypt(): failure - invalid Session ptr=NULL");
+        *aErrorMessage = "invalid Session ptr=NULL";
     }
     else if (!aEncryptedMsg)
     {
-        LOGE("## decryptMessageJni(): failure - invalid encrypted message");
-        errorMessage = "invalid encrypted message";
+        LOGE("## sessionDecrypt(): failure - invalid encrypted message");
+        *aErrorMessage = "invalid encrypted message";
     }
-    else if (!(encryptedMsgPtr = env->GetByteArrayElements(aEncryptedMsg, 0)))
+    else if (!(scratchPtr = getScratchBuffer(encryptedMsgLength + maxPlainTextLength)))
     {
-        LOGE("## decryptMessageJni(): failure - encrypted message JNI allocation OOM");
-        errorMessage = "encrypted message JNI allocation OOM";
+        LOGE("## sessionDecrypt(): failure - scratch buffer allocation OOM");
+        *aErrorMessage = "scratch buffer allocation OOM";
     }
     else
     {
-        // get message type
-        size_t encryptedMsgType = (size_t)aEncryptedMsgType;
-        // get encrypted message length
-        size_t encryptedMsgLength = (size_t)env->GetArrayLength(aEncryptedMsg);
-
-        // create a dedicated temp buffer to be used in next Olm API calls
-        tempEncryptedPtr = static_cast<char*>(malloc(encryptedMsgLength*sizeof(uint8_t)));
-        memcpy(tempEncryptedPtr, encryptedMsgPtr, encryptedMsgLength);
-        LOGD("## decryptMessageJni(): MsgType=%lu encryptedMsgLength=%lu encryptedMsg=%.*s",static_cast<long unsigned int>(encryptedMsgType),static_cast<long unsigned int>(encryptedMsgLength), static_cast<int>(encryptedMsgLength), encryptedMsgPtr);
-
-        // get max plaintext length
-        size_t maxPlainTextLength = olm_decrypt_max_plaintext_length(sessionPtr,
-                                                                     static_cast<size_t>(encryptedMsgType),
-                                                                     static_cast<void*>(tempEncryptedPtr),
-                                                                     encryptedMsgLength);
-        // Note: tempEncryptedPtr is destroyed by olm_decrypt_max_plaintext_length()
-
-        if (maxPlainTextLength == olm_error())
+        env->GetByteArrayRegion(aEncryptedMsg, 0, encryptedMsgLength, (jbyte*)scratchPtr);
+        LOGD("## sessionDecrypt(): MsgType=%d encryptedMsgLength=%lu maxPlaintextLength=%lu", aEncryptedMsgType, static_cast<long unsigned int>(encryptedMsgLength), static_cast<long unsigned int>(maxPlainTextLength));
+
+        *aPlainTextPtr = scratchPtr + encryptedMsgLength;
+        plaintextLength = olm_decrypt(sessionPtr,
+                                      (size_t)aEncryptedMsgType,
+                                      (void*)scratchPtr,
+                                      encryptedMsgLength,
+                                      *aPlainTextPtr,
+                                      maxPlainTextLength);
+        if (plaintextLength == olm_error())
         {
-            errorMessage = (const char *)olm_session_last_error(sessionPtr);
-            LOGE("## decryptMessageJni(): failure - olm_decrypt_max_plaintext_length Msg=%s", errorMessage);
+            *aErrorMessage = (const char *)olm_session_last_error(sessionPtr);
+            LOGE("## sessionDecrypt(): failure - olm_decrypt Msg=%s", *aErrorMessage);
         }
-        else
-        {
-            LOGD("## decryptMessageJni(): maxPlaintextLength=%lu",static_cast<long unsigned int>(maxPlainTextLength));
-
-            // allocate output decrypted message
-            plainTextMsgPtr = static_cast<uint8_t*>(malloc(maxPlainTextLength*sizeof(uint8_t)));
-
-            // decrypt, but before reload encrypted buffer (previous one was destroyed)
-            memcpy(tempEncryptedPtr, encryptedMsgPtr, encryptedMsgLength);
-            size_t plaintextLength = olm_decrypt(sessionPtr,
-                                                 encryptedMsgType,
-                                                 (void*)tempEncryptedPtr,
-                                                 encryptedMsgLength,
-                                                 plainTextMsgPtr,
-                                                 maxPlainTextLength);
-            if (plaintextLength == olm_error())
-            {
-                errorMessage = (const char *)olm_session_last_error(sessionPtr);
-                LOGE("## decryptMessageJni(): failure - olm_decrypt Msg=%s", errorMessage);
-            }
-            else
-            {
-                decryptedMsgRet = env->NewByteArray(plaintextLength);
-                env->SetByteArrayRegion(decryptedMsgRet, 0 , plaintextLength, (jbyte*)plainTextMsgPtr);
 
-                LOGD(" ## decryptMessageJni(): UTF-8 Conversion - decrypted returnedLg=%lu OK",static_cast<long unsigned int>(plaintextLength));
-            }
-        }
+        // the decoded ciphertext is of no use anymore
+        clearScratchBuffer(scratchPtr, encryptedMsgLength);
     }
 
-    // free alloc
-    if (encryptedMsgPtr)
+    return plaintextLength;
+}
+
+/**
+ * Decrypt a message using the session.<br>
+ * An exception is thrown if the operation fails.
+ * @param aEncryptedMsg message to decrypt
+ * @param aEncryptedMsgType type of the message
+ * @return decrypted message if operation succeed
+ */
+JNIEXPORT jbyteArray OLM_SESSION_FUNC_DEF(decryptMessageJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jbyteArray aEncryptedMsg, jint aEncryptedMsgType)
+{
+    const char* errorMessage = NULL;
+    jbyteArray decryptedMsgRet = 0;
+    uint8_t *plainTextMsgPtr = NULL;
+
+    LOGD("## decryptMessageJni(): IN - OlmSession");
+
+    size_t plaintextLength = sessionDecrypt(env, (OlmSession*)aNativeId, aEncryptedMsg, aEncryptedMsgType, &plainTextMsgPtr, &errorMessage);
+
+    if (plaintextLength != olm_error())
     {
-        env->ReleaseByteArrayElements(aEncryptedMsg, encryptedMsgPtr, JNI_ABORT);
+        if ((decryptedMsgRet = env->NewByteArray(plaintextLength)))
+        {
+            env->SetByteArrayRegion(decryptedMsgRet, 0 , plaintextLength, (jbyte*)plainTextMsgPtr);
+        }
+
+        LOGD(" ## decryptMessageJni(): success - decrypted returnedLg=%lu",static_cast<long unsigned int>(plaintextLength));
+        clearScratchBuffer(plainTextMsgPtr, plaintextLength);
     }
 
-    if (tempEncryptedPtr)
+    if (errorMessage)
     {
-        free(tempEncryptedPtr);
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
     }
 
-    if (plainTextMsgPtr)
+    return decryptedMsgRet;
+}
+
+/**
+ * Decrypt a message into a java array provided by the caller.<br>
+ * Decrypting advances the ratchet, so the output space is checked before decrypting:
+ * it must hold at least 3/4 of the encrypted message length.
+ * An exception is thrown if the operation fails.
+ * @param aEncryptedMsg message to decrypt
+ * @param aEncryptedMsgType type of the message
+ * @param aDecryptedMsg array receiving the decrypted message
+ * @param aDecryptedOffset offset of the output in aDecryptedMsg
+ * @return the decrypted message length
+ */
+JNIEXPORT jint OLM_SESSION_FUNC_DEF(decryptMessageIntoJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jbyteArray aEncryptedMsg, jint aEncryptedMsgType, jbyteArray aDecryptedMsg, jint aDecryptedOffset)
+{
+    const char* errorMessage = NULL;
+    jint plaintextLengthRet = 0;
+    uint8_t *plainTextMsgPtr = NULL;
+
+    LOGD("## decryptMessageIntoJni(): IN - OlmSession");
+
+    if (!aEncryptedMsg || !aDecryptedMsg || (aDecryptedOffset < 0) || (aDecryptedOffset > env->GetArrayLength(aDecryptedMsg)))
+    {
+        LOGE("## decryptMessageIntoJni(): failure - invalid buffers");
+        errorMessage = "invalid buffers";
+    }
+    else if (((size_t)env->GetArrayLength(aEncryptedMsg) * 3) / 4 > (size_t)(env->GetArrayLength(aDecryptedMsg) - aDecryptedOffset))
     {
-        free(plainTextMsgPtr);
+        LOGE("## decryptMessageIntoJni(): failure - output buffer too small");
+        errorMessage = "output buffer too small";
+    }
+    else
+    {
+        size_t plaintextLength = sessionDecrypt(env, (OlmSession*)aNativeId, aEncryptedMsg, aEncryptedMsgType, &plainTextMsgPtr, &errorMessage);
+
+        if (plaintextLength != olm_error())
+        {
+            env->SetByteArrayRegion(aDecryptedMsg, aDecryptedOffset, plaintextLength, (jbyte*)plainTextMsgPtr);
+            plaintextLengthRet = (jint)plaintextLength;
+            clearScratchBuffer(plainTextMsgPtr, plaintextLength);
+        }
     }
 
     if (errorMessage)
     {
-        env->ThrowNew(env->FindClass("java/lang/Exception"), errorMessage);
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
     }
 
-    return decryptedMsgRet;
+    return plaintextLengthRet;
+}
+
+/**
+ * Decrypt a message into a java array provided by the caller, reporting failures as a status code.<br>
+ * No exception is thrown: invalid parameters and libolm failures are both returned as status codes.
+ * As for decryptMessageIntoJni(), the output must hold at least 3/4 of the encrypted message length.
+ * @param aEncryptedMsg message to decrypt
+ * @param aEncryptedMsgType type of the message
+ * @param aDecryptedMsg array receiving the decrypted message
+ * @param aDecryptedOffset offset of the output in aDecryptedMsg
+ * @param aResult on success, receives the decrypted message length in its first element
+ * @return the OlmJniStatus value
+ */
+JNIEXPORT jint OLM_SESSION_FUNC_DEF(decryptMessageStatusJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jbyteArray aEncryptedMsg, jint aEncryptedMsgType, jbyteArray aDecryptedMsg, jint aDecryptedOffset, jlongArray aResult)
+{
+    jint status = OLM_JNI_STATUS_SUCCESS;
+    const char* errorMessage = NULL;
+    uint8_t *plainTextMsgPtr = NULL;
+
+    OlmSession *sessionPtr = (OlmSession*)aNativeId;
+
+    LOGD("## decryptMessageStatusJni(): IN - OlmSession");
+
+    if (!sessionPtr || !aEncryptedMsg || !aDecryptedMsg || (aDecryptedOffset < 0) || (aDecryptedOffset > env->GetArrayLength(aDecryptedMsg))
+        || !aResult || (env->GetArrayLength(aResult) < 1))
+    {
+        LOGE("## decryptMessageStatusJni(): failure - invalid parameters");
+        status = OLM_JNI_STATUS_INVALID_ARGUMENT;
+    }
+    else if (((size_t)env->GetArrayLength(aEncryptedMsg) * 3) / 4 > (size_t)(env->GetArrayLength(aDecryptedMsg) - aDecryptedOffset))
+    {
+        LOGE("## decryptMessageStatusJni(): failure - output buffer too small");
+        status = OLM_JNI_STATUS_OUTPUT_BUFFER_TOO_SMALL;
+    }
+    else
+    {
+        size_t plaintextLength = sessionDecrypt(env, sessionPtr, aEncryptedMsg, aEncryptedMsgType, &plainTextMsgPtr, &errorMessage);
+
+        if (plaintextLength == olm_error())
+        {
+            // the parameters are valid, so the failure comes either from libolm or from the scratch buffer allocation
+            status = (errorMessage == (const char *)olm_session_last_error(sessionPtr)) ? getErrorStatus(errorMessage) : OLM_JNI_STATUS_OUT_OF_MEMORY;
+        }
+        else
+        {
+            jlong length = (jlong)plaintextLength;
+            env->SetByteArrayRegion(aDecryptedMsg, aDecryptedOffset, plaintextLength, (jbyte*)plainTextMsgPtr);
+            env->SetLongArrayRegion(aResult, 0, 1, &length);
+            clearScratchBuffer(plainTextMsgPtr, plaintextLength);
+        }
+    }
+
+    return status;
 }
 
 /**
@@ -709,14 +978,14 @@ JNIEXPORT jbyteArray OLM_SESSION_FUNC_DEF(decryptMessageJni)(JNIEnv *env, jobjec
  * An exception is thrown if the operation fails.
  * @return the session identifier
  */
-JNIEXPORT jbyteArray OLM_SESSION_FUNC_DEF(getSessionIdentifierJni)(JNIEnv *env, jobject thiz)
+JNIEXPORT jbyteArray OLM_SESSION_FUNC_DEF(getSessionIdentifierJni)(JNIEnv *env, jclass clazz, jlong aNativeId)
 {
      const char* errorMessage = NULL;
      jbyteArray returnValue = 0;
 
      LOGD("## getSessionIdentifierJni(): IN ");
 
-     OlmSession *sessionPtr = getSessionInstanceId(env, thiz);
+     OlmSession *sessionPtr = (OlmSession*)aNativeId;
 
      if (!sessionPtr)
      {
@@ -759,7 +1028,7 @@ JNIEXPORT jbyteArray OLM_SESSION_FUNC_DEF(getSessionIdentifierJni)(JNIEnv *env,
 
      if (errorMessage)
      {
-         env->ThrowNew(env->FindClass("java/lang/Exception"), errorMessage);
+         env->ThrowNew(gJniCache.exceptionClass, errorMessage);
      }
 
      return returnValue;
@@ -771,13 +1040,13 @@ JNIEXPORT jbyteArray OLM_SESSION_FUNC_DEF(getSessionIdentifierJni)(JNIEnv *env,
  * @param aKeyBuffer key used to encrypt the serialized account data
  * @return the serialised account as bytes buffer.
  **/
-JNIEXPORT jbyteArray OLM_SESSION_FUNC_DEF(serializeJni)(JNIEnv *env, jobject thiz, jbyteArray aKeyBuffer)
+JNIEXPORT jbyteArray OLM_SESSION_FUNC_DEF(serializeJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jbyteArray aKeyBuffer)
 {
     const char* errorMessage = NULL;
     jbyteArray returnValue = 0;
 
     jbyte* keyPtr = NULL;
-    OlmSession* sessionPtr = getSessionInstanceId(env, thiz);
+    OlmSession* sessionPtr = (OlmSession*)aNativeId;
 
     LOGD("## serializeJni(): IN");
 
@@ -841,7 +1110,7 @@ JNIEXPORT jbyteArray OLM_SESSION_FUNC_DEF(serializeJni)(JNIEnv *env, jobject thi
 
     if (errorMessage)
     {
-        env->ThrowNew(env->FindClass("java/lang/Exception"), errorMessage);
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
     }
 
     return returnValue;
@@ -854,7 +1123,7 @@ JNIEXPORT jbyteArray OLM_SESSION_FUNC_DEF(serializeJni)(JNIEnv *env, jobject thi
  * @param aKey the key used to encrypt the serialized account data
  * @return the deserialized session
  **/
-JNIEXPORT jlong OLM_SESSION_FUNC_DEF(deserializeJni)(JNIEnv *env, jobject thiz, jbyteArray aSerializedDataBuffer, jbyteArray aKeyBuffer)
+JNIEXPORT jlong OLM_SESSION_FUNC_DEF(deserializeJni)(JNIEnv *env, jclass clazz, jbyteArray aSerializedDataBuffer, jbyteArray aKeyBuffer)
 {
     const char* errorMessage = NULL;
     OlmSession* sessionPtr = initializeSessionMemory();
@@ -927,9 +1196,9 @@ JNIEXPORT jlong OLM_SESSION_FUNC_DEF(deserializeJni)(JNIEnv *env, jobject thiz,
         if (sessionPtr)
         {
             olm_clear_session(sessionPtr);
-            free(sessionPtr);
+            slabFree(SLAB_SESSION, sessionPtr);
         }
-        env->ThrowNew(env->FindClass("java/lang/Exception"), errorMessage);
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
     }
 
     return (jlong)(intptr_t)sessionPtr;
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include "olm_slab.h"
+#include "olm/olm.h"
+#include "olm/inbound_group_session.h"
+#include "olm/outbound_group_session.h"
+
+#include <mutex>
+
+using namespace AndroidOlmSdk;
+
+namespace
+{
+    const size_t SLOT_ALIGNMENT = 16;
+
+    // target size of a page, a page holds at least MIN_SLOTS_PER_PAGE slots
+    const size_t PAGE_SIZE = 64 * 1024;
+    const size_t MIN_SLOTS_PER_PAGE = 8;
+
+    /**
+     * Header of a page, the slots follow it.
+     */
+    struct SlabPage
+    {
+        SlabPage *next;
+    };
+
+    /**
+     * Free slots are chained through their first bytes.
+     */
+    struct FreeSlot
+    {
+        FreeSlot *next;
+    };
+
+    struct Slab
+    {
+        std::mutex mutex;
+        SlabPage *pages;
+        FreeSlot *freeList;
+        SlabStats stats;
+    };
+
+    Slab gSlabs[SLAB_TYPE_COUNT];
+
+    size_t alignUp(size_t aValue)
+    {
+        return (aValue + SLOT_ALIGNMENT - 1) & ~(SLOT_ALIGNMENT - 1);
+    }
+
+    size_t structSize(SlabType aType)
+    {
+        switch (aType)
+        {
+            case SLAB_ACCOUNT:
+                return olm_account_size();
+            case SLAB_SESSION:
+                return olm_session_size();
+            case SLAB_INBOUND_GROUP_SESSION:
+                return olm_inbound_group_session_size();
+            case SLAB_OUTBOUND_GROUP_SESSION:
+                return olm_outbound_group_session_size();
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Reserve a new page and chain its slots into the free list.<br>
+     * Must be called with the slab mutex held.
+     */
+    bool growSlab(Slab &aSlab)
+    {
+        size_t slotSize = aSlab.stats.slotSize;
+        size_t slotCount = PAGE_SIZE / slotSize;
+
+        if (slotCount < MIN_SLOTS_PER_PAGE)
+        {
+            slotCount = MIN_SLOTS_PER_PAGE;
+        }
+
+        // malloc() alignment may be lower than SLOT_ALIGNMENT on 32 bits targets
+        size_t pageLength = alignUp(sizeof(SlabPage)) + slotCount * slotSize + SLOT_ALIGNMENT;
+        SlabPage *page = static_cast<SlabPage*>(malloc(pageLength));
+
+        if (!page)
+        {
+            LOGE("## growSlab(): failure - page OOM");
+            return false;
+        }
+
+        uintptr_t first = alignUp((uintptr_t)page + sizeof(SlabPage));
+
+        // chain from the last slot so that allocations walk the page in order
+        for (size_t i = slotCount; i > 0; i--)
+        {
+            FreeSlot *slot = reinterpret_cast<FreeSlot*>(first + (i - 1) * slotSize);
+            slot->next = aSlab.freeList;
+            aSlab.freeList = slot;
+        }
+
+        page->next = aSlab.pages;
+        aSlab.pages = page;
+        aSlab.stats.slotsTotal += slotCount;
+        aSlab.stats.bytesReserved += pageLength;
+
+        return true;
+    }
+}
+
+void* AndroidOlmSdk::slabAlloc(SlabType aType)
+{
+    if ((aType < 0) || (aType >= SLAB_TYPE_COUNT))
+    {
+        return NULL;
+    }
+
+    Slab &slab = gSlabs[aType];
+    std::lock_guard<std::mutex> lock(slab.mutex);
+
+    if (!slab.stats.slotSize)
+    {
+        size_t size = structSize(aType);
+        slab.stats.slotSize = alignUp((size < sizeof(FreeSlot)) ? sizeof(FreeSlot) : size);
+    }
+
+    if (!slab.freeList && !growSlab(slab))
+    {
+        return NULL;
+    }
+
+    FreeSlot *slot = slab.freeList;
+    slab.freeList = slot->next;
+    slab.stats.slotsInUse++;
+    slab.stats.allocations++;
+
+    return slot;
+}
+
+void AndroidOlmSdk::slabFree(SlabType aType, void *aPtr)
+{
+    if (!aPtr || (aType < 0) || (aType >= SLAB_TYPE_COUNT))
+    {
+        return;
+    }
+
+    Slab &slab = gSlabs[aType];
+
+    // the slot stays reachable from the free list, so the wipe cannot be optimized out
+    memset(aPtr, 0, slab.stats.slotSize);
+
+    std::lock_guard<std::mutex> lock(slab.mutex);
+    FreeSlot *slot = static_cast<FreeSlot*>(aPtr);
+    slot->next = slab.freeList;
+    slab.freeList = slot;
+    slab.stats.slotsInUse--;
+    slab.stats.releases++;
+}
+
+bool AndroidOlmSdk::slabStats(SlabType aType, SlabStats *aStats)
+{
+    if (!aStats || (aType < 0) || (aType >= SLAB_TYPE_COUNT))
+    {
+        return false;
+    }
+
+    Slab &slab = gSlabs[aType];
+    std::lock_guard<std::mutex> lock(slab.mutex);
+    *aStats = slab.stats;
+
+    if (!aStats->slotSize)
+    {
+        aStats->slotSize = alignUp(structSize(aType));
+    }
+
+    return true;
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#ifndef _OMLSLAB_H
+#define _OMLSLAB_H
+
+#include "olm_jni.h"
+
+namespace AndroidOlmSdk
+{
+    /**
+     * Native structs allocated from a slab.<br>
+     * The values are also used by org.matrix.olm.OlmSlabStats.SlabType.
+     */
+    enum SlabType
+    {
+        SLAB_ACCOUNT = 0,
+        SLAB_SESSION = 1,
+        SLAB_INBOUND_GROUP_SESSION = 2,
+        SLAB_OUTBOUND_GROUP_SESSION = 3,
+        SLAB_TYPE_COUNT
+    };
+
+    /**
+     * Counters of a slab.
+     */
+    struct SlabStats
+    {
+        size_t slotSize;         // bytes per struct, including alignment padding
+        size_t slotsInUse;       // structs currently allocated
+        size_t slotsTotal;       // structs that fit in the reserved pages
+        size_t bytesReserved;    // memory reserved from the system
+        uint64_t allocations;    // slabAlloc() calls that succeeded
+        uint64_t releases;       // slabFree() calls
+    };
+
+    /**
+     * Allocate a struct of the given type in O(1).<br>
+     * Slots are 16-byte aligned and packed in pages; the memory is NOT initialized.
+     * @param aType the struct type
+     * @return the slot, NULL if no memory could be reserved
+     */
+    void* slabAlloc(SlabType aType);
+
+    /**
+     * Zeroize a struct and give its slot back to the slab.<br>
+     * Pages are kept for reuse and are never returned to the system.
+     * @param aType the struct type, must match the one given to slabAlloc()
+     * @param aPtr the slot, may be NULL
+     */
+    void slabFree(SlabType aType, void *aPtr);
+
+    /**
+     * Read the counters of a slab.
+     * @param aType the struct type
+     * @param aStats receives the counters
+     * @return false if aType is invalid
+     */
+    bool slabStats(SlabType aType, SlabStats *aStats);
+}
+
+#endif
@@ -17,6 +17,8 @@
 
 #include "olm_utility.h"
 
+#include <vector>
+
 using namespace AndroidOlmSdk;
 
 OlmUtility* initializeUtilityMemory()
@@ -37,7 +39,7 @@ OlmUtility* initializeUtilityMemory()
     return utilityPtr;
 }
 
-JNIEXPORT jlong OLM_UTILITY_FUNC_DEF(createUtilityJni)(JNIEnv *env, jobject thiz)
+JNIEXPORT jlong OLM_UTILITY_FUNC_DEF(createUtilityJni)(JNIEnv *env, jclass clazz)
 {
     OlmUtility* utilityPtr = initializeUtilityMemory();
 
@@ -47,7 +49,7 @@ JNIEXPORT jlong OLM_UTILITY_FUNC_DEF(createUtilityJni)(JNIEnv *env, jobject thiz
     if (!utilityPtr)
     {
         LOGE(" ## createUtilityJni(): failure - init OOM");
-        env->ThrowNew(env->FindClass("java/lang/Exception"), "init OOM");
+        env->ThrowNew(gJniCache.exceptionClass, "init OOM");
     }
     else
     {
@@ -58,9 +60,9 @@ JNIEXPORT jlong OLM_UTILITY_FUNC_DEF(createUtilityJni)(JNIEnv *env, jobject thiz
 }
 
 
-JNIEXPORT void OLM_UTILITY_FUNC_DEF(releaseUtilityJni)(JNIEnv *env, jobject thiz)
+JNIEXPORT void OLM_UTILITY_FUNC_DEF(releaseUtilityJni)(JNIEnv *env, jclass clazz, jlong aNativeId)
 {
-    OlmUtility* utilityPtr = getUtilityInstanceId(env, thiz);
+    OlmUtility* utilityPtr = (OlmUtility*)aNativeId;
 
     LOGD("## releaseUtilityJni(): IN");
 
@@ -83,10 +85,10 @@ JNIEXPORT void OLM_UTILITY_FUNC_DEF(releaseUtilityJni)(JNIEnv *env, jobject thiz
  * @param aMessage the message which was signed
  * @return 0 if validation succeed, an error message string if operation failed
  */
-JNIEXPORT jstring OLM_UTILITY_FUNC_DEF(verifyEd25519SignatureJni)(JNIEnv *env, jobject thiz, jbyteArray aSignatureBuffer, jbyteArray aKeyBuffer, jbyteArray aMessageBuffer)
+JNIEXPORT jstring OLM_UTILITY_FUNC_DEF(verifyEd25519SignatureJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jbyteArray aSignatureBuffer, jbyteArray aKeyBuffer, jbyteArray aMessageBuffer)
 {
     jstring errorMessageRetValue = 0;
-    OlmUtility* utilityPtr = getUtilityInstanceId(env, thiz);
+    OlmUtility* utilityPtr = (OlmUtility*)aNativeId;
     jbyte* signaturePtr = NULL;
     jbyte* keyPtr = NULL;
     jbyte* messagePtr = NULL;
@@ -158,6 +160,135 @@ JNIEXPORT jstring OLM_UTILITY_FUNC_DEF(verifyEd25519SignatureJni)(JNIEnv *env, j
     return errorMessageRetValue;
 }
 
+/**
+ * Verify ed25519 signatures made with the same key, in a single native call.<br>
+ * Each signature is verified on its own by olm_ed25519_verify, there is no batch equation.
+ * The messages and the signatures are packed one after the other, aMessageEnds and aSignatureEnds
+ * holding the offset following each of them. A failure only affects its own entry of aValid.
+ * An exception is thrown if the parameters are invalid.
+ * @param aKey the ed25519 key (fingerprint key)
+ * @param aMessages the packed signed messages
+ * @param aMessageEnds the offset following each message in aMessages
+ * @param aSignatures the packed base64-encoded signatures
+ * @param aSignatureEnds the offset following each signature in aSignatures
+ * @param aCount number of signatures to verify
+ * @param aValid receives the validity of each signature
+ * @return the number of invalid signatures
+ */
+JNIEXPORT jint OLM_UTILITY_FUNC_DEF(verifyEd25519SignaturesIndividuallyJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jbyteArray aKeyBuffer, jbyteArray aMessages, jintArray aMessageEnds,
+                                                                            jbyteArray aSignatures, jintArray aSignatureEnds, jint aCount, jbooleanArray aValid)
+{
+    const char* errorMessage = NULL;
+    jint invalidCount = 0;
+    OlmUtility* utilityPtr = (OlmUtility*)aNativeId;
+    jbyte* keyPtr = NULL;
+    jbyte* messagesPtr = NULL;
+    jbyte* signaturesPtr = NULL;
+
+    LOGD("## verifyEd25519SignaturesIndividuallyJni(): IN");
+
+    if (!utilityPtr)
+    {
+        LOGE(" ## verifyEd25519SignaturesIndividuallyJni(): failure - invalid utility ptr=NULL");
+        errorMessage = "invalid utility ptr=NULL";
+    }
+    else if (!aKeyBuffer || !aMessages || !aMessageEnds || !aSignatures || !aSignatureEnds || !aValid || (aCount < 0)
+             || (env->GetArrayLength(aMessageEnds) < aCount) || (env->GetArrayLength(aSignatureEnds) < aCount) || (env->GetArrayLength(aValid) < aCount))
+    {
+        LOGE(" ## verifyEd25519SignaturesIndividuallyJni(): failure - invalid batch parameters");
+        errorMessage = "invalid batch parameters";
+    }
+    else if (!(keyPtr = env->GetByteArrayElements(aKeyBuffer, 0)))
+    {
+        LOGE(" ## verifyEd25519SignaturesIndividuallyJni(): failure - key JNI allocation OOM");
+        errorMessage = "key JNI allocation OOM";
+    }
+    else if (!(messagesPtr = env->GetByteArrayElements(aMessages, 0)))
+    {
+        LOGE(" ## verifyEd25519SignaturesIndividuallyJni(): failure - messages JNI allocation OOM");
+        errorMessage = "messages JNI allocation OOM";
+    }
+    else if (!(signaturesPtr = env->GetByteArrayElements(aSignatures, 0)))
+    {
+        LOGE(" ## verifyEd25519SignaturesIndividuallyJni(): failure - signatures JNI allocation OOM");
+        errorMessage = "signatures JNI allocation OOM";
+    }
+    else
+    {
+        size_t keyLength = (size_t)env->GetArrayLength(aKeyBuffer);
+        jint messagesLength = env->GetArrayLength(aMessages);
+        jint signaturesLength = env->GetArrayLength(aSignatures);
+        std::vector<jint> messageEnds(aCount);
+        std::vector<jint> signatureEnds(aCount);
+        std::vector<jboolean> valid(aCount, JNI_FALSE);
+        // olm_ed25519_verify decodes the signature in place, so each one is copied first
+        std::vector<uint8_t> signature;
+
+        env->GetIntArrayRegion(aMessageEnds, 0, aCount, messageEnds.data());
+        env->GetIntArrayRegion(aSignatureEnds, 0, aCount, signatureEnds.data());
+
+        for (jint i = 0; i < aCount; i++)
+        {
+            jint messageStart = (0 == i) ? 0 : messageEnds[i - 1];
+            jint messageEnd = messageEnds[i];
+            jint signatureStart = (0 == i) ? 0 : signatureEnds[i - 1];
+            jint signatureEnd = signatureEnds[i];
+
+            if ((messageStart < 0) || (messageEnd < messageStart) || (messageEnd > messagesLength)
+                || (signatureStart < 0) || (signatureEnd <= signatureStart) || (signatureEnd > signaturesLength))
+            {
+                LOGE(" ## verifyEd25519SignaturesIndividuallyJni(): failure - invalid range for signature %d", static_cast<int>(i));
+                invalidCount++;
+                continue;
+            }
+
+            signature.assign((uint8_t*)signaturesPtr + signatureStart, (uint8_t*)signaturesPtr + signatureEnd);
+
+            size_t result = olm_ed25519_verify(utilityPtr,
+                                               (void const *)keyPtr,
+                                               keyLength,
+                                               (void const *)(messagesPtr + messageStart),
+                                               (size_t)(messageEnd - messageStart),
+                                               (void*)signature.data(),
+                                               signature.size());
+            if (result == olm_error())
+            {
+                LOGD(" ## verifyEd25519SignaturesIndividuallyJni(): signature %d invalid Msg=%s", static_cast<int>(i), olm_utility_last_error(utilityPtr));
+                invalidCount++;
+            }
+            else
+            {
+                valid[i] = JNI_TRUE;
+            }
+        }
+
+        env->SetBooleanArrayRegion(aValid, 0, aCount, valid.data());
+        LOGD(" ## verifyEd25519SignaturesIndividuallyJni(): count=%d invalid=%d", static_cast<int>(aCount), static_cast<int>(invalidCount));
+    }
+
+    if (signaturesPtr)
+    {
+        env->ReleaseByteArrayElements(aSignatures, signaturesPtr, JNI_ABORT);
+    }
+
+    if (messagesPtr)
+    {
+        env->ReleaseByteArrayElements(aMessages, messagesPtr, JNI_ABORT);
+    }
+
+    if (keyPtr)
+    {
+        env->ReleaseByteArrayElements(aKeyBuffer, keyPtr, JNI_ABORT);
+    }
+
+    if (errorMessage)
+    {
+        env->ThrowNew(gJniCache.exceptionClass, errorMessage);
+    }
+
+    return invalidCount;
+}
+
 /**
  * Compute the digest (SHA 256) for the message passed in parameter.<br>
  * The digest value is the function return value.
@@ -165,11 +296,11 @@ JNIEXPORT jstring OLM_UTILITY_FUNC_DEF(verifyEd25519SignatureJni)(JNIEnv *env, j
  * @param aMessage the message
  * @return digest of the message.
  **/
-JNIEXPORT jbyteArray OLM_UTILITY_FUNC_DEF(sha256Jni)(JNIEnv *env, jobject thiz, jbyteArray aMessageToHashBuffer)
+JNIEXPORT jbyteArray OLM_UTILITY_FUNC_DEF(sha256Jni)(JNIEnv *env, jclass clazz, jlong aNativeId, jbyteArray aMessageToHashBuffer)
 {
     jbyteArray sha256Ret = 0;
 
-    OlmUtility* utilityPtr = getUtilityInstanceId(env, thiz);
+    OlmUtility* utilityPtr = (OlmUtility*)aNativeId;
     jbyte* messagePtr = NULL;
 
     LOGD("## sha256Jni(): IN");
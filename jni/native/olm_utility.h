@@ -27,10 +27,12 @@
 #ifdef __cplusplus
 extern "C" {
 #endif
-JNIEXPORT jlong   OLM_UTILITY_FUNC_DEF(createUtilityJni)(JNIEnv *env, jobject thiz);
-JNIEXPORT void    OLM_UTILITY_FUNC_DEF(releaseUtilityJni)(JNIEnv *env, jobject thiz);
-JNIEXPORT jstring OLM_UTILITY_FUNC_DEF(verifyEd25519SignatureJni)(JNIEnv *env, jobject thiz, jbyteArray aSignature, jbyteArray aKey, jbyteArray aMessage);
-JNIEXPORT jbyteArray OLM_UTILITY_FUNC_DEF(sha256Jni)(JNIEnv *env, jobject thiz, jbyteArray aMessageToHash);
+JNIEXPORT jlong   OLM_UTILITY_FUNC_DEF(createUtilityJni)(JNIEnv *env, jclass clazz);
+JNIEXPORT void    OLM_UTILITY_FUNC_DEF(releaseUtilityJni)(JNIEnv *env, jclass clazz, jlong aNativeId);
+JNIEXPORT jstring OLM_UTILITY_FUNC_DEF(verifyEd25519SignatureJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jbyteArray aSignature, jbyteArray aKey, jbyteArray aMessage);
+JNIEXPORT jint OLM_UTILITY_FUNC_DEF(verifyEd25519SignaturesIndividuallyJni)(JNIEnv *env, jclass clazz, jlong aNativeId, jbyteArray aKey, jbyteArray aMessages, jintArray aMessageEnds,
+                                                                            jbyteArray aSignatures, jintArray aSignatureEnds, jint aCount, jbooleanArray aValid);
+JNIEXPORT jbyteArray OLM_UTILITY_FUNC_DEF(sha256Jni)(JNIEnv *env, jclass clazz, jlong aNativeId, jbyteArray aMessageToHash);
 #ifdef __cplusplus
 }
 #endif
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.*;
+
+public class MegolmBatchDecryptorTest
+{
+	private final Map<String, OlmInboundGroupSession> mSessions = new HashMap<>();
+	private final List<String> mSessionIds = new ArrayList<>();
+	private final List<String> mEncryptedMsgs = new ArrayList<>();
+	private ForkJoinPool mPool;
+	
+	@BeforeClass
+	public static void loadLibrary()
+	{
+		new OlmManager();
+	}
+	
+	@Before
+	public void setUp()
+			throws OlmException
+	{
+		List<OlmOutboundGroupSession> outboundSessions = new ArrayList<>();
+		for (int i = 0; i < 3; i++)
+		{
+			OlmOutboundGroupSession outboundSession = new OlmOutboundGroupSession();
+			outboundSessions.add(outboundSession);
+			mSessions.put(outboundSession.sessionIdentifier(), new OlmInboundGroupSession(outboundSession.sessionKey()));
+		}
+		
+		// the messages of the sessions are interleaved, as in a room timeline
+		for (int i = 0; i < 12; i++)
+		{
+			OlmOutboundGroupSession outboundSession = outboundSessions.get(i % 3);
+			mSessionIds.add(outboundSession.sessionIdentifier());
+			mEncryptedMsgs.add(outboundSession.encryptMessage("message " + i));
+		}
+		mSessionIds.add("unknown session");
+		mEncryptedMsgs.add(mEncryptedMsgs.get(0));
+		
+		for (OlmOutboundGroupSession outboundSession : outboundSessions)
+		{
+			outboundSession.releaseSession();
+		}
+		mPool = new ForkJoinPool(2);
+	}
+	
+	@After
+	public void tearDown()
+	{
+		mPool.shutdown();
+		for (OlmInboundGroupSession session : mSessions.values())
+		{
+			session.releaseSession();
+		}
+	}
+	
+	@Test
+	public void testDecryptMessagesInBatchOrder()
+			throws OlmException
+	{
+		OlmBatchDecryptResult result = new MegolmBatchDecryptor(mPool).decryptMessages(mSessionIds, mEncryptedMsgs, mSessions::get);
+		checkResult(result);
+	}
+	
+	@Test
+	public void testDecryptMessagesFromAnotherPool()
+			throws Exception
+	{
+		MegolmBatchDecryptor decryptor = new MegolmBatchDecryptor(mPool);
+		ForkJoinPool otherPool = new ForkJoinPool(1);
+		try
+		{
+			checkResult(otherPool.submit(() -> decryptor.decryptMessages(mSessionIds, mEncryptedMsgs, mSessions::get)).get());
+		}
+		finally
+		{
+			otherPool.shutdown();
+		}
+	}
+	
+	@Test(expected = OlmException.class)
+	public void testMismatchedLists()
+			throws OlmException
+	{
+		new MegolmBatchDecryptor(mPool).decryptMessages(mSessionIds, mEncryptedMsgs.subList(1, mEncryptedMsgs.size()), mSessions::get);
+	}
+	
+	private static void checkResult(OlmBatchDecryptResult aResult)
+	{
+		assertEquals(13, aResult.size());
+		for (int i = 0; i < 12; i++)
+		{
+			assertEquals("message " + i, aResult.getMessage(i));
+			assertEquals(i / 3, aResult.getMessageIndex(i));
+		}
+		assertEquals(OlmError.UNKNOWN_SESSION, aResult.getError(12));
+		assertEquals(1, aResult.getFailureCount());
+	}
+}
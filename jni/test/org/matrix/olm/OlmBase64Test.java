@@ -0,0 +1,122 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import static java.nio.charset.StandardCharsets.*;
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+public class OlmBase64Test
+{
+	private static final Base64.Encoder REFERENCE = Base64.getEncoder().withoutPadding();
+	
+	@Test
+	public void testAgainstReference()
+	{
+		Random random = new Random(42);
+		
+		for (int length = 0; length < 100; length++)
+		{
+			byte[] data = new byte[length];
+			random.nextBytes(data);
+			String expected = REFERENCE.encodeToString(data);
+			
+			assertEquals(expected, OlmBase64.encodeToString(data));
+			assertEquals(expected.length(), OlmBase64.encodedLength(length));
+			assertEquals(length, OlmBase64.decodedLength(expected.length()));
+			assertArrayEquals(data, OlmBase64.decode(expected));
+		}
+	}
+	
+	@Test
+	public void testAllByteValues()
+	{
+		byte[] data = new byte[256];
+		for (int i = 0; i < data.length; i++)
+		{
+			data[i] = (byte) i;
+		}
+		
+		String encoded = OlmBase64.encodeToString(data);
+		assertEquals(REFERENCE.encodeToString(data), encoded);
+		assertArrayEquals(data, OlmBase64.decode(encoded));
+	}
+	
+	@Test
+	public void testSlices()
+	{
+		byte[] data = "0123456789".getBytes(US_ASCII);
+		byte[] encoded = new byte[12];
+		
+		assertEquals(7, OlmBase64.encode(data, 2, 5, encoded, 3));
+		assertEquals(REFERENCE.encodeToString(Arrays.copyOfRange(data, 2, 7)), new String(encoded, 3, 7, US_ASCII));
+		
+		byte[] decoded = new byte[8];
+		assertEquals(5, OlmBase64.decode(encoded, 3, 7, decoded, 1));
+		assertArrayEquals(Arrays.copyOfRange(data, 2, 7), Arrays.copyOfRange(decoded, 1, 6));
+		assertArrayEquals(Arrays.copyOfRange(data, 2, 7), OlmBase64.decode(encoded, 3, 7));
+	}
+	
+	@Test
+	public void testInvalidLength()
+	{
+		assertEquals(-1, OlmBase64.decodedLength(5));
+		
+		try
+		{
+			OlmBase64.decode("AAAAA");
+			fail("length 5 accepted");
+		}
+		catch (IllegalArgumentException e)
+		{
+			// expected
+		}
+	}
+	
+	@Test
+	public void testInvalidCharacters()
+	{
+		// padding, the url safe alphabet, and a character outside ASCII, in the full groups and in the tail
+		for (String encoded : new String[] { "AA==", "AB-_", "ABCD_A", "ABCDAB=", "AB\u00E9A" })
+		{
+			try
+			{
+				OlmBase64.decode(encoded.getBytes(ISO_8859_1), 0, encoded.length());
+				fail(encoded + " accepted");
+			}
+			catch (IllegalArgumentException e)
+			{
+				// expected
+			}
+		}
+	}
+	
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testEncodeOutputTooSmall()
+	{
+		OlmBase64.encode(new byte[4], 0, 4, new byte[5], 0);
+	}
+	
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testDecodeInputOutOfRange()
+	{
+		OlmBase64.decode(new byte[8], 4, 8, new byte[6], 0);
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import static java.nio.charset.StandardCharsets.*;
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+public class OlmBatchDecryptResultTest
+{
+	@Test
+	public void testResetGrowsAndKeepsSize()
+	{
+		OlmBatchDecryptResult result = new OlmBatchDecryptResult(1);
+		result.reset(3, true);
+		
+		assertEquals(3, result.size());
+		result.setError(1, OlmError.BAD_MESSAGE_MAC);
+		assertEquals(OlmError.BAD_MESSAGE_MAC, result.getError(1));
+		assertFalse(result.isSuccess(1));
+		assertNull(result.getPlaintext(1));
+	}
+	
+	@Test
+	public void testCopy()
+	{
+		OlmBatchDecryptResult from = new OlmBatchDecryptResult(2);
+		from.reset(2, true);
+		from.mStatus[1] = OlmError.SUCCESS.ordinal();
+		from.mMessageIndexes[1] = 42;
+		from.mPlaintexts[1] = "hello".getBytes(UTF_8);
+		from.setPlaintextRanges();
+		
+		OlmBatchDecryptResult result = new OlmBatchDecryptResult(1);
+		result.reset(1, true);
+		result.copy(0, from, 1);
+		
+		assertTrue(result.isSuccess(0));
+		assertEquals(42, result.getMessageIndex(0));
+		assertEquals(0, result.getOffset(0));
+		assertEquals(5, result.getLength(0));
+		assertEquals("hello", result.getMessage(0));
+		assertEquals(0, result.getFailureCount());
+	}
+	
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testIndexOutOfBatch()
+	{
+		OlmBatchDecryptResult result = new OlmBatchDecryptResult(4);
+		result.reset(2, false);
+		result.getError(2);
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import static java.nio.charset.StandardCharsets.*;
+import static org.junit.Assert.*;
+
+import java.nio.*;
+import java.util.*;
+
+import org.junit.*;
+
+public class OlmBatchDecryptTest
+{
+	private OlmOutboundGroupSession mOutboundSession;
+	private OlmInboundGroupSession mInboundSession;
+	private List<String> mEncryptedMsgs;
+	
+	@BeforeClass
+	public static void loadLibrary()
+	{
+		new OlmManager();
+	}
+	
+	@Before
+	public void setUp()
+			throws OlmException
+	{
+		mOutboundSession = new OlmOutboundGroupSession();
+		mInboundSession = new OlmInboundGroupSession(mOutboundSession.sessionKey());
+		
+		mEncryptedMsgs = new ArrayList<>();
+		for (int i = 0; i < 4; i++)
+		{
+			mEncryptedMsgs.add(mOutboundSession.encryptMessage("message " + i));
+		}
+		// a failed message does not abort the batch
+		mEncryptedMsgs.add(2, "not a megolm message");
+	}
+	
+	@After
+	public void tearDown()
+	{
+		mInboundSession.releaseSession();
+		mOutboundSession.releaseSession();
+	}
+	
+	@Test
+	public void testDecryptMessages()
+			throws OlmException
+	{
+		OlmBatchDecryptResult result = mInboundSession.decryptMessages(mEncryptedMsgs);
+		
+		assertEquals(5, result.size());
+		assertEquals(1, result.getFailureCount());
+		assertFalse(result.isSuccess(2));
+		assertNull(result.getMessage(2));
+		assertEquals("message 0", result.getMessage(0));
+		assertEquals("message 3", result.getMessage(4));
+		assertEquals(3, result.getMessageIndex(4));
+	}
+	
+	@Test
+	public void testDecryptPackedMessages()
+			throws OlmException
+	{
+		int count = mEncryptedMsgs.size();
+		int[] offsets = new int[count];
+		int[] lengths = new int[count];
+		byte[] packed = pack(offsets, lengths);
+		byte[] decrypted = new byte[packed.length * 3 / 4];
+		OlmBatchDecryptResult result = new OlmBatchDecryptResult(1);
+		
+		int end = mInboundSession.decryptMessages(packed, offsets, lengths, count, decrypted, 0, result);
+		
+		assertEquals(count, result.size());
+		assertEquals(OlmError.SUCCESS, result.getError(1));
+		assertNotEquals(OlmError.SUCCESS, result.getError(2));
+		assertEquals("message 1", new String(decrypted, result.getOffset(1), result.getLength(1), UTF_8));
+		assertEquals(result.getOffset(4) + result.getLength(4), end);
+		assertNull(result.getPlaintext(1));
+	}
+	
+	@Test
+	public void testDecryptDirectBufferMessages()
+			throws OlmException
+	{
+		int count = mEncryptedMsgs.size();
+		int[] offsets = new int[count];
+		int[] lengths = new int[count];
+		byte[] packed = pack(offsets, lengths);
+		ByteBuffer encrypted = ByteBuffer.allocateDirect(packed.length);
+		encrypted.put(packed);
+		ByteBuffer decrypted = ByteBuffer.allocateDirect(packed.length * 3 / 4);
+		OlmBatchDecryptResult result = new OlmBatchDecryptResult(count);
+		
+		mInboundSession.decryptMessages(encrypted, offsets, lengths, count, decrypted, result);
+		
+		assertEquals(1, result.getFailureCount());
+		assertEquals(result.getOffset(4) + result.getLength(4), decrypted.position());
+		byte[] message = new byte[result.getLength(3)];
+		decrypted.position(result.getOffset(3));
+		decrypted.get(message);
+		assertEquals("message 2", new String(message, UTF_8));
+	}
+	
+	private byte[] pack(int[] aOffsets, int[] aLengths)
+	{
+		StringBuilder packed = new StringBuilder();
+		for (int i = 0; i < mEncryptedMsgs.size(); i++)
+		{
+			aOffsets[i] = packed.length();
+			aLengths[i] = mEncryptedMsgs.get(i).length();
+			packed.append(mEncryptedMsgs.get(i));
+		}
+		return packed.toString().getBytes(UTF_8);
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import static java.nio.charset.StandardCharsets.*;
+import static org.junit.Assert.*;
+
+import java.nio.*;
+
+import org.junit.*;
+
+public class OlmBatchEncryptResultTest
+{
+	private static final long SESSION_ID = 7;
+	
+	/**
+	 * Backend "encrypting" a message as "#index:message", failing from a given call on.
+	 */
+	private static final class FakeBackend implements OlmGroupBackend
+	{
+		private final int mFailAt;
+		private int mIndex = 40;
+		
+		FakeBackend(int aFailAt)
+		{
+			mFailAt = aFailAt;
+		}
+		
+		@Override
+		public String name()
+		{
+			return "fake";
+		}
+		
+		@Override
+		public int decrypt(long aSessionId, byte[] aEncryptedMsg, int aOffset, int aLength, byte[] aDecryptedMsg, int aDecryptedOffset, long[] aResult)
+		{
+			throw new UnsupportedOperationException();
+		}
+		
+		@Override
+		public int decrypt(long aSessionId, ByteBuffer aEncryptedMsg, ByteBuffer aDecryptedMsg, long[] aResult)
+		{
+			throw new UnsupportedOperationException();
+		}
+		
+		@Override
+		public int encrypt(long aSessionId, byte[] aClearMsg, int aOffset, int aLength, byte[] aEncryptedMsg, int aEncryptedOffset, long[] aResult)
+		{
+			assertEquals(SESSION_ID, aSessionId);
+			if (mIndex - 40 >= mFailAt)
+			{
+				return OlmError.OUTPUT_BUFFER_TOO_SMALL.ordinal();
+			}
+			
+			byte[] encrypted = ("#" + mIndex++ + ":" + new String(aClearMsg, aOffset, aLength, UTF_8)).getBytes(UTF_8);
+			assertTrue(encrypted.length <= aEncryptedMsg.length - aEncryptedOffset);
+			System.arraycopy(encrypted, 0, aEncryptedMsg, aEncryptedOffset, encrypted.length);
+			aResult[0] = encrypted.length;
+			return OlmError.SUCCESS.ordinal();
+		}
+		
+		@Override
+		public int encrypt(long aSessionId, ByteBuffer aClearMsg, ByteBuffer aEncryptedMsg, long[] aResult)
+		{
+			throw new UnsupportedOperationException();
+		}
+		
+		@Override
+		public int encryptedMessageLength(long aSessionId, int aClearMsgLength)
+		{
+			return aClearMsgLength + 4;
+		}
+		
+		@Override
+		public int messageIndex(long aSessionId)
+		{
+			return mIndex;
+		}
+	}
+	
+	private static final byte[] CLEAR_MSGS = "onetwothreefour".getBytes(UTF_8);
+	private static final int[] CLEAR_MSG_ENDS = { 3, 6, 11, 15 };
+	
+	private static OlmBatchEncryptResult encrypt(int aFailAt)
+			throws Exception
+	{
+		int[] encryptedMsgEnds = new int[CLEAR_MSG_ENDS.length];
+		long[] progress = new long[2];
+		byte[] encryptedMsgs = OlmOutboundGroupSession.encryptMessagesWithBackend(new FakeBackend(aFailAt), SESSION_ID, CLEAR_MSGS,
+				CLEAR_MSG_ENDS, encryptedMsgEnds, progress);
+		
+		int encrypted = (int) progress[1];
+		assertTrue(encryptedMsgs.length >= ((0 == encrypted) ? 0 : encryptedMsgEnds[encrypted - 1]));
+		return new OlmBatchEncryptResult(encryptedMsgs, encryptedMsgEnds, encrypted, CLEAR_MSG_ENDS.length, progress[0]);
+	}
+	
+	@Test
+	public void testCompleteBatch()
+			throws Exception
+	{
+		OlmBatchEncryptResult result = encrypt(Integer.MAX_VALUE);
+		
+		assertTrue(result.isComplete());
+		assertEquals(4, result.size());
+		assertEquals(40, result.getFirstMessageIndex());
+		assertEquals("#40:one", result.getEncryptedMessage(0));
+		assertEquals("#42:three", result.getEncryptedMessage(2));
+		assertEquals("#43:four", new String(result.getEncryptedMessageBytes(3), UTF_8));
+		assertEquals(43, result.getMessageIndex(3));
+		assertEquals(result.getOffset(2) + result.getLength(2), result.getOffset(3));
+	}
+	
+	@Test
+	public void testFailureKeepsTheEncryptedMessages()
+			throws Exception
+	{
+		OlmBatchEncryptResult result = encrypt(2);
+		
+		assertFalse(result.isComplete());
+		assertEquals(2, result.size());
+		assertEquals("#40:one", result.getEncryptedMessage(0));
+		assertEquals("#41:two", result.getEncryptedMessage(1));
+		assertEquals(41, result.getMessageIndex(1));
+	}
+	
+	@Test(expected = Exception.class)
+	public void testFailureOfTheFirstMessage()
+			throws Exception
+	{
+		encrypt(0);
+	}
+	
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testIndexBeyondTheEncryptedMessages()
+			throws Exception
+	{
+		encrypt(2).getEncryptedMessage(2);
+	}
+	
+	@Test
+	public void testMessageIndexWraps()
+	{
+		OlmBatchEncryptResult result = new OlmBatchEncryptResult(new byte[2], new int[] { 1, 2 }, 2, 2, 0xFFFFFFFFL);
+		
+		assertEquals(0xFFFFFFFFL, result.getMessageIndex(0));
+		assertEquals(0, result.getMessageIndex(1));
+	}
+}
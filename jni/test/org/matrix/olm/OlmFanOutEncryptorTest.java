@@ -0,0 +1,169 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.beust.klaxon.*;
+import org.junit.*;
+
+public class OlmFanOutEncryptorTest
+{
+	private static final String PAYLOAD = "room key";
+	
+	private OlmAccount mAliceAccount;
+	private OlmAccount mBobAccount;
+	private final List<OlmSession> mAliceSessions = new ArrayList<>();
+	private ForkJoinPool mPool;
+	
+	@BeforeClass
+	public static void loadLibrary()
+	{
+		new OlmManager();
+	}
+	
+	@Before
+	public void setUp()
+			throws OlmException
+	{
+		mAliceAccount = new OlmAccount();
+		mBobAccount = new OlmAccount();
+		mBobAccount.generateOneTimeKeys(2);
+		JsonObject oneTimeKeys = (JsonObject) mBobAccount.oneTimeKeys().get(OlmAccount.JSON_KEY_ONE_TIME_KEY);
+		
+		for (Object oneTimeKey : oneTimeKeys.values())
+		{
+			OlmSession session = new OlmSession();
+			session.initOutboundSession(mAliceAccount, mBobAccount.identityKeys().getCurve25519(), (String) oneTimeKey);
+			mAliceSessions.add(session);
+		}
+		mPool = new ForkJoinPool(2);
+	}
+	
+	@After
+	public void tearDown()
+	{
+		mPool.shutdown();
+		for (OlmSession session : mAliceSessions)
+		{
+			session.releaseSession();
+		}
+		mAliceAccount.releaseAccount();
+		mBobAccount.releaseAccount();
+	}
+	
+	/**
+	 * @return 40 recipients sharing the two sessions, enough to split the fan-out, and one without a session
+	 */
+	private Map<String, OlmSession> recipients()
+	{
+		Map<String, OlmSession> recipients = new LinkedHashMap<>();
+		for (int i = 0; i < 40; i++)
+		{
+			recipients.put("device " + i, mAliceSessions.get(i % 2));
+		}
+		recipients.put("no session", null);
+		return recipients;
+	}
+	
+	@Test
+	public void testEncrypt()
+			throws OlmException
+	{
+		OlmFanOutEncryptor encryptor = new OlmFanOutEncryptor(mPool);
+		OlmFanOutResult<String> result = encryptor.encrypt(PAYLOAD, recipients());
+		
+		assertEquals(40, result.getMessages().size());
+		assertEquals(Collections.singleton("no session"), result.getFailures().keySet());
+		
+		// each session encrypted 20 messages, in whatever order: bob decrypts them all
+		for (int s = 0; s < 2; s++)
+		{
+			OlmSession bobSession = new OlmSession();
+			try
+			{
+				OlmMessage first = result.getMessages().get("device " + s);
+				bobSession.initInboundSessionFrom(mBobAccount, mAliceAccount.identityKeys().getCurve25519(), first.getCipherText());
+				for (int i = s; i < 40; i += 2)
+				{
+					assertEquals(PAYLOAD, bobSession.decryptMessage(result.getMessages().get("device " + i)));
+				}
+			}
+			finally
+			{
+				bobSession.releaseSession();
+			}
+		}
+		
+		OlmFanOutStats stats = encryptor.getStats();
+		assertEquals(1, stats.getFanOuts());
+		assertEquals(40, stats.getMessages());
+		assertEquals(1, stats.getFailures());
+		assertTrue(stats.getNanos() > 0);
+	}
+	
+	@Test
+	public void testEncryptFromAnotherPool()
+			throws Exception
+	{
+		Set<ForkJoinPool> pools = ConcurrentHashMap.newKeySet();
+		OlmSession recordingSession = new OlmSession()
+		{
+			@Override
+			public OlmMessage encryptMessage(byte[] aClearMsg)
+			{
+				pools.add(ForkJoinTask.getPool());
+				return new OlmMessage(PAYLOAD, OlmMessage.MESSAGE_TYPE_MESSAGE);
+			}
+		};
+		
+		Map<String, OlmSession> recipients = new HashMap<>();
+		for (int i = 0; i < 40; i++)
+		{
+			recipients.put("device " + i, recordingSession);
+		}
+		
+		OlmFanOutEncryptor encryptor = new OlmFanOutEncryptor(mPool);
+		ForkJoinPool otherPool = new ForkJoinPool(2);
+		try
+		{
+			OlmFanOutResult<String> result = otherPool.submit(() -> encryptor.encrypt(PAYLOAD, recipients)).get();
+			assertEquals(40, result.getMessages().size());
+		}
+		finally
+		{
+			otherPool.shutdown();
+			recordingSession.releaseSession();
+		}
+		
+		assertEquals(Collections.singleton(mPool), pools);
+	}
+	
+	@Test
+	public void testEncryptFewRecipients()
+	{
+		OlmFanOutEncryptor encryptor = new OlmFanOutEncryptor(mPool);
+		OlmFanOutResult<String> result = encryptor.encrypt(PAYLOAD, Collections.singletonMap("device", mAliceSessions.get(0)));
+		
+		assertEquals(1, result.getMessages().size());
+		assertTrue(result.getFailures().isEmpty());
+		assertEquals(OlmMessage.MESSAGE_TYPE_PRE_KEY, result.getMessages().get("device").getType());
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import static java.nio.charset.StandardCharsets.*;
+import static org.junit.Assert.*;
+
+import java.nio.*;
+
+import org.junit.*;
+
+/**
+ * The megolm hot paths, on the JNI entry points or, when the tests run on a JDK 22 with {@code jdk22Home} set, on the
+ * foreign backend.
+ */
+public class OlmGroupBackendTest
+{
+	private OlmOutboundGroupSession mOutboundSession;
+	private OlmInboundGroupSession mInboundSession;
+	
+	@BeforeClass
+	public static void loadLibrary()
+	{
+		new OlmManager();
+	}
+	
+	@Before
+	public void setUp()
+			throws OlmException
+	{
+		mOutboundSession = new OlmOutboundGroupSession();
+		mInboundSession = new OlmInboundGroupSession(mOutboundSession.sessionKey());
+	}
+	
+	@After
+	public void tearDown()
+	{
+		mInboundSession.releaseSession();
+		mOutboundSession.releaseSession();
+	}
+	
+	@Test
+	public void testArraySliceRoundTrip()
+			throws OlmException
+	{
+		byte[] clearMsg = "--hello world--".getBytes(UTF_8);
+		byte[] encryptedMsg = mOutboundSession.encryptMessage(clearMsg, 2, clearMsg.length - 4);
+		
+		byte[] decryptedMsg = new byte[encryptedMsg.length + 3];
+		long[] messageIndex = new long[1];
+		int length = mInboundSession.decryptMessage(encryptedMsg, 0, encryptedMsg.length, decryptedMsg, 3, messageIndex);
+		
+		assertEquals("hello world", new String(decryptedMsg, 3, length, UTF_8));
+		assertEquals(0, messageIndex[0]);
+	}
+	
+	@Test
+	public void testTooSmallOutputIsReported()
+			throws OlmException
+	{
+		byte[] encryptedMsg = mOutboundSession.encryptMessage("hello world".getBytes(UTF_8), 0, 11);
+		OlmDecryptionResult result = new OlmDecryptionResult();
+		
+		assertEquals(OlmError.OUTPUT_BUFFER_TOO_SMALL, mInboundSession.tryDecryptMessage(encryptedMsg, 0, encryptedMsg.length, new byte[2], 0, result));
+		
+		// the message can still be decrypted with a large enough output
+		byte[] decryptedMsg = new byte[encryptedMsg.length];
+		assertEquals(OlmError.SUCCESS, mInboundSession.tryDecryptMessage(encryptedMsg, 0, encryptedMsg.length, decryptedMsg, 0, result));
+		assertEquals("hello world", new String(decryptedMsg, 0, result.getLength(), UTF_8));
+	}
+	
+	@Test
+	public void testInvalidMessageIsReported()
+	{
+		byte[] encryptedMsg = "not a megolm message".getBytes(UTF_8);
+		OlmDecryptionResult result = new OlmDecryptionResult();
+		
+		assertNotEquals(OlmError.SUCCESS, mInboundSession.tryDecryptMessage(encryptedMsg, 0, encryptedMsg.length, new byte[64], 0, result));
+		assertFalse(result.isSuccess());
+	}
+	
+	@Test
+	public void testDirectBufferRoundTrip()
+			throws OlmException
+	{
+		byte[] clearMsg = "hello world".getBytes(UTF_8);
+		ByteBuffer clearBuffer = ByteBuffer.allocateDirect(clearMsg.length);
+		clearBuffer.put(clearMsg).flip();
+		ByteBuffer encryptedBuffer = ByteBuffer.allocateDirect(mOutboundSession.maxEncryptedMessageLength(clearMsg.length));
+		
+		int encryptedLength = mOutboundSession.encryptMessage(clearBuffer, encryptedBuffer);
+		assertEquals(encryptedLength, encryptedBuffer.position());
+		encryptedBuffer.flip();
+		
+		ByteBuffer decryptedBuffer = ByteBuffer.allocateDirect(encryptedLength);
+		assertEquals(0, mInboundSession.decryptMessage(encryptedBuffer, decryptedBuffer));
+		decryptedBuffer.flip();
+		
+		byte[] decryptedMsg = new byte[decryptedBuffer.remaining()];
+		decryptedBuffer.get(decryptedMsg);
+		assertArrayEquals(clearMsg, decryptedMsg);
+	}
+}
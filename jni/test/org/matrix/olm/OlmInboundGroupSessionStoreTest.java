@@ -0,0 +1,214 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.*;
+
+public class OlmInboundGroupSessionStoreTest
+{
+	private static final String ROOM_ID = "!room:example.org";
+	private static final String SENDER_KEY = "sender key";
+	
+	private final List<OlmOutboundGroupSession> mOutboundSessions = new ArrayList<>();
+	private final List<String> mSessionIds = new ArrayList<>();
+	
+	@BeforeClass
+	public static void loadLibrary()
+	{
+		new OlmManager();
+	}
+	
+	@After
+	public void tearDown()
+	{
+		for (OlmOutboundGroupSession session : mOutboundSessions)
+		{
+			session.releaseSession();
+		}
+	}
+	
+	/**
+	 * @return a store of one live session holding aCount imported sessions, not verified yet
+	 */
+	private OlmInboundGroupSessionStore newStore(int aCount, boolean aOffHeap)
+			throws OlmException
+	{
+		OlmInboundGroupSessionStore store = new OlmInboundGroupSessionStore(1, aOffHeap);
+		for (int i = 0; i < aCount; i++)
+		{
+			OlmOutboundGroupSession outboundSession = new OlmOutboundGroupSession();
+			mOutboundSessions.add(outboundSession);
+			mSessionIds.add(outboundSession.sessionIdentifier());
+			OlmInboundGroupSession session = new OlmInboundGroupSession(outboundSession.sessionKey());
+			store.put(ROOM_ID, SENDER_KEY, OlmInboundGroupSession.importSession(session.export(0)));
+			session.releaseSession();
+		}
+		return store;
+	}
+	
+	private void checkDecrypt(OlmInboundGroupSessionStore aStore, int aSession, String aMessage)
+			throws OlmException
+	{
+		String encryptedMsg = mOutboundSessions.get(aSession).encryptMessage(aMessage);
+		OlmInboundGroupSession.DecryptMessageResult result = aStore.decryptMessage(ROOM_ID, SENDER_KEY, mSessionIds.get(aSession), encryptedMsg);
+		assertEquals(aMessage, result.getDecryptedMessage());
+	}
+	
+	private void checkEviction(boolean aOffHeap)
+			throws OlmException
+	{
+		OlmInboundGroupSessionStore store = newStore(3, aOffHeap);
+		
+		OlmSessionStoreStats stats = store.getStats();
+		assertEquals(3, store.size());
+		assertEquals(1, stats.getLiveSessions());
+		assertEquals(2, stats.getPickledSessions());
+		assertEquals(2, stats.getEvictions());
+		assertTrue(stats.getPickledBytes() > 0);
+		
+		for (int round = 0; round < 2; round++)
+		{
+			for (int i = 0; i < 3; i++)
+			{
+				checkDecrypt(store, i, "message " + round + " " + i);
+			}
+		}
+		
+		stats = store.getStats();
+		assertEquals(1, stats.getLiveSessions());
+		assertEquals(6, stats.getRehydrations());
+		
+		store.clear();
+		assertEquals(0, store.size());
+		assertEquals(0, store.getStats().getPickledBytes());
+	}
+	
+	@Test
+	public void testEvictionOnHeap()
+			throws OlmException
+	{
+		checkEviction(false);
+	}
+	
+	@Test
+	public void testEvictionOffHeap()
+			throws OlmException
+	{
+		checkEviction(true);
+	}
+	
+	@Test
+	public void testUnknownSession()
+			throws OlmException
+	{
+		OlmInboundGroupSessionStore store = newStore(1, false);
+		
+		assertNull(store.apply(ROOM_ID, "other key", mSessionIds.get(0), session -> session));
+		assertFalse(store.contains(ROOM_ID, "other key", mSessionIds.get(0)));
+		assertTrue(store.contains(ROOM_ID, SENDER_KEY, mSessionIds.get(0)));
+		
+		store.clear();
+	}
+	
+	@Test
+	public void testRemove()
+			throws OlmException
+	{
+		OlmInboundGroupSessionStore store = newStore(2, false);
+		
+		// session 0 is pickled
+		assertTrue(store.remove(ROOM_ID, SENDER_KEY, mSessionIds.get(0)));
+		assertFalse(store.remove(ROOM_ID, SENDER_KEY, mSessionIds.get(0)));
+		assertEquals(0, store.getStats().getPickledBytes());
+		assertEquals(1, store.size());
+		
+		checkDecrypt(store, 1, "message");
+		store.clear();
+	}
+	
+	@Test
+	public void testVerifiedFlagSurvivesEviction()
+			throws OlmException
+	{
+		OlmInboundGroupSessionStore store = newStore(2, false);
+		OlmOutboundGroupSession outboundSession = mOutboundSessions.get(0);
+		List<String> encryptedMsgs = new ArrayList<>();
+		for (int i = 0; i < 20; i++)
+		{
+			encryptedMsgs.add(outboundSession.encryptMessage("message " + i));
+		}
+		
+		// verified through a checkpoint: the flag is on the java side only
+		assertTrue(store.apply(ROOM_ID, SENDER_KEY, mSessionIds.get(0), session -> {
+			assertFalse(session.isVerified());
+			session.enableRatchetCheckpoints(3, 1 << 20);
+			session.decryptMessage(encryptedMsgs.get(19));
+			return session.isVerified();
+		}));
+		checkDecrypt(store, 1, "evicts session 0");
+		
+		assertTrue(store.apply(ROOM_ID, SENDER_KEY, mSessionIds.get(0), session -> {
+			assertNull(session.getRatchetCheckpointStats());
+			return session.isVerified();
+		}));
+		store.clear();
+	}
+	
+	@Test
+	public void testConcurrentApply()
+			throws Exception
+	{
+		OlmInboundGroupSessionStore store = newStore(4, false);
+		List<String> encryptedMsgs = new ArrayList<>();
+		for (int i = 0; i < 4; i++)
+		{
+			encryptedMsgs.add(mOutboundSessions.get(i).encryptMessage("message " + i));
+		}
+		
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try
+		{
+			List<Future<String>> results = new ArrayList<>();
+			for (int i = 0; i < 200; i++)
+			{
+				int session = i % 4;
+				results.add(executor.submit(() -> store.decryptMessage(ROOM_ID, SENDER_KEY, mSessionIds.get(session),
+						encryptedMsgs.get(session)).getDecryptedMessage()));
+			}
+			for (int i = 0; i < 200; i++)
+			{
+				assertEquals("message " + (i % 4), results.get(i).get());
+			}
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+		
+		// a call waiting for another one to unpickle the session counts neither as a hit nor as a rehydration
+		OlmSessionStoreStats stats = store.getStats();
+		assertTrue(stats.getHits() + stats.getRehydrations() <= 200);
+		assertTrue(stats.getRehydrations() >= 3);
+		assertEquals(4, store.size());
+		store.clear();
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import static java.nio.charset.StandardCharsets.*;
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+public class OlmInboundGroupSessionTest
+{
+	private static final byte[] PICKLE_KEY = "pickle key".getBytes(UTF_8);
+	
+	private OlmOutboundGroupSession mOutboundSession;
+	private OlmInboundGroupSession mInboundSession;
+	private List<String> mEncryptedMsgs;
+	
+	@BeforeClass
+	public static void loadLibrary()
+	{
+		new OlmManager();
+	}
+	
+	@Before
+	public void setUp()
+			throws OlmException
+	{
+		mOutboundSession = new OlmOutboundGroupSession();
+		mEncryptedMsgs = new ArrayList<>();
+		for (int i = 0; i < 40; i++)
+		{
+			mEncryptedMsgs.add(mOutboundSession.encryptMessage("message " + i));
+		}
+		
+		OlmInboundGroupSession session = new OlmInboundGroupSession(mOutboundSession.sessionKey());
+		mInboundSession = OlmInboundGroupSession.importSession(session.export(0));
+		session.releaseSession();
+	}
+	
+	@After
+	public void tearDown()
+	{
+		mInboundSession.releaseSession();
+		mOutboundSession.releaseSession();
+	}
+	
+	@Test
+	public void testCheckpointDecrypt()
+			throws OlmException
+	{
+		mInboundSession.enableRatchetCheckpoints(3, 1 << 20);
+		
+		for (int i : new int[] { 33, 9, 35, 12, 0 })
+		{
+			OlmInboundGroupSession.DecryptMessageResult result = mInboundSession.decryptMessage(mEncryptedMsgs.get(i));
+			assertEquals("message " + i, result.getDecryptedMessage());
+			assertEquals(i, result.getIndex());
+		}
+		
+		OlmRatchetCheckpointStats stats = mInboundSession.getRatchetCheckpointStats();
+		assertEquals(2, stats.getCheckpoints());
+		assertEquals(2, stats.getHits());
+		assertEquals(2, stats.getMisses());
+		
+		mInboundSession.disableRatchetCheckpoints();
+		assertNull(mInboundSession.getRatchetCheckpointStats());
+		assertEquals("message 38", mInboundSession.decryptMessage(mEncryptedMsgs.get(38)).getDecryptedMessage());
+	}
+	
+	@Test
+	public void testCheckpointVerifiedFlagIsNotPickled()
+			throws OlmException
+	{
+		assertFalse(mInboundSession.isVerified());
+		
+		mInboundSession.enableRatchetCheckpoints(3, 1 << 20);
+		mInboundSession.decryptMessage(mEncryptedMsgs.get(20));
+		assertTrue(mInboundSession.isVerified());
+		
+		OlmInboundGroupSession restored = OlmInboundGroupSession.unpickle(mInboundSession.pickle(PICKLE_KEY), PICKLE_KEY);
+		try
+		{
+			assertFalse(restored.isVerified());
+			restored.decryptMessage(mEncryptedMsgs.get(0));
+			assertTrue(restored.isVerified());
+		}
+		finally
+		{
+			restored.releaseSession();
+		}
+	}
+}
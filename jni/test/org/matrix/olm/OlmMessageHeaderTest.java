@@ -0,0 +1,240 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import static java.nio.charset.StandardCharsets.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.*;
+
+public class OlmMessageHeaderTest
+{
+	private static final byte[] CIPHERTEXT = "0123456789abcdef".getBytes(US_ASCII);
+	
+	private static void writeVarint(ByteArrayOutputStream aOutput, long aValue)
+	{
+		long value = aValue;
+		while (value >= 0x80)
+		{
+			aOutput.write((int) (value | 0x80));
+			value >>>= 7;
+		}
+		aOutput.write((int) value);
+	}
+	
+	private static void writeField(ByteArrayOutputStream aOutput, int aTag, byte[] aValue)
+	{
+		aOutput.write(aTag);
+		writeVarint(aOutput, aValue.length);
+		aOutput.write(aValue, 0, aValue.length);
+	}
+	
+	private static byte[] filled(int aLength, int aValue)
+	{
+		byte[] bytes = new byte[aLength];
+		Arrays.fill(bytes, (byte) aValue);
+		return bytes;
+	}
+	
+	private static String encode(ByteArrayOutputStream aOutput)
+	{
+		return OlmBase64.encodeToString(aOutput.toByteArray());
+	}
+	
+	/**
+	 * @return a decoded megolm message: version, index, ciphertext, MAC and signature
+	 */
+	private static ByteArrayOutputStream groupMessage(int aVersion, long aIndex)
+	{
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		output.write(aVersion);
+		output.write(0x08);
+		writeVarint(output, aIndex);
+		writeField(output, 0x12, CIPHERTEXT);
+		output.write(filled(8, 0xAA), 0, 8);
+		output.write(filled(64, 0xBB), 0, 64);
+		return output;
+	}
+	
+	/**
+	 * @return a decoded Olm normal message: version, ratchet key, chain index, ciphertext and MAC
+	 */
+	private static byte[] innerMessage(long aChainIndex)
+	{
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		output.write(OlmMessageHeader.SUPPORTED_VERSION);
+		writeField(output, 0x0A, filled(32, 0x11));
+		output.write(0x10);
+		writeVarint(output, aChainIndex);
+		writeField(output, 0x22, CIPHERTEXT);
+		output.write(filled(8, 0xAA), 0, 8);
+		return output.toByteArray();
+	}
+	
+	@Test
+	public void testGroupMessage()
+	{
+		OlmMessageHeader header = OlmMessageHeader.parseGroupMessage(encode(groupMessage(3, 300)));
+		
+		assertNotNull(header);
+		assertEquals(OlmMessageHeader.Kind.GROUP, header.getKind());
+		assertEquals(3, header.getVersion());
+		assertTrue(header.isSupportedVersion());
+		assertEquals(300, header.getMessageIndex());
+		
+		byte[] decoded = header.getDecodedMessage();
+		assertEquals(CIPHERTEXT.length, header.getCiphertextLength());
+		assertArrayEquals(CIPHERTEXT, Arrays.copyOfRange(decoded, header.getCiphertextOffset(), header.getCiphertextOffset() + CIPHERTEXT.length));
+		assertEquals(decoded.length - 64, header.getSignatureOffset());
+		assertEquals(decoded.length - 72, header.getMacOffset());
+		assertEquals((byte) 0xAA, decoded[header.getMacOffset()]);
+		assertEquals(-1, header.getRatchetKeyOffset());
+		assertNull(header.getIdentityKey());
+	}
+	
+	@Test
+	public void testGroupMessageSlice()
+	{
+		byte[] encoded = encode(groupMessage(3, 7)).getBytes(UTF_8);
+		byte[] array = new byte[encoded.length + 10];
+		System.arraycopy(encoded, 0, array, 5, encoded.length);
+		
+		OlmMessageHeader header = OlmMessageHeader.parseGroupMessage(array, 5, encoded.length);
+		assertNotNull(header);
+		assertEquals(7, header.getMessageIndex());
+		
+		assertNull(OlmMessageHeader.parseGroupMessage(array, 5, array.length));
+		assertNull(OlmMessageHeader.parseGroupMessage(array, -1, encoded.length));
+	}
+	
+	@Test
+	public void testUnsupportedVersion()
+	{
+		OlmMessageHeader header = OlmMessageHeader.parseGroupMessage(encode(groupMessage(2, 1)));
+		
+		assertNotNull(header);
+		assertEquals(2, header.getVersion());
+		assertFalse(header.isSupportedVersion());
+	}
+	
+	@Test
+	public void testMalformedGroupMessage()
+	{
+		// not base64
+		assertNull(OlmMessageHeader.parseGroupMessage("not a megolm message!"));
+		// too short for the MAC and the signature
+		assertNull(OlmMessageHeader.parseGroupMessage(OlmBase64.encodeToString(new byte[] { 3, 8, 1 })));
+		
+		// a ciphertext longer than the message
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		output.write(3);
+		output.write(0x12);
+		writeVarint(output, 1000);
+		output.write(filled(72, 0), 0, 72);
+		assertNull(OlmMessageHeader.parseGroupMessage(encode(output)));
+		
+		// an index beyond 32 bits
+		assertNull(OlmMessageHeader.parseGroupMessage(encode(groupMessage(3, 1L << 32))));
+	}
+	
+	@Test
+	public void testPeekGroupMessageIndex()
+	{
+		for (long index : new long[] { 0, 1, 127, 128, 16383, 16384, 0x7FFFFFFFL, 0xFFFFFFFFL })
+		{
+			byte[] encoded = encode(groupMessage(3, index)).getBytes(UTF_8);
+			assertEquals(index, OlmMessageHeader.peekGroupMessageIndex(encoded, 0, encoded.length));
+			assertEquals(index, OlmMessageHeader.parseGroupMessage(encoded, 0, encoded.length).getMessageIndex());
+		}
+		
+		byte[] encoded = encode(groupMessage(2, 5)).getBytes(UTF_8);
+		assertEquals(-1, OlmMessageHeader.peekGroupMessageIndex(encoded, 0, encoded.length));
+		
+		encoded = encode(groupMessage(3, 1L << 32)).getBytes(UTF_8);
+		assertEquals(-1, OlmMessageHeader.peekGroupMessageIndex(encoded, 0, encoded.length));
+		
+		// too short to hold the index
+		encoded = encode(groupMessage(3, 0xFFFFFFFFL)).getBytes(UTF_8);
+		assertEquals(-1, OlmMessageHeader.peekGroupMessageIndex(encoded, 0, 4));
+		
+		encoded = "3&garbage".getBytes(UTF_8);
+		assertEquals(-1, OlmMessageHeader.peekGroupMessageIndex(encoded, 0, encoded.length));
+	}
+	
+	@Test
+	public void testMessage()
+	{
+		OlmMessage message = new OlmMessage(OlmBase64.encodeToString(innerMessage(42)), OlmMessage.MESSAGE_TYPE_MESSAGE);
+		OlmMessageHeader header = OlmMessageHeader.parseMessage(message);
+		
+		assertNotNull(header);
+		assertEquals(OlmMessageHeader.Kind.MESSAGE, header.getKind());
+		assertTrue(header.isSupportedVersion());
+		assertEquals(42, header.getMessageIndex());
+		assertEquals(3, header.getRatchetKeyOffset());
+		assertEquals(CIPHERTEXT.length, header.getCiphertextLength());
+		assertEquals(header.getDecodedMessage().length - 8, header.getMacOffset());
+		assertEquals(-1, header.getSignatureOffset());
+		assertNull(header.getOneTimeKey());
+	}
+	
+	@Test
+	public void testPreKeyMessage()
+	{
+		byte[] inner = innerMessage(0);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		output.write(OlmMessageHeader.SUPPORTED_VERSION);
+		writeField(output, 0x0A, filled(32, 0x01));
+		writeField(output, 0x12, filled(32, 0x02));
+		writeField(output, 0x1A, filled(32, 0x03));
+		writeField(output, 0x22, inner);
+		
+		OlmMessage message = new OlmMessage(encode(output), OlmMessage.MESSAGE_TYPE_PRE_KEY);
+		OlmMessageHeader header = OlmMessageHeader.parseMessage(message);
+		
+		assertNotNull(header);
+		assertEquals(OlmMessageHeader.Kind.PRE_KEY, header.getKind());
+		assertEquals(3, header.getVersion());
+		assertEquals(0, header.getMessageIndex());
+		assertEquals(OlmBase64.encodeToString(filled(32, 0x01)), header.getOneTimeKey());
+		assertEquals(OlmBase64.encodeToString(filled(32, 0x02)), header.getBaseKey());
+		assertEquals(OlmBase64.encodeToString(filled(32, 0x03)), header.getIdentityKey());
+		assertEquals(header.getDecodedMessage().length - 8, header.getMacOffset());
+		assertTrue(header.getRatchetKeyOffset() > 0);
+	}
+	
+	@Test
+	public void testMalformedMessage()
+	{
+		// the inner message is shorter than its MAC
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		output.write(OlmMessageHeader.SUPPORTED_VERSION);
+		writeField(output, 0x22, new byte[] { 3, 1, 2 });
+		assertNull(OlmMessageHeader.parseMessage(new OlmMessage(encode(output), OlmMessage.MESSAGE_TYPE_PRE_KEY)));
+		
+		// an unknown wire type
+		byte[] inner = innerMessage(1);
+		inner[1] = 0x0D;
+		assertNull(OlmMessageHeader.parseMessage(new OlmMessage(OlmBase64.encodeToString(inner), OlmMessage.MESSAGE_TYPE_MESSAGE)));
+		
+		assertNull(OlmMessageHeader.parseMessage(new OlmMessage("", OlmMessage.MESSAGE_TYPE_MESSAGE)));
+		assertNull(OlmMessageHeader.parseMessage(new OlmMessage(encode(groupMessage(3, 1)), 7)));
+	}
+}
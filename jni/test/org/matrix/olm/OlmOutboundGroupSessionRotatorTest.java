@@ -0,0 +1,165 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+public class OlmOutboundGroupSessionRotatorTest
+{
+	private static final String ROOM_ID = "!room:example.org";
+	
+	private OlmOutboundGroupSessionRotator mRotator;
+	
+	@BeforeClass
+	public static void loadLibrary()
+	{
+		new OlmManager();
+	}
+	
+	@After
+	public void tearDown()
+	{
+		if (null != mRotator)
+		{
+			mRotator.clear();
+		}
+	}
+	
+	private String sessionId()
+			throws OlmException
+	{
+		return mRotator.apply(ROOM_ID, OlmOutboundGroupSessionRotator.RoomSession::getSessionId);
+	}
+	
+	@Test
+	public void testRotationAfterMaxMessages()
+			throws OlmException
+	{
+		// successors created on the calling thread
+		mRotator = new OlmOutboundGroupSessionRotator(3, Long.MAX_VALUE / 1_000_000, Runnable::run);
+		
+		Set<String> sessionIds = new HashSet<>();
+		for (int i = 0; i < 9; i++)
+		{
+			String clearMsg = "message " + i;
+			sessionIds.add(mRotator.apply(ROOM_ID, session -> {
+				session.getSession().encryptMessage(clearMsg);
+				return session.getSessionId();
+			}));
+		}
+		
+		assertEquals(3, sessionIds.size());
+		assertEquals(1, mRotator.size());
+	}
+	
+	@Test
+	public void testRotationAfterMaxAge()
+			throws OlmException
+	{
+		// every session is too old by the time it is used again
+		mRotator = new OlmOutboundGroupSessionRotator(Long.MAX_VALUE, 0, Runnable::run);
+		
+		String first = sessionId();
+		assertNotEquals(first, sessionId());
+	}
+	
+	@Test
+	public void testRequestedRotation()
+			throws OlmException
+	{
+		mRotator = new OlmOutboundGroupSessionRotator(Long.MAX_VALUE, Long.MAX_VALUE / 1_000_000, Runnable::run);
+		
+		// unknown room
+		mRotator.requestRotation(ROOM_ID);
+		
+		String first = sessionId();
+		assertEquals(first, sessionId());
+		
+		mRotator.requestRotation(ROOM_ID);
+		String second = sessionId();
+		assertNotEquals(first, second);
+		assertEquals(second, sessionId());
+	}
+	
+	@Test
+	public void testNewUntilAFunctionSucceeds()
+			throws OlmException
+	{
+		mRotator = new OlmOutboundGroupSessionRotator(Long.MAX_VALUE, Long.MAX_VALUE / 1_000_000, Runnable::run);
+		
+		try
+		{
+			mRotator.apply(ROOM_ID, session -> {
+				assertTrue(session.isNew());
+				throw new OlmException(OlmException.EXCEPTION_CODE_OUTBOUND_GROUP_ENCRYPT_MESSAGE, "key sharing failed");
+			});
+			fail("the failure of the function was not thrown");
+		}
+		catch (OlmException e)
+		{
+			// expected
+		}
+		
+		assertTrue(mRotator.apply(ROOM_ID, OlmOutboundGroupSessionRotator.RoomSession::isNew));
+		assertFalse(mRotator.apply(ROOM_ID, OlmOutboundGroupSessionRotator.RoomSession::isNew));
+		
+		mRotator.requestRotation(ROOM_ID);
+		assertTrue(mRotator.apply(ROOM_ID, OlmOutboundGroupSessionRotator.RoomSession::isNew));
+	}
+	
+	@Test
+	public void testSessionKeyMatchesTheSession()
+			throws OlmException
+	{
+		mRotator = new OlmOutboundGroupSessionRotator(Long.MAX_VALUE, Long.MAX_VALUE / 1_000_000);
+		
+		String sessionKey = mRotator.apply(ROOM_ID, OlmOutboundGroupSessionRotator.RoomSession::getSessionKey);
+		String encryptedMsg = mRotator.encryptMessage(ROOM_ID, "message");
+		
+		OlmInboundGroupSession inboundSession = new OlmInboundGroupSession(sessionKey);
+		try
+		{
+			assertEquals(sessionId(), inboundSession.sessionIdentifier());
+			assertEquals("message", inboundSession.decryptMessage(encryptedMsg).getDecryptedMessage());
+		}
+		finally
+		{
+			inboundSession.releaseSession();
+		}
+	}
+	
+	@Test
+	public void testRemove()
+			throws OlmException
+	{
+		mRotator = new OlmOutboundGroupSessionRotator(Long.MAX_VALUE, Long.MAX_VALUE / 1_000_000, Runnable::run);
+		OlmOutboundGroupSession session = mRotator.apply(ROOM_ID, OlmOutboundGroupSessionRotator.RoomSession::getSession);
+		String first = sessionId();
+		
+		assertTrue(mRotator.remove(ROOM_ID));
+		assertFalse(mRotator.remove(ROOM_ID));
+		assertTrue(session.isReleased());
+		assertEquals(0, mRotator.size());
+		
+		// a new session once used again
+		assertNotEquals(first, sessionId());
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import static java.nio.charset.StandardCharsets.*;
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+public class OlmOutboundGroupSessionTest
+{
+	private OlmOutboundGroupSession mOutboundSession;
+	private OlmInboundGroupSession mInboundSession;
+	
+	@BeforeClass
+	public static void loadLibrary()
+	{
+		new OlmManager();
+	}
+	
+	@Before
+	public void setUp()
+			throws OlmException
+	{
+		mOutboundSession = new OlmOutboundGroupSession();
+		mInboundSession = new OlmInboundGroupSession(mOutboundSession.sessionKey());
+	}
+	
+	@After
+	public void tearDown()
+	{
+		mInboundSession.releaseSession();
+		mOutboundSession.releaseSession();
+	}
+	
+	/**
+	 * The encrypted messages get longer when the varint of the message index goes from 1 to 2 bytes at index 128:
+	 * a batch crossing it must not run out of output space.
+	 */
+	@Test
+	public void testEncryptMessagesAcrossIndex128()
+			throws OlmException
+	{
+		for (int i = 0; i < 120; i++)
+		{
+			mOutboundSession.encryptMessage("message " + i);
+		}
+		
+		List<String> clearMsgs = new ArrayList<>();
+		for (int i = 0; i < 32; i++)
+		{
+			clearMsgs.add("batch message " + i);
+		}
+		
+		OlmBatchEncryptResult result = mOutboundSession.encryptMessages(clearMsgs);
+		assertTrue(result.isComplete());
+		assertEquals(clearMsgs.size(), result.size());
+		assertEquals(120, result.getFirstMessageIndex());
+		assertEquals(152, mOutboundSession.messageIndex());
+		assertEquals(result.getOffset(result.size() - 1) + result.getLength(result.size() - 1), result.getEncryptedMessages().length);
+		
+		for (int i = 0; i < result.size(); i++)
+		{
+			OlmInboundGroupSession.DecryptMessageResult decrypted = mInboundSession.decryptMessage(result.getEncryptedMessage(i));
+			assertEquals(clearMsgs.get(i), decrypted.getDecryptedMessage());
+			assertEquals(result.getMessageIndex(i), decrypted.getIndex());
+		}
+	}
+	
+	@Test
+	public void testMaxEncryptedMessageLength()
+			throws OlmException
+	{
+		int maxLength = mOutboundSession.maxEncryptedMessageLength(100);
+		byte[] clearMsg = new byte[100];
+		
+		for (int i = 0; i < 200; i++)
+		{
+			assertTrue(mOutboundSession.encryptMessage(clearMsg, 0, clearMsg.length).length <= maxLength);
+		}
+	}
+	
+	@Test
+	public void testBinaryMessage()
+			throws OlmException
+	{
+		byte[] clearMsg = "binary message".getBytes(UTF_8);
+		byte[] binaryMsg = mOutboundSession.encryptMessageBinary(clearMsg, 0, clearMsg.length);
+		byte[] array = new byte[binaryMsg.length + 2];
+		System.arraycopy(binaryMsg, 0, array, 1, binaryMsg.length);
+		
+		OlmInboundGroupSession.DecryptMessageResult result = mInboundSession.decryptMessageBinary(array, 1, binaryMsg.length);
+		assertArrayEquals(clearMsg, result.getBytes());
+		assertEquals(0, result.getIndex());
+		
+		// the binary form is the base64 form decoded
+		String encryptedMsg = mOutboundSession.encryptMessage("base64 message");
+		result = mInboundSession.decryptMessageBinary(OlmBase64.decode(encryptedMsg), 0, OlmBase64.decodedLength(encryptedMsg.length()));
+		assertEquals("base64 message", result.getDecryptedMessage());
+		
+		binaryMsg = mOutboundSession.encryptMessageBinary(clearMsg, 0, clearMsg.length);
+		assertEquals("binary message", mInboundSession.decryptMessage(OlmBase64.encodeToString(binaryMsg)).getDecryptedMessage());
+	}
+	
+	@Test
+	public void testPkBinaryMessage()
+			throws OlmException
+	{
+		OlmPkDecryption decryption = new OlmPkDecryption();
+		OlmPkEncryption encryption = new OlmPkEncryption();
+		try
+		{
+			encryption.setRecipientKey(decryption.generateKey());
+			byte[] plaintext = "pk binary message".getBytes(UTF_8);
+			
+			OlmPkBinaryMessage message = encryption.encryptBinary(plaintext);
+			assertEquals(32, message.mEphemeralKey.length);
+			assertArrayEquals(plaintext, decryption.decryptBinary(message).getBytes());
+		}
+		finally
+		{
+			encryption.releaseEncryption();
+			decryption.releaseDecryption();
+		}
+	}
+}
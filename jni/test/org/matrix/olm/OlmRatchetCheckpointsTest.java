@@ -0,0 +1,202 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import static java.nio.charset.StandardCharsets.*;
+import static org.junit.Assert.*;
+
+import java.nio.*;
+import java.util.*;
+
+import org.junit.*;
+
+public class OlmRatchetCheckpointsTest
+{
+	private static final long SESSION_ID = 1;
+	
+	private final List<long[]> mCreated = new ArrayList<>();
+	private final List<Long> mReleased = new ArrayList<>();
+	
+	/**
+	 * Checkpoints of 16 messages, at most two of them; a checkpoint id is 1000 + its index.
+	 */
+	private OlmRatchetCheckpoints newCheckpoints(long aFirstKnownIndex)
+	{
+		return new OlmRatchetCheckpoints(4, 2, 100, aFirstKnownIndex, (source, index) -> {
+			mCreated.add(new long[] { source, index });
+			return 1000 + index;
+		}, mReleased::add);
+	}
+	
+	/**
+	 * @return the start of a megolm message: version, message index and the beginning of the ciphertext
+	 */
+	private static byte[] message(long aIndex)
+	{
+		byte[] decoded = new byte[16];
+		int position = 0;
+		decoded[position++] = OlmMessageHeader.SUPPORTED_VERSION;
+		decoded[position++] = 0x08;
+		long value = aIndex;
+		while (value >= 0x80)
+		{
+			decoded[position++] = (byte) (value | 0x80);
+			value >>>= 7;
+		}
+		decoded[position] = (byte) value;
+		return OlmBase64.encodeToString(decoded).getBytes(UTF_8);
+	}
+	
+	private static long select(OlmRatchetCheckpoints aCheckpoints, long aIndex)
+	{
+		byte[] msg = message(aIndex);
+		return aCheckpoints.select(SESSION_ID, msg, 0, msg.length);
+	}
+	
+	@Test
+	public void testFirstIntervalUsesTheSession()
+	{
+		OlmRatchetCheckpoints checkpoints = newCheckpoints(0);
+		
+		assertEquals(SESSION_ID, select(checkpoints, 5));
+		assertTrue(mCreated.isEmpty());
+		
+		OlmRatchetCheckpointStats stats = checkpoints.getStats();
+		assertEquals(0, stats.getHits());
+		assertEquals(0, stats.getMisses());
+		assertEquals(5, stats.getRatchetSteps());
+		assertEquals(0, stats.getCheckpoints());
+	}
+	
+	@Test
+	public void testMissThenHit()
+	{
+		OlmRatchetCheckpoints checkpoints = newCheckpoints(0);
+		
+		assertEquals(1016, select(checkpoints, 20));
+		assertEquals(1016, select(checkpoints, 21));
+		
+		assertEquals(1, mCreated.size());
+		assertArrayEquals(new long[] { SESSION_ID, 16 }, mCreated.get(0));
+		
+		OlmRatchetCheckpointStats stats = checkpoints.getStats();
+		assertEquals(1, stats.getHits());
+		assertEquals(1, stats.getMisses());
+		assertEquals(20 + 5, stats.getRatchetSteps());
+		assertEquals(1, stats.getCheckpoints());
+		assertEquals(100, stats.getBytes());
+	}
+	
+	@Test
+	public void testCreatesFromTheClosestCheckpointBelow()
+	{
+		OlmRatchetCheckpoints checkpoints = newCheckpoints(0);
+		
+		assertEquals(1016, select(checkpoints, 20));
+		assertEquals(1032, select(checkpoints, 40));
+		
+		assertArrayEquals(new long[] { 1016, 32 }, mCreated.get(1));
+		assertEquals(20 + 16 + 8, checkpoints.getStats().getRatchetSteps());
+	}
+	
+	@Test
+	public void testEvictsTheLeastRecentlyUsed()
+	{
+		OlmRatchetCheckpoints checkpoints = newCheckpoints(0);
+		
+		select(checkpoints, 20);
+		select(checkpoints, 40);
+		// 16 is used again, 32 becomes the least recently used
+		select(checkpoints, 17);
+		
+		assertEquals(1048, select(checkpoints, 50));
+		assertEquals(Collections.singletonList(1032L), mReleased);
+		assertEquals(2, checkpoints.getStats().getCheckpoints());
+		
+		// 48 was created from 32 before 32 was evicted
+		assertArrayEquals(new long[] { 1032, 48 }, mCreated.get(2));
+		assertEquals(1016, select(checkpoints, 30));
+		assertEquals(1048, select(checkpoints, 63));
+		assertEquals(3, mCreated.size());
+	}
+	
+	@Test
+	public void testFirstKnownIndexAboveZero()
+	{
+		OlmRatchetCheckpoints checkpoints = newCheckpoints(40);
+		
+		// the slot of 45 is below the first known index
+		assertEquals(SESSION_ID, select(checkpoints, 45));
+		assertEquals(1048, select(checkpoints, 50));
+		assertArrayEquals(new long[] { SESSION_ID, 48 }, mCreated.get(0));
+		assertEquals(5 + 8 + 2, checkpoints.getStats().getRatchetSteps());
+	}
+	
+	@Test
+	public void testUnreadableHeaderUsesTheSession()
+	{
+		OlmRatchetCheckpoints checkpoints = newCheckpoints(0);
+		byte[] msg = "not a megolm message".getBytes(UTF_8);
+		
+		assertEquals(SESSION_ID, checkpoints.select(SESSION_ID, msg, 0, msg.length));
+		assertEquals(SESSION_ID, checkpoints.select(SESSION_ID, msg, 10, msg.length));
+		assertTrue(mCreated.isEmpty());
+	}
+	
+	@Test
+	public void testCreationFailureFallsBack()
+	{
+		OlmRatchetCheckpoints checkpoints = new OlmRatchetCheckpoints(4, 2, 100, 0, (source, index) -> {
+			throw new IllegalStateException("out of memory");
+		}, mReleased::add);
+		
+		assertEquals(SESSION_ID, select(checkpoints, 20));
+		assertEquals(0, checkpoints.getStats().getCheckpoints());
+		assertEquals(20, checkpoints.getStats().getRatchetSteps());
+	}
+	
+	@Test
+	public void testByteBufferLeavesThePosition()
+	{
+		OlmRatchetCheckpoints checkpoints = newCheckpoints(0);
+		byte[] msg = message(300);
+		ByteBuffer buffer = ByteBuffer.allocateDirect(msg.length + 4);
+		buffer.position(4);
+		buffer.put(msg);
+		buffer.position(4);
+		
+		assertEquals(1288, checkpoints.select(SESSION_ID, buffer));
+		assertEquals(4, buffer.position());
+		assertEquals(msg.length + 4, buffer.limit());
+	}
+	
+	@Test
+	public void testRelease()
+	{
+		OlmRatchetCheckpoints checkpoints = newCheckpoints(0);
+		select(checkpoints, 20);
+		select(checkpoints, 40);
+		
+		checkpoints.release();
+		assertEquals(Arrays.asList(1016L, 1032L), mReleased);
+		assertEquals(0, checkpoints.getStats().getCheckpoints());
+		
+		// usable again
+		assertEquals(1016, select(checkpoints, 20));
+		assertEquals(3, mCreated.size());
+	}
+}
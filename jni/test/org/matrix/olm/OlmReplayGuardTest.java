@@ -0,0 +1,155 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.junit.*;
+
+public class OlmReplayGuardTest
+{
+	@Test
+	public void testReplay()
+	{
+		OlmReplayGuard guard = new OlmReplayGuard();
+		
+		assertFalse(guard.isReplay("session", 3, "$event1"));
+		// the same event decrypted again
+		assertFalse(guard.isReplay("session", 3, "$event1"));
+		assertTrue(guard.isReplay("session", 3, "$event2"));
+		
+		// other index, other session
+		assertFalse(guard.isReplay("session", 4, "$event2"));
+		assertFalse(guard.isReplay("other", 3, "$event2"));
+		
+		assertEquals(2, guard.getSessionCount());
+		assertEquals(3, guard.size());
+	}
+	
+	@Test
+	public void testLastMessageIndex()
+	{
+		OlmReplayGuard guard = new OlmReplayGuard();
+		
+		assertFalse(guard.isReplay("session", 0xFFFFFFFFL, "$event1"));
+		assertFalse(guard.isReplay("session", 0xFFFFFFFFL, "$event1"));
+		assertTrue(guard.isReplay("session", 0xFFFFFFFFL, "$event2"));
+		assertFalse(guard.isReplay("session", 0x7FFFFFFFL, "$event2"));
+		assertEquals(2, guard.size());
+	}
+	
+	@Test
+	public void testGrowth()
+	{
+		OlmReplayGuard guard = new OlmReplayGuard();
+		
+		for (int i = 0; i < 10000; i++)
+		{
+			assertFalse(guard.isReplay("session", i, "$event" + i));
+		}
+		for (int i = 0; i < 10000; i++)
+		{
+			assertFalse(guard.isReplay("session", i, "$event" + i));
+			assertTrue(guard.isReplay("session", i, "$other" + i));
+		}
+		assertEquals(10000, guard.size());
+	}
+	
+	@Test
+	public void testForget()
+	{
+		OlmReplayGuard guard = new OlmReplayGuard();
+		guard.isReplay("session", 1, "$event1");
+		
+		guard.forget("session");
+		assertEquals(0, guard.getSessionCount());
+		assertFalse(guard.isReplay("session", 1, "$event2"));
+	}
+	
+	@Test
+	public void testRoundTripLeavesTrailingData()
+			throws IOException
+	{
+		OlmReplayGuard guard = new OlmReplayGuard();
+		for (int i = 0; i < 100; i++)
+		{
+			guard.isReplay("session" + (i % 3), i, "$event" + i);
+		}
+		guard.isReplay("session0", 0xFFFFFFFFL, "$last");
+		
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		guard.writeTo(output);
+		output.write(new byte[] { 1, 2, 3 });
+		
+		ByteArrayInputStream input = new ByteArrayInputStream(output.toByteArray());
+		OlmReplayGuard loaded = OlmReplayGuard.readFrom(input);
+		
+		assertEquals(3, input.available());
+		assertEquals(1, input.read());
+		
+		assertEquals(3, loaded.getSessionCount());
+		assertEquals(101, loaded.size());
+		for (int i = 0; i < 100; i++)
+		{
+			assertFalse(loaded.isReplay("session" + (i % 3), i, "$event" + i));
+			assertTrue(loaded.isReplay("session" + (i % 3), i, "$other"));
+		}
+		assertTrue(loaded.isReplay("session0", 0xFFFFFFFFL, "$other"));
+	}
+	
+	@Test(expected = IOException.class)
+	public void testReadInvalidMagic()
+			throws IOException
+	{
+		OlmReplayGuard.readFrom(new ByteArrayInputStream(new byte[] { 0, 0, 0, 0, 0, 0, 0, 1, 0, 0, 0, 0 }));
+	}
+	
+	@Test(expected = IOException.class)
+	public void testReadHostileCount()
+			throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new OlmReplayGuard().writeTo(bytes);
+		byte[] header = bytes.toByteArray();
+		
+		ByteArrayOutputStream hostile = new ByteArrayOutputStream();
+		DataOutputStream output = new DataOutputStream(hostile);
+		output.write(header, 0, 8);
+		output.writeInt(1);
+		output.writeUTF("session");
+		output.writeInt(Integer.MAX_VALUE);
+		output.flush();
+		
+		OlmReplayGuard.readFrom(new ByteArrayInputStream(hostile.toByteArray()));
+	}
+	
+	@Test(expected = EOFException.class)
+	public void testReadTruncated()
+			throws IOException
+	{
+		OlmReplayGuard guard = new OlmReplayGuard();
+		guard.isReplay("session", 1, "$event1");
+		
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		guard.writeTo(output);
+		byte[] bytes = output.toByteArray();
+		
+		OlmReplayGuard.readFrom(new ByteArrayInputStream(bytes, 0, bytes.length - 1));
+	}
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.*;
+
+public class OlmRoomKeyShareIndexTest
+{
+	private static final List<String> MEMBERS = Arrays.asList("alice", "bob", "carol", "dave");
+	
+	@Test
+	public void testUnshared()
+	{
+		OlmRoomKeyShareIndex index = new OlmRoomKeyShareIndex();
+		OlmRoomKeyShareIndex.DeviceSet members = index.devices(MEMBERS);
+		
+		assertEquals(4, members.size());
+		assertEquals(MEMBERS, index.getUnshared("session", members));
+		
+		index.recordShared("session", "bob", 0);
+		index.recordShared("session", "dave", 5);
+		assertEquals(Arrays.asList("alice", "carol"), index.getUnshared("session", members));
+		
+		index.recordShared("session", members, 7);
+		assertTrue(index.getUnshared("session", members).isEmpty());
+		assertEquals(1, index.getSessionCount());
+		assertEquals(4, index.getDeviceCount());
+	}
+	
+	@Test
+	public void testSharedIndexKeepsTheEarliest()
+	{
+		OlmRoomKeyShareIndex index = new OlmRoomKeyShareIndex();
+		
+		assertEquals(OlmRoomKeyShareIndex.NOT_SHARED, index.getSharedIndex("session", "alice"));
+		assertFalse(index.isShared("session", "alice"));
+		
+		index.recordShared("session", "alice", 10);
+		index.recordShared("session", "alice", 3);
+		index.recordShared("session", "alice", 8);
+		assertEquals(3, index.getSharedIndex("session", "alice"));
+		assertTrue(index.isShared("session", "alice"));
+		assertFalse(index.isShared("other session", "alice"));
+		
+		// message indexes are unsigned
+		index.recordShared("session", "bob", Integer.MIN_VALUE);
+		index.recordShared("session", "bob", 1);
+		assertEquals(1, index.getSharedIndex("session", "bob"));
+	}
+	
+	@Test
+	public void testSharedOutside()
+	{
+		OlmRoomKeyShareIndex index = new OlmRoomKeyShareIndex();
+		index.recordShared("session", index.devices(MEMBERS), 0);
+		
+		// dave left, erin joined
+		OlmRoomKeyShareIndex.DeviceSet members = index.devices(Arrays.asList("alice", "bob", "carol", "erin"));
+		assertEquals(Collections.singletonList("dave"), index.getSharedOutside("session", members));
+		assertEquals(Collections.singletonList("erin"), index.getUnshared("session", members));
+		assertTrue(index.getSharedOutside("unknown session", members).isEmpty());
+	}
+	
+	@Test
+	public void testManyDevices()
+	{
+		OlmRoomKeyShareIndex index = new OlmRoomKeyShareIndex();
+		List<String> deviceKeys = new ArrayList<>();
+		for (int i = 0; i < 1000; i++)
+		{
+			deviceKeys.add("device " + i);
+		}
+		OlmRoomKeyShareIndex.DeviceSet members = index.devices(deviceKeys);
+		
+		for (int i = 0; i < 1000; i += 2)
+		{
+			index.recordShared("session", deviceKeys.get(i), i);
+		}
+		assertEquals(500, index.getUnshared("session", members).size());
+		assertEquals(998, index.getSharedIndex("session", "device 998"));
+	}
+	
+	@Test
+	public void testRemove()
+	{
+		OlmRoomKeyShareIndex index = new OlmRoomKeyShareIndex();
+		index.recordShared("session", "alice", 0);
+		
+		assertTrue(index.remove("session"));
+		assertFalse(index.remove("session"));
+		assertFalse(index.isShared("session", "alice"));
+		// interned keys are kept
+		assertEquals(1, index.getDeviceCount());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testDeviceSetOfAnotherIndex()
+	{
+		OlmRoomKeyShareIndex.DeviceSet members = new OlmRoomKeyShareIndex().devices(MEMBERS);
+		new OlmRoomKeyShareIndex().getUnshared("session", members);
+	}
+	
+	@Test
+	public void testRoundTripLeavesTrailingData()
+			throws IOException
+	{
+		OlmRoomKeyShareIndex index = new OlmRoomKeyShareIndex();
+		index.recordShared("session 1", index.devices(MEMBERS), 4);
+		index.recordShared("session 2", "bob", 9);
+		index.recordShared("session 2", "erin", 2);
+		
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		index.writeTo(output);
+		output.write(new byte[] { 1, 2, 3 });
+		
+		ByteArrayInputStream input = new ByteArrayInputStream(output.toByteArray());
+		OlmRoomKeyShareIndex loaded = OlmRoomKeyShareIndex.readFrom(input);
+		assertEquals(3, input.available());
+		
+		assertEquals(2, loaded.getSessionCount());
+		assertEquals(5, loaded.getDeviceCount());
+		assertEquals(4, loaded.getSharedIndex("session 1", "carol"));
+		assertEquals(9, loaded.getSharedIndex("session 2", "bob"));
+		assertEquals(2, loaded.getSharedIndex("session 2", "erin"));
+		assertFalse(loaded.isShared("session 2", "alice"));
+		
+		OlmRoomKeyShareIndex.DeviceSet members = loaded.devices(MEMBERS);
+		assertEquals(Arrays.asList("alice", "carol", "dave"), loaded.getUnshared("session 2", members));
+		assertEquals(5, loaded.getDeviceCount());
+	}
+	
+	@Test(expected = IOException.class)
+	public void testReadInvalidMagic()
+			throws IOException
+	{
+		OlmRoomKeyShareIndex.readFrom(new ByteArrayInputStream(new byte[16]));
+	}
+	
+	@Test(expected = IOException.class)
+	public void testReadDuplicatedDevice()
+			throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new OlmRoomKeyShareIndex().writeTo(bytes);
+		
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		DataOutputStream output = new DataOutputStream(data);
+		output.write(bytes.toByteArray(), 0, 8);
+		output.writeInt(2);
+		output.writeUTF("alice");
+		output.writeUTF("alice");
+		output.writeInt(0);
+		output.flush();
+		
+		OlmRoomKeyShareIndex.readFrom(new ByteArrayInputStream(data.toByteArray()));
+	}
+	
+	@Test(expected = IOException.class)
+	public void testReadUnknownDevice()
+			throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new OlmRoomKeyShareIndex().writeTo(bytes);
+		
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		DataOutputStream output = new DataOutputStream(data);
+		output.write(bytes.toByteArray(), 0, 8);
+		output.writeInt(1);
+		output.writeUTF("alice");
+		output.writeInt(1);
+		output.writeUTF("session");
+		output.writeInt(1);
+		output.writeInt(1);
+		output.writeInt(0);
+		output.flush();
+		
+		OlmRoomKeyShareIndex.readFrom(new ByteArrayInputStream(data.toByteArray()));
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import static java.nio.charset.StandardCharsets.*;
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import com.beust.klaxon.*;
+import org.junit.*;
+
+public class OlmSessionTest
+{
+	private OlmAccount mAliceAccount;
+	private OlmAccount mBobAccount;
+	private OlmSession mAliceSession;
+	
+	@BeforeClass
+	public static void loadLibrary()
+	{
+		new OlmManager();
+	}
+	
+	@Before
+	public void setUp()
+			throws OlmException
+	{
+		mAliceAccount = new OlmAccount();
+		mBobAccount = new OlmAccount();
+		mBobAccount.generateOneTimeKeys(1);
+		JsonObject oneTimeKeys = (JsonObject) mBobAccount.oneTimeKeys().get(OlmAccount.JSON_KEY_ONE_TIME_KEY);
+		
+		mAliceSession = new OlmSession();
+		mAliceSession.initOutboundSession(mAliceAccount, mBobAccount.identityKeys().getCurve25519(),
+				(String) oneTimeKeys.values().iterator().next());
+	}
+	
+	@After
+	public void tearDown()
+	{
+		mAliceSession.releaseSession();
+		mAliceAccount.releaseAccount();
+		mBobAccount.releaseAccount();
+	}
+	
+	/**
+	 * A session listed many times encrypts one message per entry: its chain index crosses 128, where the messages
+	 * get longer, within a single call.
+	 */
+	@Test
+	public void testEncryptForAllWithRepeatedSession()
+			throws OlmException
+	{
+		OlmSession[] sessions = new OlmSession[200];
+		Arrays.fill(sessions, mAliceSession);
+		String payload = "room key";
+		
+		OlmMessage[] messages = OlmSession.encryptForAll(payload.getBytes(UTF_8), sessions);
+		assertEquals(sessions.length, messages.length);
+		
+		OlmSession bobSession = new OlmSession();
+		try
+		{
+			bobSession.initInboundSessionFrom(mBobAccount, mAliceAccount.identityKeys().getCurve25519(), messages[0].getCipherText());
+			for (OlmMessage message : messages)
+			{
+				assertNotNull(message);
+				assertEquals(OlmMessage.MESSAGE_TYPE_PRE_KEY, message.getType());
+				assertEquals(payload, bobSession.decryptMessage(message));
+			}
+		}
+		finally
+		{
+			bobSession.releaseSession();
+		}
+	}
+	
+	@Test
+	public void testEncryptForAllWithReleasedSession()
+			throws OlmException
+	{
+		OlmSession released = new OlmSession();
+		released.releaseSession();
+		
+		OlmMessage[] messages = OlmSession.encryptForAll("room key".getBytes(UTF_8), new OlmSession[] {mAliceSession, null, released});
+		assertNotNull(messages[0]);
+		assertNull(messages[1]);
+		assertNull(messages[2]);
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ * Copyright 2016 Vector Creations Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matrix.olm;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+public class OlmUtilityTest
+{
+	private OlmAccount mAccount;
+	private OlmUtility mUtility;
+	private String mFingerprintKey;
+	
+	@BeforeClass
+	public static void loadLibrary()
+	{
+		new OlmManager();
+	}
+	
+	@Before
+	public void setUp()
+			throws OlmException
+	{
+		mAccount = new OlmAccount();
+		mUtility = new OlmUtility();
+		mFingerprintKey = mAccount.identityKeys().getEd25519();
+	}
+	
+	@After
+	public void tearDown()
+	{
+		mUtility.releaseUtility();
+		mAccount.releaseAccount();
+	}
+	
+	@Test
+	public void testVerifyEd25519SignaturesIndividually()
+			throws OlmException
+	{
+		List<String> messages = new ArrayList<>();
+		List<String> signatures = new ArrayList<>();
+		for (int i = 0; i < 5; i++)
+		{
+			messages.add("message " + i);
+			signatures.add(mAccount.signMessage("message " + i));
+		}
+		// a signature of another message, a malformed signature, an empty message
+		signatures.set(1, signatures.get(0));
+		signatures.set(3, "not a signature");
+		messages.add("");
+		signatures.add(mAccount.signMessage(""));
+		
+		boolean[] valid = mUtility.verifyEd25519SignaturesIndividually(mFingerprintKey, messages, signatures);
+		assertArrayEquals(new boolean[] { true, false, true, false, true, true }, valid);
+		
+		// same answers as the single signature method
+		for (int i = 0; i < valid.length; i++)
+		{
+			try
+			{
+				mUtility.verifyEd25519Signature(signatures.get(i), mFingerprintKey, messages.get(i));
+				assertTrue(valid[i]);
+			}
+			catch (OlmException e)
+			{
+				assertFalse(valid[i]);
+			}
+		}
+	}
+	
+	@Test
+	public void testVerifyEd25519SignaturesIndividuallyEmpty()
+			throws OlmException
+	{
+		assertEquals(0, mUtility.verifyEd25519SignaturesIndividually(mFingerprintKey, Collections.emptyList(), Collections.emptyList()).length);
+	}
+	
+	@Test(expected = OlmException.class)
+	public void testVerifyEd25519SignaturesIndividuallyMismatch()
+			throws OlmException
+	{
+		mUtility.verifyEd25519SignaturesIndividually(mFingerprintKey, Collections.singletonList("message"), Collections.emptyList());
+	}
+}